@@ -11,6 +11,12 @@ public enum Flag {
 
     force("force"),
     zerocopy("zerocopy"),
+    splice("splice"),
+    nosplice("no-splice"),
+    reuseportshard("reuseport-shard"),
+    noreuseportshard("no-reuseport-shard"),
+    backendpool("backend-pool"),
+    nobackendpool("no-backend-pool"),
 
     enable("enable"),
     disable("disable"),
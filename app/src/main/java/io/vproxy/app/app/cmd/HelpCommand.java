@@ -471,6 +471,12 @@ public class HelpCommand {
         noswitchflag("no-switch-flag", null, "do not add switch flag on vxlan packet"),
         force("force", null, "forcibly to do something"),
         zerocopy("zerocopy", null, "indicate to perform zerocopy operations"),
+        splice("splice", null, "forward bytes with splice(2) through pipes, bytes will not be copied into user space"),
+        nosplice("no-splice", null, "forward bytes with user space buffers"),
+        reuseportshard("reuseport-shard", null, "listen with one SO_REUSEPORT socket on each worker event loop"),
+        noreuseportshard("no-reuseport-shard", null, "listen on the acceptor event loops and hand off connections to worker event loops"),
+        backendpool("backend-pool", null, "keep idle backend connections and reuse them in other sessions"),
+        nobackendpool("no-backend-pool", null, "close backend connections with their sessions"),
         rxgencsum("rx-gen-csum", null, "generate checksum before receiving the packet into vswitch"),
         enable("enable", null, "enable the resource"),
         disable("disable", null, "disable the resource"),
@@ -501,6 +507,14 @@ public class HelpCommand {
                     , new ResActParamMan(ParamMan.certkey, "the certificates and keys used by tcp-lb. Multiple cert-key(s) are separated with `,`")
                     , new ResActParamMan(ParamMan.securitygroup, "specify a security group for the lb", "allow any")
                 ),
+                Arrays.asList(
+                    new ResActFlagMan(FlagMan.splice, "use splice(2) to forward bytes when the lb is plain tcp on linux, fallback to user space buffers otherwise", false),
+                    new ResActFlagMan(FlagMan.nosplice, "use user space buffers to forward bytes", true),
+                    new ResActFlagMan(FlagMan.reuseportshard, "each worker event loop accepts and serves its own connections, acceptor-elg is not used for listening. Requires SO_REUSEPORT load balancing (linux 3.9+)", false),
+                    new ResActFlagMan(FlagMan.noreuseportshard, "accept connections on acceptor-elg and dispatch them to the worker event loops", true),
+                    new ResActFlagMan(FlagMan.backendpool, "reuse idle backend connections across sessions on the same event loop. Only works with processors supporting it, e.g. http/1.x", false),
+                    new ResActFlagMan(FlagMan.nobackendpool, "each session opens its own backend connections", true)
+                ),
                 Collections.singletonList(
                     new Tuple<>(
                         "add tcp-lb lb0 acceptor-elg elg0 event-loop-group elg0 address 127.0.0.1:18080 upstream ups0 in-buffer-size 16384 out-buffer-size 16384",
@@ -531,6 +545,14 @@ public class HelpCommand {
                     , new ResActParamMan(ParamMan.certkey, "the certificates and keys used by tcp-lb. Multiple cert-key(s) are separated with `,`", "not changed")
                     , new ResActParamMan(ParamMan.securitygroup, "the security group", "not changed")
                 ),
+                Arrays.asList(
+                    new ResActFlagMan(FlagMan.splice, "use splice(2) to forward bytes for new connections", false),
+                    new ResActFlagMan(FlagMan.nosplice, "use user space buffers to forward bytes for new connections", false),
+                    new ResActFlagMan(FlagMan.reuseportshard, "re-create the listening sockets on each worker event loop", false),
+                    new ResActFlagMan(FlagMan.noreuseportshard, "re-create the listening sockets on the acceptor event loops", false),
+                    new ResActFlagMan(FlagMan.backendpool, "reuse idle backend connections across sessions", false),
+                    new ResActFlagMan(FlagMan.nobackendpool, "stop reusing backend connections and close the idle ones", false)
+                ),
                 Collections.singletonList(
                     new Tuple<>(
                         "update tcp-lb lb0 in-buffer-size 32768 out-buffer-size 32768",
@@ -742,7 +764,7 @@ public class HelpCommand {
                         new ResActParamMan(ParamMan.up, "set server status to UP after succeeded for `${up}` times"),
                         new ResActParamMan(ParamMan.down, "set server status to DOWN after failed for `${down}` times"),
                         new ResActParamMan(ParamMan.protocol, "the protocol used for checking the servers, you may choose `tcp`, `none`", "tcp"),
-                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `source`", "wrr"),
+                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `source`, `maglev`, `p2c`, `peakewma`", "wrr"),
                         new ResActParamMan(ParamMan.annotations, "extra info for the server-group, such as host info, health check url. Must be a json and values must be strings", "{}"),
                         new ResActParamMan(ParamMan.eventloopgroup, "choose a event-loop-group for the server group. health check operations will be performed on the event loop group", Application.DEFAULT_CONTROL_EVENT_LOOP_GROUP_NAME)
                     ),
@@ -797,7 +819,7 @@ public class HelpCommand {
                         new ResActParamMan(ParamMan.down, "set server status to DOWN after failed for `${down}` times", "not changed"),
                         new ResActParamMan(ParamMan.protocol, "the protocol used for checking the servers, you may choose `tcp`, `none`. " +
                             "Note: this field will be set to `tcp` as default when updating other hc options", "not changed"),
-                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `source`", "not changed"),
+                        new ResActParamMan(ParamMan.method, "loadbalancing algorithm, you can choose `wrr`, `wlc`, `source`, `maglev`, `p2c`, `peakewma`", "not changed"),
                         new ResActParamMan(ParamMan.weight, "the weight of group in the upstream resource (only available for server-group in upstream)", "not changed"),
                         new ResActParamMan(ParamMan.annotations, "annotation of the group itself, or the group in the upstream", "not changed")
                     ),
@@ -878,7 +900,7 @@ public class HelpCommand {
                 new ResActMan(ActMan.addto, "specify name, remote ip:port, weight, and attach the server into the server group",
                     Arrays.asList(
                         new ResActParamMan(ParamMan.address, "remote address, ip:port"),
-                        new ResActParamMan(ParamMan.weight, "weight of the server, which will be used by wrr, wlc and source algorithm", "10")
+                        new ResActParamMan(ParamMan.weight, "weight of the server, which will be used by all algorithms", "10")
                     ),
                     Collections.singletonList(
                         new Tuple<>(
@@ -904,7 +926,7 @@ public class HelpCommand {
                     )),
                 new ResActMan(ActMan.update, "change weight of the server",
                     Collections.singletonList(
-                        new ResActParamMan(ParamMan.weight, "weight of the server, which will be used by wrr, wlc and source algorithm", "not changed")
+                        new ResActParamMan(ParamMan.weight, "weight of the server, which will be used by all algorithms", "not changed")
                     ),
                     Collections.singletonList(
                         new Tuple<>(
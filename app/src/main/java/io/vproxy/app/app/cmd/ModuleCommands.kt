@@ -29,6 +29,14 @@ class ModuleCommands private constructor() : Commands() {
           it + ResActParam(Param.ck)
           it + ResActParam(Param.secg)
         },
+        flags = {
+          it + ResActFlag(Flag.splice)
+          it + ResActFlag(Flag.nosplice)
+          it + ResActFlag(Flag.reuseportshard)
+          it + ResActFlag(Flag.noreuseportshard)
+          it + ResActFlag(Flag.backendpool)
+          it + ResActFlag(Flag.nobackendpool)
+        },
         exec = execUpdate { TcpLBHandle.add(it) },
       )
       it + ResAct(
@@ -56,6 +64,14 @@ class ModuleCommands private constructor() : Commands() {
           it + ResActParam(Param.ck)
           it + ResActParam(Param.secg)
         },
+        flags = {
+          it + ResActFlag(Flag.splice)
+          it + ResActFlag(Flag.nosplice)
+          it + ResActFlag(Flag.reuseportshard)
+          it + ResActFlag(Flag.noreuseportshard)
+          it + ResActFlag(Flag.backendpool)
+          it + ResActFlag(Flag.nobackendpool)
+        },
         exec = execUpdate { TcpLBHandle.update(it) }
       )
       it + ResAct(
@@ -2,6 +2,7 @@ package io.vproxy.app.app.cmd.handle.resource;
 
 import io.vproxy.app.app.Application;
 import io.vproxy.app.app.cmd.Command;
+import io.vproxy.app.app.cmd.Flag;
 import io.vproxy.app.app.cmd.Param;
 import io.vproxy.app.app.cmd.Resource;
 import io.vproxy.app.app.cmd.handle.param.AddrHandle;
@@ -14,6 +15,7 @@ import io.vproxy.base.util.exception.NotFoundException;
 import io.vproxy.base.util.exception.XException;
 import io.vproxy.base.util.ringbuffer.ssl.VSSLContext;
 import io.vproxy.component.app.TcpLB;
+import io.vproxy.component.proxy.BackendConnectionPool;
 import io.vproxy.component.secure.SecurityGroup;
 import io.vproxy.component.ssl.CertKey;
 import io.vproxy.component.svrgroup.Upstream;
@@ -85,6 +87,15 @@ public class TcpLBHandle {
         Application.get().tcpLBHolder.add(
             alias, acceptor, worker, addr, backend, timeout, inBufferSize, outBufferSize, protocol, certKeys, secg
         );
+        if (cmd.flags.contains(Flag.splice)) {
+            Application.get().tcpLBHolder.get(alias).setSplice(true);
+        }
+        if (cmd.flags.contains(Flag.reuseportshard)) {
+            Application.get().tcpLBHolder.get(alias).setReusePortShard(true);
+        }
+        if (cmd.flags.contains(Flag.backendpool)) {
+            Application.get().tcpLBHolder.get(alias).setBackendPool(new BackendConnectionPool());
+        }
     }
 
     public static void remove(Command cmd) throws Exception {
@@ -106,6 +117,23 @@ public class TcpLBHandle {
         if (cmd.args.containsKey(Param.secg)) {
             tcpLB.securityGroup = Application.get().securityGroupHolder.get(cmd.args.get(Param.secg));
         }
+        if (cmd.flags.contains(Flag.splice)) {
+            tcpLB.setSplice(true);
+        } else if (cmd.flags.contains(Flag.nosplice)) {
+            tcpLB.setSplice(false);
+        }
+        if (cmd.flags.contains(Flag.reuseportshard)) {
+            tcpLB.setReusePortShard(true);
+        } else if (cmd.flags.contains(Flag.noreuseportshard)) {
+            tcpLB.setReusePortShard(false);
+        }
+        if (cmd.flags.contains(Flag.backendpool)) {
+            if (tcpLB.getBackendPool() == null) {
+                tcpLB.setBackendPool(new BackendConnectionPool());
+            }
+        } else if (cmd.flags.contains(Flag.nobackendpool)) {
+            tcpLB.setBackendPool(null);
+        }
         if (cmd.args.containsKey(Param.ck)) {
             if (tcpLB.getCertKeys() == null || tcpLB.getCertKeys().length == 0) {
                 throw new XException("cannot configure the tcp-lb to use TLS when it's originally using plain TCP");
@@ -150,6 +178,15 @@ public class TcpLBHandle {
                 + " protocol " + tcpLB.protocol
                 + " security-group " + tcpLB.securityGroup.alias
             );
+            if (tcpLB.isSplice()) {
+                res.append(" splice");
+            }
+            if (tcpLB.isReusePortShard()) {
+                res.append(" reuseport-shard");
+            }
+            if (tcpLB.getBackendPool() != null) {
+                res.append(" backend-pool");
+            }
             return res.toString();
         }
     }
@@ -16,14 +16,14 @@ import io.vproxy.vswitch.plugin.FilterResult;
 import io.vproxy.vswitch.plugin.IfaceWatcher;
 import io.vproxy.vswitch.plugin.PacketFilter;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 public class BasePacketFilter implements PacketFilter, IfaceWatcher, Plugin {
     private static final String UUID = "079c39ac-ce97-4820-a014-0ed16ad639db";
-    private final Map<String, IfaceHolder> ifaces = new HashMap<>();
+    private final Map<String, IfaceHolder> ifaces = new ConcurrentHashMap<>();
     private Switch handledSwitch;
 
     private boolean enableIngressCache = false;
@@ -57,6 +57,7 @@ public class BasePacketFilter implements PacketFilter, IfaceWatcher, Plugin {
                 cacheSize = Integer.parseInt(value);
             }
         }
+        initArguments(params.arguments);
         if (selectSwitch == null) {
             Logger.warn(LogType.ALERT, "switch={...} is not provided, the plugin will try to select any available switch");
         }
@@ -114,6 +115,12 @@ public class BasePacketFilter implements PacketFilter, IfaceWatcher, Plugin {
         handledSwitch = null;
     }
 
+    /**
+     * Handle arguments other than switch and cacheSize, called before binding to the switch.
+     */
+    protected void initArguments(@SuppressWarnings("unused") String[] arguments) throws Exception {
+    }
+
     protected boolean handleSwitch(@SuppressWarnings("unused") Switch sw) {
         return true;
     }
@@ -122,9 +129,21 @@ public class BasePacketFilter implements PacketFilter, IfaceWatcher, Plugin {
         return true;
     }
 
-    @SuppressWarnings("unused")
     protected final void registerIfaceHolder(IfaceHolder holder) {
-        ifaces.put(holder.name, holder);
+        var old = ifaces.put(holder.name, holder);
+        if (old != null && holder.iface == null) {
+            holder.iface = old.iface;
+        }
+    }
+
+    /**
+     * Drop the holders registered by {@link #registerIfaceHolder(IfaceHolder)}, e.g. before registering holders of new flows.
+     * Ifaces which are currently attached are kept in new holders.
+     */
+    protected final void clearIfaceHolders() {
+        for (var name : ifaces.keySet()) {
+            ifaces.computeIfPresent(name, (n, h) -> h.iface == null ? null : new IfaceHolder(n, h.iface));
+        }
     }
 
     @Override
@@ -0,0 +1,82 @@
+package io.vproxy.app.plugin.impl;
+
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.Utils;
+import io.vproxy.vproxyx.pktfiltergen.flow.FlowClassifier;
+import io.vproxy.vproxyx.pktfiltergen.flow.Flows;
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.PacketFilterHelper;
+import io.vproxy.vswitch.plugin.FilterResult;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * A packet filter running flows with {@link FlowClassifier}, no code generation is required.<br>
+ * Arguments: {@code flows={filename}}, and the arguments of {@link BasePacketFilter}.<br>
+ * Flows can be replaced at runtime with {@link #update(Flows)} or {@link #reload()},
+ * packets being handled keep using the old classifier.
+ */
+public class FlowPacketFilter extends BasePacketFilter {
+    private String flowsFile;
+    private volatile FlowClassifier classifier;
+
+    public FlowPacketFilter() {
+    }
+
+    @Override
+    protected void initArguments(String[] arguments) throws Exception {
+        for (String s : arguments) {
+            if (s.startsWith("flows=")) {
+                flowsFile = Utils.filename(s.substring("flows=".length()).trim());
+            }
+        }
+        if (flowsFile == null || flowsFile.isEmpty()) {
+            throw new Exception("missing argument flows={...}");
+        }
+        reload();
+    }
+
+    /**
+     * Read the flows file again and replace the classifier.
+     */
+    public void reload() throws Exception {
+        String content = Files.readString(new File(flowsFile).toPath());
+        Flows flows = new Flows();
+        flows.add(content);
+        update(flows);
+    }
+
+    public void update(Flows flows) throws Exception {
+        var c = flows.compile();
+        clearIfaceHolders();
+        for (var holder : c.getIfaceHolders()) {
+            registerIfaceHolder(holder);
+        }
+        classifier = c;
+        Logger.alert("flow classifier updated with " + c.getFlows().size() + " flows");
+    }
+
+    public FlowClassifier getClassifier() {
+        return classifier;
+    }
+
+    @Override
+    protected FilterResult handleIngress(PacketFilterHelper helper, PacketBuffer pkb) {
+        return classifier.handle(helper, pkb);
+    }
+
+    @Override
+    public String inspect() {
+        StringBuilder sb = new StringBuilder(super.inspect());
+        var c = classifier;
+        if (c == null) {
+            return sb.toString();
+        }
+        var flows = c.getFlows();
+        for (int i = 0; i < flows.size(); ++i) {
+            sb.append("\n").append(flows.get(i)).append(" hits=").append(c.getHitCount(i));
+        }
+        return sb.toString();
+    }
+}
@@ -512,6 +512,15 @@ public class Shutdown {
                 if (!tl.securityGroup.alias.equals(SecurityGroup.defaultName)) {
                     cmd.append(" security-group ").append(jsonstr(tl.securityGroup.alias));
                 }
+                if (tl.isSplice()) {
+                    cmd.append(" splice");
+                }
+                if (tl.isReusePortShard()) {
+                    cmd.append(" reuseport-shard");
+                }
+                if (tl.getBackendPool() != null) {
+                    cmd.append(" backend-pool");
+                }
                 if (tl.getCertKeys() != null) {
                     cmd.append(" cert-key ").append(jsonstr(tl.getCertKeys()[0].alias));
                     for (int i = 1; i < tl.getCertKeys().length; ++i) {
@@ -36,6 +36,13 @@ JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_aeCreateFileEvent(PNI
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_aeUpdateFileEvent(PNIEnv_void * env, int64_t ae, int32_t fd, int32_t mask);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_aeDeleteFileEvent(PNIEnv_void * env, int64_t ae, int32_t fd);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_aeDeleteEventLoop(PNIEnv_void * env, int64_t ae);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringCreate(PNIEnv_long * env, int32_t entries, int32_t setsize);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringGetFired(PNIEnv_pointer * env, int64_t ring);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringGetAccepted(PNIEnv_pointer * env, int64_t ring);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringGetAcceptedNum(PNIEnv_int * env, int64_t ring);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringPoll(PNIEnv_int * env, int64_t ring, int64_t wait);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringUpdateFileEvent(PNIEnv_void * env, int64_t ring, int32_t fd, int32_t mask, uint8_t accept);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringDeleteEventLoop(PNIEnv_void * env, int64_t ring);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_setBlocking(PNIEnv_void * env, int32_t fd, uint8_t v);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_setSoLinger(PNIEnv_void * env, int32_t fd, int32_t v);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_setReusePort(PNIEnv_void * env, int32_t fd, uint8_t v);
@@ -67,19 +74,27 @@ JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_getUDSRemote(PNIEnv_S
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_read(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t off, int32_t len);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_readBlocking(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t off, int32_t len);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_write(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t off, int32_t len);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_writev(PNIEnv_int * env, int32_t fd, PNIBuf_long * addrs, PNIBuf_int * lens, int32_t count);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_readv(PNIEnv_int * env, int32_t fd, PNIBuf_long * addrs, PNIBuf_int * lens, int32_t count);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_sendtoIPv4(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t off, int32_t len, int32_t addrHostOrder, int32_t port);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_sendtoIPv6(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t off, int32_t len, char * fullAddr, int32_t port);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_recvfromIPv4(PNIEnv_UDPRecvResultIPv4_st * env, int32_t fd, void * directBuffer, int32_t off, int32_t len, UDPRecvResultIPv4_st * return_);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_recvfromIPv6(PNIEnv_UDPRecvResultIPv6_st * env, int32_t fd, void * directBuffer, int32_t off, int32_t len, UDPRecvResultIPv6_st * return_);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv4(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int * meta);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv6(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int * meta);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv4(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int * meta);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv6(PNIEnv_int * env, int32_t fd, void * directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int * meta);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_currentTimeMillis(PNIEnv_long * env);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_tapNonBlockingSupported(PNIEnv_bool * env);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_tunNonBlockingSupported(PNIEnv_bool * env);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_createTapFD(PNIEnv_TapInfo_st * env, char * dev, uint8_t isTun, TapInfo_st * return_);
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_setCoreAffinityForCurrentThread(PNIEnv_void * env, int64_t mask);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_openSplicePipe(PNIEnv_int * env, PNIBuf_int * fds, int32_t size);
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_splice(PNIEnv_int * env, int32_t fdIn, int32_t fdOut, int32_t len);
 
 #ifdef __cplusplus
 }
 #endif
 #endif // _Included_io_vproxy_vfd_posix_PosixNative
 // metadata.generator-version: pni 21.0.0.17
-// sha256:1e84eb47f36e590566f1bbbf692bdba8e228a6ba2a5900b4e62f016ecfb9a38b
+// sha256:76fff36106db79e4dd5999a964f2ca5a8f00ebcbdff6161c352f4e2b475b0484
@@ -0,0 +1,976 @@
+#include "io_vproxy_openssl_OpenSSLFunc.h"
+
+#include <string.h>
+#include <errno.h>
+#include <time.h>
+#include <pthread.h>
+#include <openssl/evp.h>
+#include <openssl/kdf.h>
+#include <openssl/rand.h>
+#if OPENSSL_VERSION_NUMBER >= 0x30000000L
+#include <openssl/core_names.h>
+#else
+#include <openssl/hmac.h>
+#endif
+#ifdef __linux__
+#include <sys/socket.h>
+#include <netinet/in.h>
+#include <netinet/tcp.h>
+#include <linux/tls.h>
+#endif
+
+// every SSL object is bound to two memory BIOs:
+// ciphertext from the network is fed into rbio,
+// and ciphertext to be sent is drained from wbio
+
+typedef struct {
+    int pause_client_hello;
+    int client_hello_done;
+    unsigned char selected_alpn[256];
+    int selected_alpn_len;
+    // ktls
+    int ktls;
+    int ktls_ulp;
+    unsigned char client_secret[EVP_MAX_MD_SIZE];
+    unsigned char server_secret[EVP_MAX_MD_SIZE];
+    int secret_len;
+    uint64_t read_seq;
+    uint64_t write_seq;
+    // resumption
+    int session_flags;
+} vpssl_ex_t;
+
+static int vpssl_ex_index = -1;
+
+static void vpssl_ex_free(void* parent, void* ptr, CRYPTO_EX_DATA* ad, int idx, long argl, void* argp) {
+    if (ptr != NULL) {
+        OPENSSL_cleanse(ptr, sizeof(vpssl_ex_t));
+        free(ptr);
+    }
+}
+
+static int vpssl_ex_init() {
+    if (vpssl_ex_index == -1) {
+        vpssl_ex_index = SSL_get_ex_new_index(0, NULL, NULL, NULL, vpssl_ex_free);
+    }
+    return vpssl_ex_index;
+}
+
+static vpssl_ex_t* vpssl_ex(SSL* ssl) {
+    return (vpssl_ex_t*) SSL_get_ex_data(ssl, vpssl_ex_index);
+}
+
+// suspend the handshake, so the java side can choose alpn with the offered protocols
+static int vpssl_client_hello_cb(SSL* ssl, int* al, void* arg) {
+    vpssl_ex_t* ex = vpssl_ex(ssl);
+    if (ex == NULL || !ex->pause_client_hello || ex->client_hello_done) {
+        return SSL_CLIENT_HELLO_SUCCESS;
+    }
+    return SSL_CLIENT_HELLO_RETRY;
+}
+
+static int vpssl_alpn_select_cb(SSL* ssl, const unsigned char** out, unsigned char* outlen,
+                                const unsigned char* in, unsigned int inlen, void* arg) {
+    vpssl_ex_t* ex = vpssl_ex(ssl);
+    if (ex == NULL || ex->selected_alpn_len == 0) {
+        return SSL_TLSEXT_ERR_NOACK;
+    }
+    unsigned int i = 0;
+    while (i < inlen) {
+        unsigned int len = in[i];
+        if (i + 1 + len > inlen) {
+            break;
+        }
+        if (len == (unsigned int) ex->selected_alpn_len && memcmp(in + i + 1, ex->selected_alpn, len) == 0) {
+            *out = in + i + 1;
+            *outlen = (unsigned char) len;
+            return SSL_TLSEXT_ERR_OK;
+        }
+        i += 1 + len;
+    }
+    return SSL_TLSEXT_ERR_NOACK;
+}
+
+// tls 1.3 traffic secrets are only exposed through the keylog callback
+// line format: LABEL <client_random hex> <secret hex>
+static void vpssl_keylog_cb(const SSL* ssl, const char* line) {
+    vpssl_ex_t* ex = vpssl_ex((SSL*) ssl);
+    if (ex == NULL || !ex->ktls) {
+        return;
+    }
+    unsigned char* dst;
+    if (strncmp(line, "CLIENT_TRAFFIC_SECRET_0 ", 24) == 0) {
+        dst = ex->client_secret;
+    } else if (strncmp(line, "SERVER_TRAFFIC_SECRET_0 ", 24) == 0) {
+        dst = ex->server_secret;
+    } else {
+        return;
+    }
+    const char* p = strchr(line + 24, ' ');
+    if (p == NULL) {
+        return;
+    }
+    ++p;
+    size_t hexlen = strlen(p);
+    if (hexlen % 2 != 0 || hexlen / 2 > EVP_MAX_MD_SIZE) {
+        return;
+    }
+    for (size_t i = 0; i < hexlen / 2; ++i) {
+        int hi = OPENSSL_hexchar2int(p[i * 2]);
+        int lo = OPENSSL_hexchar2int(p[i * 2 + 1]);
+        if (hi < 0 || lo < 0) {
+            return;
+        }
+        dst[i] = (unsigned char) ((hi << 4) | lo);
+    }
+    ex->secret_len = (int) (hexlen / 2);
+}
+
+// count records since the keys used for application data are activated
+// the Finished message is the last one protected by the previous keys in tls 1.3,
+// and the first one protected by the new keys in tls 1.2
+static void vpssl_msg_cb(int write_p, int version, int content_type, const void* buf, size_t len, SSL* ssl, void* arg) {
+    vpssl_ex_t* ex = vpssl_ex(ssl);
+    if (ex == NULL || !ex->ktls) {
+        return;
+    }
+    if (content_type == SSL3_RT_HEADER) {
+        if (write_p) {
+            ++ex->write_seq;
+        } else {
+            ++ex->read_seq;
+        }
+    } else if (content_type == SSL3_RT_HANDSHAKE && len > 0 && ((const unsigned char*) buf)[0] == SSL3_MT_FINISHED) {
+        uint64_t seq = SSL_version(ssl) == TLS1_3_VERSION ? 0 : 1;
+        if (write_p) {
+            ex->write_seq = seq;
+        } else {
+            ex->read_seq = seq;
+        }
+    }
+}
+
+// session cache shared by all SSL objects (thus all event loops) of one SSL_CTX
+// sessions are split into stripes by the hash of session id, each stripe has its own lock,
+// and the oldest session of the stripe is evicted when the stripe is full
+
+#define VPSSL_CACHE_STRIPES 16
+
+typedef struct vpssl_sess_entry {
+    SSL_SESSION* sess;
+    unsigned int id_len;
+    unsigned char id[SSL_MAX_SSL_SESSION_ID_LENGTH];
+    struct vpssl_sess_entry* hnext;
+    // insertion order
+    struct vpssl_sess_entry* prev;
+    struct vpssl_sess_entry* next;
+} vpssl_sess_entry_t;
+
+typedef struct {
+    pthread_mutex_t lock;
+    vpssl_sess_entry_t** buckets;
+    int bucket_count;
+    int count;
+    int capacity;
+    vpssl_sess_entry_t order; // sentinel, order.next is the oldest entry
+} vpssl_sess_stripe_t;
+
+typedef struct {
+    vpssl_sess_stripe_t stripes[VPSSL_CACHE_STRIPES];
+} vpssl_sess_cache_t;
+
+static int vpssl_cache_index = -1;
+
+static uint32_t vpssl_sess_hash(const unsigned char* id, unsigned int len) {
+    uint32_t h = 2166136261u;
+    for (unsigned int i = 0; i < len; ++i) {
+        h = (h ^ id[i]) * 16777619u;
+    }
+    return h;
+}
+
+static vpssl_sess_entry_t** vpssl_sess_find(vpssl_sess_stripe_t* stripe, uint32_t h, const unsigned char* id, unsigned int len) {
+    vpssl_sess_entry_t** pp = &stripe->buckets[(h / VPSSL_CACHE_STRIPES) % stripe->bucket_count];
+    while (*pp != NULL) {
+        if ((*pp)->id_len == len && memcmp((*pp)->id, id, len) == 0) {
+            break;
+        }
+        pp = &(*pp)->hnext;
+    }
+    return pp;
+}
+
+// the caller must hold the lock
+static void vpssl_sess_unlink(vpssl_sess_stripe_t* stripe, vpssl_sess_entry_t** pp) {
+    vpssl_sess_entry_t* e = *pp;
+    *pp = e->hnext;
+    e->prev->next = e->next;
+    e->next->prev = e->prev;
+    --stripe->count;
+    SSL_SESSION_free(e->sess);
+    free(e);
+}
+
+static void vpssl_sess_cache_free(vpssl_sess_cache_t* cache) {
+    for (int i = 0; i < VPSSL_CACHE_STRIPES; ++i) {
+        vpssl_sess_stripe_t* stripe = &cache->stripes[i];
+        if (stripe->buckets == NULL) {
+            continue;
+        }
+        while (stripe->order.next != &stripe->order) {
+            vpssl_sess_entry_t* e = stripe->order.next;
+            vpssl_sess_unlink(stripe, vpssl_sess_find(stripe, vpssl_sess_hash(e->id, e->id_len), e->id, e->id_len));
+        }
+        free(stripe->buckets);
+        pthread_mutex_destroy(&stripe->lock);
+    }
+    free(cache);
+}
+
+static void vpssl_cache_ex_free(void* parent, void* ptr, CRYPTO_EX_DATA* ad, int idx, long argl, void* argp) {
+    if (ptr != NULL) {
+        vpssl_sess_cache_free((vpssl_sess_cache_t*) ptr);
+    }
+}
+
+static vpssl_sess_cache_t* vpssl_sess_cache_new(int capacity) {
+    vpssl_sess_cache_t* cache = calloc(1, sizeof(vpssl_sess_cache_t));
+    if (cache == NULL) {
+        return NULL;
+    }
+    int per_stripe = (capacity + VPSSL_CACHE_STRIPES - 1) / VPSSL_CACHE_STRIPES;
+    for (int i = 0; i < VPSSL_CACHE_STRIPES; ++i) {
+        vpssl_sess_stripe_t* stripe = &cache->stripes[i];
+        stripe->bucket_count = per_stripe < 16 ? 16 : per_stripe;
+        stripe->buckets = calloc(stripe->bucket_count, sizeof(vpssl_sess_entry_t*));
+        if (stripe->buckets == NULL || pthread_mutex_init(&stripe->lock, NULL) != 0) {
+            free(stripe->buckets);
+            stripe->buckets = NULL;
+            vpssl_sess_cache_free(cache);
+            return NULL;
+        }
+        stripe->capacity = per_stripe;
+        stripe->order.prev = &stripe->order;
+        stripe->order.next = &stripe->order;
+    }
+    return cache;
+}
+
+static int vpssl_sess_new_cb(SSL* ssl, SSL_SESSION* sess) {
+    // tls 1.3 sessions are resumed with stateless tickets, no need to store them
+    if (SSL_version(ssl) == TLS1_3_VERSION && (SSL_get_options(ssl) & SSL_OP_NO_TICKET) == 0) {
+        return 0;
+    }
+    vpssl_sess_cache_t* cache = SSL_CTX_get_ex_data(SSL_get_SSL_CTX(ssl), vpssl_cache_index);
+    if (cache == NULL) {
+        return 0;
+    }
+    unsigned int len;
+    const unsigned char* id = SSL_SESSION_get_id(sess, &len);
+    if (len == 0 || len > SSL_MAX_SSL_SESSION_ID_LENGTH) {
+        return 0;
+    }
+    uint32_t h = vpssl_sess_hash(id, len);
+    vpssl_sess_stripe_t* stripe = &cache->stripes[h % VPSSL_CACHE_STRIPES];
+
+    pthread_mutex_lock(&stripe->lock);
+    vpssl_sess_entry_t** pp = vpssl_sess_find(stripe, h, id, len);
+    if (*pp != NULL) {
+        SSL_SESSION_free((*pp)->sess);
+        (*pp)->sess = sess;
+        pthread_mutex_unlock(&stripe->lock);
+        return 1;
+    }
+    if (stripe->capacity == 0) {
+        pthread_mutex_unlock(&stripe->lock);
+        return 0;
+    }
+    while (stripe->count >= stripe->capacity) {
+        vpssl_sess_entry_t* oldest = stripe->order.next;
+        vpssl_sess_unlink(stripe, vpssl_sess_find(stripe, vpssl_sess_hash(oldest->id, oldest->id_len), oldest->id, oldest->id_len));
+    }
+    vpssl_sess_entry_t* e = malloc(sizeof(vpssl_sess_entry_t));
+    if (e == NULL) {
+        pthread_mutex_unlock(&stripe->lock);
+        return 0;
+    }
+    e->sess = sess;
+    e->id_len = len;
+    memcpy(e->id, id, len);
+    pp = vpssl_sess_find(stripe, h, id, len); // may be changed by the eviction
+    e->hnext = NULL;
+    *pp = e;
+    e->prev = stripe->order.prev;
+    e->next = &stripe->order;
+    stripe->order.prev->next = e;
+    stripe->order.prev = e;
+    ++stripe->count;
+    pthread_mutex_unlock(&stripe->lock);
+    return 1; // the reference is kept by the cache
+}
+
+static SSL_SESSION* vpssl_sess_get_cb(SSL* ssl, const unsigned char* id, int len, int* copy) {
+    *copy = 0;
+    vpssl_ex_t* ex = vpssl_ex(ssl);
+    if (ex != NULL) {
+        ex->session_flags |= VPSSL_SESSION_CACHE_LOOKUP;
+    }
+    vpssl_sess_cache_t* cache = SSL_CTX_get_ex_data(SSL_get_SSL_CTX(ssl), vpssl_cache_index);
+    if (cache == NULL || len <= 0 || len > SSL_MAX_SSL_SESSION_ID_LENGTH) {
+        return NULL;
+    }
+    uint32_t h = vpssl_sess_hash(id, (unsigned int) len);
+    vpssl_sess_stripe_t* stripe = &cache->stripes[h % VPSSL_CACHE_STRIPES];
+
+    SSL_SESSION* sess = NULL;
+    pthread_mutex_lock(&stripe->lock);
+    vpssl_sess_entry_t** pp = vpssl_sess_find(stripe, h, id, (unsigned int) len);
+    if (*pp != NULL) {
+        SSL_SESSION* s = (*pp)->sess;
+        if (SSL_SESSION_get_time(s) + SSL_SESSION_get_timeout(s) <= (long) time(NULL)) {
+            vpssl_sess_unlink(stripe, pp);
+        } else {
+            SSL_SESSION_up_ref(s);
+            sess = s;
+        }
+    }
+    pthread_mutex_unlock(&stripe->lock);
+    return sess;
+}
+
+static void vpssl_sess_remove_cb(SSL_CTX* ctx, SSL_SESSION* sess) {
+    vpssl_sess_cache_t* cache = SSL_CTX_get_ex_data(ctx, vpssl_cache_index);
+    if (cache == NULL) {
+        return;
+    }
+    unsigned int len;
+    const unsigned char* id = SSL_SESSION_get_id(sess, &len);
+    if (len == 0 || len > SSL_MAX_SSL_SESSION_ID_LENGTH) {
+        return;
+    }
+    uint32_t h = vpssl_sess_hash(id, len);
+    vpssl_sess_stripe_t* stripe = &cache->stripes[h % VPSSL_CACHE_STRIPES];
+
+    pthread_mutex_lock(&stripe->lock);
+    vpssl_sess_entry_t** pp = vpssl_sess_find(stripe, h, id, len);
+    if (*pp != NULL && (*pp)->sess == sess) {
+        vpssl_sess_unlink(stripe, pp);
+    }
+    pthread_mutex_unlock(&stripe->lock);
+}
+
+// ticket keys are shared by all server contexts in the process
+// the first key encrypts new tickets, the others are only used for decryption
+static pthread_rwlock_t vpssl_ticket_keys_lock = PTHREAD_RWLOCK_INITIALIZER;
+static unsigned char vpssl_ticket_keys[VPSSL_MAX_TICKET_KEYS][VPSSL_TICKET_KEY_SIZE];
+static int vpssl_ticket_key_count = 0;
+
+// returns index of the key, or -1 if not found
+static int vpssl_ticket_key_get(int enc, const unsigned char* name, unsigned char* key) {
+    int index = -1;
+    pthread_rwlock_rdlock(&vpssl_ticket_keys_lock);
+    if (enc) {
+        if (vpssl_ticket_key_count > 0) {
+            index = 0;
+        }
+    } else {
+        for (int i = 0; i < vpssl_ticket_key_count; ++i) {
+            if (memcmp(vpssl_ticket_keys[i], name, 16) == 0) {
+                index = i;
+                break;
+            }
+        }
+    }
+    if (index != -1) {
+        memcpy(key, vpssl_ticket_keys[index], VPSSL_TICKET_KEY_SIZE);
+    }
+    pthread_rwlock_unlock(&vpssl_ticket_keys_lock);
+    return index;
+}
+
+#if OPENSSL_VERSION_NUMBER >= 0x30000000L
+typedef EVP_MAC_CTX vpssl_ticket_mac_t;
+
+static int vpssl_ticket_mac_init(EVP_MAC_CTX* hctx, unsigned char* key) {
+    OSSL_PARAM params[3];
+    params[0] = OSSL_PARAM_construct_octet_string(OSSL_MAC_PARAM_KEY, key, 32);
+    params[1] = OSSL_PARAM_construct_utf8_string(OSSL_MAC_PARAM_DIGEST, "SHA256", 0);
+    params[2] = OSSL_PARAM_construct_end();
+    return EVP_MAC_CTX_set_params(hctx, params);
+}
+#else
+typedef HMAC_CTX vpssl_ticket_mac_t;
+
+static int vpssl_ticket_mac_init(HMAC_CTX* hctx, unsigned char* key) {
+    return HMAC_Init_ex(hctx, key, 32, EVP_sha256(), NULL);
+}
+#endif
+
+// return 0 to skip issuing the ticket when encrypting, or to run a full handshake when decrypting
+// return 2 when decrypting with a previous key, so the client will receive a ticket with the current key
+static int vpssl_ticket_key_cb(SSL* ssl, unsigned char* key_name, unsigned char* iv,
+                               EVP_CIPHER_CTX* cctx, vpssl_ticket_mac_t* hctx, int enc) {
+    if (!enc) {
+        vpssl_ex_t* ex = vpssl_ex(ssl);
+        if (ex != NULL) {
+            ex->session_flags |= VPSSL_SESSION_TICKET_LOOKUP;
+        }
+    }
+    unsigned char key[VPSSL_TICKET_KEY_SIZE];
+    int index = vpssl_ticket_key_get(enc, key_name, key);
+    if (index == -1) {
+        return 0;
+    }
+    int ret;
+    if (enc) {
+        memcpy(key_name, key, 16);
+        if (RAND_bytes(iv, EVP_CIPHER_iv_length(EVP_aes_256_cbc())) != 1
+            || EVP_EncryptInit_ex(cctx, EVP_aes_256_cbc(), NULL, key + 48, iv) != 1
+            || vpssl_ticket_mac_init(hctx, key + 16) != 1) {
+            ret = -1;
+        } else {
+            ret = 1;
+        }
+    } else {
+        if (EVP_DecryptInit_ex(cctx, EVP_aes_256_cbc(), NULL, key + 48, iv) != 1
+            || vpssl_ticket_mac_init(hctx, key + 16) != 1) {
+            ret = -1;
+        } else {
+            ret = index == 0 ? 1 : 2;
+        }
+    }
+    OPENSSL_cleanse(key, sizeof(key));
+    return ret;
+}
+
+static int vpssl_load_cert_key(SSL_CTX* ctx, char* certChainPem, char* keyPem) {
+    BIO* bio = BIO_new_mem_buf(certChainPem, -1);
+    if (bio == NULL) {
+        return 0;
+    }
+    X509* cert = PEM_read_bio_X509(bio, NULL, NULL, NULL);
+    if (cert == NULL || SSL_CTX_use_certificate(ctx, cert) != 1) {
+        X509_free(cert);
+        BIO_free(bio);
+        return 0;
+    }
+    X509_free(cert);
+    X509* chain;
+    while ((chain = PEM_read_bio_X509(bio, NULL, NULL, NULL)) != NULL) {
+        if (SSL_CTX_add_extra_chain_cert(ctx, chain) != 1) { // the cert is owned by ctx on success
+            X509_free(chain);
+            BIO_free(bio);
+            return 0;
+        }
+    }
+    ERR_clear_error(); // reading beyond the last cert
+    BIO_free(bio);
+
+    bio = BIO_new_mem_buf(keyPem, -1);
+    if (bio == NULL) {
+        return 0;
+    }
+    EVP_PKEY* key = PEM_read_bio_PrivateKey(bio, NULL, NULL, NULL);
+    BIO_free(bio);
+    if (key == NULL || SSL_CTX_use_PrivateKey(ctx, key) != 1) {
+        EVP_PKEY_free(key);
+        return 0;
+    }
+    EVP_PKEY_free(key);
+    return SSL_CTX_check_private_key(ctx) == 1;
+}
+
+JNIEXPORT void * JNICALL vpssl_ctx_new(int32_t server, int32_t verify, char * certChainPem, char * keyPem) {
+    if (vpssl_ex_init() == -1) {
+        return NULL;
+    }
+    if (vpssl_cache_index == -1) {
+        vpssl_cache_index = SSL_CTX_get_ex_new_index(0, NULL, NULL, NULL, vpssl_cache_ex_free);
+        if (vpssl_cache_index == -1) {
+            return NULL;
+        }
+    }
+    SSL_CTX* ctx = SSL_CTX_new(server ? TLS_server_method() : TLS_client_method());
+    if (ctx == NULL) {
+        return NULL;
+    }
+    SSL_CTX_set_min_proto_version(ctx, TLS1_2_VERSION);
+    SSL_CTX_set_mode(ctx, SSL_MODE_RELEASE_BUFFERS);
+    if (certChainPem != NULL && keyPem != NULL) {
+        if (!vpssl_load_cert_key(ctx, certChainPem, keyPem)) {
+            SSL_CTX_free(ctx);
+            return NULL;
+        }
+    }
+    SSL_CTX_set_keylog_callback(ctx, vpssl_keylog_cb);
+    if (server) {
+        SSL_CTX_set_client_hello_cb(ctx, vpssl_client_hello_cb, NULL);
+        SSL_CTX_set_alpn_select_cb(ctx, vpssl_alpn_select_cb, NULL);
+#if OPENSSL_VERSION_NUMBER >= 0x30000000L
+        SSL_CTX_set_tlsext_ticket_key_evp_cb(ctx, vpssl_ticket_key_cb);
+#else
+        SSL_CTX_set_tlsext_ticket_key_cb(ctx, vpssl_ticket_key_cb);
+#endif
+    } else if (verify) {
+        if (SSL_CTX_set_default_verify_paths(ctx) != 1) {
+            SSL_CTX_free(ctx);
+            return NULL;
+        }
+        SSL_CTX_set_verify(ctx, SSL_VERIFY_PEER, NULL);
+    }
+    return ctx;
+}
+
+JNIEXPORT void JNICALL vpssl_ctx_free(void * ctx) {
+    SSL_CTX_free((SSL_CTX*) ctx);
+}
+
+// replace the internal session cache with the striped one, size = 0 to disable session id resumption
+JNIEXPORT int32_t JNICALL vpssl_ctx_set_session_cache(void * ctx, int32_t size, int32_t timeout) {
+    SSL_CTX* c = (SSL_CTX*) ctx;
+    if (size < 0 || timeout <= 0) {
+        return VPSSL_ERROR;
+    }
+    SSL_CTX_set_timeout(c, timeout);
+    if (SSL_CTX_get_ex_data(c, vpssl_cache_index) != NULL) {
+        return VPSSL_ERROR; // can only be set once
+    }
+    if (size == 0) {
+        SSL_CTX_set_session_cache_mode(c, SSL_SESS_CACHE_OFF);
+        return 0;
+    }
+    vpssl_sess_cache_t* cache = vpssl_sess_cache_new(size);
+    if (cache == NULL) {
+        return VPSSL_ERROR;
+    }
+    if (SSL_CTX_set_ex_data(c, vpssl_cache_index, cache) != 1) {
+        vpssl_sess_cache_free(cache);
+        return VPSSL_ERROR;
+    }
+    SSL_CTX_set_session_id_context(c, (const unsigned char*) "vproxy", 6);
+    SSL_CTX_set_session_cache_mode(c, SSL_SESS_CACHE_SERVER | SSL_SESS_CACHE_NO_INTERNAL);
+    SSL_CTX_sess_set_new_cb(c, vpssl_sess_new_cb);
+    SSL_CTX_sess_set_get_cb(c, vpssl_sess_get_cb);
+    SSL_CTX_sess_set_remove_cb(c, vpssl_sess_remove_cb);
+    return 0;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_set_ticket_keys(void * keys, int32_t n) {
+    if (n < 0 || n > VPSSL_MAX_TICKET_KEYS) {
+        return VPSSL_ERROR;
+    }
+    pthread_rwlock_wrlock(&vpssl_ticket_keys_lock);
+    memcpy(vpssl_ticket_keys, keys, (size_t) n * VPSSL_TICKET_KEY_SIZE);
+    OPENSSL_cleanse((unsigned char*) vpssl_ticket_keys + (size_t) n * VPSSL_TICKET_KEY_SIZE, (size_t) (VPSSL_MAX_TICKET_KEYS - n) * VPSSL_TICKET_KEY_SIZE);
+    vpssl_ticket_key_count = n;
+    pthread_rwlock_unlock(&vpssl_ticket_keys_lock);
+    return 0;
+}
+
+JNIEXPORT void * JNICALL vpssl_new(void * ctx, int32_t server, char * sni) {
+    SSL* ssl = SSL_new((SSL_CTX*) ctx);
+    if (ssl == NULL) {
+        return NULL;
+    }
+    vpssl_ex_t* ex = calloc(1, sizeof(vpssl_ex_t));
+    if (ex == NULL || SSL_set_ex_data(ssl, vpssl_ex_index, ex) != 1) {
+        free(ex);
+        SSL_free(ssl);
+        return NULL;
+    }
+    BIO* rbio = BIO_new(BIO_s_mem());
+    BIO* wbio = BIO_new(BIO_s_mem());
+    if (rbio == NULL || wbio == NULL) {
+        BIO_free(rbio);
+        BIO_free(wbio);
+        SSL_free(ssl);
+        return NULL;
+    }
+    // an empty memory BIO means "retry later" instead of EOF
+    BIO_set_mem_eof_return(rbio, -1);
+    BIO_set_mem_eof_return(wbio, -1);
+    SSL_set_bio(ssl, rbio, wbio);
+
+    if (server) {
+        SSL_set_accept_state(ssl);
+    } else {
+        SSL_set_connect_state(ssl);
+        if (sni != NULL) {
+            if (SSL_set_tlsext_host_name(ssl, sni) != 1 || SSL_set1_host(ssl, sni) != 1) {
+                SSL_free(ssl);
+                return NULL;
+            }
+        }
+    }
+    return ssl;
+}
+
+JNIEXPORT void JNICALL vpssl_free(void * ssl) {
+    // connections are usually closed without close_notify,
+    // keep the session resumable if the handshake was completed
+    if (SSL_is_init_finished((SSL*) ssl)) {
+        SSL_set_shutdown((SSL*) ssl, SSL_SENT_SHUTDOWN | SSL_RECEIVED_SHUTDOWN);
+    }
+    SSL_free((SSL*) ssl); // also frees the BIOs and ex data
+}
+
+JNIEXPORT int32_t JNICALL vpssl_set_versions(void * ssl, int32_t min, int32_t max) {
+    if (SSL_set_min_proto_version((SSL*) ssl, min) != 1) {
+        return VPSSL_ERROR;
+    }
+    if (SSL_set_max_proto_version((SSL*) ssl, max) != 1) {
+        return VPSSL_ERROR;
+    }
+    return 0;
+}
+
+JNIEXPORT void JNICALL vpssl_pause_client_hello(void * ssl) {
+    vpssl_ex((SSL*) ssl)->pause_client_hello = 1;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_handshake(void * ssl) {
+    int r = SSL_do_handshake((SSL*) ssl);
+    if (r == 1) {
+        return VPSSL_HANDSHAKE_DONE;
+    }
+    int err = SSL_get_error((SSL*) ssl, r);
+    if (err == SSL_ERROR_WANT_READ || err == SSL_ERROR_WANT_WRITE) {
+        return VPSSL_HANDSHAKE_WANT_READ;
+    }
+    if (err == SSL_ERROR_WANT_CLIENT_HELLO_CB) {
+        return VPSSL_HANDSHAKE_CLIENT_HELLO;
+    }
+    return VPSSL_ERROR;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_feed(void * ssl, void * buf, int32_t len) {
+    int n = BIO_write(SSL_get_rbio((SSL*) ssl), buf, len);
+    return n < 0 ? VPSSL_ERROR : n;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_drain(void * ssl, void * buf, int32_t len) {
+    int n = BIO_read(SSL_get_wbio((SSL*) ssl), buf, len);
+    return n < 0 ? 0 : n;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_pending(void * ssl) {
+    return (int32_t) BIO_ctrl_pending(SSL_get_wbio((SSL*) ssl));
+}
+
+JNIEXPORT int32_t JNICALL vpssl_write(void * ssl, void * buf, int32_t len) {
+    int n = SSL_write((SSL*) ssl, buf, len);
+    return n <= 0 ? VPSSL_ERROR : n;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_read(void * ssl, void * buf, int32_t len) {
+    int n = SSL_read((SSL*) ssl, buf, len);
+    if (n > 0) {
+        return n;
+    }
+    int err = SSL_get_error((SSL*) ssl, n);
+    if (err == SSL_ERROR_WANT_READ || err == SSL_ERROR_WANT_WRITE) {
+        return 0;
+    }
+    if (err == SSL_ERROR_ZERO_RETURN) {
+        return VPSSL_CLOSED;
+    }
+    return VPSSL_ERROR;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_shutdown(void * ssl) {
+    int r = SSL_shutdown((SSL*) ssl);
+    return r < 0 ? VPSSL_ERROR : r;
+}
+
+// copy the alpn extension from client hello: 2 bytes list length then (1 byte len + name)*
+JNIEXPORT int32_t JNICALL vpssl_client_alpn(void * ssl, void * buf, int32_t len) {
+    const unsigned char* data;
+    size_t datalen;
+    if (SSL_client_hello_get0_ext((SSL*) ssl, TLSEXT_TYPE_application_layer_protocol_negotiation, &data, &datalen) != 1) {
+        return 0;
+    }
+    if (datalen < 2 || datalen - 2 > (size_t) len) {
+        return 0;
+    }
+    memcpy(buf, data + 2, datalen - 2);
+    return (int32_t) (datalen - 2);
+}
+
+// for client: the offered protocols in wire format
+// for server: the protocol chosen by the java side, the handshake continues after this call
+JNIEXPORT int32_t JNICALL vpssl_set_alpn(void * ssl, void * protos, int32_t len) {
+    if (SSL_is_server((SSL*) ssl)) {
+        vpssl_ex_t* ex = vpssl_ex((SSL*) ssl);
+        ex->client_hello_done = 1;
+        if (len < 0 || len > (int32_t) sizeof(ex->selected_alpn)) {
+            return VPSSL_ERROR;
+        }
+        if (len > 0) {
+            memcpy(ex->selected_alpn, protos, len);
+        }
+        ex->selected_alpn_len = len;
+        return 0;
+    }
+    // notice: returns 0 on success
+    return SSL_set_alpn_protos((SSL*) ssl, protos, len) == 0 ? 0 : VPSSL_ERROR;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_get_alpn(void * ssl, void * buf, int32_t len) {
+    const unsigned char* data;
+    unsigned int datalen;
+    SSL_get0_alpn_selected((SSL*) ssl, &data, &datalen);
+    if (data == NULL || datalen > (unsigned int) len) {
+        return 0;
+    }
+    memcpy(buf, data, datalen);
+    return (int32_t) datalen;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_session_flags(void * ssl) {
+    vpssl_ex_t* ex = vpssl_ex((SSL*) ssl);
+    int flags = ex == NULL ? 0 : ex->session_flags;
+    if (SSL_session_reused((SSL*) ssl)) {
+        flags |= VPSSL_SESSION_RESUMED;
+    }
+    return flags;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_get_version(void * ssl) {
+    return SSL_version((SSL*) ssl);
+}
+
+JNIEXPORT int32_t JNICALL vpssl_get_cipher(void * ssl, void * buf, int32_t len) {
+    const SSL_CIPHER* cipher = SSL_get_current_cipher((SSL*) ssl);
+    if (cipher == NULL) {
+        return 0;
+    }
+    const char* name = SSL_CIPHER_standard_name(cipher);
+    if (name == NULL) {
+        name = SSL_CIPHER_get_name(cipher);
+    }
+    size_t n = strlen(name);
+    if (n > (size_t) len) {
+        n = len;
+    }
+    memcpy(buf, name, n);
+    return (int32_t) n;
+}
+
+JNIEXPORT int32_t JNICALL vpssl_last_error(void * buf, int32_t len) {
+    unsigned long err = ERR_get_error();
+    ERR_clear_error();
+    if (err == 0 || len <= 0) {
+        return 0;
+    }
+    ERR_error_string_n(err, buf, len);
+    return (int32_t) strnlen(buf, len);
+}
+
+JNIEXPORT void JNICALL vpssl_ktls_prepare(void * ssl) {
+    vpssl_ex((SSL*) ssl)->ktls = 1;
+    SSL_set_msg_callback((SSL*) ssl, vpssl_msg_cb);
+}
+
+#ifdef __linux__
+
+#define VPSSL_KTLS_MAX_KEY 32
+#define VPSSL_KTLS_MAX_IV  12
+
+typedef struct {
+    int tls13;
+    int nid;
+    unsigned char key[VPSSL_KTLS_MAX_KEY];
+    int key_len;
+    unsigned char iv[VPSSL_KTLS_MAX_IV];
+    int iv_len;
+} vpssl_ktls_keys_t;
+
+// HKDF-Expand-Label(secret, label, "", len)
+static int vpssl_hkdf_expand_label(const EVP_MD* md, const unsigned char* secret, int secret_len,
+                                   const char* label, unsigned char* out, size_t len) {
+    unsigned char info[2 + 1 + 255 + 1];
+    size_t label_len = strlen(label);
+    size_t off = 0;
+    info[off++] = (unsigned char) (len >> 8);
+    info[off++] = (unsigned char) len;
+    info[off++] = (unsigned char) (6 + label_len);
+    memcpy(info + off, "tls13 ", 6);
+    off += 6;
+    memcpy(info + off, label, label_len);
+    off += label_len;
+    info[off++] = 0; // empty context
+
+    int ret = 0;
+    EVP_PKEY_CTX* pctx = EVP_PKEY_CTX_new_id(EVP_PKEY_HKDF, NULL);
+    if (pctx != NULL
+        && EVP_PKEY_derive_init(pctx) == 1
+        && EVP_PKEY_CTX_hkdf_mode(pctx, EVP_PKEY_HKDEF_MODE_EXPAND_ONLY) == 1
+        && EVP_PKEY_CTX_set_hkdf_md(pctx, md) == 1
+        && EVP_PKEY_CTX_set1_hkdf_key(pctx, secret, secret_len) == 1
+        && EVP_PKEY_CTX_add1_hkdf_info(pctx, info, (int) off) == 1
+        && EVP_PKEY_derive(pctx, out, &len) == 1) {
+        ret = 1;
+    }
+    EVP_PKEY_CTX_free(pctx);
+    return ret;
+}
+
+// client_write_key, server_write_key, client_write_IV, server_write_IV
+static int vpssl_tls12_key_block(SSL* ssl, const EVP_MD* md, unsigned char* out, size_t len) {
+    unsigned char master[SSL_MAX_MASTER_KEY_LENGTH];
+    unsigned char client_random[SSL3_RANDOM_SIZE];
+    unsigned char server_random[SSL3_RANDOM_SIZE];
+    size_t master_len = SSL_SESSION_get_master_key(SSL_get_session(ssl), master, sizeof(master));
+    if (SSL_get_client_random(ssl, client_random, sizeof(client_random)) != sizeof(client_random)
+        || SSL_get_server_random(ssl, server_random, sizeof(server_random)) != sizeof(server_random)
+        || master_len == 0) {
+        return 0;
+    }
+    int ret = 0;
+    EVP_PKEY_CTX* pctx = EVP_PKEY_CTX_new_id(EVP_PKEY_TLS1_PRF, NULL);
+    if (pctx != NULL
+        && EVP_PKEY_derive_init(pctx) == 1
+        && EVP_PKEY_CTX_set_tls1_prf_md(pctx, md) == 1
+        && EVP_PKEY_CTX_set1_tls1_prf_secret(pctx, master, (int) master_len) == 1
+        && EVP_PKEY_CTX_add1_tls1_prf_seed(pctx, (const unsigned char*) "key expansion", 13) == 1
+        && EVP_PKEY_CTX_add1_tls1_prf_seed(pctx, server_random, sizeof(server_random)) == 1
+        && EVP_PKEY_CTX_add1_tls1_prf_seed(pctx, client_random, sizeof(client_random)) == 1
+        && EVP_PKEY_derive(pctx, out, &len) == 1) {
+        ret = 1;
+    }
+    EVP_PKEY_CTX_free(pctx);
+    OPENSSL_cleanse(master, sizeof(master));
+    return ret;
+}
+
+static int vpssl_ktls_keys(SSL* ssl, vpssl_ex_t* ex, int tx, vpssl_ktls_keys_t* keys) {
+    const SSL_CIPHER* cipher = SSL_get_current_cipher(ssl);
+    if (cipher == NULL) {
+        return 0;
+    }
+    const EVP_MD* md = SSL_CIPHER_get_handshake_digest(cipher);
+    if (md == NULL) {
+        return 0;
+    }
+    int version = SSL_version(ssl);
+    keys->nid = SSL_CIPHER_get_cipher_nid(cipher);
+    if (keys->nid == NID_aes_128_gcm) {
+        keys->key_len = 16;
+    } else if (keys->nid == NID_aes_256_gcm || keys->nid == NID_chacha20_poly1305) {
+        keys->key_len = 32;
+    } else {
+        return 0;
+    }
+    // the direction of the keys
+    int client = SSL_is_server(ssl) ? !tx : tx;
+
+    if (version == TLS1_3_VERSION) {
+        keys->tls13 = 1;
+        keys->iv_len = 12;
+        if (ex->secret_len == 0) {
+            return 0;
+        }
+        const unsigned char* secret = client ? ex->client_secret : ex->server_secret;
+        return vpssl_hkdf_expand_label(md, secret, ex->secret_len, "key", keys->key, keys->key_len)
+            && vpssl_hkdf_expand_label(md, secret, ex->secret_len, "iv", keys->iv, keys->iv_len);
+    }
+    if (version == TLS1_2_VERSION) {
+        keys->tls13 = 0;
+        keys->iv_len = keys->nid == NID_chacha20_poly1305 ? 12 : 4;
+        unsigned char block[2 * (VPSSL_KTLS_MAX_KEY + VPSSL_KTLS_MAX_IV)];
+        size_t len = 2 * (keys->key_len + keys->iv_len);
+        if (!vpssl_tls12_key_block(ssl, md, block, len)) {
+            return 0;
+        }
+        memcpy(keys->key, block + (client ? 0 : keys->key_len), keys->key_len);
+        memcpy(keys->iv, block + 2 * keys->key_len + (client ? 0 : keys->iv_len), keys->iv_len);
+        OPENSSL_cleanse(block, sizeof(block));
+        return 1;
+    }
+    return 0;
+}
+
+static void vpssl_put_seq(unsigned char* dst, uint64_t seq) {
+    for (int i = 7; i >= 0; --i) {
+        dst[i] = (unsigned char) seq;
+        seq >>= 8;
+    }
+}
+
+// returns 0 when the keys are installed, -1 when the cipher or version is not supported,
+// otherwise errno of setsockopt
+// the caller must make sure that no encrypted bytes are buffered in the direction
+JNIEXPORT int32_t JNICALL vpssl_ktls_start(void * ssl, int32_t fd, int32_t tx) {
+    vpssl_ex_t* ex = vpssl_ex((SSL*) ssl);
+    if (!ex->ktls || !SSL_is_init_finished((SSL*) ssl)) {
+        return VPSSL_ERROR;
+    }
+    vpssl_ktls_keys_t keys;
+    if (!vpssl_ktls_keys((SSL*) ssl, ex, tx, &keys)) {
+        return VPSSL_ERROR;
+    }
+    uint64_t seq = tx ? ex->write_seq : ex->read_seq;
+    union {
+        struct tls12_crypto_info_aes_gcm_128 gcm128;
+        struct tls12_crypto_info_aes_gcm_256 gcm256;
+        struct tls12_crypto_info_chacha20_poly1305 chacha;
+    } info;
+    memset(&info, 0, sizeof(info));
+    size_t info_len;
+    unsigned short kversion = keys.tls13 ? TLS_1_3_VERSION : TLS_1_2_VERSION;
+    if (keys.nid == NID_aes_128_gcm) {
+        info.gcm128.info.version = kversion;
+        info.gcm128.info.cipher_type = TLS_CIPHER_AES_GCM_128;
+        memcpy(info.gcm128.key, keys.key, keys.key_len);
+        memcpy(info.gcm128.salt, keys.iv, TLS_CIPHER_AES_GCM_128_SALT_SIZE);
+        if (keys.tls13) {
+            memcpy(info.gcm128.iv, keys.iv + TLS_CIPHER_AES_GCM_128_SALT_SIZE, TLS_CIPHER_AES_GCM_128_IV_SIZE);
+        } else {
+            vpssl_put_seq(info.gcm128.iv, seq); // explicit nonce, same as openssl
+        }
+        vpssl_put_seq(info.gcm128.rec_seq, seq);
+        info_len = sizeof(info.gcm128);
+    } else if (keys.nid == NID_aes_256_gcm) {
+        info.gcm256.info.version = kversion;
+        info.gcm256.info.cipher_type = TLS_CIPHER_AES_GCM_256;
+        memcpy(info.gcm256.key, keys.key, keys.key_len);
+        memcpy(info.gcm256.salt, keys.iv, TLS_CIPHER_AES_GCM_256_SALT_SIZE);
+        if (keys.tls13) {
+            memcpy(info.gcm256.iv, keys.iv + TLS_CIPHER_AES_GCM_256_SALT_SIZE, TLS_CIPHER_AES_GCM_256_IV_SIZE);
+        } else {
+            vpssl_put_seq(info.gcm256.iv, seq);
+        }
+        vpssl_put_seq(info.gcm256.rec_seq, seq);
+        info_len = sizeof(info.gcm256);
+    } else {
+        info.chacha.info.version = kversion;
+        info.chacha.info.cipher_type = TLS_CIPHER_CHACHA20_POLY1305;
+        memcpy(info.chacha.key, keys.key, keys.key_len);
+        memcpy(info.chacha.iv, keys.iv, TLS_CIPHER_CHACHA20_POLY1305_IV_SIZE);
+        vpssl_put_seq(info.chacha.rec_seq, seq);
+        info_len = sizeof(info.chacha);
+    }
+    OPENSSL_cleanse(&keys, sizeof(keys));
+
+    int ret = 0;
+    if (!ex->ktls_ulp) {
+        if (setsockopt(fd, SOL_TCP, TCP_ULP, "tls", sizeof("tls")) < 0) {
+            ret = errno;
+        } else {
+            ex->ktls_ulp = 1;
+        }
+    }
+    if (ret == 0 && setsockopt(fd, SOL_TLS, tx ? TLS_TX : TLS_RX, &info, info_len) < 0) {
+        ret = errno;
+    }
+    OPENSSL_cleanse(&info, sizeof(info));
+    return ret;
+}
+
+#else
+
+JNIEXPORT int32_t JNICALL vpssl_ktls_start(void * ssl, int32_t fd, int32_t tx) {
+    return VPSSL_ERROR;
+}
+
+#endif
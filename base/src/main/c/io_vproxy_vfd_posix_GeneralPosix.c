@@ -390,7 +390,7 @@ JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_bindIPv4
 
 int j2cSockAddrIPv6(v_sockaddr_in6* name, char* fullAddrCharArray, uint16_t port) {
     v_memset(name, 0, sizeof(v_sockaddr_in6));
-    name->sin6_family = AF_INET6;
+    name->sin6_family = V_AF_INET6;
     name->sin6_port = htons(port);
 #ifdef _WIN32
     int size = sizeof(v_sockaddr_in6);
@@ -744,6 +744,63 @@ JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_write
     return 0;
 }
 
+#ifndef _WIN32
+#define IOV_BATCH_MAX 64
+
+int fillIOVec(struct iovec* iov, PNIBuf_long* _addrs, PNIBuf_int* _lens, int32_t count) {
+    int64_t* addrs = _addrs->buf;
+    int32_t* lens = _lens->buf;
+    if (count > IOV_BATCH_MAX) {
+        count = IOV_BATCH_MAX;
+    }
+    for (int i = 0; i < count; ++i) {
+        iov[i].iov_base = (void*) addrs[i];
+        iov[i].iov_len = lens[i];
+    }
+    return count;
+}
+#endif
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_writev
+  (PNIEnv_int* env, int32_t fd, PNIBuf_long* addrs, PNIBuf_int* lens, int32_t count) {
+#ifdef _WIN32
+    return throwUnsupportedOperationException(env, "windows");
+#else
+    if (count <= 0) {
+        env->return_ = 0;
+        return 0;
+    }
+    struct iovec iov[IOV_BATCH_MAX];
+    int n = fillIOVec(iov, addrs, lens, count);
+    int res = writev(fd, iov, n);
+    env->return_ = handleWriteIOOperationResult(env, res);
+    if (env->return_ < 0) {
+        return -1;
+    }
+    return 0;
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_readv
+  (PNIEnv_int* env, int32_t fd, PNIBuf_long* addrs, PNIBuf_int* lens, int32_t count) {
+#ifdef _WIN32
+    return throwUnsupportedOperationException(env, "windows");
+#else
+    if (count <= 0) {
+        env->return_ = 0;
+        return 0;
+    }
+    struct iovec iov[IOV_BATCH_MAX];
+    int n = fillIOVec(iov, addrs, lens, count);
+    int res = readv(fd, iov, n);
+    env->return_ = handleReadIOOperationResultFinal(env, res);
+    if (env->return_ == -3) {
+        return -1;
+    }
+    return 0;
+#endif
+}
+
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_sendtoIPv4
   (PNIEnv_int* env, int32_t fd, void* directBuffer, int32_t off, int32_t len, int32_t addrHostOrder, int32_t port) {
     if (len == 0) {
@@ -832,6 +889,133 @@ JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_recvfromIPv6
     return 0;
 }
 
+#define MMSG_MAX_VLEN 64
+
+#ifdef __linux__
+void j2cSockAddrIPv6Words(v_sockaddr_in6* name, int32_t* words, uint16_t port) {
+    v_memset(name, 0, sizeof(v_sockaddr_in6));
+    name->sin6_family = V_AF_INET6;
+    name->sin6_port = v_htons(port);
+    for (int i = 0; i < 4; ++i) {
+        uint32_t w = (uint32_t) words[i];
+        name->sin6_addr.s6_addr[i * 4]     = (w >> 24) & 0xff;
+        name->sin6_addr.s6_addr[i * 4 + 1] = (w >> 16) & 0xff;
+        name->sin6_addr.s6_addr[i * 4 + 2] = (w >> 8) & 0xff;
+        name->sin6_addr.s6_addr[i * 4 + 3] = w & 0xff;
+    }
+}
+
+void c2jSockAddrIPv6Words(v_sockaddr_in6* name, int32_t* words) {
+    for (int i = 0; i < 4; ++i) {
+        uint8_t* b = name->sin6_addr.s6_addr + i * 4;
+        words[i] = (int32_t) ((((uint32_t) b[0]) << 24) | (((uint32_t) b[1]) << 16) | (((uint32_t) b[2]) << 8) | ((uint32_t) b[3]));
+    }
+}
+
+// meta for ipv4: {addrHostOrder, port, len} for each message
+// meta for ipv6: {addr0, addr1, addr2, addr3, port, len} for each message, the address is split into 4 big endian words
+int doMMsg(PNIEnv_int* env, int32_t fd, void* directBuffer, int32_t slotLen, int32_t vlen, int32_t* meta, int isIPv4, int isSend) {
+    if (vlen <= 0 || slotLen <= 0) {
+        env->return_ = 0;
+        return 0;
+    }
+    if (vlen > MMSG_MAX_VLEN) {
+        vlen = MMSG_MAX_VLEN;
+    }
+    int metaLen = isIPv4 ? 3 : 6;
+    byte* buf = (byte*) directBuffer;
+    struct mmsghdr msgs[MMSG_MAX_VLEN];
+    struct iovec iovecs[MMSG_MAX_VLEN];
+    v_sockaddr_in names4[MMSG_MAX_VLEN];
+    v_sockaddr_in6 names6[MMSG_MAX_VLEN];
+    v_memset(msgs, 0, sizeof(struct mmsghdr) * vlen);
+    for (int i = 0; i < vlen; ++i) {
+        int32_t* m = meta + i * metaLen;
+        iovecs[i].iov_base = buf + i * slotLen;
+        iovecs[i].iov_len = isSend ? m[metaLen - 1] : slotLen;
+        msgs[i].msg_hdr.msg_iov = &iovecs[i];
+        msgs[i].msg_hdr.msg_iovlen = 1;
+        if (isIPv4) {
+            if (isSend) {
+                j2cSockAddrIPv4(&names4[i], m[0], m[1]);
+            }
+            msgs[i].msg_hdr.msg_name = &names4[i];
+            msgs[i].msg_hdr.msg_namelen = sizeof(v_sockaddr_in);
+        } else {
+            if (isSend) {
+                j2cSockAddrIPv6Words(&names6[i], m, m[4]);
+            }
+            msgs[i].msg_hdr.msg_name = &names6[i];
+            msgs[i].msg_hdr.msg_namelen = sizeof(v_sockaddr_in6);
+        }
+    }
+    int res;
+    if (isSend) {
+        res = sendmmsg(fd, msgs, vlen, 0);
+    } else {
+        res = recvmmsg(fd, msgs, vlen, 0, NULL);
+    }
+    if (res < 0) {
+        if (errno == V_EAGAIN || errno == V_EWOULDBLOCK) {
+            env->return_ = 0;
+            return 0;
+        }
+        return throwIOExceptionBasedOnErrno(env);
+    }
+    if (!isSend) {
+        for (int i = 0; i < res; ++i) {
+            int32_t* m = meta + i * metaLen;
+            if (isIPv4) {
+                m[0] = v_ntohl(names4[i].sin_addr.s_addr);
+                m[1] = v_ntohs(names4[i].sin_port);
+            } else {
+                c2jSockAddrIPv6Words(&names6[i], m);
+                m[4] = v_ntohs(names6[i].sin6_port);
+            }
+            m[metaLen - 1] = msgs[i].msg_len;
+        }
+    }
+    env->return_ = res;
+    return 0;
+}
+#endif
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv4
+  (PNIEnv_int* env, int32_t fd, void* directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int* meta) {
+#ifdef __linux__
+    return doMMsg(env, fd, directBuffer, slotLen, vlen, meta->buf, 1, 0);
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv6
+  (PNIEnv_int* env, int32_t fd, void* directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int* meta) {
+#ifdef __linux__
+    return doMMsg(env, fd, directBuffer, slotLen, vlen, meta->buf, 0, 0);
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv4
+  (PNIEnv_int* env, int32_t fd, void* directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int* meta) {
+#ifdef __linux__
+    return doMMsg(env, fd, directBuffer, slotLen, vlen, meta->buf, 1, 1);
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv6
+  (PNIEnv_int* env, int32_t fd, void* directBuffer, int32_t slotLen, int32_t vlen, PNIBuf_int* meta) {
+#ifdef __linux__
+    return doMMsg(env, fd, directBuffer, slotLen, vlen, meta->buf, 0, 1);
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
 JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_currentTimeMillis
   (PNIEnv_long* env) {
     v_timeval tv;
@@ -1009,3 +1193,584 @@ JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_setCoreAffinityForCur
     return throwIOException(env, "unsupported on current platform");
 #endif
 }
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_openSplicePipe
+  (PNIEnv_int* env, PNIBuf_int* _fds, int32_t size) {
+#ifdef __linux__
+    int32_t* fds = _fds->buf;
+    int pipes[2];
+    int res = pipe2(pipes, O_NONBLOCK | O_CLOEXEC);
+    if (res < 0) {
+        return throwIOExceptionBasedOnErrno(env);
+    }
+    // the pipe size is only a hint, use the default size if failed to set
+    int cap = -1;
+    if (size > 0) {
+        cap = fcntl(pipes[1], F_SETPIPE_SZ, size);
+    }
+    if (cap < 0) {
+        cap = fcntl(pipes[1], F_GETPIPE_SZ);
+    }
+    if (cap < 0) {
+        v_close(pipes[0]);
+        v_close(pipes[1]);
+        return throwIOExceptionBasedOnErrno(env);
+    }
+    fds[0] = pipes[0];
+    fds[1] = pipes[1];
+    env->return_ = cap;
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_splice
+  (PNIEnv_int* env, int32_t fdIn, int32_t fdOut, int32_t len) {
+#ifdef __linux__
+    if (len == 0) {
+        env->return_ = 0;
+        return 0;
+    }
+    ssize_t res = splice(fdIn, NULL, fdOut, NULL, len, SPLICE_F_MOVE | SPLICE_F_NONBLOCK);
+    env->return_ = handleReadIOOperationResultFinal(env, (int) res);
+    if (env->return_ == -3) {
+        return -1;
+    }
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+#ifdef V_HAS_IO_URING
+
+#define URING_KIND_POLL   1
+#define URING_KIND_ACCEPT 2
+#define URING_KIND_CANCEL 3
+
+#define URING_ACCEPTED_MAX 1024
+
+typedef struct {
+    int32_t  mask;        // events registered by the user
+    uint32_t pollGen;     // completions of older polls are dropped
+    uint32_t acceptGen;   // completions of older accepts are dropped, accepted fds are closed
+    int32_t  firedIndex;  // index + 1 in the fired array, 0 for not fired in current poll
+    uint8_t  accepting;   // use multishot accept instead of polling readable
+    uint8_t  pollArmed;   // poll events currently armed, 0 for not armed
+    uint8_t  acceptArmed;
+    uint8_t  pending;     // in the pending list
+} vuring_fd;
+
+typedef struct {
+    int ringfd;
+
+    unsigned* sqHead;
+    unsigned* sqTail;
+    unsigned* sqArray;
+    unsigned  sqMask;
+    unsigned  sqEntries;
+    struct io_uring_sqe* sqes;
+    unsigned  toSubmit;
+
+    unsigned* cqHead;
+    unsigned* cqTail;
+    unsigned  cqMask;
+    struct io_uring_cqe* cqes;
+
+    void*  sqRing;
+    size_t sqRingSize;
+    void*  cqRing;
+    size_t cqRingSize;
+    size_t sqesSize;
+
+    int setsize;
+    vuring_fd* fds;
+    // fds to be armed or disarmed in the next submission
+    int32_t* pending;
+    int pendingNum;
+    int noMultishotAccept;
+
+    aeFiredEvent* fired;
+    int firedNum;
+    // {listenFd, acceptedFd} pairs
+    int32_t* accepted;
+    int acceptedNum;
+} vuring;
+
+static inline uint64_t uringUserData(uint64_t kind, uint32_t gen, int fd) {
+    return (kind << 56) | (((uint64_t) (gen & 0xffffff)) << 32) | (uint32_t) fd;
+}
+
+static int uringEnter(vuring* r, unsigned toSubmit, unsigned minComplete, unsigned flags, void* arg, size_t argsz) {
+    return (int) syscall(__NR_io_uring_enter, r->ringfd, toSubmit, minComplete, flags, arg, argsz);
+}
+
+static int uringSubmit(vuring* r) {
+    while (r->toSubmit > 0) {
+        int n = uringEnter(r, r->toSubmit, 0, 0, NULL, 0);
+        if (n < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            return -1;
+        }
+        if (n == 0) {
+            break;
+        }
+        r->toSubmit -= n;
+    }
+    return 0;
+}
+
+// the sqe is published immediately, it's safe because the kernel only consumes sqes in io_uring_enter
+static struct io_uring_sqe* uringGetSqe(vuring* r) {
+    unsigned head = __atomic_load_n(r->sqHead, __ATOMIC_ACQUIRE);
+    unsigned tail = *r->sqTail;
+    if (tail - head >= r->sqEntries) {
+        if (uringSubmit(r) < 0) {
+            return NULL;
+        }
+        head = __atomic_load_n(r->sqHead, __ATOMIC_ACQUIRE);
+        if (tail - head >= r->sqEntries) {
+            return NULL;
+        }
+    }
+    unsigned idx = tail & r->sqMask;
+    struct io_uring_sqe* sqe = &r->sqes[idx];
+    memset(sqe, 0, sizeof(struct io_uring_sqe));
+    r->sqArray[idx] = idx;
+    __atomic_store_n(r->sqTail, tail + 1, __ATOMIC_RELEASE);
+    r->toSubmit++;
+    return sqe;
+}
+
+static void uringMarkPending(vuring* r, int fd) {
+    if (r->fds[fd].pending) {
+        return;
+    }
+    r->fds[fd].pending = 1;
+    r->pending[r->pendingNum++] = fd;
+}
+
+static uint32_t uringPollEvents(int mask) {
+    uint32_t events = 0;
+    if (mask & AE_READABLE) events |= POLLIN;
+    if (mask & AE_WRITABLE) events |= POLLOUT;
+#if __BYTE_ORDER__ == __ORDER_BIG_ENDIAN__
+    events = (events << 16) | (events >> 16);
+#endif
+    return events;
+}
+
+// returns -1 if no sqe available
+static int uringApply(vuring* r, int fd) {
+    vuring_fd* f = &r->fds[fd];
+    int accepting = f->accepting && !r->noMultishotAccept;
+    int wantAccept = accepting && (f->mask & AE_READABLE);
+    int wantPoll = f->mask & (accepting ? AE_WRITABLE : (AE_READABLE | AE_WRITABLE));
+
+    struct io_uring_sqe* sqe;
+    if (f->pollArmed && f->pollArmed != wantPoll) {
+        sqe = uringGetSqe(r);
+        if (sqe == NULL) return -1;
+        sqe->opcode = IORING_OP_POLL_REMOVE;
+        sqe->fd = -1;
+        sqe->addr = uringUserData(URING_KIND_POLL, f->pollGen, fd);
+        sqe->user_data = uringUserData(URING_KIND_CANCEL, 0, fd);
+        f->pollArmed = 0;
+        f->pollGen++;
+    }
+    if (!f->pollArmed && wantPoll) {
+        sqe = uringGetSqe(r);
+        if (sqe == NULL) return -1;
+        sqe->opcode = IORING_OP_POLL_ADD;
+        sqe->fd = fd;
+        sqe->poll32_events = uringPollEvents(wantPoll);
+        sqe->user_data = uringUserData(URING_KIND_POLL, f->pollGen, fd);
+        f->pollArmed = wantPoll;
+    }
+    if (f->acceptArmed && !wantAccept) {
+        sqe = uringGetSqe(r);
+        if (sqe == NULL) return -1;
+        sqe->opcode = IORING_OP_ASYNC_CANCEL;
+        sqe->fd = -1;
+        sqe->addr = uringUserData(URING_KIND_ACCEPT, f->acceptGen, fd);
+        sqe->user_data = uringUserData(URING_KIND_CANCEL, 0, fd);
+        f->acceptArmed = 0;
+        f->acceptGen++;
+    }
+    if (!f->acceptArmed && wantAccept) {
+        sqe = uringGetSqe(r);
+        if (sqe == NULL) return -1;
+        sqe->opcode = IORING_OP_ACCEPT;
+        sqe->fd = fd;
+        sqe->ioprio = IORING_ACCEPT_MULTISHOT;
+        sqe->user_data = uringUserData(URING_KIND_ACCEPT, f->acceptGen, fd);
+        f->acceptArmed = 1;
+    }
+    return 0;
+}
+
+// the fd might be closed and reused right after removed,
+// so the armed requests must be dropped now instead of in the next submission
+static void uringDisarm(vuring* r, int fd) {
+    vuring_fd* f = &r->fds[fd];
+    struct io_uring_sqe* sqe;
+    if (f->pollArmed) {
+        sqe = uringGetSqe(r);
+        if (sqe != NULL) {
+            sqe->opcode = IORING_OP_POLL_REMOVE;
+            sqe->fd = -1;
+            sqe->addr = uringUserData(URING_KIND_POLL, f->pollGen, fd);
+            sqe->user_data = uringUserData(URING_KIND_CANCEL, 0, fd);
+        }
+        f->pollArmed = 0;
+    }
+    if (f->acceptArmed) {
+        sqe = uringGetSqe(r);
+        if (sqe != NULL) {
+            sqe->opcode = IORING_OP_ASYNC_CANCEL;
+            sqe->fd = -1;
+            sqe->addr = uringUserData(URING_KIND_ACCEPT, f->acceptGen, fd);
+            sqe->user_data = uringUserData(URING_KIND_CANCEL, 0, fd);
+        }
+        f->acceptArmed = 0;
+    }
+    // completions of the dropped requests will be ignored
+    f->pollGen++;
+    f->acceptGen++;
+}
+
+static void uringFlushPending(vuring* r) {
+    int i = 0;
+    for (; i < r->pendingNum; ++i) {
+        int fd = r->pending[i];
+        if (uringApply(r, fd) < 0) {
+            break;
+        }
+        r->fds[fd].pending = 0;
+    }
+    if (i == 0) {
+        return;
+    }
+    // keep the fds failed to apply for the next submission
+    memmove(r->pending, r->pending + i, (r->pendingNum - i) * sizeof(int32_t));
+    r->pendingNum -= i;
+}
+
+static void uringAddFired(vuring* r, int fd, int mask) {
+    vuring_fd* f = &r->fds[fd];
+    if (f->firedIndex) {
+        r->fired[f->firedIndex - 1].mask |= mask;
+        return;
+    }
+    r->fired[r->firedNum].fd = fd;
+    r->fired[r->firedNum].mask = mask;
+    f->firedIndex = ++r->firedNum;
+}
+
+static void uringHandleCqe(vuring* r, struct io_uring_cqe* cqe) {
+    uint64_t ud = cqe->user_data;
+    int kind = (int) (ud >> 56);
+    uint32_t gen = (uint32_t) ((ud >> 32) & 0xffffff);
+    int fd = (int) (uint32_t) ud;
+    int res = cqe->res;
+    if (fd < 0 || fd >= r->setsize) {
+        return;
+    }
+    vuring_fd* f = &r->fds[fd];
+
+    if (kind == URING_KIND_POLL) {
+        if (gen != (f->pollGen & 0xffffff)) {
+            return;
+        }
+        // polls are oneshot and armed again in the next submission,
+        // which checks the readiness immediately, so it's level triggered like ae
+        f->pollArmed = 0;
+        if (f->mask) {
+            uringMarkPending(r, fd);
+        }
+        if (res == -ECANCELED) {
+            return;
+        }
+        int mask = 0;
+        if (res < 0 || (res & (POLLERR | POLLHUP))) {
+            mask = AE_READABLE | AE_WRITABLE;
+        } else {
+            if (res & POLLIN) mask |= AE_READABLE;
+            if (res & POLLOUT) mask |= AE_WRITABLE;
+        }
+        mask &= f->mask;
+        if (mask) {
+            uringAddFired(r, fd, mask);
+        }
+    } else if (kind == URING_KIND_ACCEPT) {
+        if (gen != (f->acceptGen & 0xffffff)) {
+            if (res >= 0) {
+                // accepting is already disabled
+                v_close(res);
+            }
+            return;
+        }
+        if (!(cqe->flags & IORING_CQE_F_MORE)) {
+            f->acceptArmed = 0;
+            uringMarkPending(r, fd);
+        }
+        if (res >= 0) {
+            r->accepted[r->acceptedNum * 2] = fd;
+            r->accepted[r->acceptedNum * 2 + 1] = res;
+            r->acceptedNum++;
+            uringAddFired(r, fd, AE_READABLE);
+        } else if (res == -EINVAL) {
+            // multishot accept not supported by the kernel, fallback to poll
+            r->noMultishotAccept = 1;
+            uringAddFired(r, fd, AE_READABLE);
+        } else if (res != -ECANCELED) {
+            // let the user call accept() and get the error
+            uringAddFired(r, fd, AE_READABLE);
+        }
+    }
+}
+
+static int uringPoll(vuring* r, int64_t wait) {
+    for (int i = 0; i < r->firedNum; ++i) {
+        r->fds[r->fired[i].fd].firedIndex = 0;
+    }
+    r->firedNum = 0;
+    r->acceptedNum = 0;
+
+    uringFlushPending(r);
+
+    unsigned cqHead = *r->cqHead;
+    int hasCqe = cqHead != __atomic_load_n(r->cqTail, __ATOMIC_ACQUIRE);
+
+    int n;
+    if (wait > 0 && !hasCqe) {
+        struct __kernel_timespec ts;
+        ts.tv_sec = wait / 1000;
+        ts.tv_nsec = (wait % 1000) * 1000000;
+        struct io_uring_getevents_arg arg;
+        memset(&arg, 0, sizeof(arg));
+        arg.ts = (uint64_t) (uintptr_t) &ts;
+        n = uringEnter(r, r->toSubmit, 1, IORING_ENTER_GETEVENTS | IORING_ENTER_EXT_ARG, &arg, sizeof(arg));
+    } else {
+        n = uringEnter(r, r->toSubmit, 0, IORING_ENTER_GETEVENTS, NULL, 0);
+    }
+    if (n < 0) {
+        if (errno != ETIME && errno != EINTR && errno != EBUSY && errno != EAGAIN) {
+            return -1;
+        }
+    } else {
+        r->toSubmit -= n;
+    }
+
+    unsigned tail = __atomic_load_n(r->cqTail, __ATOMIC_ACQUIRE);
+    while (cqHead != tail) {
+        if (r->acceptedNum == URING_ACCEPTED_MAX) {
+            // handle the rest in the next poll
+            break;
+        }
+        uringHandleCqe(r, &r->cqes[cqHead & r->cqMask]);
+        ++cqHead;
+    }
+    __atomic_store_n(r->cqHead, cqHead, __ATOMIC_RELEASE);
+    return r->firedNum;
+}
+
+static void uringFree(vuring* r) {
+    if (r->sqes != NULL && r->sqes != MAP_FAILED) munmap(r->sqes, r->sqesSize);
+    if (r->cqRing != NULL && r->cqRing != MAP_FAILED && r->cqRing != r->sqRing) munmap(r->cqRing, r->cqRingSize);
+    if (r->sqRing != NULL && r->sqRing != MAP_FAILED) munmap(r->sqRing, r->sqRingSize);
+    if (r->ringfd >= 0) v_close(r->ringfd);
+    free(r->fds);
+    free(r->pending);
+    free(r->fired);
+    free(r->accepted);
+    free(r);
+}
+
+static vuring* uringCreate(int entries, int setsize, char** err) {
+    vuring* r = calloc(1, sizeof(vuring));
+    if (r == NULL) {
+        *err = "allocating io_uring failed";
+        return NULL;
+    }
+    r->ringfd = -1;
+    r->setsize = setsize;
+    r->fds = calloc(setsize, sizeof(vuring_fd));
+    r->pending = malloc(setsize * sizeof(int32_t));
+    r->fired = malloc(setsize * sizeof(aeFiredEvent));
+    r->accepted = malloc(URING_ACCEPTED_MAX * 2 * sizeof(int32_t));
+    if (r->fds == NULL || r->pending == NULL || r->fired == NULL || r->accepted == NULL) {
+        *err = "allocating io_uring failed";
+        uringFree(r);
+        return NULL;
+    }
+
+    struct io_uring_params p;
+    memset(&p, 0, sizeof(p));
+    p.flags = IORING_SETUP_CQSIZE;
+    p.cq_entries = entries * 4;
+    r->ringfd = (int) syscall(__NR_io_uring_setup, entries, &p);
+    if (r->ringfd < 0) {
+        *err = NULL; // use errno
+        uringFree(r);
+        return NULL;
+    }
+    if (!(p.features & IORING_FEAT_EXT_ARG) || !(p.features & IORING_FEAT_NODROP)) {
+        *err = "io_uring of current kernel is not supported";
+        uringFree(r);
+        return NULL;
+    }
+
+    r->sqRingSize = p.sq_off.array + p.sq_entries * sizeof(unsigned);
+    r->cqRingSize = p.cq_off.cqes + p.cq_entries * sizeof(struct io_uring_cqe);
+    if (p.features & IORING_FEAT_SINGLE_MMAP) {
+        if (r->cqRingSize > r->sqRingSize) {
+            r->sqRingSize = r->cqRingSize;
+        }
+        r->cqRingSize = r->sqRingSize;
+    }
+    r->sqRing = mmap(NULL, r->sqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, r->ringfd, IORING_OFF_SQ_RING);
+    if (r->sqRing == MAP_FAILED) {
+        *err = NULL;
+        uringFree(r);
+        return NULL;
+    }
+    if (p.features & IORING_FEAT_SINGLE_MMAP) {
+        r->cqRing = r->sqRing;
+    } else {
+        r->cqRing = mmap(NULL, r->cqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, r->ringfd, IORING_OFF_CQ_RING);
+        if (r->cqRing == MAP_FAILED) {
+            *err = NULL;
+            uringFree(r);
+            return NULL;
+        }
+    }
+    r->sqesSize = p.sq_entries * sizeof(struct io_uring_sqe);
+    r->sqes = mmap(NULL, r->sqesSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, r->ringfd, IORING_OFF_SQES);
+    if (r->sqes == MAP_FAILED) {
+        *err = NULL;
+        uringFree(r);
+        return NULL;
+    }
+
+    r->sqHead    = (unsigned*) ((char*) r->sqRing + p.sq_off.head);
+    r->sqTail    = (unsigned*) ((char*) r->sqRing + p.sq_off.tail);
+    r->sqArray   = (unsigned*) ((char*) r->sqRing + p.sq_off.array);
+    r->sqMask    = *(unsigned*) ((char*) r->sqRing + p.sq_off.ring_mask);
+    r->sqEntries = p.sq_entries;
+    r->cqHead    = (unsigned*) ((char*) r->cqRing + p.cq_off.head);
+    r->cqTail    = (unsigned*) ((char*) r->cqRing + p.cq_off.tail);
+    r->cqMask    = *(unsigned*) ((char*) r->cqRing + p.cq_off.ring_mask);
+    r->cqes      = (struct io_uring_cqe*) ((char*) r->cqRing + p.cq_off.cqes);
+    return r;
+}
+
+static void uringDelete(vuring* r) {
+    // close fds which are accepted but not yet retrieved
+    unsigned cqHead = *r->cqHead;
+    unsigned tail = __atomic_load_n(r->cqTail, __ATOMIC_ACQUIRE);
+    while (cqHead != tail) {
+        struct io_uring_cqe* cqe = &r->cqes[cqHead & r->cqMask];
+        if ((int) (cqe->user_data >> 56) == URING_KIND_ACCEPT && cqe->res >= 0) {
+            v_close(cqe->res);
+        }
+        ++cqHead;
+    }
+    uringFree(r);
+}
+
+#endif // V_HAS_IO_URING
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringCreate
+  (PNIEnv_long* env, int32_t entries, int32_t setsize) {
+#ifdef V_HAS_IO_URING
+    char* err = NULL;
+    vuring* r = uringCreate(entries, setsize, &err);
+    if (r == NULL) {
+        if (err == NULL) {
+            return throwIOExceptionBasedOnErrno(env);
+        }
+        return throwIOException(env, err);
+    }
+    env->return_ = (int64_t) r;
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringGetFired
+  (PNIEnv_pointer* env, int64_t ring) {
+#ifdef V_HAS_IO_URING
+    env->return_ = ((vuring*) ring)->fired;
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringGetAccepted
+  (PNIEnv_pointer* env, int64_t ring) {
+#ifdef V_HAS_IO_URING
+    env->return_ = ((vuring*) ring)->accepted;
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringGetAcceptedNum
+  (PNIEnv_int* env, int64_t ring) {
+#ifdef V_HAS_IO_URING
+    env->return_ = ((vuring*) ring)->acceptedNum;
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringPoll
+  (PNIEnv_int* env, int64_t ring, int64_t wait) {
+#ifdef V_HAS_IO_URING
+    int n = uringPoll((vuring*) ring, wait);
+    if (n < 0) {
+        return throwIOExceptionBasedOnErrno(env);
+    }
+    env->return_ = n;
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringUpdateFileEvent
+  (PNIEnv_void* env, int64_t ring, int32_t fd, int32_t mask, uint8_t accept) {
+#ifdef V_HAS_IO_URING
+    vuring* r = (vuring*) ring;
+    if (fd < 0 || fd >= r->setsize) {
+        return throwIOException(env, "fd out of range");
+    }
+    if (mask == 0) {
+        uringDisarm(r, fd);
+    }
+    r->fds[fd].mask = mask;
+    r->fds[fd].accepting = accept;
+    uringMarkPending(r, fd);
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
+
+JNIEXPORT int JNICALL Java_io_vproxy_vfd_posix_PosixNative_uringDeleteEventLoop
+  (PNIEnv_void* env, int64_t ring) {
+#ifdef V_HAS_IO_URING
+    uringDelete((vuring*) ring);
+    return 0;
+#else
+    return throwIOException(env, "unsupported on current platform");
+#endif
+}
@@ -0,0 +1,45 @@
+#!/bin/bash
+
+os=`uname`
+
+target="vpssl"
+include_platform_dir=""
+
+if [[ "Linux" == "$os" ]]
+then
+	target="lib$target.so"
+	include_platform_dir="linux"
+elif [[ "Darwin" == "$os" ]]
+then
+	target="lib$target.dylib"
+	include_platform_dir="darwin"
+else
+	target="$target.dll"
+	include_platform_dir="win32"
+fi
+
+rm -f "$target"
+
+GENERATED_PATH="../c-generated"
+
+if [ "$VPROXY_BUILD_GRAAL_NATIVE_IMAGE" == "true" ]; then
+    GENERATED_PATH="${GENERATED_PATH}-graal"
+    GCC_OPTS="$GCC_OPTS -DPNI_GRAAL=1"
+fi
+
+# set OPENSSL_INC and OPENSSL_LD to build with a custom openssl
+if [[ ! -z "$OPENSSL_INC" ]]; then
+    GCC_OPTS="$GCC_OPTS -I $OPENSSL_INC"
+fi
+if [[ ! -z "$OPENSSL_LD" ]]; then
+    GCC_OPTS="$GCC_OPTS -L $OPENSSL_LD"
+fi
+
+gcc -std=gnu99 -O2 \
+    $GCC_OPTS \
+    -I . \
+    -I "$GENERATED_PATH" \
+    -L . \
+    -shared -Werror -lc -lpthread -lpni -lssl -lcrypto -fPIC \
+    io_vproxy_openssl_OpenSSLFunc.c \
+    -o "$target"
@@ -14,11 +14,22 @@
         #include <sys/eventfd.h>
     #endif
 
+    #if defined(__linux__) && defined(__has_include)
+        #if __has_include(<linux/io_uring.h>)
+            #define V_HAS_IO_URING 1
+            #include <linux/io_uring.h>
+            #include <sys/syscall.h>
+            #include <sys/mman.h>
+            #include <poll.h>
+        #endif
+    #endif
+
     #ifdef _WIN32
         #include <winsock2.h>
         #include <mswsock.h>
     #else
         #include <sys/socket.h>
+        #include <sys/uio.h>
     #endif
     #ifndef _WIN32
         #include <netinet/ip.h>
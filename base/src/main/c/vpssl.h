@@ -0,0 +1,25 @@
+#ifndef VPSSL_H
+    #define VPSSL_H 1
+
+    #include <inttypes.h>
+    #include <openssl/ssl.h>
+    #include <openssl/err.h>
+
+    // return values of vpssl_handshake
+    #define VPSSL_HANDSHAKE_DONE         1
+    #define VPSSL_HANDSHAKE_WANT_READ    0
+    #define VPSSL_HANDSHAKE_CLIENT_HELLO 2
+    #define VPSSL_ERROR                 -1
+    // return value of vpssl_read when close_notify received
+    #define VPSSL_CLOSED                -2
+
+    // flags returned by vpssl_session_flags
+    #define VPSSL_SESSION_RESUMED        1
+    #define VPSSL_SESSION_TICKET_LOOKUP  2
+    #define VPSSL_SESSION_CACHE_LOOKUP   4
+
+    // name(16) + hmac key(32) + aes key(32)
+    #define VPSSL_TICKET_KEY_SIZE       80
+    #define VPSSL_MAX_TICKET_KEYS        8
+
+#endif
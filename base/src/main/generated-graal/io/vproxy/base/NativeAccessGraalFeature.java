@@ -278,6 +278,39 @@ public class NativeAccessGraalFeature implements org.graalvm.nativeimage.hosted.
         /* Java_io_vproxy_vfd_posix_PosixNative_aeDeleteEventLoop */
         RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(long.class /* ae */), PanamaHack.getCriticalOption());
 
+        /* Java_io_vproxy_vfd_posix_PosixNative_uringCreate */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* entries */, int.class /* setsize */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_uringGetFired */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(long.class /* ring */), PanamaHack.getCriticalOption());
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_uringGetAccepted */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(long.class /* ring */), PanamaHack.getCriticalOption());
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_uringGetAcceptedNum */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(long.class /* ring */), PanamaHack.getCriticalOption());
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_uringPoll */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(long.class /* ring */, long.class /* wait */));
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_uringUpdateFileEvent */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(long.class /* ring */, int.class /* fd */, int.class /* mask */, boolean.class /* accept */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_uringDeleteEventLoop */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(long.class /* ring */), PanamaHack.getCriticalOption());
+
         /* Java_io_vproxy_vfd_posix_PosixNative_setBlocking */
         RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, boolean.class /* v */), PanamaHack.getCriticalOption());
         RuntimeReflection.registerAllConstructors(java.io.IOException.class);
@@ -495,6 +528,20 @@ public class NativeAccessGraalFeature implements org.graalvm.nativeimage.hosted.
             RuntimeReflection.register(CONS);
         }
 
+        /* Java_io_vproxy_vfd_posix_PosixNative_writev */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, PNIBuf.class /* addrs */, PNIBuf.class /* lens */, int.class /* count */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_readv */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, PNIBuf.class /* addrs */, PNIBuf.class /* lens */, int.class /* count */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
         /* Java_io_vproxy_vfd_posix_PosixNative_sendtoIPv4 */
         RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* off */, int.class /* len */, int.class /* addrHostOrder */, int.class /* port */), PanamaHack.getCriticalOption());
         RuntimeReflection.registerAllConstructors(java.io.IOException.class);
@@ -523,6 +570,34 @@ public class NativeAccessGraalFeature implements org.graalvm.nativeimage.hosted.
             RuntimeReflection.register(CONS);
         }
 
+        /* Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv4 */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv6 */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv4 */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv6 */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
         /* Java_io_vproxy_vfd_posix_PosixNative_currentTimeMillis */
         RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(), PanamaHack.getCriticalOption());
 
@@ -554,6 +629,20 @@ public class NativeAccessGraalFeature implements org.graalvm.nativeimage.hosted.
             RuntimeReflection.register(CONS);
         }
 
+        /* Java_io_vproxy_vfd_posix_PosixNative_openSplicePipe */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(PNIBuf.class /* fds */, int.class /* size */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
+        /* Java_io_vproxy_vfd_posix_PosixNative_splice */
+        RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(int.class /* fdIn */, int.class /* fdOut */, int.class /* len */), PanamaHack.getCriticalOption());
+        RuntimeReflection.registerAllConstructors(java.io.IOException.class);
+        for (var CONS : java.io.IOException.class.getConstructors()) {
+            RuntimeReflection.register(CONS);
+        }
+
         /* Java_io_vproxy_vfd_windows_IOCP_getQueuedCompletionStatusEx */
         RuntimeForeignAccess.registerForDowncall(PanamaUtils.buildFunctionDescriptor(MemoryLayout.class /* io.vproxy.vfd.windows.HANDLE.LAYOUT.getClass() */ /* handle */, MemorySegment.class /* completionPortEntries */, int.class /* count */, int.class /* milliseconds */, boolean.class /* alertable */));
         RuntimeReflection.registerAllConstructors(java.io.IOException.class);
@@ -789,4 +878,4 @@ public class NativeAccessGraalFeature implements org.graalvm.nativeimage.hosted.
     }
 }
 // metadata.generator-version: pni 22.0.0.20
-// sha256:38a120bc4306f368794637a078c0c9afb54d1618acdba5a8e1f86295204ec27f
+// sha256:ccf0622f98c28dd59cd7885cdb3fa1217669dca3ce016f918f1e99c254b8d01c
@@ -0,0 +1,301 @@
+package io.vproxy.openssl;
+
+import io.vproxy.pni.*;
+import io.vproxy.pni.hack.*;
+import io.vproxy.pni.array.*;
+import java.lang.foreign.*;
+import java.lang.invoke.*;
+import java.nio.ByteBuffer;
+
+public class OpenSSLFunc {
+    private OpenSSLFunc() {
+    }
+
+    private static final OpenSSLFunc INSTANCE = new OpenSSLFunc();
+
+    public static OpenSSLFunc get() {
+        return INSTANCE;
+    }
+
+    private static final MethodHandle ctxNewMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions(), MemorySegment.class, "vpssl_ctx_new", int.class /* server */, int.class /* verify */, String.class /* certChainPem */, String.class /* keyPem */);
+
+    public MemorySegment ctxNew(int server, int verify, PNIString certChainPem, PNIString keyPem) {
+        MemorySegment RESULT;
+        try {
+            RESULT = (MemorySegment) ctxNewMH.invokeExact(server, verify, (MemorySegment) (certChainPem == null ? MemorySegment.NULL : certChainPem.MEMORY), (MemorySegment) (keyPem == null ? MemorySegment.NULL : keyPem.MEMORY));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (RESULT.address() == 0) return null;
+        return RESULT;
+    }
+
+    private static final MethodHandle ctxFreeMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions(), void.class, "vpssl_ctx_free", MemorySegment.class /* ctx */);
+
+    public void ctxFree(MemorySegment ctx) {
+        try {
+            ctxFreeMH.invokeExact((MemorySegment) (ctx == null ? MemorySegment.NULL : ctx));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+    }
+
+    private static final MethodHandle ctxSetSessionCacheMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_ctx_set_session_cache", MemorySegment.class /* ctx */, int.class /* size */, int.class /* timeout */);
+
+    public int ctxSetSessionCache(MemorySegment ctx, int size, int timeout) {
+        int RESULT;
+        try {
+            RESULT = (int) ctxSetSessionCacheMH.invokeExact((MemorySegment) (ctx == null ? MemorySegment.NULL : ctx), size, timeout);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle setTicketKeysMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_set_ticket_keys", MemorySegment.class /* keys */, int.class /* n */);
+
+    public int setTicketKeys(MemorySegment keys, int n) {
+        int RESULT;
+        try {
+            RESULT = (int) setTicketKeysMH.invokeExact((MemorySegment) (keys == null ? MemorySegment.NULL : keys), n);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle sslNewMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions(), MemorySegment.class, "vpssl_new", MemorySegment.class /* ctx */, int.class /* server */, String.class /* sni */);
+
+    public MemorySegment sslNew(MemorySegment ctx, int server, PNIString sni) {
+        MemorySegment RESULT;
+        try {
+            RESULT = (MemorySegment) sslNewMH.invokeExact((MemorySegment) (ctx == null ? MemorySegment.NULL : ctx), server, (MemorySegment) (sni == null ? MemorySegment.NULL : sni.MEMORY));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (RESULT.address() == 0) return null;
+        return RESULT;
+    }
+
+    private static final MethodHandle sslFreeMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions(), void.class, "vpssl_free", MemorySegment.class /* ssl */);
+
+    public void sslFree(MemorySegment ssl) {
+        try {
+            sslFreeMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+    }
+
+    private static final MethodHandle setVersionsMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_set_versions", MemorySegment.class /* ssl */, int.class /* min */, int.class /* max */);
+
+    public int setVersions(MemorySegment ssl, int min, int max) {
+        int RESULT;
+        try {
+            RESULT = (int) setVersionsMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), min, max);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle pauseClientHelloMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), void.class, "vpssl_pause_client_hello", MemorySegment.class /* ssl */);
+
+    public void pauseClientHello(MemorySegment ssl) {
+        try {
+            pauseClientHelloMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+    }
+
+    private static final MethodHandle handshakeMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions(), int.class, "vpssl_handshake", MemorySegment.class /* ssl */);
+
+    public int handshake(MemorySegment ssl) {
+        int RESULT;
+        try {
+            RESULT = (int) handshakeMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle feedMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_feed", MemorySegment.class /* ssl */, MemorySegment.class /* buf */, int.class /* len */);
+
+    public int feed(MemorySegment ssl, MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) feedMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle drainMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_drain", MemorySegment.class /* ssl */, MemorySegment.class /* buf */, int.class /* len */);
+
+    public int drain(MemorySegment ssl, MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) drainMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle pendingMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_pending", MemorySegment.class /* ssl */);
+
+    public int pending(MemorySegment ssl) {
+        int RESULT;
+        try {
+            RESULT = (int) pendingMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle writeMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_write", MemorySegment.class /* ssl */, MemorySegment.class /* buf */, int.class /* len */);
+
+    public int write(MemorySegment ssl, MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) writeMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle readMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_read", MemorySegment.class /* ssl */, MemorySegment.class /* buf */, int.class /* len */);
+
+    public int read(MemorySegment ssl, MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) readMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle shutdownMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_shutdown", MemorySegment.class /* ssl */);
+
+    public int shutdown(MemorySegment ssl) {
+        int RESULT;
+        try {
+            RESULT = (int) shutdownMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle clientAlpnMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_client_alpn", MemorySegment.class /* ssl */, MemorySegment.class /* buf */, int.class /* len */);
+
+    public int clientAlpn(MemorySegment ssl, MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) clientAlpnMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle setAlpnMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_set_alpn", MemorySegment.class /* ssl */, MemorySegment.class /* protos */, int.class /* len */);
+
+    public int setAlpn(MemorySegment ssl, MemorySegment protos, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) setAlpnMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (protos == null ? MemorySegment.NULL : protos), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle getAlpnMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_get_alpn", MemorySegment.class /* ssl */, MemorySegment.class /* buf */, int.class /* len */);
+
+    public int getAlpn(MemorySegment ssl, MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) getAlpnMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle sessionFlagsMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_session_flags", MemorySegment.class /* ssl */);
+
+    public int sessionFlags(MemorySegment ssl) {
+        int RESULT;
+        try {
+            RESULT = (int) sessionFlagsMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle getVersionMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_get_version", MemorySegment.class /* ssl */);
+
+    public int getVersion(MemorySegment ssl) {
+        int RESULT;
+        try {
+            RESULT = (int) getVersionMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle getCipherMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_get_cipher", MemorySegment.class /* ssl */, MemorySegment.class /* buf */, int.class /* len */);
+
+    public int getCipher(MemorySegment ssl, MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) getCipherMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), (MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle lastErrorMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), int.class, "vpssl_last_error", MemorySegment.class /* buf */, int.class /* len */);
+
+    public int lastError(MemorySegment buf, int len) {
+        int RESULT;
+        try {
+            RESULT = (int) lastErrorMH.invokeExact((MemorySegment) (buf == null ? MemorySegment.NULL : buf), len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+
+    private static final MethodHandle ktlsPrepareMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions().setCritical(true), void.class, "vpssl_ktls_prepare", MemorySegment.class /* ssl */);
+
+    public void ktlsPrepare(MemorySegment ssl) {
+        try {
+            ktlsPrepareMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl));
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+    }
+
+    private static final MethodHandle ktlsStartMH = PanamaUtils.lookupPNICriticalFunction(new PNILinkOptions(), int.class, "vpssl_ktls_start", MemorySegment.class /* ssl */, int.class /* fd */, int.class /* tx */);
+
+    public int ktlsStart(MemorySegment ssl, int fd, int tx) {
+        int RESULT;
+        try {
+            RESULT = (int) ktlsStartMH.invokeExact((MemorySegment) (ssl == null ? MemorySegment.NULL : ssl), fd, tx);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        return RESULT;
+    }
+}
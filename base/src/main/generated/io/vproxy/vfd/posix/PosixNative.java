@@ -226,6 +226,119 @@ public class PosixNative {
         }
     }
 
+    private static final MethodHandle uringCreateMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_uringCreate", int.class /* entries */, int.class /* setsize */);
+
+    public long uringCreate(PNIEnv ENV, int entries, int setsize) throws java.io.IOException {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) uringCreateMH.invokeExact(ENV.MEMORY, entries, setsize);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwIf(java.io.IOException.class);
+            ENV.throwLast();
+        }
+        return ENV.returnLong();
+    }
+
+    private static final MethodHandle uringGetFiredMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_uringGetFired", long.class /* ring */);
+
+    public MemorySegment uringGetFired(PNIEnv ENV, long ring) {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) uringGetFiredMH.invokeExact(ENV.MEMORY, ring);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwLast();
+        }
+        return ENV.returnPointer();
+    }
+
+    private static final MethodHandle uringGetAcceptedMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_uringGetAccepted", long.class /* ring */);
+
+    public MemorySegment uringGetAccepted(PNIEnv ENV, long ring) {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) uringGetAcceptedMH.invokeExact(ENV.MEMORY, ring);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwLast();
+        }
+        return ENV.returnPointer();
+    }
+
+    private static final MethodHandle uringGetAcceptedNumMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_uringGetAcceptedNum", long.class /* ring */);
+
+    public int uringGetAcceptedNum(PNIEnv ENV, long ring) {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) uringGetAcceptedNumMH.invokeExact(ENV.MEMORY, ring);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwLast();
+        }
+        return ENV.returnInt();
+    }
+
+    private static final MethodHandle uringPollMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions(), "Java_io_vproxy_vfd_posix_PosixNative_uringPoll", long.class /* ring */, long.class /* wait */);
+
+    public int uringPoll(PNIEnv ENV, long ring, long wait) throws java.io.IOException {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) uringPollMH.invokeExact(ENV.MEMORY, ring, wait);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwIf(java.io.IOException.class);
+            ENV.throwLast();
+        }
+        return ENV.returnInt();
+    }
+
+    private static final MethodHandle uringUpdateFileEventMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_uringUpdateFileEvent", long.class /* ring */, int.class /* fd */, int.class /* mask */, boolean.class /* accept */);
+
+    public void uringUpdateFileEvent(PNIEnv ENV, long ring, int fd, int mask, boolean accept) throws java.io.IOException {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) uringUpdateFileEventMH.invokeExact(ENV.MEMORY, ring, fd, mask, accept);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwIf(java.io.IOException.class);
+            ENV.throwLast();
+        }
+    }
+
+    private static final MethodHandle uringDeleteEventLoopMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_uringDeleteEventLoop", long.class /* ring */);
+
+    public void uringDeleteEventLoop(PNIEnv ENV, long ring) {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) uringDeleteEventLoopMH.invokeExact(ENV.MEMORY, ring);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwLast();
+        }
+    }
+
     private static final MethodHandle setBlockingMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_setBlocking", int.class /* fd */, boolean.class /* v */);
 
     public void setBlocking(PNIEnv ENV, int fd, boolean v) throws java.io.IOException {
@@ -743,6 +856,44 @@ public class PosixNative {
         return ENV.returnInt();
     }
 
+    private static final MethodHandle writevMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_writev", int.class /* fd */, PNIBuf.class /* addrs */, PNIBuf.class /* lens */, int.class /* count */);
+
+    public int writev(PNIEnv ENV, int fd, LongArray addrs, IntArray lens, int count) throws java.io.IOException {
+        ENV.reset();
+        try (var POOLED = Allocator.ofPooled()) {
+            int ERR;
+            try {
+                ERR = (int) writevMH.invokeExact(ENV.MEMORY, fd, PNIBuf.memoryOf(POOLED, addrs), PNIBuf.memoryOf(POOLED, lens), count);
+            } catch (Throwable THROWABLE) {
+                throw PanamaUtils.convertInvokeExactException(THROWABLE);
+            }
+            if (ERR != 0) {
+                ENV.throwIf(java.io.IOException.class);
+                ENV.throwLast();
+            }
+            return ENV.returnInt();
+        }
+    }
+
+    private static final MethodHandle readvMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_readv", int.class /* fd */, PNIBuf.class /* addrs */, PNIBuf.class /* lens */, int.class /* count */);
+
+    public int readv(PNIEnv ENV, int fd, LongArray addrs, IntArray lens, int count) throws java.io.IOException {
+        ENV.reset();
+        try (var POOLED = Allocator.ofPooled()) {
+            int ERR;
+            try {
+                ERR = (int) readvMH.invokeExact(ENV.MEMORY, fd, PNIBuf.memoryOf(POOLED, addrs), PNIBuf.memoryOf(POOLED, lens), count);
+            } catch (Throwable THROWABLE) {
+                throw PanamaUtils.convertInvokeExactException(THROWABLE);
+            }
+            if (ERR != 0) {
+                ENV.throwIf(java.io.IOException.class);
+                ENV.throwLast();
+            }
+            return ENV.returnInt();
+        }
+    }
+
     private static final MethodHandle sendtoIPv4MH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_sendtoIPv4", int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* off */, int.class /* len */, int.class /* addrHostOrder */, int.class /* port */);
 
     public int sendtoIPv4(PNIEnv ENV, int fd, ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws java.io.IOException {
@@ -813,6 +964,82 @@ public class PosixNative {
         return RESULT == null ? null : new io.vproxy.vfd.posix.UDPRecvResultIPv6ST(RESULT);
     }
 
+    private static final MethodHandle recvmmsgIPv4MH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv4", int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */);
+
+    public int recvmmsgIPv4(PNIEnv ENV, int fd, ByteBuffer directBuffer, int slotLen, int vlen, IntArray meta) throws java.io.IOException {
+        ENV.reset();
+        try (var POOLED = Allocator.ofPooled()) {
+            int ERR;
+            try {
+                ERR = (int) recvmmsgIPv4MH.invokeExact(ENV.MEMORY, fd, PanamaUtils.format(directBuffer), slotLen, vlen, PNIBuf.memoryOf(POOLED, meta));
+            } catch (Throwable THROWABLE) {
+                throw PanamaUtils.convertInvokeExactException(THROWABLE);
+            }
+            if (ERR != 0) {
+                ENV.throwIf(java.io.IOException.class);
+                ENV.throwLast();
+            }
+            return ENV.returnInt();
+        }
+    }
+
+    private static final MethodHandle recvmmsgIPv6MH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_recvmmsgIPv6", int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */);
+
+    public int recvmmsgIPv6(PNIEnv ENV, int fd, ByteBuffer directBuffer, int slotLen, int vlen, IntArray meta) throws java.io.IOException {
+        ENV.reset();
+        try (var POOLED = Allocator.ofPooled()) {
+            int ERR;
+            try {
+                ERR = (int) recvmmsgIPv6MH.invokeExact(ENV.MEMORY, fd, PanamaUtils.format(directBuffer), slotLen, vlen, PNIBuf.memoryOf(POOLED, meta));
+            } catch (Throwable THROWABLE) {
+                throw PanamaUtils.convertInvokeExactException(THROWABLE);
+            }
+            if (ERR != 0) {
+                ENV.throwIf(java.io.IOException.class);
+                ENV.throwLast();
+            }
+            return ENV.returnInt();
+        }
+    }
+
+    private static final MethodHandle sendmmsgIPv4MH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv4", int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */);
+
+    public int sendmmsgIPv4(PNIEnv ENV, int fd, ByteBuffer directBuffer, int slotLen, int vlen, IntArray meta) throws java.io.IOException {
+        ENV.reset();
+        try (var POOLED = Allocator.ofPooled()) {
+            int ERR;
+            try {
+                ERR = (int) sendmmsgIPv4MH.invokeExact(ENV.MEMORY, fd, PanamaUtils.format(directBuffer), slotLen, vlen, PNIBuf.memoryOf(POOLED, meta));
+            } catch (Throwable THROWABLE) {
+                throw PanamaUtils.convertInvokeExactException(THROWABLE);
+            }
+            if (ERR != 0) {
+                ENV.throwIf(java.io.IOException.class);
+                ENV.throwLast();
+            }
+            return ENV.returnInt();
+        }
+    }
+
+    private static final MethodHandle sendmmsgIPv6MH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_sendmmsgIPv6", int.class /* fd */, ByteBuffer.class /* directBuffer */, int.class /* slotLen */, int.class /* vlen */, PNIBuf.class /* meta */);
+
+    public int sendmmsgIPv6(PNIEnv ENV, int fd, ByteBuffer directBuffer, int slotLen, int vlen, IntArray meta) throws java.io.IOException {
+        ENV.reset();
+        try (var POOLED = Allocator.ofPooled()) {
+            int ERR;
+            try {
+                ERR = (int) sendmmsgIPv6MH.invokeExact(ENV.MEMORY, fd, PanamaUtils.format(directBuffer), slotLen, vlen, PNIBuf.memoryOf(POOLED, meta));
+            } catch (Throwable THROWABLE) {
+                throw PanamaUtils.convertInvokeExactException(THROWABLE);
+            }
+            if (ERR != 0) {
+                ENV.throwIf(java.io.IOException.class);
+                ENV.throwLast();
+            }
+            return ENV.returnInt();
+        }
+    }
+
     private static final MethodHandle currentTimeMillisMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_currentTimeMillis");
 
     public long currentTimeMillis(PNIEnv ENV) {
@@ -896,6 +1123,42 @@ public class PosixNative {
             ENV.throwLast();
         }
     }
+
+    private static final MethodHandle openSplicePipeMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_openSplicePipe", PNIBuf.class /* fds */, int.class /* size */);
+
+    public int openSplicePipe(PNIEnv ENV, IntArray fds, int size) throws java.io.IOException {
+        ENV.reset();
+        try (var POOLED = Allocator.ofPooled()) {
+            int ERR;
+            try {
+                ERR = (int) openSplicePipeMH.invokeExact(ENV.MEMORY, PNIBuf.memoryOf(POOLED, fds), size);
+            } catch (Throwable THROWABLE) {
+                throw PanamaUtils.convertInvokeExactException(THROWABLE);
+            }
+            if (ERR != 0) {
+                ENV.throwIf(java.io.IOException.class);
+                ENV.throwLast();
+            }
+            return ENV.returnInt();
+        }
+    }
+
+    private static final MethodHandle spliceMH = PanamaUtils.lookupPNIFunction(new PNILinkOptions().setCritical(true), "Java_io_vproxy_vfd_posix_PosixNative_splice", int.class /* fdIn */, int.class /* fdOut */, int.class /* len */);
+
+    public int splice(PNIEnv ENV, int fdIn, int fdOut, int len) throws java.io.IOException {
+        ENV.reset();
+        int ERR;
+        try {
+            ERR = (int) spliceMH.invokeExact(ENV.MEMORY, fdIn, fdOut, len);
+        } catch (Throwable THROWABLE) {
+            throw PanamaUtils.convertInvokeExactException(THROWABLE);
+        }
+        if (ERR != 0) {
+            ENV.throwIf(java.io.IOException.class);
+            ENV.throwLast();
+        }
+        return ENV.returnInt();
+    }
 }
 // metadata.generator-version: pni 21.0.0.20
-// sha256:1354207c51a455b700abc53bbb2aaeec9608ccee9941bc38fe11d66626b6e1c3
+// sha256:d6a287a350c0760f07cd380a4b29a102769fd35e5bc61678b8a6a2d0c42dc505
@@ -111,6 +111,35 @@ public class Config {
     public static final boolean dhcpGetDnsListEnabled;
     public static final Predicate<String> dhcpGetDnsListNics;
 
+    // -Dtiming_wheel=true
+    // use timing wheel instead of the priority queue for timers of all event loops
+    public static final boolean useTimingWheel;
+
+    // -Dopenssl=true
+    // use the native openssl engine for tls servers when the vpssl library is available
+    public static final boolean useOpenSSL;
+
+    // -Dktls=true
+    // install tls keys into the kernel after handshake, only works with -Dopenssl=true on linux
+    public static final boolean useKTLS;
+
+    // -Dssl_session_cache_size=20480
+    // max number of sessions cached by each tls server context for session id resumption, 0 to disable
+    public static final int sslSessionCacheSize;
+
+    // -Dssl_session_timeout=7200
+    // lifetime of cached sessions and session tickets in seconds
+    public static final int sslSessionTimeout;
+
+    // -Dssl_ticket_key_file=/path/to/file
+    // load and save session ticket keys of the openssl engine,
+    // instances sharing the same file are able to resume sessions issued by each other
+    public static final String sslTicketKeyFile;
+
+    // -Dssl_ticket_key_rotate_interval=3600
+    // generate a new session ticket key every N seconds
+    public static final int sslTicketKeyRotateInterval;
+
     static {
         appClass = Utils.getSystemProperty("deploy");
         String probeConf = Utils.getSystemProperty("probe", "");
@@ -130,6 +159,13 @@ public class Config {
             probe = res;
         }
         domainWhichShouldResolve = Utils.getSystemProperty("domain_which_should_resolve", "127.0.0.1.special.vproxy.io");
+        useTimingWheel = "true".equals(Utils.getSystemProperty("timing_wheel", "false"));
+        useOpenSSL = "true".equals(Utils.getSystemProperty("openssl", "false"));
+        useKTLS = "true".equals(Utils.getSystemProperty("ktls", "false"));
+        sslSessionCacheSize = Integer.parseInt(Utils.getSystemProperty("ssl_session_cache_size", "20480"));
+        sslSessionTimeout = Integer.parseInt(Utils.getSystemProperty("ssl_session_timeout", "7200"));
+        sslTicketKeyFile = Utils.getSystemProperty("ssl_ticket_key_file");
+        sslTicketKeyRotateInterval = Integer.parseInt(Utils.getSystemProperty("ssl_ticket_key_rotate_interval", "3600"));
 
         String dhcpGetDnsListNicsString = Utils.getSystemProperty("dhcp_get_dns_list_nics", "");
         if (dhcpGetDnsListNicsString.isBlank()) {
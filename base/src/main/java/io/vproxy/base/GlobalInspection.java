@@ -33,6 +33,11 @@ import java.util.function.Consumer;
 public class GlobalInspection {
     private static final GlobalInspection inst = new GlobalInspection();
 
+    // types for sslHandshake
+    public static final int SSL_HANDSHAKE_FULL = 0;
+    public static final int SSL_HANDSHAKE_TICKET = 1;
+    public static final int SSL_HANDSHAKE_SESSION_ID = 2;
+
     public static GlobalInspection getInstance() {
         return inst;
     }
@@ -46,6 +51,12 @@ public class GlobalInspection {
     private final Counter directBufferFinalizeCount;
     private final Counter sslUnwrapTaskCount;
     private final Counter sslUnwrapTaskTimeMillisTotal;
+    private final Counter[] sslHandshakeCount;
+    private final Counter sslTicketHitCount;
+    private final Counter sslTicketMissCount;
+    private final Counter sslSessionCacheHitCount;
+    private final Counter sslSessionCacheMissCount;
+    private final Counter sslTicketKeyRotateCount;
     private final Gauge threadNumberCurrent;
 
     private final ConcurrentHashSet<SelectorEventLoop> runningLoops = new ConcurrentHashSet<>();
@@ -87,6 +98,43 @@ public class GlobalInspection {
             .appendAll(extraLabels));
         metrics.add(sslUnwrapTaskTimeMillisTotal);
 
+        sslHandshakeCount = new Counter[3];
+        String[] handshakeTypes = {"full", "ticket", "session_id"};
+        for (int i = 0; i < handshakeTypes.length; ++i) {
+            sslHandshakeCount[i] = new Counter("ssl_handshake_count", new AppendableMap<>()
+                .append("type", handshakeTypes[i])
+                .appendAll(extraLabels));
+            metrics.add(sslHandshakeCount[i]);
+        }
+
+        sslTicketHitCount = new Counter("ssl_session_resumption_count", new AppendableMap<>()
+            .append("method", "ticket")
+            .append("result", "hit")
+            .appendAll(extraLabels));
+        metrics.add(sslTicketHitCount);
+
+        sslTicketMissCount = new Counter("ssl_session_resumption_count", new AppendableMap<>()
+            .append("method", "ticket")
+            .append("result", "miss")
+            .appendAll(extraLabels));
+        metrics.add(sslTicketMissCount);
+
+        sslSessionCacheHitCount = new Counter("ssl_session_resumption_count", new AppendableMap<>()
+            .append("method", "session_id")
+            .append("result", "hit")
+            .appendAll(extraLabels));
+        metrics.add(sslSessionCacheHitCount);
+
+        sslSessionCacheMissCount = new Counter("ssl_session_resumption_count", new AppendableMap<>()
+            .append("method", "session_id")
+            .append("result", "miss")
+            .appendAll(extraLabels));
+        metrics.add(sslSessionCacheMissCount);
+
+        sslTicketKeyRotateCount = new Counter("ssl_ticket_key_rotate_count", new AppendableMap<>()
+            .appendAll(extraLabels));
+        metrics.add(sslTicketKeyRotateCount);
+
         threadNumberCurrent = new Gauge("thread_number_current", new AppendableMap<>()
             .appendAll(extraLabels));
         metrics.add(threadNumberCurrent);
@@ -98,6 +146,9 @@ public class GlobalInspection {
         metrics.registerHelpMessage("direct_memory_finalize_count", "Total count of how many times the direct memory is finalized");
         metrics.registerHelpMessage("ssl_unwrap_task_count", "Total count of how many times ssl unwrap requires executing a task");
         metrics.registerHelpMessage("ssl_unwrap_task_time_millis_total", "Total time cost for tasks required by ssl unwrapping");
+        metrics.registerHelpMessage("ssl_handshake_count", "Total count of completed server side handshakes of the openssl engine, by full or resumed types");
+        metrics.registerHelpMessage("ssl_session_resumption_count", "Total count of session resumption attempts from clients, by method and result");
+        metrics.registerHelpMessage("ssl_ticket_key_rotate_count", "Total count of how many times a new session ticket key is generated");
         metrics.registerHelpMessage("thread_number_current", "The number of current running threads");
     }
 
@@ -161,6 +212,25 @@ public class GlobalInspection {
         sslUnwrapTaskTimeMillisTotal.incr(costMillis);
     }
 
+    /**
+     * @param type one of SSL_HANDSHAKE_FULL, SSL_HANDSHAKE_TICKET, SSL_HANDSHAKE_SESSION_ID
+     */
+    public void sslHandshake(int type) {
+        sslHandshakeCount[type].incr(1);
+    }
+
+    public void sslSessionLookup(boolean ticket, boolean hit) {
+        if (ticket) {
+            (hit ? sslTicketHitCount : sslTicketMissCount).incr(1);
+        } else {
+            (hit ? sslSessionCacheHitCount : sslSessionCacheMissCount).incr(1);
+        }
+    }
+
+    public void sslTicketKeyRotate() {
+        sslTicketKeyRotateCount.incr(1);
+    }
+
     public Runnable wrapThread(Runnable r) {
         return () -> {
             GraalUtils.setThread();
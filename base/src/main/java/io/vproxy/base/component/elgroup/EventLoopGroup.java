@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -40,6 +41,9 @@ public class EventLoopGroup implements IEventLoopGroup {
     // it's the same if you use array
     private boolean closed = false; // if true, then all operations are disabled or return default value
     private final AtomicInteger cursor = new AtomicInteger(0); // current cursor of the eventLoops
+    // start position of least-load scans, never reset, so it must not be shared with the round-robin cursor
+    private final AtomicInteger leastStart = new AtomicInteger(0);
+    private final SelectMethod selectMethod;
     private final ConcurrentHashSet<EventLoopGroupAttach> attaches = new ConcurrentHashSet<>();
 
     private final Registration msquicRegistration;
@@ -51,6 +55,7 @@ public class EventLoopGroup implements IEventLoopGroup {
     public EventLoopGroup(String alias, Annotations annotations) {
         this.alias = alias;
         this.annotations = annotations;
+        this.selectMethod = selectMethod(annotations);
 
         Registration msquicRegistration = null;
         if (annotations.EventLoopGroup_UseMsQuic) {
@@ -70,9 +75,27 @@ public class EventLoopGroup implements IEventLoopGroup {
 
         this.alias = alias;
         this.annotations = annotations;
+        this.selectMethod = selectMethod(annotations);
         msquicRegistration = initQuic();
     }
 
+    private SelectMethod selectMethod(Annotations annotations) {
+        String method = annotations.EventLoopGroup_SelectMethod;
+        if (method == null) {
+            return SelectMethod.rr;
+        }
+        try {
+            return SelectMethod.valueOf(method);
+        } catch (IllegalArgumentException e) {
+            Logger.warn(LogType.INVALID_EXTERNAL_DATA, "unknown select method " + method + " for event-loop-group " + alias + ", use rr instead");
+            return SelectMethod.rr;
+        }
+    }
+
+    public SelectMethod getSelectMethod() {
+        return selectMethod;
+    }
+
     private Registration initQuic() throws XException {
         if (!MsQuicInitializer.isSupported()) {
             throw new XException("msquic is not supported");
@@ -168,6 +191,12 @@ public class EventLoopGroup implements IEventLoopGroup {
         if (this.annotations.EventLoopGroup_PreferPoll) {
             opts.preferPoll = true;
         }
+        if (this.annotations.EventLoopGroup_UseIOUring) {
+            opts.ioUring = true;
+        }
+        if (this.annotations.EventLoopGroup_UseTimingWheel) {
+            opts.timingWheel = true;
+        }
         if (annotations.EventLoop_CoreAffinity != -1) {
             opts.coreAffinity = annotations.EventLoop_CoreAffinity;
         }
@@ -309,9 +338,67 @@ public class EventLoopGroup implements IEventLoopGroup {
             return (EventLoopWrapper) hint;
         }
         assert Logger.lowLevelDebug("caller loop is not contained in the event loop group, choose one");
+        if (selectMethod == SelectMethod.lc) {
+            return leastNext(ls, false);
+        } else if (selectMethod == SelectMethod.lag) {
+            return leastNext(ls, true);
+        } else if (selectMethod == SelectMethod.p2c) {
+            return p2cNext(ls);
+        }
         return next(ls, 0);
     }
 
+    // compare active connections first, then loop lag
+    // when comparing loop lag only, connections are ignored
+    private static int compareLoad(EventLoopWrapper a, EventLoopWrapper b, boolean lagOnly) {
+        if (!lagOnly) {
+            int n = Integer.compare(a.connectionCount(), b.connectionCount());
+            if (n != 0) {
+                return n;
+            }
+        }
+        return Long.compare(a.getSelectorEventLoop().getLoopLagNanos(), b.getSelectorEventLoop().getLoopLagNanos());
+    }
+
+    private EventLoopWrapper leastNext(ArrayList<EventLoopWrapper> ls, boolean lagOnly) {
+        int n = ls.size();
+        if (n == 0)
+            return null;
+        // start from a rotating position, so loops with the same load are chosen in turn
+        int start = (leastStart.getAndIncrement() & 0x7fffffff) % n;
+        EventLoopWrapper result = null;
+        for (int i = 0; i < n; ++i) {
+            EventLoopWrapper w = ls.get((start + i) % n);
+            if (w.getSelectorEventLoop().isClosed()) {
+                continue;
+            }
+            if (result == null || compareLoad(w, result, lagOnly) < 0) {
+                result = w;
+            }
+        }
+        return result;
+    }
+
+    private EventLoopWrapper p2cNext(ArrayList<EventLoopWrapper> ls) {
+        int n = ls.size();
+        if (n < 2) {
+            return next(ls, 0);
+        }
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        int i = rand.nextInt(n);
+        int j = rand.nextInt(n - 1);
+        if (j >= i) {
+            ++j;
+        }
+        EventLoopWrapper a = ls.get(i);
+        EventLoopWrapper b = ls.get(j);
+        if (a.getSelectorEventLoop().isClosed() || b.getSelectorEventLoop().isClosed()) {
+            // maybe the list is operated in another thread
+            return leastNext(ls, false);
+        }
+        return compareLoad(b, a, false) < 0 ? b : a;
+    }
+
     private EventLoopWrapper next(ArrayList<EventLoopWrapper> ls, int recursion) {
         if (recursion > ls.size())
             return null;
@@ -0,0 +1,8 @@
+package io.vproxy.base.component.elgroup;
+
+public enum SelectMethod {
+    rr, // round robin
+    lc, // least active connections
+    lag, // least recent loop lag, i.e. time spent on handling events in each poll
+    p2c, // power of two choices, compare active connections then loop lag
+}
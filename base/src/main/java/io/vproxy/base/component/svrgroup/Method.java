@@ -4,4 +4,7 @@ public enum Method {
     wrr,
     wlc,
     source, // consistent hashing with source ip address
+    maglev, // maglev hashing with source ip address, with bounded loads
+    p2c, // power of two choices, compare connections / weight
+    peakewma, // power of two choices, compare peak ewma of connect latency * connections / weight
 }
@@ -20,6 +20,7 @@ import io.vproxy.vfd.*;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
@@ -33,6 +34,8 @@ public class ServerGroup {
             public void up(SockAddr remote) {
                 healthy = true;
                 hcDownReason = null;
+                maglevRefresh();
+                version.incrementAndGet();
                 Logger.info(LogType.HEALTH_CHECK_CHANGE,
                     "server " + ServerHandle.this.alias + "(" + server + ") status changed to UP");
 
@@ -53,6 +56,8 @@ public class ServerGroup {
             @Override
             public void down(SockAddr remote, String reason) {
                 healthy = false;
+                maglevRefresh();
+                version.incrementAndGet();
                 Logger.warn(LogType.HEALTH_CHECK_CHANGE,
                     "server " + ServerHandle.this.alias + "(" + server + ") status changed to DOWN, reason: " + reason);
 
@@ -66,6 +71,7 @@ public class ServerGroup {
             @Override
             public void upOnce(SockAddr remote, ConnectResult result) {
                 assert Logger.lowLevelDebug("up once for " + ServerHandle.this.alias + "(" + server + "), cost = " + result.cost);
+                recordConnectCost(result.cost * 1_000_000);
                 hcCost.addLast(result.cost);
                 if (hcCost.size() > 10) {
                     hcCost.removeFirst();
@@ -75,6 +81,8 @@ public class ServerGroup {
             @Override
             public void downOnce(SockAddr remote, String reason) {
                 assert Logger.lowLevelDebug("down once for " + ServerHandle.this.alias + "(" + server + "), reason: " + reason);
+                // consider the failed check costs the whole timeout
+                recordConnectCost(healthCheckConfig.timeout * 1_000_000L);
                 hcCost.clear();
                 hcDownReason = reason;
 
@@ -128,6 +136,11 @@ public class ServerGroup {
 
         private final ConcurrentHashSet<Connection> connMap = new ConcurrentHashSet<>();
 
+        // peak ewma of connect cost, in nanoseconds
+        // the fields are not updated atomically, it's ok if some samples are lost
+        private volatile long costEwma = 0;
+        private volatile long costEwmaTs = 0;
+
         public Object data; // the data field, not used by this lib
 
         ServerHandle(String alias, /**/long sid/**/,
@@ -165,11 +178,15 @@ public class ServerGroup {
 
         @Override
         public void onConnClose(Connection conn) {
-            connMap.remove(conn);
+            if (connMap.remove(conn)) {
+                totalConnections.decrementAndGet();
+            }
         }
 
         void attachConnection(Connection conn) {
-            connMap.add(conn);
+            if (connMap.add(conn)) {
+                totalConnections.incrementAndGet();
+            }
         }
 
         public int connectionCount() {
@@ -204,6 +221,31 @@ public class ServerGroup {
             return hcDownReason;
         }
 
+        /**
+         * record one sample of the connect cost
+         *
+         * @param cost nanoseconds
+         */
+        void recordConnectCost(long cost) {
+            long now = System.nanoTime();
+            long old = costEwma;
+            if (old == 0 || cost > old) {
+                // peak: use the sample directly if it's higher
+                costEwma = cost;
+            } else {
+                double w = Math.exp(-(double) (now - costEwmaTs) / EWMA_DECAY_NANOS);
+                costEwma = (long) (old * w + cost * (1 - w));
+            }
+            costEwmaTs = now;
+        }
+
+        /**
+         * @return peak ewma of the connect cost in nanoseconds, or 0 if not recorded yet
+         */
+        public long getConnectCostEwma() {
+            return costEwma;
+        }
+
         void start() {
             if (el != null)
                 return;
@@ -349,7 +391,10 @@ public class ServerGroup {
     private final Attach attach;
     private ArrayList<ServerHandle> servers = new ArrayList<>(0);
     private final CopyOnWriteArraySet<ServerListener> serverListeners = new CopyOnWriteArraySet<>();
+    private final CopyOnWriteArraySet<Runnable> annotationsListeners = new CopyOnWriteArraySet<>();
     private Annotations annotations = new Annotations();
+    private final AtomicInteger totalConnections = new AtomicInteger(0); // sum of connections of all servers
+    private final AtomicInteger version = new AtomicInteger(0); // increased when servers, weights or health states change
 
     // START fields for WRR
     static class WRR {
@@ -410,6 +455,103 @@ public class ServerGroup {
     private SOURCE _sourceIPv6;
     // END fields for SOURCE
 
+    // START fields for P2C and PEAK_EWMA
+    static class P2C {
+        final ServerHandle[] servers;
+
+        P2C(List<ServerHandle> servers) {
+            this.servers = servers.toArray(new ServerHandle[0]);
+        }
+    }
+
+    private static final double EWMA_DECAY_NANOS = 10_000_000_000d; // 10s
+    private static final long EWMA_DEFAULT_COST = 1_000_000; // 1ms, used when no sample recorded
+
+    private P2C _p2c;
+    private P2C _p2cIPv4;
+    private P2C _p2cIPv6;
+    // END fields for P2C and PEAK_EWMA
+
+    // START fields for MAGLEV
+    static class MAGLEV {
+        static final MAGLEV EMPTY = new MAGLEV(new ServerHandle[0], new int[0]);
+
+        final ServerHandle[] servers;
+        final int[] entry; // slot => index of servers, only depends on the servers and their weights
+        // slot => healthy server, null if no healthy server
+        // rebuilt when health state changes
+        volatile ServerHandle[] lookup;
+        volatile int healthyWeight;
+
+        MAGLEV(ServerHandle[] servers, int[] entry) {
+            this.servers = servers;
+            this.entry = entry;
+            refresh();
+        }
+
+        int slot(byte[] bytes) {
+            return (int) Long.remainderUnsigned(hash(bytes, 0, SLOT_SEED), entry.length);
+        }
+
+        // let unhealthy slots point to the server of the next healthy slot
+        // the servers in the table are already evenly distributed,
+        // so flows of a dead server are spread to all other servers
+        void refresh() {
+            int m = entry.length;
+            boolean[] healthy = new boolean[servers.length];
+            int weight = 0;
+            for (int i = 0; i < servers.length; ++i) {
+                healthy[i] = servers[i].healthy;
+                if (healthy[i]) {
+                    weight += servers[i].weight;
+                }
+            }
+            ServerHandle[] lookup = new ServerHandle[m];
+            ServerHandle next = null;
+            for (int k = 2 * m - 1; k >= 0; --k) {
+                int i = k % m;
+                int idx = entry[i];
+                if (healthy[idx]) {
+                    next = servers[idx];
+                    lookup[i] = next;
+                } else if (k < m) {
+                    lookup[i] = next;
+                }
+            }
+            this.lookup = lookup;
+            this.healthyWeight = weight;
+        }
+
+        static final long SLOT_SEED = 0x5bd1e9955bd1e995L;
+        static final long OFFSET_SEED = 0x9e3779b97f4a7c15L;
+        static final long SKIP_SEED = 0xc2b2ae3d27d4eb4fL;
+
+        // fnv-1a with murmur3 finalizer
+        static long hash(byte[] bytes, int port, long seed) {
+            long hash = 0xcbf29ce484222325L ^ seed;
+            for (byte aByte : bytes) {
+                hash ^= (aByte & 0xff);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= port;
+            hash *= 0x100000001b3L;
+            hash ^= (hash >>> 33);
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= (hash >>> 33);
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= (hash >>> 33);
+            return hash;
+        }
+    }
+
+    private static final int MAGLEV_TABLE_SIZE = 65537; // prime
+    private static final int MAGLEV_LARGE_TABLE_SIZE = 655373; // prime, used when having more than 650 servers
+
+    private MAGLEV _maglev = MAGLEV.EMPTY;
+    private MAGLEV _maglevIPv4 = MAGLEV.EMPTY;
+    private MAGLEV _maglevIPv6 = MAGLEV.EMPTY;
+    // END fields for MAGLEV
+
     public ServerGroup(String alias,
                        EventLoopGroup eventLoopGroup,
                        HealthCheckConfig healthCheckConfig,
@@ -434,6 +576,10 @@ public class ServerGroup {
             return wlcNext();
         } else if (method == Method.source) {
             return sourceHashGet(source.getAddress());
+        } else if (method == Method.maglev) {
+            return maglevGet(_maglev, source.getAddress());
+        } else if (method == Method.p2c || method == Method.peakewma) {
+            return p2cNext(_p2c);
         } else {
             Logger.shouldNotHappen("unsupported method " + method);
             // use wrr instead
@@ -448,6 +594,10 @@ public class ServerGroup {
             return wlcNextIPv4();
         } else if (method == Method.source) {
             return sourceHashGetIPv4(source.getAddress());
+        } else if (method == Method.maglev) {
+            return maglevGet(_maglevIPv4, source.getAddress());
+        } else if (method == Method.p2c || method == Method.peakewma) {
+            return p2cNext(_p2cIPv4);
         } else {
             Logger.shouldNotHappen("unsupported method " + method);
             // use wrr instead
@@ -462,6 +612,10 @@ public class ServerGroup {
             return wlcNextIPv6();
         } else if (method == Method.source) {
             return sourceHashGetIPv6(source.getAddress());
+        } else if (method == Method.maglev) {
+            return maglevGet(_maglevIPv6, source.getAddress());
+        } else if (method == Method.p2c || method == Method.peakewma) {
+            return p2cNext(_p2cIPv6);
         } else {
             Logger.shouldNotHappen("unsupported method " + method);
             // use wrr instead
@@ -497,6 +651,122 @@ public class ServerGroup {
         return sourceHashGet(source, idx + 1, recurse + 1);
     }
 
+    /*
+     * Maglev hashing with bounded loads:
+     * see "Maglev: A Fast and Reliable Software Network Load Balancer"
+     * and "Consistent Hashing with Bounded Loads"
+     *
+     * The lookup table is filled by the preference lists (permutations) of the servers,
+     * servers with higher weight fill the table more frequently.
+     * Adding or removing one server only remaps about 1/N of the slots.
+     *
+     * When a server is DOWN, its slots are pointed to the server of the next healthy slot,
+     * which is built when health state changes, so the lookup is always O(1).
+     *
+     * When the load factor c is not 0, a server can take at most
+     *   c * (CSUM + 1) * W(Si) / WSUM
+     * connections, where WSUM is the sum of weights of the healthy servers.
+     * If the selected server is overloaded, the next slot will be tried.
+     */
+
+    private SvrHandleConnector maglevGet(MAGLEV maglev, IP source) {
+        ServerHandle[] lookup = maglev.lookup;
+        int m = lookup.length;
+        if (m == 0)
+            return null;
+        int idx = maglev.slot(source.getAddress());
+        ServerHandle h = lookup[idx];
+        if (h == null || !h.healthy) {
+            // the health state changed but the table is not refreshed yet
+            // search in the original table
+            h = null;
+            for (int i = 0; i < m; ++i) {
+                ServerHandle s = maglev.servers[maglev.entry[(idx + i) % m]];
+                if (s.healthy) {
+                    idx = (idx + i) % m;
+                    h = s;
+                    break;
+                }
+            }
+            if (h == null)
+                return null;
+        }
+
+        double factor = annotations.ServerGroup_MaglevLoadFactor;
+        int healthyWeight = maglev.healthyWeight;
+        if (factor == 0 || healthyWeight == 0)
+            return h.makeConnector();
+        double limit = factor * (totalConnections.get() + 1) / healthyWeight;
+        for (int i = 0; i < m; ++i) {
+            ServerHandle s = maglev.servers[maglev.entry[(idx + i) % m]];
+            if (!s.healthy)
+                continue;
+            if (s.connectionCount() + 1 <= Math.ceil(limit * s.weight))
+                return s.makeConnector();
+        }
+        // should not happen because c >= 1
+        // use the selected one
+        return h.makeConnector();
+    }
+
+    /*
+     * Power of two choices:
+     * randomly pick two healthy servers, and use the one with lower cost.
+     *
+     * p2c:      cost = (C(Si) + 1) / W(Si)
+     * peakewma: cost = E(Si) * (C(Si) + 1) / W(Si)
+     *
+     * where E(Si) is the peak ewma of the connect cost of server Si,
+     * recorded from health checks and connections made to the server.
+     * The peak ewma jumps to the sample immediately when the sample is higher,
+     * and decays over time when samples are lower,
+     * so slow servers are avoided quickly.
+     */
+
+    private SvrHandleConnector p2cNext(P2C p2c) {
+        ServerHandle[] servers = p2c.servers;
+        int n = servers.length;
+        if (n == 0)
+            return null;
+        if (n == 1)
+            return servers[0].healthy ? servers[0].makeConnector() : null;
+
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        for (int retry = 0; retry < 3; ++retry) {
+            int i = rand.nextInt(n);
+            int j = rand.nextInt(n - 1);
+            if (j >= i) {
+                ++j;
+            }
+            ServerHandle a = servers[i];
+            ServerHandle b = servers[j];
+            if (a.healthy && b.healthy) {
+                return (p2cCost(a) <= p2cCost(b) ? a : b).makeConnector();
+            } else if (a.healthy) {
+                return a.makeConnector();
+            } else if (b.healthy) {
+                return b.makeConnector();
+            }
+        }
+        // most servers are DOWN, find any healthy one
+        int start = rand.nextInt(n);
+        for (int i = 0; i < n; ++i) {
+            ServerHandle h = servers[(start + i) % n];
+            if (h.healthy)
+                return h.makeConnector();
+        }
+        return null;
+    }
+
+    private double p2cCost(ServerHandle h) {
+        double cost = (h.connectionCount() + 1) / (double) h.weight;
+        if (method == Method.peakewma) {
+            long ewma = h.costEwma;
+            cost *= (ewma == 0 ? EWMA_DEFAULT_COST : ewma);
+        }
+        return cost;
+    }
+
     /*
      * WLC algorithm:
      * copied from http://kb.linuxvirtualserver.org/wiki/Weighted_Least-Connection_Scheduling
@@ -617,6 +887,9 @@ public class ServerGroup {
         wrrReset();
         wlcReset();
         sourceReset();
+        p2cReset();
+        maglevReset(method);
+        version.incrementAndGet();
     }
 
     private int gcd(int a, int b) {
@@ -631,23 +904,25 @@ public class ServerGroup {
         _sourceIPv6 = sourceReset(servers.stream().filter(s -> s.server.getAddress() instanceof IPv6).collect(Collectors.toList()));
     }
 
+    private static int compareAddress(ServerHandle a, ServerHandle b) {
+        byte[] ba = a.server.getAddress().getAddress();
+        byte[] bb = b.server.getAddress().getAddress();
+        if (ba.length > bb.length)
+            return 1;
+        if (bb.length > ba.length)
+            return -1;
+        for (int i = 0; i < ba.length; ++i) {
+            int diff = ba[i] - bb[i];
+            if (diff != 0)
+                return diff;
+        }
+        return a.server.getPort() - b.server.getPort();
+    }
+
     private SOURCE sourceReset(List<ServerHandle> servers) {
         //noinspection FuseStreamOperations
         ArrayList<ServerHandle> svrs = new ArrayList<>(servers.stream().filter(s -> s.weight > 0).collect(Collectors.toList()));
-        svrs.sort((a, b) -> {
-            byte[] ba = a.server.getAddress().getAddress();
-            byte[] bb = b.server.getAddress().getAddress();
-            if (ba.length > bb.length)
-                return 1;
-            if (bb.length > ba.length)
-                return -1;
-            for (int i = 0; i < ba.length; ++i) {
-                int diff = ba[i] - bb[i];
-                if (diff != 0)
-                    return diff;
-            }
-            return a.server.getPort() - b.server.getPort();
-        });
+        svrs.sort(ServerGroup::compareAddress);
         if (svrs.size() == 0) {
             return new SOURCE(new int[0], svrs);
         }
@@ -671,6 +946,84 @@ public class ServerGroup {
         return new SOURCE(seq, svrs);
     }
 
+    private void maglevReset(Method method) {
+        if (method != Method.maglev) {
+            // the tables are large, only build them when necessary
+            _maglev = MAGLEV.EMPTY;
+            _maglevIPv4 = MAGLEV.EMPTY;
+            _maglevIPv6 = MAGLEV.EMPTY;
+            return;
+        }
+        _maglev = maglevReset(servers);
+        _maglevIPv4 = maglevReset(servers.stream().filter(s -> s.server.getAddress() instanceof IPv4).collect(Collectors.toList()));
+        _maglevIPv6 = maglevReset(servers.stream().filter(s -> s.server.getAddress() instanceof IPv6).collect(Collectors.toList()));
+    }
+
+    private MAGLEV maglevReset(List<ServerHandle> servers) {
+        ServerHandle[] svrs = servers.stream().filter(s -> s.weight > 0).sorted(ServerGroup::compareAddress).toArray(ServerHandle[]::new);
+        int n = svrs.length;
+        if (n == 0) {
+            return MAGLEV.EMPTY;
+        }
+        int m = n > 650 ? MAGLEV_LARGE_TABLE_SIZE : MAGLEV_TABLE_SIZE;
+
+        int[] pos = new int[n]; // current position in the permutation of each server
+        int[] skip = new int[n];
+        int maxWeight = 0;
+        for (int i = 0; i < n; ++i) {
+            ServerHandle s = svrs[i];
+            byte[] bytes = s.server.getAddress().getAddress();
+            int port = s.server.getPort();
+            pos[i] = (int) Long.remainderUnsigned(MAGLEV.hash(bytes, port, MAGLEV.OFFSET_SEED), m);
+            skip[i] = (int) Long.remainderUnsigned(MAGLEV.hash(bytes, port, MAGLEV.SKIP_SEED), m - 1) + 1;
+            maxWeight = Math.max(maxWeight, s.weight);
+        }
+
+        int[] entry = new int[m];
+        Arrays.fill(entry, -1);
+        int[] credit = new int[n];
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < n; ++i) {
+                // a server takes one turn for each maxWeight credits
+                credit[i] += svrs[i].weight;
+                if (credit[i] < maxWeight)
+                    continue;
+                credit[i] -= maxWeight;
+
+                int c = pos[i];
+                while (entry[c] >= 0) {
+                    c = (c + skip[i]) % m;
+                }
+                entry[c] = i;
+                pos[i] = (c + skip[i]) % m;
+                if (++filled == m) {
+                    return new MAGLEV(svrs, entry);
+                }
+            }
+        }
+    }
+
+    private void maglevRefresh() {
+        if (method != Method.maglev)
+            return;
+        _maglev.refresh();
+        _maglevIPv4.refresh();
+        _maglevIPv6.refresh();
+    }
+
+    private void p2cReset() {
+        this._p2c = new P2C(this.servers.stream().filter(s -> s.weight > 0).collect(Collectors.toList()));
+        this._p2cIPv4 = new P2C(this.servers.stream()
+            .filter(s -> s.weight > 0)
+            .filter(s -> s.server.getAddress() instanceof IPv4)
+            .collect(Collectors.toList()));
+        this._p2cIPv6 = new P2C(this.servers.stream()
+            .filter(s -> s.weight > 0)
+            .filter(s -> s.server.getAddress() instanceof IPv6)
+            .collect(Collectors.toList()));
+    }
+
     private void wlcReset() {
         this._wlc = new WLC(this.servers.stream().filter(s -> s.weight > 0).collect(Collectors.toList()));
         this._wlcIPv4 = new WLC(this.servers.stream()
@@ -779,6 +1132,14 @@ public class ServerGroup {
 
     public void setMethod(Method method) {
         boolean needReload = this.method != method;
+        if (needReload && method == Method.maglev) {
+            // other tables are always up to date,
+            // build maglev tables before switching
+            // to make sure `next()` never sees the empty tables
+            maglevReset(method);
+            this.method = method;
+            return;
+        }
         this.method = method;
         if (needReload) {
             resetMethodRelatedFields();
@@ -814,6 +1175,10 @@ public class ServerGroup {
 
         // set hc client annotations
         annotatedHcConfig.set(annotations);
+
+        for (Runnable lsn : annotationsListeners) {
+            lsn.run();
+        }
     }
 
     public synchronized ServerHandle add(String alias, IPPort server, int weight) throws AlreadyExistException {
@@ -985,7 +1350,23 @@ public class ServerGroup {
         this.serverListeners.remove(serverListener);
     }
 
+    public void addAnnotationsListener(Runnable annotationsListener) {
+        this.annotationsListeners.add(annotationsListener);
+    }
+
+    public void removeAnnotationsListener(Runnable annotationsListener) {
+        this.annotationsListeners.remove(annotationsListener);
+    }
+
     public List<ServerHandle> getServerHandles() {
         return new ArrayList<>(servers);
     }
+
+    /**
+     * @return a number which changes when servers are added or removed, or when their weights or health states change.
+     * Results derived from the server list are still valid if the version is not changed.
+     */
+    public int getVersion() {
+        return version.get();
+    }
 }
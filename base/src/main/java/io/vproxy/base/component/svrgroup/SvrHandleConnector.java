@@ -36,6 +36,11 @@ public class SvrHandleConnector extends Connector {
         serverHandle.healthCheckClient.manuallyDownOnce();
     }
 
+    @Override
+    public void connectionSucceeded(long cost) {
+        serverHandle.recordConnectCost(cost);
+    }
+
     public String getHostName() {
         String hostname = serverHandle.hostName;
         if (hostname == null) {
@@ -16,6 +16,7 @@ import java.net.StandardSocketOptions;
 
 public class ConnectableConnection extends Connection {
     Connector connector; // maybe null, only for recording purpose, will not be used by the connection lib
+    final long connectBeginNanos = System.nanoTime(); // used to calculate the connect cost
 
     public Connector getConnector() {
         return connector;
@@ -36,6 +36,11 @@ public class Connector {
         // do nothing in default implementation
     }
 
+    // alert that the connection is established, cost is in nanoseconds
+    public void connectionSucceeded(@SuppressWarnings("unused") long cost) {
+        // do nothing in default implementation
+    }
+
     // provide a event loop
     public NetEventLoop loop() {
         return null; // default: do not provide
@@ -361,6 +361,11 @@ class HandlerForConnection implements Handler<SocketFD> {
         }
         if (read == 0) { // libae will reach here when every connection connects
             assert Logger.lowLevelDebug("read nothing, the event should not be fired");
+            if (cctx.connection.getInBuffer().free() == 0) {
+                // some buffers (e.g. splice pipes) can only know they are full after trying to store
+                assert Logger.lowLevelDebug("the inBuffer is full now, remove READ event " + cctx.connection);
+                ctx.rmOps(EventSet.read());
+            }
             return;
         }
 
@@ -480,6 +485,10 @@ class HandlerForConnectableConnection extends HandlerForConnection {
         if (!connected) {
             Logger.shouldNotHappen("the connection is not connected, should not fire the event");
         }
+        Connector connector = cctx.connection.connector;
+        if (connector != null) {
+            connector.connectionSucceeded(System.nanoTime() - cctx.connection.connectBeginNanos);
+        }
 
         // user might want to write some data in the callback
         // so call the callback before setting events
@@ -236,6 +236,10 @@ public abstract class HttpParserHelper {
         }
     }
 
+    private static final char[] HEADER_CONTENT_LENGTH = "content-length".toCharArray();
+    private static final char[] HEADER_TRANSFER_ENCODING = "transfer-encoding".toCharArray();
+    private static final char[] HEADER_HOST = "host".toCharArray();
+
     private int state8(byte b) throws Exception {
         if (headers == null) {
             headers = new LinkedList<>();
@@ -243,18 +247,17 @@ public abstract class HttpParserHelper {
         }
         if (header != null) {
             assert Logger.lowLevelDebug("received header " + header);
-            var hdr = header.key.toString();
-            if (hdr.equalsIgnoreCase("content-length")) {
+            if (header.keyEqualsIgnoreCase(HEADER_CONTENT_LENGTH)) {
                 var len = header.value.toString().trim();
                 assert Logger.lowLevelDebug("found Content-Length: " + len);
                 getHttpEntity().dataLength = parseNonNegativeLen(len);
-            } else if (hdr.equalsIgnoreCase("transfer-encoding")) {
+            } else if (header.keyEqualsIgnoreCase(HEADER_TRANSFER_ENCODING)) {
                 var encoding = header.value.toString().trim().toLowerCase();
                 assert Logger.lowLevelDebug("found Transfer-Encoding: " + encoding);
                 if (encoding.equals("chunked")) {
                     getHttpEntity().isChunked = true;
                 }
-            } else if (hdr.equalsIgnoreCase("host")) {
+            } else if (header.keyEqualsIgnoreCase(HEADER_HOST)) {
                 var host = header.value.toString().trim();
                 assert Logger.lowLevelDebug("found Host: " + host);
                 getHttpEntity().lastHostHeader = host;
@@ -303,10 +306,15 @@ public abstract class HttpParserHelper {
         return state9Trans();
     }
 
+    // the head is parsed by the caller, continue as if all headers are fed
+    int headParsed(int dataLength, boolean isChunked) {
+        getHttpEntity().dataLength = dataLength;
+        getHttpEntity().isChunked = isChunked;
+        return state9(null);
+    }
+
     private int state9Trans() {
-        if (headers == null) {
-            return end();
-        }
+        // dataLength and isChunked are only set when headers exist
         if (getHttpEntity().dataLength >= 0) {
             if (getHttpEntity().dataLength == 0) {
                 return end();
@@ -61,6 +61,25 @@ public class HttpReqParser extends AbstractParser<Request> implements IHttpParse
         return state;
     }
 
+    @Override
+    public int headParsed(int dataLength, boolean isChunked) {
+        if (state != 0) {
+            throw new IllegalStateException("head can only be provided when the parser is idle, current state is " + state);
+        }
+        if (req == null) {
+            req = new RequestBuilder();
+        } else {
+            req.clear();
+        }
+        state = helper.headParsed(dataLength, isChunked);
+        if (state == 0) {
+            if (params.buildResult) {
+                result = req.build();
+            }
+        }
+        return state;
+    }
+
     @SuppressWarnings("DuplicatedCode")
     @Override
     protected int doSwitch(byte b) {
@@ -82,6 +82,25 @@ public class HttpRespParser extends AbstractParser<Response> implements IHttpPar
         return state;
     }
 
+    @Override
+    public int headParsed(int dataLength, boolean isChunked) {
+        if (state != 0) {
+            throw new IllegalStateException("head can only be provided when the parser is idle, current state is " + state);
+        }
+        if (resp == null) {
+            resp = new ResponseBuilder();
+        } else {
+            resp.clear();
+        }
+        state = helper.headParsed(dataLength, isChunked);
+        if (state == 0) {
+            if (params.buildResult) {
+                result = resp.build();
+            }
+        }
+        return state;
+    }
+
     @SuppressWarnings("DuplicatedCode")
     @Override
     protected int doSwitch(byte b) {
@@ -12,5 +12,15 @@ public interface IHttpParser {
 
     int feed(ByteArrayChannel chnl);
 
+    /**
+     * The start line and headers are parsed by the caller without feeding them into this parser.
+     * The builder is reset, then parsing continues as if the whole head is fed.
+     *
+     * @param dataLength value of Content-Length, or -1 if not present
+     * @param isChunked  whether the entity uses chunked transfer encoding
+     * @return the new state
+     */
+    int headParsed(int dataLength, boolean isChunked);
+
     String getErrorMessage();
 }
@@ -4,9 +4,9 @@ import io.vproxy.base.util.Annotations;
 import io.vproxy.vfd.IP;
 
 public class Hint {
-    private final String host;
-    private final int port;
-    private final String uri;
+    final String host;
+    final int port;
+    final String uri;
 
     private Hint(String host, int port, String uri) {
         this.host = host;
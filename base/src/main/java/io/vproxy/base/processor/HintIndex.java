@@ -0,0 +1,282 @@
+package io.vproxy.base.processor;
+
+import io.vproxy.base.util.Annotations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An immutable index of hint annotations, {@link #search(Hint)} returns the same element
+ * as checking {@link Hint#matchLevel(Annotations...)} of all elements and picking the first one with the max level.<br>
+ * Hosts are stored in a trie of reversed characters, so exact and sub domain matches are found in one walk,
+ * uris are stored in a prefix trie, and elements in a trie node are grouped by port.<br>
+ * The index should be rebuilt when the elements or their annotations change.
+ */
+public class HintIndex<T> {
+    private static final int URI_MAX_MATCH = 1023;
+
+    private final Object[] elems;
+    private final int[] ports;
+    private final String[] uris;
+
+    // reversed host => indexes
+    private final Node hostRoot = new Node();
+    private int[] wildcardHost = EMPTY;
+    // uri => indexes
+    private final Node uriRoot = new Node();
+    private final PortBucket wildcardUri = new PortBucket();
+
+    private static final int[] EMPTY = new int[0];
+
+    private HintIndex(int size) {
+        elems = new Object[size];
+        ports = new int[size];
+        uris = new String[size];
+    }
+
+    public static <T> HintIndex<T> build(List<T> ls, Function<T, Annotations[]> annotations) {
+        var index = new HintIndex<T>(ls.size());
+        for (int i = 0; i < ls.size(); ++i) {
+            index.add(i, ls.get(i), annotations.apply(ls.get(i)));
+        }
+        return index;
+    }
+
+    private void add(int idx, T elem, Annotations[] annosArray) {
+        elems[idx] = elem;
+        // same as Hint.matchLevel, the first non-empty value is used
+        String annoHost = null;
+        int annoPort = 0;
+        String annoUri = null;
+        for (Annotations a : annosArray) {
+            if (annoHost == null) {
+                annoHost = a.ServerGroup_HintHost;
+            }
+            if (annoPort == 0) {
+                annoPort = a.ServerGroup_HintPort;
+            }
+            if (annoUri == null) {
+                annoUri = a.ServerGroup_HintUri;
+            }
+        }
+        ports[idx] = annoPort;
+        uris[idx] = annoUri;
+
+        if (annoHost != null) {
+            if (annoHost.equals("*")) {
+                wildcardHost = append(wildcardHost, idx);
+            }
+            Node node = hostRoot;
+            for (int i = annoHost.length() - 1; i >= 0; --i) {
+                node = node.getOrCreate(annoHost.charAt(i));
+            }
+            node.indexes = append(node.indexes, idx);
+        }
+        if (annoUri != null) {
+            if (annoUri.equals("*")) {
+                wildcardUri.add(idx, annoPort);
+            }
+            Node node = uriRoot;
+            for (int i = 0; i < annoUri.length(); ++i) {
+                node = node.getOrCreate(annoUri.charAt(i));
+            }
+            if (node.bucket == null) {
+                node.bucket = new PortBucket();
+            }
+            node.bucket.add(idx, annoPort);
+        }
+    }
+
+    private static int[] append(int[] arr, int n) {
+        if (arr == null) {
+            return new int[]{n};
+        }
+        arr = Arrays.copyOf(arr, arr.length + 1);
+        arr[arr.length - 1] = n;
+        return arr;
+    }
+
+    public int size() {
+        return elems.length;
+    }
+
+    public T search(Hint hint) {
+        int idx = searchIndex(hint);
+        //noinspection unchecked
+        return idx == -1 ? null : (T) elems[idx];
+    }
+
+    private int searchIndex(Hint hint) {
+        String host = hint.host;
+        int port = hint.port;
+        String uri = hint.uri;
+
+        if (host != null) {
+            // the host level is the major part of the match level
+            // so elements with a higher host level always win
+            long suffixBest = -1;
+            Node node = hostRoot;
+            for (int i = host.length() - 1; i >= 0 && node != null; --i) {
+                if (host.charAt(i) == '.' && node.indexes != null) {
+                    suffixBest = best(suffixBest, node.indexes, port, uri);
+                }
+                node = node.get(host.charAt(i));
+            }
+            if (node != null && node.indexes != null) {
+                long exactBest = best(-1, node.indexes, port, uri);
+                if (exactBest != -1) {
+                    return indexOf(exactBest);
+                }
+            }
+            if (suffixBest != -1) {
+                return indexOf(suffixBest);
+            }
+            long wildcardBest = best(-1, wildcardHost, port, uri);
+            if (wildcardBest != -1) {
+                return indexOf(wildcardBest);
+            }
+        }
+
+        // no host matches, find the longest uri prefix
+        if (uri == null) {
+            return -1;
+        }
+        long res = -1;
+        Node node = uriRoot;
+        for (int i = 0; ; ++i) {
+            if (node.bucket != null) {
+                res = better(res, Math.min(i + 1, URI_MAX_MATCH), node.bucket.best(port));
+            }
+            if (i == uri.length()) {
+                break;
+            }
+            node = node.get(uri.charAt(i));
+            if (node == null) {
+                break;
+            }
+        }
+        res = better(res, 1, wildcardUri.best(port));
+        return res == -1 ? -1 : indexOf(res);
+    }
+
+    // (uriLevel << 32) | (~index), so that larger value means better match
+    private static long better(long current, int uriLevel, int idx) {
+        if (idx == -1) {
+            return current;
+        }
+        long v = ((long) uriLevel << 32) | (~idx & 0xffffffffL);
+        return Math.max(current, v);
+    }
+
+    private static int indexOf(long v) {
+        return ~(int) v;
+    }
+
+    private long best(long current, int[] indexes, int port, String uri) {
+        for (int idx : indexes) {
+            int annoPort = ports[idx];
+            if (port != 0 && annoPort != 0 && port != annoPort) {
+                continue;
+            }
+            current = better(current, uriLevel(uris[idx], uri), idx);
+        }
+        return current;
+    }
+
+    private static int uriLevel(String annoUri, String uri) {
+        if (annoUri == null || uri == null) {
+            return 0;
+        }
+        if (uri.startsWith(annoUri)) {
+            return Math.min(annoUri.length() + 1, URI_MAX_MATCH);
+        }
+        if (annoUri.equals("*")) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        int[] indexes;
+        PortBucket bucket;
+
+        Node get(char c) {
+            char[] keys = this.keys;
+            for (int i = 0; i < keys.length; ++i) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrCreate(char c) {
+            Node n = get(c);
+            if (n != null) {
+                return n;
+            }
+            n = new Node();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            keys[keys.length - 1] = c;
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = n;
+            return n;
+        }
+    }
+
+    // the smallest index matching a port
+    private static final class PortBucket {
+        int min = -1;
+        int minAnyPort = -1; // elements without port annotation
+        int[] portKeys = EMPTY;
+        int[] portMin = EMPTY;
+
+        // indexes are added in ascending order
+        void add(int idx, int port) {
+            if (min == -1) {
+                min = idx;
+            }
+            if (port == 0) {
+                if (minAnyPort == -1) {
+                    minAnyPort = idx;
+                }
+                return;
+            }
+            int i = Arrays.binarySearch(portKeys, port);
+            if (i >= 0) {
+                return;
+            }
+            i = -(i + 1);
+            int[] keys = new int[portKeys.length + 1];
+            int[] values = new int[portMin.length + 1];
+            System.arraycopy(portKeys, 0, keys, 0, i);
+            System.arraycopy(portMin, 0, values, 0, i);
+            keys[i] = port;
+            values[i] = idx;
+            System.arraycopy(portKeys, i, keys, i + 1, portKeys.length - i);
+            System.arraycopy(portMin, i, values, i + 1, portMin.length - i);
+            portKeys = keys;
+            portMin = values;
+        }
+
+        int best(int port) {
+            if (port == 0) {
+                return min;
+            }
+            int res = minAnyPort;
+            int i = Arrays.binarySearch(portKeys, port);
+            if (i >= 0 && (res == -1 || portMin[i] < res)) {
+                res = portMin[i];
+            }
+            return res;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HintIndex{size=" + elems.length + "}";
+    }
+}
@@ -20,4 +20,9 @@ public abstract class OOProcessor<CTX extends OOContext<SUB>, SUB extends OOSubC
     public DisconnectTODO disconnected(CTX ctx, SUB sub, boolean exception) {
         return sub.disconnected(exception);
     }
+
+    @Override
+    public boolean reusable(CTX ctx, SUB sub) {
+        return sub.reusable();
+    }
 }
@@ -23,4 +23,8 @@ public abstract class OOSubContext<CTX extends OOContext> extends Processor.SubC
     public abstract Processor.HandleTODO remoteClosed();
 
     public abstract Processor.DisconnectTODO disconnected(boolean exception);
+
+    public boolean reusable() {
+        return false;
+    }
 }
@@ -328,6 +328,20 @@ public interface Processor<CTX extends Processor.Context, SUB extends Processor.
      */
     DisconnectTODO disconnected(CTX ctx, SUB sub, boolean exception);
 
+    /**
+     * check whether the backend connection can be handed over to another frontend connection.
+     * This is called when the frontend connection is closing. If it returns true, the connection may be
+     * bound to a new context later, with a new sub context created by {@link #initSub(SubContextInitParams)},
+     * and {@link #connected(Context, SubContext)} will not be called again for the connection.
+     *
+     * @param ctx context
+     * @param sub backend sub context
+     * @return true if no request or response is in progress on the connection, and it can be reused
+     */
+    default boolean reusable(CTX ctx, SUB sub) {
+        return false;
+    }
+
     /**
      * zero copy is not free.
      * e.g. when processing http2 frames, the frame header is 9 bytes, and with uint24 payload length,
@@ -3,11 +3,16 @@ package io.vproxy.base.processor.http1;
 import io.vproxy.base.processor.Hint;
 import io.vproxy.base.processor.OOContext;
 import io.vproxy.base.processor.Processor;
+import io.vproxy.base.util.ByteArray;
 import io.vproxy.vfd.IPPort;
 
 public class HttpContext extends OOContext<HttpSubContext> {
     final String clientAddress;
     final String clientPort;
+    // pre-encoded header values (including the leading ": ") and lines appended to requests
+    final ByteArray clientAddressValue;
+    final ByteArray clientPortValue;
+    final ByteArray forwardedHeadersAndEnd;
 
     int currentBackend = -1;
     boolean upgradedConnection = false;
@@ -17,6 +22,12 @@ public class HttpContext extends OOContext<HttpSubContext> {
     public HttpContext(IPPort clientSock) {
         clientAddress = clientSock == null ? null : clientSock.getAddress().formatToIPString();
         clientPort = clientSock == null ? null : "" + clientSock.getPort();
+        clientAddressValue = ByteArray.from(": " + clientAddress + "\r\n");
+        clientPortValue = ByteArray.from(": " + clientPort + "\r\n");
+        forwardedHeadersAndEnd = ByteArray.from(
+            "X-Forwarded-For: " + clientAddress + "\r\n" +
+            "X-Client-Port: " + clientPort + "\r\n" +
+            "\r\n");
     }
 
     Processor.ConnectionTODO connection(int backendId) {
@@ -30,8 +41,8 @@ public class HttpContext extends OOContext<HttpSubContext> {
     }
 
     private Hint connectionHint() {
-        String uri = frontendSubCtx.reqParser.getBuilder().uri.toString();
-        String host = frontendSubCtx.reqParser.getBuilder().lastHostHeader;
+        String uri = frontendSubCtx.requestUri();
+        String host = frontendSubCtx.requestHost();
 
         if (host == null) {
             return Hint.ofUri(uri);
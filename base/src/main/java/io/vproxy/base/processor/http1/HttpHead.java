@@ -0,0 +1,351 @@
+package io.vproxy.base.processor.http1;
+
+import io.vproxy.base.util.ByteArray;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zero-copy view of an http/1.x head (the start line and headers) which is fully received.<br>
+ * Only offsets into the received bytes are recorded, names of headers which the processor cares about
+ * are matched with precomputed lower case bytes, and nothing is converted into strings unless asked.<br>
+ * {@link #parse(ByteArray, int, int, boolean)} returns false if the head is incomplete or anything unusual is found,
+ * the caller is expected to fall back to the byte-by-byte parser, which handles all cases and reports errors.
+ */
+class HttpHead {
+    static final int OTHER = 0;
+    static final int HOST = 1;
+    static final int CONTENT_LENGTH = 2;
+    static final int TRANSFER_ENCODING = 3;
+    static final int CONNECTION = 4;
+    static final int KEEP_ALIVE = 5;
+    static final int X_FORWARDED_FOR = 6;
+    static final int X_CLIENT_PORT = 7;
+
+    // indexed by the constants above
+    private static final byte[][] KNOWN_NAMES = new byte[][]{
+        null,
+        lower("host"),
+        lower("content-length"),
+        lower("transfer-encoding"),
+        lower("connection"),
+        lower("keep-alive"),
+        lower("x-forwarded-for"),
+        lower("x-client-port"),
+    };
+    private static final byte[] CHUNKED = lower("chunked");
+
+    // layout of each header in the fields array
+    private static final int LINE = 0; // start of the line
+    private static final int NAME_END = 1; // the colon
+    private static final int VALUE = 2; // leading OWS excluded
+    private static final int VALUE_END = 3; // trailing OWS excluded
+    private static final int NEXT = 4; // start of the next line
+    private static final int KNOWN = 5;
+    private static final int STRIDE = 6;
+
+    private ByteArray raw;
+    private int off;
+    private int end;
+    // start line: [off, sp1) SP [sp1 + 1, sp2) SP [sp2 + 1, lineEnd) CRLF
+    private int sp1;
+    private int sp2;
+    private int lineEnd;
+    private int[] fields = new int[16 * STRIDE];
+    private int count;
+
+    private int contentLength;
+    private boolean chunked;
+    private int host;
+
+    private static byte[] lower(String s) {
+        return s.toLowerCase().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param raw     the received bytes
+     * @param off     where the head starts
+     * @param len     length of bytes available
+     * @param request parse a request line if true, otherwise parse a status line
+     * @return true if the head is complete and recognized
+     */
+    boolean parse(ByteArray raw, int off, int len, boolean request) {
+        this.raw = raw;
+        this.off = off;
+        this.end = -1;
+        this.count = 0;
+        this.contentLength = -1;
+        this.chunked = false;
+        this.host = -1;
+
+        int limit = off + len;
+        int p = off;
+        sp1 = -1;
+        sp2 = -1;
+        for (; p < limit; ++p) {
+            byte b = raw.get(p);
+            if (b == '\r') {
+                break;
+            } else if (b == '\n') {
+                return false;
+            } else if (b == ' ') {
+                if (sp1 == -1) {
+                    sp1 = p;
+                } else if (sp2 == -1) {
+                    sp2 = p;
+                } else if (request) {
+                    return false;
+                }
+            } else if (!request && sp1 != -1 && sp2 == -1) {
+                if (b < '0' || b > '9') {
+                    return false;
+                }
+            }
+        }
+        if (p + 1 >= limit || raw.get(p + 1) != '\n') {
+            return false;
+        }
+        lineEnd = p;
+        if (sp1 <= off || sp2 <= sp1 + 1) {
+            return false;
+        }
+        if (request && sp2 + 1 == lineEnd) {
+            return false;
+        }
+        p += 2;
+
+        while (true) {
+            if (p + 1 >= limit) {
+                return false;
+            }
+            byte b = raw.get(p);
+            if (b == '\r') {
+                if (raw.get(p + 1) != '\n') {
+                    return false;
+                }
+                p += 2;
+                break;
+            }
+            int line = p;
+            int colon = -1;
+            for (; p < limit; ++p) {
+                b = raw.get(p);
+                if (b == ':') {
+                    colon = p;
+                    break;
+                }
+                if (b == '\r' || b == '\n' || b == ' ' || b == '\t') {
+                    return false;
+                }
+            }
+            if (colon <= line) {
+                return false;
+            }
+            int value = colon + 1;
+            while (value < limit && (raw.get(value) == ' ' || raw.get(value) == '\t')) {
+                ++value;
+            }
+            for (p = value; p < limit; ++p) {
+                b = raw.get(p);
+                if (b == '\r') {
+                    break;
+                } else if (b == '\n') {
+                    return false;
+                }
+            }
+            if (p + 1 >= limit || raw.get(p + 1) != '\n') {
+                return false;
+            }
+            int valueEnd = trimEnd(value, p);
+            p += 2;
+            int known = known(line, colon);
+            if (!record(known, value, valueEnd)) {
+                return false;
+            }
+            add(line, colon, value, valueEnd, p, known);
+        }
+        this.end = p;
+        return true;
+    }
+
+    private int known(int from, int to) {
+        int len = to - from;
+        byte first = (byte) (raw.get(from) | 0x20);
+        for (int k = 1; k < KNOWN_NAMES.length; ++k) {
+            byte[] name = KNOWN_NAMES[k];
+            if (name.length == len && name[0] == first && equalsLower(from, name)) {
+                return k;
+            }
+        }
+        return OTHER;
+    }
+
+    // OR-ing 0x20 converts upper case letters to lower case, and keeps '-' unchanged.
+    // CR is the only other byte mapped to a byte in the names, which never appears inside a header line
+    private boolean equalsLower(int from, byte[] lower) {
+        for (int i = 0; i < lower.length; ++i) {
+            if ((raw.get(from + i) | 0x20) != lower[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean record(int known, int value, int valueEnd) {
+        switch (known) {
+            case CONTENT_LENGTH -> {
+                if (contentLength != -1) {
+                    return false; // let the parser report duplicated Content-Length
+                }
+                int n = 0;
+                int digits = 0;
+                for (int i = value; i < valueEnd; ++i) {
+                    byte b = raw.get(i);
+                    if (b < '0' || b > '9' || ++digits > 9) {
+                        return false;
+                    }
+                    n = n * 10 + (b - '0');
+                }
+                if (digits == 0) {
+                    return false;
+                }
+                contentLength = n;
+            }
+            case TRANSFER_ENCODING -> {
+                if (valueEnd - value == CHUNKED.length && equalsLower(value, CHUNKED)) {
+                    chunked = true;
+                }
+            }
+            case HOST -> host = count;
+        }
+        return true;
+    }
+
+    private int trimEnd(int value, int valueEnd) {
+        while (valueEnd > value && (raw.get(valueEnd - 1) == ' ' || raw.get(valueEnd - 1) == '\t')) {
+            --valueEnd;
+        }
+        return valueEnd;
+    }
+
+    private void add(int line, int nameEnd, int value, int valueEnd, int next, int known) {
+        int base = count * STRIDE;
+        if (base + STRIDE > fields.length) {
+            int[] arr = new int[fields.length * 2];
+            System.arraycopy(fields, 0, arr, 0, fields.length);
+            fields = arr;
+        }
+        fields[base + LINE] = line;
+        fields[base + NAME_END] = nameEnd;
+        fields[base + VALUE] = value;
+        fields[base + VALUE_END] = valueEnd;
+        fields[base + NEXT] = next;
+        fields[base + KNOWN] = known;
+        ++count;
+    }
+
+    ByteArray raw() {
+        return raw;
+    }
+
+    // start of the head
+    int offset() {
+        return off;
+    }
+
+    // end of the head, the empty line included
+    int end() {
+        return end;
+    }
+
+    int length() {
+        return end - off;
+    }
+
+    int headerCount() {
+        return count;
+    }
+
+    int known(int idx) {
+        return fields[idx * STRIDE + KNOWN];
+    }
+
+    int lineOffset(int idx) {
+        return fields[idx * STRIDE + LINE];
+    }
+
+    int nameEnd(int idx) {
+        return fields[idx * STRIDE + NAME_END];
+    }
+
+    int nextLineOffset(int idx) {
+        return fields[idx * STRIDE + NEXT];
+    }
+
+    boolean valueEqualsIgnoreCase(int idx, byte[] lower) {
+        int value = fields[idx * STRIDE + VALUE];
+        int valueEnd = fields[idx * STRIDE + VALUE_END];
+        return valueEnd - value == lower.length && equalsLower(value, lower);
+    }
+
+    int contentLength() {
+        return contentLength;
+    }
+
+    boolean isChunked() {
+        return chunked;
+    }
+
+    // the version is the last token of a request line, or the first token of a status line
+    boolean versionEquals(byte[] version, boolean request) {
+        int from = request ? sp2 + 1 : off;
+        int to = request ? lineEnd : sp1;
+        if (to - from != version.length) {
+            return false;
+        }
+        for (int i = 0; i < version.length; ++i) {
+            if (raw.get(from + i) != version[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String version(boolean request) {
+        return request ? string(sp2 + 1, lineEnd) : string(off, sp1);
+    }
+
+    // for response only
+    int statusCode() {
+        int n = 0;
+        for (int i = sp1 + 1; i < sp2; ++i) {
+            n = n * 10 + (raw.get(i) - '0');
+            if (n > 999) {
+                return -1;
+            }
+        }
+        return n;
+    }
+
+    // for request only
+    String uri() {
+        return string(sp1 + 1, sp2);
+    }
+
+    String host() {
+        if (host == -1) {
+            return null;
+        }
+        int base = host * STRIDE;
+        return string(fields[base + VALUE], fields[base + VALUE_END]);
+    }
+
+    private String string(int from, int to) {
+        // same as the parser, each byte is treated as a char
+        return new String(raw.sub(from, to - from).toJavaArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpHead{" + (end == -1 ? "incomplete" : string(off, end)) + '}';
+    }
+}
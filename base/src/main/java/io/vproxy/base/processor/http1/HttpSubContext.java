@@ -18,9 +18,13 @@ import java.util.ArrayList;
 
 public class HttpSubContext extends OOSubContext<HttpContext> {
     private static final ByteArray SIMPLE_LAST_CHUNK = ByteArray.from("0\r\n");
+    private static final ByteArray CRLF = ByteArray.from("\r\n");
 
     final HttpReqParser reqParser;
     private final HttpRespParser respParser;
+    // the current head, valid when headFromView is true, otherwise the head is in the parser builder
+    private final HttpHead head = new HttpHead();
+    private boolean headFromView = false;
 
     // bytes consumed via feed(...) but paused before handling
     ByteArray storedBytesForProcessing = null;
@@ -169,26 +173,40 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
         while (chnl.used() != 0) {
             var parser = getParser();
 
-            int res = parser.feed(chnl);
-            if (res == -1) {
-                var err = parser.getErrorMessage();
-                if (err != null) {
-                    throw new Exception("invalid " + (isFrontend() ? "request" : "response") + ": " + err);
+            int state;
+            if (parser.getState() == HttpParserHelper.STATE_IDLE
+                && head.parse(chnl.getArray(), chnl.getReadOff(), chnl.used(), isFrontend())) {
+                // the whole head is received, handle it without running the state machine
+                chnl.skip(head.length());
+                headFromView = true;
+                state = parser.headParsed(head.contentLength(), head.isChunked());
+            } else {
+                int res = parser.feed(chnl);
+                if (res == -1) {
+                    var err = parser.getErrorMessage();
+                    if (err != null) {
+                        throw new Exception("invalid " + (isFrontend() ? "request" : "response") + ": " + err);
+                    }
+                    // want more data
+                    break;
+                }
+                state = parser.getState();
+                if (state == HttpParserHelper.STATE_END_ALL_HEADERS) {
+                    headFromView = false;
                 }
-                // want more data
-                break;
             }
 
-            var state = parser.getState();
             if (state == HttpParserHelper.STATE_END_ALL_HEADERS) {
                 if (isFrontend()) {
-                    ret = ret.concat(
-                        handleFrontendHeaders());
+                    ret = ret.concat(headFromView
+                        ? rewriteFrontendHead()
+                        : handleFrontendHeaders());
                 } else {
-                    ret = ret.concat(
-                        handleBackendHeaders());
+                    ret = ret.concat(headFromView
+                        ? rewriteBackendHead()
+                        : handleBackendHeaders());
                     var resp = respParser.getBuilder();
-                    if (resp.statusCode.toString().trim().equals("101")) {
+                    if (headFromView ? head.statusCode() == 101 : "101".contentEquals(resp.statusCode)) {
                         // switch protocol
                         ctx.upgradedConnection = true;
                         // use uint24 to prevent possible overflow
@@ -277,6 +295,33 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
         return ret;
     }
 
+    private static final byte[] HTTP_1_1 = "HTTP/1.1".getBytes();
+    private static final byte[] HTTP_1_0 = "HTTP/1.0".getBytes();
+
+    private void checkVersion(boolean request) throws Exception {
+        if (!head.versionEquals(HTTP_1_1, request) && !head.versionEquals(HTTP_1_0, request)) {
+            throw new Exception("only supports HTTP/1.1 or HTTP/1.0, but got " + head.version(request));
+        }
+    }
+
+    private ByteArray rewriteBackendHead() throws Exception {
+        checkVersion(false);
+        var isKeepalive = head.versionEquals(HTTP_1_1, false);
+        for (int i = 0, n = head.headerCount(); i < n; ++i) {
+            if (head.known(i) != HttpHead.CONNECTION) {
+                continue;
+            }
+            if (head.valueEqualsIgnoreCase(i, HTTP_VALUE_KEEP_ALIVE)) {
+                isKeepalive = true;
+            } else if (head.valueEqualsIgnoreCase(i, HTTP_VALUE_CLOSE)) {
+                isKeepalive = false;
+            }
+        }
+        closeConnection = !isKeepalive;
+        // nothing to modify
+        return head.raw().sub(head.offset(), head.length());
+    }
+
     private ByteArray handleBackendHeaders() throws Exception {
         var builder = respParser.getBuilder();
         var resp = builder.build();
@@ -284,6 +329,21 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
         if (!version.equals("HTTP/1.1") && !version.equals("HTTP/1.0")) {
             throw new Exception("only supports HTTP/1.1 or HTTP/1.0, but got " + version);
         }
+        var isKeepalive = version.equals("HTTP/1.1");
+        if (resp.headers != null) {
+            for (var h : resp.headers) {
+                if (!h.keyEqualsIgnoreCase(HTTP_HEADER_CONNECTION)) {
+                    continue;
+                }
+                var v = h.value.trim();
+                if (v.equalsIgnoreCase("keep-alive")) {
+                    isKeepalive = true;
+                } else if (v.equalsIgnoreCase("close")) {
+                    isKeepalive = false;
+                }
+            }
+        }
+        closeConnection = !isKeepalive;
         return resp.toByteArray();
     }
 
@@ -292,16 +352,95 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
     private static final char[] HTTP_HEADER_CONNECTION = "connection".toCharArray();
     private static final char[] HTTP_HEADER_KEEP_ALIVE = "keep-alive".toCharArray();
 
+    private static final byte[] HTTP_VALUE_KEEP_ALIVE = "keep-alive".getBytes();
+    private static final byte[] HTTP_VALUE_CLOSE = "close".getBytes();
+    private static final byte[] HTTP_VALUE_UPGRADE = "upgrade".getBytes();
+
+    // same as handleFrontendHeaders, but the output consists of slices of the input and pre-encoded headers
+    private ByteArray rewriteFrontendHead() throws Exception {
+        checkVersion(true);
+        var isKeepalive = head.versionEquals(HTTP_1_1, true);
+        var raw = head.raw();
+
+        ByteArray ret = null;
+        int kept = head.offset(); // bytes before this offset are already in ret
+        boolean xffReplaced = false;
+        boolean clientPortReplaced = false;
+        for (int i = 0, n = head.headerCount(); i < n; ++i) {
+            switch (head.known(i)) {
+                case HttpHead.X_FORWARDED_FOR -> {
+                    ret = splice(ret, raw, kept, head.nameEnd(i), ctx.clientAddressValue);
+                    kept = head.nextLineOffset(i);
+                    xffReplaced = true;
+                }
+                case HttpHead.X_CLIENT_PORT -> {
+                    ret = splice(ret, raw, kept, head.nameEnd(i), ctx.clientPortValue);
+                    kept = head.nextLineOffset(i);
+                    clientPortReplaced = true;
+                }
+                case HttpHead.CONNECTION -> {
+                    if (head.valueEqualsIgnoreCase(i, HTTP_VALUE_KEEP_ALIVE)) {
+                        isKeepalive = true;
+                    } else if (head.valueEqualsIgnoreCase(i, HTTP_VALUE_CLOSE)) {
+                        assert Logger.lowLevelDebug("Connection header is removed");
+                        isKeepalive = false;
+                        ret = splice(ret, raw, kept, head.lineOffset(i), null);
+                        kept = head.nextLineOffset(i);
+                    } else if (head.valueEqualsIgnoreCase(i, HTTP_VALUE_UPGRADE)) {
+                        isKeepalive = true; // upgraded connection will be treated as a simple tcp connection
+                    }
+                }
+                case HttpHead.KEEP_ALIVE -> {
+                    assert Logger.lowLevelDebug("Keep-Alive header is removed");
+                    ret = splice(ret, raw, kept, head.lineOffset(i), null);
+                    kept = head.nextLineOffset(i);
+                }
+            }
+        }
+        // the empty line is not kept, it's appended after the added headers
+        int headersEnd = head.end() - 2;
+        if (!xffReplaced && !clientPortReplaced) {
+            ret = splice(ret, raw, kept, headersEnd, ctx.forwardedHeadersAndEnd);
+        } else {
+            ret = splice(ret, raw, kept, headersEnd, null);
+            if (!xffReplaced) {
+                ret = ret.concat(HTTP_HEADER_X_FORWARDED_FOR_BYTES).concat(ctx.clientAddressValue);
+            }
+            if (!clientPortReplaced) {
+                ret = ret.concat(HTTP_HEADER_X_CLIENT_PORT_BYTES).concat(ctx.clientPortValue);
+            }
+            ret = ret.concat(CRLF);
+        }
+
+        closeConnection = !isKeepalive;
+        return ret;
+    }
+
+    private static final ByteArray HTTP_HEADER_X_FORWARDED_FOR_BYTES = ByteArray.from("X-Forwarded-For");
+    private static final ByteArray HTTP_HEADER_X_CLIENT_PORT_BYTES = ByteArray.from("X-Client-Port");
+
+    // append raw[from, to) and then the inserted bytes (if not null) to ret
+    private static ByteArray splice(ByteArray ret, ByteArray raw, int from, int to, ByteArray inserted) {
+        if (to > from) {
+            var slice = raw.sub(from, to - from);
+            ret = ret == null ? slice : ret.concat(slice);
+        }
+        if (inserted != null) {
+            ret = ret == null ? inserted : ret.concat(inserted);
+        }
+        return ret;
+    }
+
     private ByteArray handleFrontendHeaders() throws Exception {
         var builder = reqParser.getBuilder();
         if (builder.version == null) {
             throw new Exception("HTTP/0.9 is not supported");
         }
-        var version = builder.version.toString();
-        if (!version.equals("HTTP/1.1") && !version.equals("HTTP/1.0")) {
+        var version = builder.version;
+        if (!"HTTP/1.1".contentEquals(version) && !"HTTP/1.0".contentEquals(version)) {
             throw new Exception("only supports HTTP/1.1 or HTTP/1.0, but got " + version);
         }
-        var isKeepalive = version.equals("HTTP/1.1");
+        var isKeepalive = "HTTP/1.1".contentEquals(version);
         if (builder.headers == null) {
             builder.headers = new ArrayList<>();
         }
@@ -354,6 +493,20 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
         return builder.build().toByteArray();
     }
 
+    String requestUri() {
+        if (headFromView) {
+            return head.uri();
+        }
+        return reqParser.getBuilder().uri.toString();
+    }
+
+    String requestHost() {
+        if (headFromView) {
+            return head.host();
+        }
+        return reqParser.getBuilder().lastHostHeader;
+    }
+
     private Processor.ProxyDoneTODO proxyDone() {
         if (ctx.upgradedConnection) {
             return null;
@@ -395,6 +548,23 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
         return null;
     }
 
+    @Override
+    public boolean reusable() {
+        if (isFrontend() || ctx.upgradedConnection) {
+            return false;
+        }
+        if (ctx.currentBackend == connId) {
+            return false; // the request is sent, but the response is not finished
+        }
+        if (ctx.frontendContext != null && ctx.frontendContext.closeConnection) {
+            return false; // the backend may close the connection after responding to a non-keepalive request
+        }
+        if (closeConnection) {
+            return false; // the backend responded with Connection: close, or with HTTP/1.0 without keep-alive
+        }
+        return isIdle() && storedBytesForProcessing == null;
+    }
+
     // ---------------- for unit tests ----------------
 
     public ByteArray unittest_feed(ByteArray data) throws Exception {
@@ -410,10 +580,20 @@ public class HttpSubContext extends OOSubContext<HttpContext> {
     }
 
     public Request unittest_getReq() {
+        if (headFromView) {
+            var parser = new HttpReqParser(new HttpReqParser.Params().setHeadersOnly(true));
+            parser.feed(head.raw().sub(head.offset(), head.length()).toFullChannel());
+            return parser.getResult();
+        }
         return reqParser.getBuilder().build();
     }
 
     public Response unittest_getResp() {
+        if (headFromView) {
+            var parser = new HttpRespParser(new HttpRespParser.Params().setHeadersOnly(true));
+            parser.feed(head.raw().sub(head.offset(), head.length()).toFullChannel());
+            return parser.getResult();
+        }
         return respParser.getBuilder().build();
     }
 }
@@ -19,6 +19,18 @@ public abstract class HttpEntityBuilder {
     // for processor
     public String lastHostHeader = null;
 
+    // reset all fields, so the builder can be reused for the next entity
+    public void clear() {
+        headers = null;
+        body = null;
+        chunks = null;
+        trailers = null;
+        dataLength = -1;
+        isChunked = false;
+        chunk = null;
+        lastHostHeader = null;
+    }
+
     protected void fillCommonPart(HttpEntity entity) {
         if (headers != null) {
             entity.headers = new LinkedList<>();
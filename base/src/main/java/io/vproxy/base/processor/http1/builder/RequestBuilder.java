@@ -7,6 +7,14 @@ public class RequestBuilder extends HttpEntityBuilder {
     public StringBuilder uri = new StringBuilder();
     public StringBuilder version;
 
+    @Override
+    public void clear() {
+        super.clear();
+        method.setLength(0);
+        uri.setLength(0);
+        version = null;
+    }
+
     @SuppressWarnings("Duplicates")
     @Override
     public Request build() {
@@ -7,6 +7,14 @@ public class ResponseBuilder extends HttpEntityBuilder {
     public StringBuilder statusCode = new StringBuilder();
     public StringBuilder reason = new StringBuilder();
 
+    @Override
+    public void clear() {
+        super.clear();
+        version.setLength(0);
+        statusCode.setLength(0);
+        reason.setLength(0);
+    }
+
     @SuppressWarnings("Duplicates")
     @Override
     public Response build() {
@@ -23,6 +23,14 @@ public class Header implements IHttpHeader {
         this.caseSensitive = caseSensitive;
     }
 
+    // keyStr must be the string form of key, it's shared by headers with the same name
+    public Header(String keyStr, byte[] key, byte[] value, boolean caseSensitive) {
+        this.keyStr = keyStr;
+        this.key = key;
+        this.value = value;
+        this.caseSensitive = caseSensitive;
+    }
+
     @Override
     public String toString() {
         return "Header{" +
@@ -6,6 +6,7 @@ import io.vproxy.base.processor.httpbin.HttpFrameType;
 import io.vproxy.base.processor.httpbin.entity.Header;
 import io.vproxy.base.util.ByteArray;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class ContinuationFrame extends HttpFrame implements WithHeaders {
@@ -24,7 +25,8 @@ public class ContinuationFrame extends HttpFrame implements WithHeaders {
 
     @Override
     public void setPayload(BinaryHttpSubContext subCtx, ByteArray payload) throws Exception {
-        headers = subCtx.getHPack().decode(payload);
+        headers = new ArrayList<>();
+        subCtx.getHPack().decode(payload, headers, endHeaders);
     }
 
     @Override
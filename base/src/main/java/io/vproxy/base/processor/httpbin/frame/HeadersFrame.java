@@ -93,10 +93,11 @@ public class HeadersFrame extends HttpFrame implements WithHeaders, WithPriority
             priorityOffset = -1;
         }
 
+        headers = new ArrayList<>();
         if (headerBlockLen == length && headerBlockOffset == 0) {
-            headers = subCtx.getHPack().decode(payload);
+            subCtx.getHPack().decode(payload, headers, endHeaders);
         } else {
-            headers = subCtx.getHPack().decode(payload.sub(headerBlockOffset, headerBlockLen));
+            subCtx.getHPack().decode(payload.sub(headerBlockOffset, headerBlockLen), headers, endHeaders);
         }
         if (paddingOffset != -1) {
             padding = payload.sub(paddingOffset, length - paddingOffset);
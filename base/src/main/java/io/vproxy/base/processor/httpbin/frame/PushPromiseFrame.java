@@ -48,14 +48,15 @@ public class PushPromiseFrame extends HttpFrame implements WithHeaders {
 
     @Override
     public void setPayload(BinaryHttpSubContext subCtx, ByteArray payload) throws Exception {
+        headers = new ArrayList<>();
         if (padded) {
             padLength = payload.uint8(0);
             promisedStreamId = payload.int32(1);
-            headers = subCtx.getHPack().decode(payload.sub(5, length - 5 - padLength));
+            subCtx.getHPack().decode(payload.sub(5, length - 5 - padLength), headers, endHeaders);
             padding = payload.sub(length - padLength, padLength);
         } else {
             promisedStreamId = payload.int32(0);
-            headers = subCtx.getHPack().decode(payload.sub(4, length - 4));
+            subCtx.getHPack().decode(payload.sub(4, length - 4), headers, endHeaders);
         }
     }
 
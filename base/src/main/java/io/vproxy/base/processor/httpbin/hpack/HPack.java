@@ -4,33 +4,33 @@ import io.vproxy.base.processor.httpbin.entity.Header;
 import io.vproxy.base.util.ByteArray;
 import io.vproxy.base.util.LogType;
 import io.vproxy.base.util.Logger;
-import io.vproxy.dep.com.twitter.hpack.hpack.Decoder;
-import io.vproxy.dep.com.twitter.hpack.hpack.Encoder;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class HPack {
-    private final Decoder decoder;
-    private final Encoder encoder;
-    private final SyncHeaderListener sync = new SyncHeaderListener();
+    private final HPackDecoder decoder;
+    private final HPackEncoder encoder;
 
     public HPack(int decoderMaxHeaderTableSize, int encoderMaxHeaderTableSize) {
-        this.decoder = new Decoder(65536, decoderMaxHeaderTableSize);
-        this.encoder = new Encoder(encoderMaxHeaderTableSize);
+        this.decoder = new HPackDecoder(decoderMaxHeaderTableSize);
+        this.encoder = new HPackEncoder(encoderMaxHeaderTableSize);
     }
 
     public List<Header> decode(ByteArray headers) throws IOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(headers.toJavaArray());
+        var ret = new ArrayList<Header>();
+        decode(headers, ret, true);
+        return ret;
+    }
+
+    public void decode(ByteArray headers, List<Header> out, boolean endOfBlock) throws IOException {
         try {
-            decoder.decode(bais, sync);
+            decoder.decode(headers, out, endOfBlock);
         } catch (IOException e) {
             Logger.error(LogType.INVALID_EXTERNAL_DATA, "hpack decode failed", e);
             throw e;
         }
-        return sync.getHeaders();
     }
 
     public void setDecoderMaxHeaderTableSize(int size) {
@@ -38,26 +38,11 @@ public class HPack {
     }
 
     public ByteArray encode(List<Header> headers) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        for (Header h : headers) {
-            try {
-                encoder.encodeHeader(baos, h.key, h.value, h.caseSensitive);
-            } catch (IOException e) {
-                Logger.shouldNotHappen("hpack encode failed", e);
-                throw new RuntimeException(e);
-            }
-        }
-        return ByteArray.from(baos.toByteArray());
+        return encoder.encode(headers);
     }
 
-    private final ByteArrayOutputStream fooBAOS = new ByteArrayOutputStream();
-
+    // the size update is sent at the beginning of the next encoded header block
     public void setEncoderMaxHeaderTableSize(int size) {
-        try {
-            encoder.setMaxHeaderTableSize(fooBAOS, size);
-        } catch (IOException e) {
-            Logger.shouldNotHappen("hpack setting encoder max header table size failed", e);
-        }
-        fooBAOS.reset();
+        encoder.setMaxHeaderTableSize(size);
     }
 }
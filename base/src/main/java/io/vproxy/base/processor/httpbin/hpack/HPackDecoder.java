@@ -0,0 +1,222 @@
+package io.vproxy.base.processor.httpbin.hpack;
+
+import io.vproxy.base.processor.httpbin.entity.Header;
+import io.vproxy.base.util.ByteArray;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes header blocks (rfc7541) directly from the frame payload into the header list of the frame.<br>
+ * A field split between a headers frame and its continuation frames is kept until the rest arrives.
+ */
+class HPackDecoder {
+    private static final int MAX_PENDING = 65536;
+
+    private final HPackDynamicTable table;
+    private int maxTableSize;
+    private boolean tableSizeChangeRequired = false;
+    private ByteArray pending = null;
+    private byte[] huffmanBuf = new byte[256];
+
+    // results of readInt and readString
+    private int integer;
+    private byte[] string;
+
+    HPackDecoder(int maxTableSize) {
+        this.table = new HPackDynamicTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+    }
+
+    void setMaxHeaderTableSize(int size) {
+        maxTableSize = size;
+        if (size < table.capacity()) {
+            // the encoder must signal the change in the next header block
+            tableSizeChangeRequired = true;
+            table.setCapacity(size);
+        }
+    }
+
+    /**
+     * @param endOfBlock true when the frame carries END_HEADERS, the block must not end in the middle of a field
+     */
+    void decode(ByteArray in, List<Header> out, boolean endOfBlock) throws IOException {
+        ByteArray data = in;
+        if (pending != null) {
+            data = pending.concat(in);
+            pending = null;
+        }
+        int len = data.length();
+        int pos = 0;
+        while (pos < len) {
+            int next = decodeField(data, pos, len, out);
+            if (next == -1) {
+                if (endOfBlock) {
+                    // COMPRESSION_ERROR
+                    throw new IOException("header block ends in the middle of a field");
+                }
+                if (len - pos > MAX_PENDING) {
+                    throw new IOException("header field too large");
+                }
+                pending = ByteArray.from(data.sub(pos, len - pos).toNewJavaArray());
+                break;
+            }
+            pos = next;
+        }
+    }
+
+    /**
+     * @return offset after the field, or -1 if the field is not complete
+     */
+    private int decodeField(ByteArray data, int pos, int len, List<Header> out) throws IOException {
+        int b = data.get(pos) & 0xff;
+        if ((b & 0xe0) == 0x20) {
+            // dynamic table size update
+            pos = readInt(data, pos, len, 5);
+            if (pos == -1) {
+                return -1;
+            }
+            if (integer > maxTableSize) {
+                throw new IOException("invalid max dynamic table size");
+            }
+            tableSizeChangeRequired = false;
+            table.setCapacity(integer);
+            return pos;
+        }
+        if (tableSizeChangeRequired) {
+            throw new IOException("max dynamic table size change required");
+        }
+        if ((b & 0x80) != 0) {
+            // indexed header field
+            pos = readInt(data, pos, len, 7);
+            if (pos == -1) {
+                return -1;
+            }
+            if (integer == 0) {
+                throw new IOException("illegal index value");
+            }
+            out.add(lookup(integer));
+            return pos;
+        }
+
+        boolean indexing = (b & 0x40) != 0;
+        boolean sensitive = !indexing && (b & 0x10) != 0;
+        pos = readInt(data, pos, len, indexing ? 6 : 4);
+        if (pos == -1) {
+            return -1;
+        }
+        Header nameEntry = null;
+        byte[] name = null;
+        if (integer == 0) {
+            pos = readString(data, pos, len);
+            if (pos == -1) {
+                return -1;
+            }
+            name = string;
+        } else {
+            nameEntry = lookup(integer);
+        }
+        pos = readString(data, pos, len);
+        if (pos == -1) {
+            return -1;
+        }
+        byte[] value = string;
+
+        Header h;
+        if (nameEntry == null) {
+            h = new Header(name, value, sensitive);
+        } else {
+            // share the name with the table entry
+            h = new Header(nameEntry.keyStr, nameEntry.key, value, sensitive);
+        }
+        if (indexing) {
+            table.add(h, 0);
+        }
+        out.add(h);
+        return pos;
+    }
+
+    private Header lookup(int index) throws IOException {
+        if (index <= HPackStaticTable.LENGTH) {
+            return HPackStaticTable.get(index);
+        }
+        index -= HPackStaticTable.LENGTH;
+        if (index > table.length()) {
+            throw new IOException("illegal index value");
+        }
+        return table.get(index);
+    }
+
+    /**
+     * Read an integer with the n bits prefix (rfc7541 section 5.1), the result is stored in {@link #integer}.
+     *
+     * @return offset after the integer, or -1 if more bytes are required
+     */
+    private int readInt(ByteArray data, int pos, int len, int prefixBits) throws IOException {
+        int max = (1 << prefixBits) - 1;
+        int v = data.get(pos++) & max;
+        if (v < max) {
+            integer = v;
+            return pos;
+        }
+        long value = v;
+        int shift = 0;
+        while (true) {
+            if (pos >= len) {
+                return -1;
+            }
+            int b = data.get(pos++) & 0xff;
+            value += (long) (b & 0x7f) << shift;
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("decompression failure");
+            }
+            if ((b & 0x80) == 0) {
+                integer = (int) value;
+                return pos;
+            }
+            shift += 7;
+            if (shift > 28) {
+                throw new IOException("decompression failure");
+            }
+        }
+    }
+
+    /**
+     * Read a string literal (rfc7541 section 5.2), the result is stored in {@link #string}.
+     *
+     * @return offset after the string, or -1 if more bytes are required
+     */
+    private int readString(ByteArray data, int pos, int len) throws IOException {
+        if (pos >= len) {
+            return -1;
+        }
+        boolean huffman = (data.get(pos) & 0x80) != 0;
+        pos = readInt(data, pos, len, 7);
+        if (pos == -1) {
+            return -1;
+        }
+        int n = integer;
+        if (len - pos < n) {
+            return -1;
+        }
+        if (huffman) {
+            int max = HPackHuffman.maxDecodedLength(n);
+            if (huffmanBuf.length < max) {
+                huffmanBuf = new byte[Math.max(max, huffmanBuf.length * 2)];
+            }
+            int decoded = HPackHuffman.decode(data, pos, n, huffmanBuf);
+            if (decoded < 0) {
+                throw new IOException("invalid huffman encoded string");
+            }
+            string = Arrays.copyOf(huffmanBuf, decoded);
+        } else {
+            var bytes = new byte[n];
+            if (n > 0) {
+                data.sub(pos, n).toNewJavaArray(bytes, 0);
+            }
+            string = bytes;
+        }
+        return pos + n;
+    }
+}
@@ -0,0 +1,113 @@
+package io.vproxy.base.processor.httpbin.hpack;
+
+import io.vproxy.base.processor.httpbin.entity.Header;
+
+import java.util.Arrays;
+
+/**
+ * The hpack dynamic table, entries are kept in a ring buffer and the newest entry has index 1.<br>
+ * Headers are stored as they are, so indexed fields are emitted by the decoder without copying.
+ */
+class HPackDynamicTable {
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private Header[] entries = new Header[16];
+    // hash of the names, only used by the encoder
+    private int[] hashes = new int[16];
+    private int head = 0; // slot of the next entry to add
+    private int count = 0;
+    private int size = 0;
+    private int capacity;
+
+    HPackDynamicTable(int capacity) {
+        this.capacity = capacity;
+    }
+
+    static int sizeOf(byte[] name, byte[] value) {
+        return name.length + value.length + ENTRY_OVERHEAD;
+    }
+
+    int length() {
+        return count;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    // 1 <= index <= length()
+    Header get(int index) {
+        return entries[(head - index) & (entries.length - 1)];
+    }
+
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+        evict(0);
+    }
+
+    void add(Header h, int hash) {
+        int s = sizeOf(h.key, h.value);
+        if (s > capacity) {
+            // adding an entry larger than the capacity empties the table
+            evict(capacity + 1);
+            return;
+        }
+        evict(s);
+        if (count == entries.length) {
+            grow();
+        }
+        entries[head] = h;
+        hashes[head] = hash;
+        head = (head + 1) & (entries.length - 1);
+        ++count;
+        size += s;
+    }
+
+    private void evict(int required) {
+        while (count > 0 && size + required > capacity) {
+            int slot = (head - count) & (entries.length - 1);
+            var h = entries[slot];
+            entries[slot] = null;
+            size -= sizeOf(h.key, h.value);
+            --count;
+        }
+    }
+
+    private void grow() {
+        var newEntries = new Header[entries.length * 2];
+        var newHashes = new int[entries.length * 2];
+        for (int i = 0; i < count; ++i) {
+            int slot = (head - count + i) & (entries.length - 1);
+            newEntries[i] = entries[slot];
+            newHashes[i] = hashes[slot];
+        }
+        entries = newEntries;
+        hashes = newHashes;
+        head = count;
+    }
+
+    /**
+     * @return index of the entry with the same name and value,
+     * or the negative index of the newest entry with the same name, or 0 if not found
+     */
+    int find(byte[] name, int hash, byte[] value) {
+        int nameIndex = 0;
+        for (int i = 1; i <= count; ++i) {
+            int slot = (head - i) & (entries.length - 1);
+            if (hashes[slot] != hash) {
+                continue;
+            }
+            var h = entries[slot];
+            if (!Arrays.equals(h.key, name)) {
+                continue;
+            }
+            if (Arrays.equals(h.value, value)) {
+                return i;
+            }
+            if (nameIndex == 0) {
+                nameIndex = -i;
+            }
+        }
+        return nameIndex;
+    }
+}
@@ -0,0 +1,151 @@
+package io.vproxy.base.processor.httpbin.hpack;
+
+import io.vproxy.base.processor.httpbin.entity.Header;
+import io.vproxy.base.util.ByteArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes header blocks (rfc7541) into a reused buffer.<br>
+ * Headers are indexed in the dynamic table when they fit, sensitive headers are never indexed.
+ * String literals are huffman encoded when it makes them shorter.
+ */
+class HPackEncoder {
+    private final HPackDynamicTable table;
+    // dynamic table size updates to be sent at the beginning of the next header block
+    private int minSizeUpdate = -1;
+    private int sizeUpdate = -1;
+    private byte[] buf = new byte[512];
+    private int pos;
+
+    HPackEncoder(int maxTableSize) {
+        this.table = new HPackDynamicTable(maxTableSize);
+    }
+
+    void setMaxHeaderTableSize(int size) {
+        if (size == table.capacity() && sizeUpdate == -1) {
+            return;
+        }
+        table.setCapacity(size);
+        if (minSizeUpdate == -1 || size < minSizeUpdate) {
+            minSizeUpdate = size;
+        }
+        sizeUpdate = size;
+    }
+
+    ByteArray encode(List<Header> headers) {
+        pos = 0;
+        if (sizeUpdate != -1) {
+            // the smallest size must be signaled if the table size is reduced then increased
+            if (minSizeUpdate < sizeUpdate) {
+                writeInt(0x20, 5, minSizeUpdate);
+            }
+            writeInt(0x20, 5, sizeUpdate);
+            minSizeUpdate = -1;
+            sizeUpdate = -1;
+        }
+        for (var h : headers) {
+            encodeHeader(h);
+        }
+        return ByteArray.from(Arrays.copyOf(buf, pos));
+    }
+
+    private void encodeHeader(Header h) {
+        byte[] name = h.key;
+        byte[] value = h.value;
+        int hash = HPackStaticTable.hash(name);
+
+        if (h.caseSensitive) {
+            // never indexed
+            writeLiteral(0x10, 4, nameIndex(name, hash), name, value);
+            return;
+        }
+        if (table.capacity() == 0) {
+            // the peer only uses the static table
+            int st = HPackStaticTable.find(name, hash, value);
+            if (st > 0) {
+                writeInt(0x80, 7, st);
+            } else {
+                writeLiteral(0x00, 4, -st, name, value);
+            }
+            return;
+        }
+        if (HPackDynamicTable.sizeOf(name, value) > table.capacity()) {
+            writeLiteral(0x00, 4, nameIndex(name, hash), name, value);
+            return;
+        }
+
+        int dyn = table.find(name, hash, value);
+        if (dyn > 0) {
+            writeInt(0x80, 7, dyn + HPackStaticTable.LENGTH);
+            return;
+        }
+        int st = HPackStaticTable.find(name, hash, value);
+        if (st > 0) {
+            writeInt(0x80, 7, st);
+            return;
+        }
+        int nameIndex = st < 0 ? -st : (dyn < 0 ? -dyn + HPackStaticTable.LENGTH : 0);
+        writeLiteral(0x40, 6, nameIndex, name, value);
+        table.add(h, hash);
+    }
+
+    private int nameIndex(byte[] name, int hash) {
+        int st = HPackStaticTable.find(name, hash, null);
+        if (st < 0) {
+            return -st;
+        }
+        int dyn = table.find(name, hash, null);
+        if (dyn < 0) {
+            return -dyn + HPackStaticTable.LENGTH;
+        }
+        return 0;
+    }
+
+    private void writeLiteral(int mask, int prefixBits, int nameIndex, byte[] name, byte[] value) {
+        writeInt(mask, prefixBits, nameIndex);
+        if (nameIndex == 0) {
+            writeString(name);
+        }
+        writeString(value);
+    }
+
+    // rfc7541 section 5.1
+    private void writeInt(int mask, int prefixBits, int value) {
+        ensure(6);
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            buf[pos++] = (byte) (mask | value);
+            return;
+        }
+        buf[pos++] = (byte) (mask | max);
+        value -= max;
+        while ((value & ~0x7f) != 0) {
+            buf[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    // rfc7541 section 5.2
+    private void writeString(byte[] s) {
+        int huffmanLength = HPackHuffman.encodedLength(s);
+        if (huffmanLength < s.length) {
+            writeInt(0x80, 7, huffmanLength);
+            ensure(huffmanLength);
+            pos = HPackHuffman.encode(s, buf, pos);
+        } else {
+            writeInt(0x00, 7, s.length);
+            ensure(s.length);
+            System.arraycopy(s, 0, buf, pos, s.length);
+            pos += s.length;
+        }
+    }
+
+    private void ensure(int n) {
+        if (buf.length - pos < n) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+        }
+    }
+}
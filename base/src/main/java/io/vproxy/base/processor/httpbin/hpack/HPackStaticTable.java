@@ -0,0 +1,157 @@
+package io.vproxy.base.processor.httpbin.hpack;
+
+import io.vproxy.base.processor.httpbin.entity.Header;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The hpack static table, see rfc7541 appendix A.<br>
+ * Names are looked up with a perfect hash: the multiplier is chosen so that the 52 distinct names
+ * fall into different slots of a 128 slots table, which is verified when the class is loaded.
+ * Entries with the same name are adjacent, so values are compared only within the range of the name.
+ */
+class HPackStaticTable {
+    static final int LENGTH = 61;
+
+    private static final String[][] TABLE = {
+        {":authority", ""}, // 1
+        {":method", "GET"}, // 2
+        {":method", "POST"}, // 3
+        {":path", "/"}, // 4
+        {":path", "/index.html"}, // 5
+        {":scheme", "http"}, // 6
+        {":scheme", "https"}, // 7
+        {":status", "200"}, // 8
+        {":status", "204"}, // 9
+        {":status", "206"}, // 10
+        {":status", "304"}, // 11
+        {":status", "400"}, // 12
+        {":status", "404"}, // 13
+        {":status", "500"}, // 14
+        {"accept-charset", ""}, // 15
+        {"accept-encoding", "gzip, deflate"}, // 16
+        {"accept-language", ""}, // 17
+        {"accept-ranges", ""}, // 18
+        {"accept", ""}, // 19
+        {"access-control-allow-origin", ""}, // 20
+        {"age", ""}, // 21
+        {"allow", ""}, // 22
+        {"authorization", ""}, // 23
+        {"cache-control", ""}, // 24
+        {"content-disposition", ""}, // 25
+        {"content-encoding", ""}, // 26
+        {"content-language", ""}, // 27
+        {"content-length", ""}, // 28
+        {"content-location", ""}, // 29
+        {"content-range", ""}, // 30
+        {"content-type", ""}, // 31
+        {"cookie", ""}, // 32
+        {"date", ""}, // 33
+        {"etag", ""}, // 34
+        {"expect", ""}, // 35
+        {"expires", ""}, // 36
+        {"from", ""}, // 37
+        {"host", ""}, // 38
+        {"if-match", ""}, // 39
+        {"if-modified-since", ""}, // 40
+        {"if-none-match", ""}, // 41
+        {"if-range", ""}, // 42
+        {"if-unmodified-since", ""}, // 43
+        {"last-modified", ""}, // 44
+        {"link", ""}, // 45
+        {"location", ""}, // 46
+        {"max-forwards", ""}, // 47
+        {"proxy-authenticate", ""}, // 48
+        {"proxy-authorization", ""}, // 49
+        {"range", ""}, // 50
+        {"referer", ""}, // 51
+        {"refresh", ""}, // 52
+        {"retry-after", ""}, // 53
+        {"server", ""}, // 54
+        {"set-cookie", ""}, // 55
+        {"strict-transport-security", ""}, // 56
+        {"transfer-encoding", ""}, // 57
+        {"user-agent", ""}, // 58
+        {"vary", ""}, // 59
+        {"via", ""}, // 60
+        {"www-authenticate", ""}, // 61
+    };
+
+    private static final int HASH_BITS = 7;
+    private static final int HASH_MULTIPLIER = 0x296013db;
+
+    // index 0 is not used
+    private static final Header[] ENTRIES = new Header[LENGTH + 1];
+    // first index << 8 | last index of the name, 0 if the slot is empty
+    private static final int[] NAME_SLOTS = new int[1 << HASH_BITS];
+
+    static {
+        for (int i = 1; i <= LENGTH; ++i) {
+            byte[] name = TABLE[i - 1][0].getBytes(StandardCharsets.US_ASCII);
+            byte[] value = TABLE[i - 1][1].getBytes(StandardCharsets.US_ASCII);
+            var prev = ENTRIES[i - 1];
+            if (prev != null && Arrays.equals(prev.key, name)) {
+                // share the name with the previous entry
+                ENTRIES[i] = new Header(prev.keyStr, prev.key, value, false);
+            } else {
+                ENTRIES[i] = new Header(TABLE[i - 1][0], name, value, false);
+            }
+
+            int slot = slot(hash(name));
+            int range = NAME_SLOTS[slot];
+            if (range == 0) {
+                NAME_SLOTS[slot] = i << 8 | i;
+            } else if (Arrays.equals(ENTRIES[range >>> 8].key, name)) {
+                NAME_SLOTS[slot] = (range & ~0xff) | i;
+            } else {
+                throw new IllegalStateException("hash collision of static table names: "
+                    + ENTRIES[range >>> 8].keyStr + " and " + TABLE[i - 1][0]);
+            }
+        }
+    }
+
+    private HPackStaticTable() {
+    }
+
+    static int hash(byte[] name) {
+        int h = 0;
+        for (byte b : name) {
+            h = h * 31 + (b & 0xff);
+        }
+        return h;
+    }
+
+    private static int slot(int hash) {
+        return (hash * HASH_MULTIPLIER) >>> (32 - HASH_BITS);
+    }
+
+    // 1 <= index <= LENGTH
+    static Header get(int index) {
+        return ENTRIES[index];
+    }
+
+    /**
+     * @param hash {@link #hash(byte[])} of the name
+     * @return index of the entry with the same name and value,
+     * or the negative index of the first entry with the same name, or 0 if not found
+     */
+    static int find(byte[] name, int hash, byte[] value) {
+        int range = NAME_SLOTS[slot(hash)];
+        if (range == 0) {
+            return 0;
+        }
+        int first = range >>> 8;
+        if (!Arrays.equals(ENTRIES[first].key, name)) {
+            return 0;
+        }
+        if (value != null) {
+            for (int i = first, last = range & 0xff; i <= last; ++i) {
+                if (Arrays.equals(ENTRIES[i].value, value)) {
+                    return i;
+                }
+            }
+        }
+        return -first;
+    }
+}
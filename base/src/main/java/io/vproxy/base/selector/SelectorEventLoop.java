@@ -60,7 +60,8 @@ public class SelectorEventLoop implements AutoCloseable {
     public final WrappedSelector selector;
     public final FDs fds;
     private final InitOptions initOptions;
-    private final TimeQueue<Runnable> timeQueue = TimeQueue.create();
+    private final TimeQueue<Runnable> timeQueue;
+    private final ArrayList<Runnable> timeEventsToRun = new ArrayList<>();
     private final ConcurrentLinkedQueue<Runnable> runOnLoopEvents = new ConcurrentLinkedQueue<>();
 
     private final Lock channelRegisteringLock = Lock.create();
@@ -71,6 +72,10 @@ public class SelectorEventLoop implements AutoCloseable {
     private final HandlerContext ctxReuse1 = new HandlerContext(this);
     private volatile Thread runningThread;
 
+    // ewma of the time spent on handling events (excluding select) in each poll
+    // only written by the loop thread
+    private volatile long loopLagNanos = 0;
+
     // these locks are a little tricky
     // see comments in loop() and close()
     private final Lock CLOSE_LOCK;
@@ -86,6 +91,8 @@ public class SelectorEventLoop implements AutoCloseable {
         public boolean preferPoll = false;
         public long coreAffinity = -1;
         public int epfd = 0;
+        public boolean ioUring = VFDConfig.useIOUring;
+        public boolean timingWheel = Config.useTimingWheel;
 
         public InitOptions() {
         }
@@ -94,13 +101,15 @@ public class SelectorEventLoop implements AutoCloseable {
             this.preferPoll = opts.preferPoll;
             this.coreAffinity = opts.coreAffinity;
             this.epfd = opts.epfd;
+            this.ioUring = opts.ioUring;
+            this.timingWheel = opts.timingWheel;
         }
     }
 
     private SelectorEventLoop(FDs fds, InitOptions opts) throws IOException {
         FDSelector fdSelector;
         if (fds instanceof FDsWithOpts) {
-            fdSelector = ((FDsWithOpts) fds).openSelector(new FDsWithOpts.Options(opts.preferPoll, opts.epfd));
+            fdSelector = ((FDsWithOpts) fds).openSelector(new FDsWithOpts.Options(opts.preferPoll, opts.epfd, opts.ioUring));
         } else {
             fdSelector = fds.openSelector();
         }
@@ -108,6 +117,7 @@ public class SelectorEventLoop implements AutoCloseable {
         this.fds = fds;
         CLOSE_LOCK = Lock.create();
         this.initOptions = new InitOptions(opts);
+        this.timeQueue = opts.timingWheel ? TimeQueue.createTimingWheel() : TimeQueue.create();
     }
 
     private NetEventLoop netEventLoop = null;
@@ -200,13 +210,17 @@ public class SelectorEventLoop implements AutoCloseable {
     }
 
     private void handleTimeEvents() {
-        List<Runnable> toRun = new LinkedList<>();
+        var toRun = timeEventsToRun;
         while (timeQueue.nextTime(Config.currentTimestamp) == 0) {
             Runnable r = timeQueue.poll();
             toRun.add(r);
         }
-        for (Runnable r : toRun) {
-            tryRunnable(r);
+        try {
+            for (int i = 0, n = toRun.size(); i < n; ++i) {
+                tryRunnable(toRun.get(i));
+            }
+        } finally {
+            toRun.clear();
         }
     }
 
@@ -297,6 +311,7 @@ public class SelectorEventLoop implements AutoCloseable {
     // return  0 for continue
     @Blocking
     public int onePoll() {
+        long beginHandling = System.nanoTime();
         //noinspection unused
         try (var unused = CLOSE_LOCK.lock()) {
             // yes, we lock the whole while body (except the select part)
@@ -316,6 +331,7 @@ public class SelectorEventLoop implements AutoCloseable {
 
         int maxSleepMillis = runBeforePoll();
 
+        long handlingNanos = System.nanoTime() - beginHandling;
         final Collection<SelectedEntry> selected;
         try {
             if (timeQueue.isEmpty() && runOnLoopEvents.isEmpty() && maxSleepMillis < 0) {
@@ -341,6 +357,7 @@ public class SelectorEventLoop implements AutoCloseable {
             return 0;
         }
 
+        beginHandling = System.nanoTime();
         if (runAfterPoll()) {
             Logger.warn(LogType.ALERT, "event loop terminates because afterPoll callback returns true");
             return -1;
@@ -360,9 +377,20 @@ public class SelectorEventLoop implements AutoCloseable {
                 doHandling(keys);
             }
         }
+        handlingNanos += System.nanoTime() - beginHandling;
+        long lag = loopLagNanos;
+        loopLagNanos = lag + ((handlingNanos - lag) >> 3);
         return 0;
     }
 
+    /**
+     * @return moving average of the time spent on handling events in each poll,
+     * which is the delay of a newly fired event when the loop is busy
+     */
+    public long getLoopLagNanos() {
+        return loopLagNanos;
+    }
+
     @Blocking
     public void loop() {
         // try to set core affinity
@@ -472,9 +500,14 @@ public class SelectorEventLoop implements AutoCloseable {
         }
     }
 
+    // registrations of poll and io_uring are not thread safe, they must be operated on the loop thread
+    private boolean mustOperateOnLoop() {
+        return (initOptions.preferPoll || initOptions.ioUring) && Thread.currentThread() != runningThread;
+    }
+
     // a helper function for adding a channel into the selector
     private Promise<FD> add0(FD channel, EventSet ops, RegisterData registerData) throws IOException {
-        if (initOptions.preferPoll && Thread.currentThread() != runningThread) {
+        if (mustOperateOnLoop()) {
             return add0PreferPoll(channel, ops, registerData);
         }
 
@@ -501,7 +534,7 @@ public class SelectorEventLoop implements AutoCloseable {
     }
 
     private Promise<FD> add0PreferPoll(FD channel, EventSet ops, RegisterData registerData) {
-        assert Logger.lowLevelDebug("preferPoll enabled, so must wake it up to let the new fd take effect");
+        assert Logger.lowLevelDebug("preferPoll or io_uring enabled, so must wake it up to let the new fd take effect");
         return Promise.wrap(cb -> runOnLoop(() -> {
             Promise<FD> res;
             try {
@@ -519,8 +552,8 @@ public class SelectorEventLoop implements AutoCloseable {
     }
 
     private void doModify(FD fd, EventSet ops) {
-        if (initOptions.preferPoll && Thread.currentThread() != runningThread) {
-            assert Logger.lowLevelDebug("preferPoll enabled, so must wake it up to update the fd");
+        if (mustOperateOnLoop()) {
+            assert Logger.lowLevelDebug("preferPoll or io_uring enabled, so must wake it up to update the fd");
             runOnLoop(() -> doModify(fd, ops));
             return;
         }
@@ -553,8 +586,8 @@ public class SelectorEventLoop implements AutoCloseable {
 
     @ThreadSafe
     public void remove(FD channel) {
-        if (initOptions.preferPoll && Thread.currentThread() != runningThread) {
-            assert Logger.lowLevelDebug("preferPoll enabled, so must wake it up to let the fd removed");
+        if (mustOperateOnLoop()) {
+            assert Logger.lowLevelDebug("preferPoll or io_uring enabled, so must wake it up to let the fd removed");
             runOnLoop(() -> remove(channel));
             return;
         }
@@ -60,4 +60,16 @@ public abstract class AbstractDelegateSocketFD extends AbstractDelegateFD<Socket
         preCheck();
         return getSourceFD().write(src);
     }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int off, int count) throws IOException {
+        preCheck();
+        return getSourceFD().read(dsts, off, count);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int off, int count) throws IOException {
+        preCheck();
+        return getSourceFD().write(srcs, off, count);
+    }
 }
@@ -28,5 +28,17 @@ public abstract class ArqUDPHandler {
 
     abstract public void clock(long ts) throws IOException;
 
-    abstract public int clockInterval();
+    /**
+     * @param ts current timestamp
+     * @return the timestamp when {@link #clock(long)} should be called again,
+     * or -1 if it's not required to be called until data is written or parsed
+     */
+    abstract public long nextClock(long ts);
+
+    /**
+     * Called when the buffer passed to the emitter is sent or dropped, the handler may reuse it.
+     */
+    public void emitted(ByteArrayChannel buf) {
+        // do nothing
+    }
 }
@@ -3,8 +3,8 @@ package io.vproxy.base.selector.wrap.arqudp;
 import io.vproxy.base.Config;
 import io.vproxy.base.selector.Handler;
 import io.vproxy.base.selector.HandlerContext;
-import io.vproxy.base.selector.PeriodicEvent;
 import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.selector.TimerEvent;
 import io.vproxy.base.selector.wrap.VirtualFD;
 import io.vproxy.base.selector.wrap.WrappedSelector;
 import io.vproxy.base.util.ByteArray;
@@ -12,6 +12,7 @@ import io.vproxy.base.util.LogType;
 import io.vproxy.base.util.Logger;
 import io.vproxy.base.util.Utils;
 import io.vproxy.base.util.nio.ByteArrayChannel;
+import io.vproxy.base.util.thread.VProxyThread;
 import io.vproxy.vfd.EventSet;
 import io.vproxy.vfd.FD;
 import io.vproxy.vfd.IPPort;
@@ -39,7 +40,15 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
     private final Deque<ByteArrayChannel> writeBufs = new LinkedList<>(); // data to network level
     private boolean notFullySent = false; // the flag indicating that it cannot send data
 
-    private PeriodicEvent periodicEvent;
+    // the handler is clocked when data is written or parsed (at most once in each loop iteration),
+    // and at the time it requires, instead of being clocked periodically
+    private boolean registered = false;
+    private boolean clockRequested = false;
+    private boolean clocking = false;
+    private final Runnable clockTask = this::clock;
+    private TimerEvent clockTimer;
+    private long clockTimerTs;
+    private long clockTimerSeq = 0;
 
     private final MirrorDataFactory readingMirrorDataFactory;
     private final MirrorDataFactory writingMirrorDataFactory;
@@ -64,11 +73,13 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
             if (notFullySent) {
                 assert Logger.lowLevelDebug("`notFullySent` flag is set, clear the writeBufs queue");
                 notFullySent = false; // unset flag
-                writeBufs.clear(); // clear the queue
+                clearWriteBufs(); // clear the queue
             }
             writeBufs.add(b);
             assert Logger.lowLevelDebug("writeBufs currently have " + writeBufs.size() + " elements");
-            fdHandler.watchInsideFDWritable();
+            if (!clocking) {
+                fdHandler.watchInsideFDWritable();
+            } // otherwise the data will be flushed after clocking
         });
         // the fd is always writable when just constructed because writing queue is empty
         setSelfFDWritable();
@@ -237,9 +248,76 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
         assert Logger.lowLevelNetDebugPrintBytes(copy);
 
         handler.write(ByteArray.from(copy));
+        requestClock();
         return n;
     }
 
+    private void clearWriteBufs() {
+        ByteArrayChannel buf;
+        while ((buf = writeBufs.poll()) != null) {
+            handler.emitted(buf);
+        }
+    }
+
+    private void requestClock() {
+        if (clockRequested) {
+            return;
+        }
+        clockRequested = true;
+        loop.nextTick(clockTask);
+    }
+
+    private void clock() {
+        clockRequested = false;
+        if (!registered) {
+            return;
+        }
+        long now = Config.currentTimestamp;
+        clocking = true;
+        try {
+            handler.clock(now);
+        } catch (IOException e) {
+            fdHandler.setError(e);
+            cancelClockTimer();
+            return;
+        } finally {
+            clocking = false;
+        }
+        // send everything generated in this clock
+        if (!writeBufs.isEmpty()) {
+            fdHandler.flushWriteBufs();
+        }
+        scheduleClock(now, handler.nextClock(now));
+    }
+
+    private void scheduleClock(long now, long next) {
+        if (next < 0) {
+            cancelClockTimer();
+            return;
+        }
+        if (clockTimer != null && clockTimerTs <= next) {
+            return; // will be clocked in time
+        }
+        cancelClockTimer();
+        long seq = ++clockTimerSeq;
+        clockTimerTs = next;
+        clockTimer = loop.delay((int) Math.max(0, next - now), () -> {
+            if (seq != clockTimerSeq) {
+                return; // canceled
+            }
+            clockTimer = null;
+            clock();
+        });
+    }
+
+    private void cancelClockTimer() {
+        ++clockTimerSeq;
+        if (clockTimer != null) {
+            clockTimer.cancel();
+            clockTimer = null;
+        }
+    }
+
     @Override
     public void configureBlocking(boolean b) throws IOException {
         fd.configureBlocking(b);
@@ -283,13 +361,8 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
             Logger.shouldNotHappen("onRegister callback failed when adding fd " + fd + " to loop", e);
             throw new RuntimeException(e);
         }
-        periodicEvent = loop.period(handler.clockInterval(), () -> {
-            try {
-                handler.clock(Config.currentTimestamp);
-            } catch (IOException e) {
-                fdHandler.setError(e);
-            }
-        });
+        registered = true;
+        requestClock();
 
         // register self fd events
         if (selfFDReadable) {
@@ -303,9 +376,8 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
     @Override
     public void onRemove() {
         assert Logger.lowLevelDebug(this + ".onRemove()");
-        if (periodicEvent != null) {
-            periodicEvent.cancel();
-        }
+        registered = false;
+        cancelClockTimer();
         loop.remove(fd);
     }
 
@@ -333,7 +405,6 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
     }
 
     private class ArqUDPInsideFDHandler implements Handler<SocketFD> {
-        private final ByteBuffer tmpBuffer = Utils.allocateByteBuffer(Config.udpMtu);
         private IOException error = null;
         private boolean invalid = false;
 
@@ -388,8 +459,29 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
             writable(ctx);
         }
 
+        private ByteBuffer readBuffer() {
+            var v = VProxyThread.current();
+            if (v.threadLocalArqUDPReadBuffer == null) {
+                v.threadLocalArqUDPReadBuffer = Utils.allocateByteBuffer(Config.udpMtu);
+            }
+            return v.threadLocalArqUDPReadBuffer;
+        }
+
+        private ByteBuffer writeBuffer(int len) {
+            var v = VProxyThread.current();
+            ByteBuffer buf = v.threadLocalArqUDPWriteBuffer;
+            if (buf == null || buf.capacity() < len) {
+                buf = Utils.allocateByteBuffer(Math.max(len, 2048));
+                v.threadLocalArqUDPWriteBuffer = buf;
+            }
+            buf.limit(len).position(0);
+            return buf;
+        }
+
         @Override
         public void readable(HandlerContext<SocketFD> ctx) {
+            // the buffer is shared, the data is copied out in readableOne()
+            ByteBuffer tmpBuffer = readBuffer();
             while (true) {
                 int readBytes;
                 try {
@@ -411,7 +503,7 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
                     return;
                 }
                 try {
-                    readableOne();
+                    readableOne(tmpBuffer);
                 } finally {
                     // reset the tmpBuffer
                     tmpBuffer.limit(tmpBuffer.capacity()).position(0);
@@ -419,7 +511,7 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
             }
         }
 
-        public void readableOne() {
+        public void readableOne(ByteBuffer tmpBuffer) {
             // copy into the tmp byteArrayChannel
             tmpBuffer.flip();
             int len = tmpBuffer.limit() - tmpBuffer.position();
@@ -449,6 +541,8 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
             if (handler.writableLen() > 0) {
                 setSelfFDWritable();
             }
+            // acks should be sent
+            requestClock();
             if (b == null) {
                 // still cannot handle
                 // want more data, so:
@@ -464,6 +558,10 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
         @Override
         public void writable(HandlerContext<SocketFD> ctx) {
             assert Logger.lowLevelDebug("writable for " + ctx.getChannel() + " in " + ArqUDPSocketFD.this);
+            flushWriteBufs();
+        }
+
+        private void flushWriteBufs() {
             while (true) {
                 ByteArrayChannel buf = writeBufs.peek();
 
@@ -475,27 +573,30 @@ public class ArqUDPSocketFD implements SocketFD, VirtualFD {
                 }
                 if (buf.used() == 0) {
                     writeBufs.poll();
+                    handler.emitted(buf);
                     continue;
                 }
 
-                assert Logger.lowLevelDebug("arq udp socket is writing " + buf.used() + " bytes to " + ctx.getChannel());
+                assert Logger.lowLevelDebug("arq udp socket is writing " + buf.used() + " bytes to " + fd);
                 assert Logger.lowLevelNetDebugPrintBytes(buf.getBytes(), buf.getReadOff(), buf.getWriteOff());
 
                 // try to write data
                 int wlen = buf.used();
-                ByteBuffer foo = ByteBuffer.wrap(buf.readableArray().toJavaArray());
+                ByteBuffer foo = writeBuffer(wlen);
+                buf.readableArray().byteBufferPut(foo, 0, wlen);
+                foo.flip();
                 int wrote;
                 try {
-                    wrote = ctx.getChannel().write(foo);
+                    wrote = fd.write(foo);
                 } catch (IOException e) {
-                    Logger.error(LogType.CONN_ERROR, "writing data to " + ctx.getChannel() + " failed", e);
+                    Logger.error(LogType.CONN_ERROR, "writing data to " + fd + " failed", e);
                     setError(e);
                     return;
                 }
                 if (wrote < wlen) {
                     assert Logger.lowLevelDebug("not all data wrote: " + (wlen - wrote));
                     if (wrote != 0) {
-                        Logger.shouldNotHappen("writing half udp packet to the fd " + ctx.getChannel());
+                        Logger.shouldNotHappen("writing half udp packet to the fd " + fd);
                     }
 
                     // so the inside fd is not writable for now
@@ -9,6 +9,10 @@ import java.io.IOException;
 
 public class H2StreamedClientFDs extends StreamedArqUDPClientFDs {
     public H2StreamedClientFDs(ArqUDPBasedFDs fds, SelectorEventLoop loop, IPPort remote) throws IOException {
-        super(fds, loop, remote, () -> new H2StreamedFDHandler(true));
+        this(fds, loop, remote, false);
+    }
+
+    public H2StreamedClientFDs(ArqUDPBasedFDs fds, SelectorEventLoop loop, IPPort remote, boolean flowControl) throws IOException {
+        super(fds, loop, remote, () -> new H2StreamedFDHandler(true, flowControl));
     }
 }
@@ -22,10 +22,13 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
     private static final byte TYPE_SETTINGS = 0x4;
     private static final byte TYPE_PING = 0x6;
     private static final byte TYPE_GOAWAY = 0x7;
+    private static final byte TYPE_WINDOW_UPDATE = 0x8; // only valid when flow control is negotiated
     private static final List<Byte> validTypes = Arrays.asList(
         TYPE_DATA, TYPE_HEADER, TYPE_PING, TYPE_GOAWAY // TYPE_SETTINGS is not valid after handshaking
     );
-    private static final List<Byte> validTypesWithPayload = Arrays.asList(TYPE_DATA, TYPE_GOAWAY, TYPE_PING);
+    private static final List<Byte> validTypesWithPayload = Arrays.asList(TYPE_DATA, TYPE_GOAWAY, TYPE_PING, TYPE_WINDOW_UPDATE);
+
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
 
     private static final byte FLAG_CLOSE_STREAM = 0x1;
     private static final byte FLAG_ACK = 0x1;
@@ -37,6 +40,16 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
         return HEAD.copy().set(3, TYPE_SETTINGS);
     }
 
+    private static ByteArray getInitialWindowSettings(int window) {
+        return HEAD.copy().int24(0, 6).set(3, TYPE_SETTINGS)
+            .concat(ByteArray.allocate(6).int16(0, SETTINGS_INITIAL_WINDOW_SIZE).int32(2, window));
+    }
+
+    private static ByteArray getWindowUpdate(int streamId, int increment) {
+        return HEAD.copy().int24(0, 4).set(3, TYPE_WINDOW_UPDATE).int32(5, streamId)
+            .concat(ByteArray.allocate(4).int32(0, increment));
+    }
+
     private static ByteArray getEmptyHeader(int streamId) {
         return HEAD.copy().set(3, TYPE_HEADER).int32(5, streamId);
     }
@@ -84,8 +97,20 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
         return HEAD.copy().int24(0, array.length()).set(3, TYPE_DATA).set(4, flag).int32(5, streamId).concat(array);
     }
 
+    // client: whether to request flow control, server: whether the client requested flow control
+    private boolean requestFlowControl;
+
     protected H2StreamedFDHandler(boolean client) {
+        this(client, false);
+    }
+
+    /**
+     * @param flowControl only used by clients, whether to request per-stream flow control during handshaking,
+     *                    note that servers of old versions do not support it and will reject the handshake
+     */
+    protected H2StreamedFDHandler(boolean client, boolean flowControl) {
         super(client);
+        this.requestFlowControl = client && flowControl;
     }
 
     @Override
@@ -100,15 +125,73 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
 
     @Override
     protected ByteArray clientHandshakeMessage() {
+        if (requestFlowControl) {
+            return getInitialWindowSettings(STREAM_RECEIVE_WINDOW);
+        }
         return getEmptySettings();
     }
 
     @Override
     protected int clientReceiveHandshakeMessage(ByteArray array) throws IOException {
+        int n = receiveHandshakeMessage(array);
+        if (n == 0) {
+            return 0;
+        }
+        Integer window = initialWindow(array, n);
+        if (requestFlowControl) {
+            if (window == null) {
+                throw new IOException("flow control is requested but the server does not support it");
+            }
+            flowControlNegotiated(window);
+        }
+        return n;
+    }
+
+    @Override
+    protected int serverReceiveHandshakeMessage(ByteArray array) throws IOException {
+        int n = receiveHandshakeMessage(array);
+        if (n == 0) {
+            return 0;
+        }
+        Integer window = initialWindow(array, n);
+        if (window != null) {
+            requestFlowControl = true;
+            flowControlNegotiated(window);
+        }
+        return n;
+    }
+
+    // the settings frame may carry settings, only SETTINGS_INITIAL_WINDOW_SIZE is recognized
+    private Integer initialWindow(ByteArray array, int frameLen) throws IOException {
+        Integer window = null;
+        for (int off = HEAD.length(); off + 6 <= frameLen; off += 6) {
+            int id = array.uint16(off);
+            int value = array.int32(off + 2);
+            if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                if (value <= 0) {
+                    throw new IOException("invalid initial window size: " + value);
+                }
+                window = value;
+            }
+        }
+        return window;
+    }
+
+    private int receiveHandshakeMessage(ByteArray array) throws IOException {
         if (array.length() < HEAD.length()) {
             return 0;
         }
-        if (!array.sub(0, HEAD.length()).equals(getEmptySettings())) {
+        if (type(array) == TYPE_SETTINGS && flag(array) == 0 && streamId(array) == 0) {
+            int len = len(array);
+            if (len % 6 != 0) {
+                throw new IOException("invalid settings frame length: " + len);
+            }
+            if (array.length() < HEAD.length() + len) {
+                return 0; // the frame is not complete, wait for next call
+            }
+            return HEAD.length() + len;
+        }
+        {
             // check whether is GOAWAY
             byte type = type(array);
             if (type == TYPE_GOAWAY) {
@@ -121,12 +204,6 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
             Logger.warn(LogType.INVALID_EXTERNAL_DATA, "got invalid handshake message, type=" + type);
             throw new IOException("handshake message is invalid");
         }
-        return HEAD.length();
-    }
-
-    @Override
-    protected int serverReceiveHandshakeMessage(ByteArray array) throws IOException {
-        return clientReceiveHandshakeMessage(array);
     }
 
     private int len(ByteArray array) throws IOException {
@@ -150,6 +227,12 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
     }
 
     private void checkType(byte type, int len) throws IOException {
+        if (type == TYPE_WINDOW_UPDATE && isFlowControlEnabled()) {
+            if (len != 4) {
+                throw new IOException("invalid window update frame len: " + len);
+            }
+            return;
+        }
         if (!validTypes.contains(type)) {
             throw new IOException("invalid frame type: " + type);
         }
@@ -215,6 +298,13 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
             case TYPE_GOAWAY:
                 handleGoAway(array);
                 return HEAD.length() + len;
+            case TYPE_WINDOW_UPDATE:
+                int increment = array.int32(HEAD.length()) & 0x7fffffff;
+                if (increment == 0) {
+                    throw new IOException("invalid window update increment: 0");
+                }
+                windowUpdateReceived(streamId, increment);
+                return HEAD.length() + len;
             case TYPE_PING:
                 // keep-alive packet
                 if (len < 8) {
@@ -257,7 +347,10 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
 
     @Override
     protected ByteArray serverHandshakeMessage() {
-        return clientHandshakeMessage();
+        if (requestFlowControl) {
+            return getInitialWindowSettings(STREAM_RECEIVE_WINDOW);
+        }
+        return getEmptySettings();
     }
 
     @Override
@@ -277,6 +370,11 @@ public class H2StreamedFDHandler extends StreamedFDHandler {
         return getEmptyCloseStreamData(streamId);
     }
 
+    @Override
+    protected ByteArray formatWindowUpdate(int streamId, int increment) {
+        return getWindowUpdate(streamId, increment);
+    }
+
     @Override
     protected ByteArray keepaliveMessage(long kId, boolean isAck) {
         return getPing(kId, isAck);
@@ -2,6 +2,7 @@ package io.vproxy.base.selector.wrap.kcp;
 
 import io.vproxy.base.selector.wrap.arqudp.ArqUDPHandler;
 import io.vproxy.base.selector.wrap.kcp.mock.ByteBuf;
+import io.vproxy.base.selector.wrap.kcp.mock.PooledByteBufAllocator;
 import io.vproxy.base.util.ByteArray;
 import io.vproxy.base.util.Logger;
 import io.vproxy.base.util.nio.ByteArrayChannel;
@@ -30,7 +31,8 @@ public class KCPHandler extends ArqUDPHandler {
         // decrease rto
         public int rxMinRto = 30;
 
-        // alert the kcp every few ms
+        // max interval between two clocks when kcp has something to send, ack or probe
+        // the kcp is not clocked when it's idle
         public int clockInterval = 10;
     }
 
@@ -46,6 +48,8 @@ public class KCPHandler extends ArqUDPHandler {
             emitter.accept(data.chnl);
         });
         this.kcp.setUser(identifier);
+        // buffers for output packets are given back in emitted()
+        kcp.setByteBufAllocator(PooledByteBufAllocator.DEFAULT);
         kcp.setStream(true); // we always use stream mode
         // configure kcp
         kcp.nodelay(options.nodelay, options.interval, options.resend, options.nc);
@@ -117,7 +121,20 @@ public class KCPHandler extends ArqUDPHandler {
     }
 
     @Override
-    public int clockInterval() {
-        return opts.clockInterval;
+    public long nextClock(long ts) {
+        if (isInvalid) {
+            return -1;
+        }
+        if (!kcp.checkFlush()) {
+            // nothing to send, ack or probe, wait for input or output
+            return -1;
+        }
+        return Math.min(kcp.check(ts), ts + opts.clockInterval);
+    }
+
+    @Override
+    public void emitted(ByteArrayChannel buf) {
+        // the ByteBuf is not available here, the pool ignores a buffer which it already holds
+        PooledByteBufAllocator.DEFAULT.release(buf);
     }
 }
@@ -31,6 +31,8 @@ import io.vproxy.base.util.Utils;
 import io.vproxy.base.util.coll.ReItrLinkedList;
 import io.vproxy.base.util.coll.ReusableListIterator;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -217,6 +219,9 @@ public class Kcp {
 
     private ByteBufAllocator byteBufAllocator = ByteBufAllocator.DEFAULT;
 
+    // reused for encoding segment headers
+    private final ByteBuffer segHeader = ByteBuffer.allocate(IKCP_OVERHEAD).order(ByteOrder.LITTLE_ENDIAN);
+
     /**
      * automatically set conv
      */
@@ -256,19 +261,21 @@ public class Kcp {
         kcp.output.out(data, kcp);
     }
 
-    private static int encodeSeg(ByteBuf buf, Segment seg) {
-        int offset = buf.writerIndex();
-
-        buf.writeIntLE(seg.conv);
-        buf.writeByte(seg.cmd);
-        buf.writeByte(seg.frg);
-        buf.writeShortLE(seg.wnd);
-        buf.writeIntLE((int) seg.ts);
-        buf.writeIntLE((int) seg.sn);
-        buf.writeIntLE((int) seg.una);
-        buf.writeIntLE(seg.data.readableBytes());
-
-        return buf.writerIndex() - offset;
+    private int encodeSeg(ByteBuf buf, Segment seg) {
+        ByteBuffer header = segHeader;
+        header.clear();
+        header.putInt(seg.conv);
+        header.put(seg.cmd);
+        header.put((byte) seg.frg);
+        header.putShort((short) seg.wnd);
+        header.putInt((int) seg.ts);
+        header.putInt((int) seg.sn);
+        header.putInt((int) seg.una);
+        header.putInt(seg.data.readableBytes());
+        header.flip();
+
+        buf.writeBytes(header);
+        return IKCP_OVERHEAD;
     }
 
     private static class Segment {
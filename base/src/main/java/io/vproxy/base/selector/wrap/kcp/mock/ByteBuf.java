@@ -7,9 +7,15 @@ import java.nio.ByteBuffer;
 
 public class ByteBuf {
     public final ByteArrayChannel chnl;
+    private ByteBufAllocator allocator;
 
     public ByteBuf(ByteArrayChannel chnl) {
+        this(chnl, null);
+    }
+
+    public ByteBuf(ByteArrayChannel chnl, ByteBufAllocator allocator) {
         this.chnl = chnl;
+        this.allocator = allocator;
     }
 
     /*
@@ -72,6 +78,15 @@ public class ByteBuf {
         return chnl.getWriteOff() + chnl.getWriteLen();
     }
 
+    /*
+     * Transfers the specified source buffer's data to this buffer starting at the current writerIndex until the source buffer has no remaining,
+     * and increases the writerIndex by the number of the transferred bytes.
+     */
+    public void writeBytes(ByteBuffer src) {
+        checkWriteBound(src.remaining());
+        chnl.write(src);
+    }
+
     /*
      * Transfers the specified source buffer's data to this buffer starting at the current writerIndex until the source buffer becomes unreadable,
      * and increases the writerIndex by the number of the transferred bytes.
@@ -103,7 +118,11 @@ public class ByteBuf {
     public void writeBytes(ByteBuf src, int srcIndex, int length) {
         checkWriteBound(length);
 
-        chnl.write(ByteArrayChannel.fromFull(src.chnl.getArray().sub(srcIndex, length)));
+        // read from srcIndex, then restore the readerIndex of src
+        int readerIndex = src.chnl.getReadOff();
+        src.chnl.setReadOff(srcIndex);
+        chnl.write(src.chnl, length);
+        src.chnl.setReadOff(readerIndex);
     }
 
     /*
@@ -182,8 +201,16 @@ public class ByteBuf {
         return chnl.getReadOff();
     }
 
+    /*
+     * Give the buffer back to the allocator which created it, the buffer must not be used after releasing.
+     */
     public void release() {
-        // do nothing
+        ByteBufAllocator allocator = this.allocator;
+        if (allocator == null) {
+            return;
+        }
+        this.allocator = null;
+        allocator.release(chnl);
     }
 
     @Override
@@ -19,4 +19,11 @@ public class ByteBufAllocator {
             return new ByteBuf(ByteArrayChannel.fromEmpty(size));
         }
     }
+
+    /**
+     * Called when the buffer is not used any more, the allocator may reuse it.
+     */
+    public void release(ByteArrayChannel chnl) {
+        // do nothing
+    }
 }
@@ -0,0 +1,80 @@
+package io.vproxy.base.selector.wrap.kcp.mock;
+
+import io.vproxy.base.util.coll.IntMap;
+import io.vproxy.base.util.nio.ByteArrayChannel;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Keeps released buffers and hands them out again for the same size.<br>
+ * Buffers are pooled per thread, kcp connections on the same event loop share the pool.<br>
+ * At most maxPooledBytes are kept by each thread, and a buffer which is already in the pool is not added again.
+ */
+public class PooledByteBufAllocator extends ByteBufAllocator {
+    public static final PooledByteBufAllocator DEFAULT = new PooledByteBufAllocator(65536, 4 * 1024 * 1024);
+
+    private final int maxBufferSize;
+    private final long maxPooledBytes;
+    private final ThreadLocal<Pool> pools = ThreadLocal.withInitial(Pool::new);
+
+    private static class Pool {
+        final IntMap<ArrayDeque<ByteArrayChannel>> bySize = new IntMap<>();
+        final Set<ByteArrayChannel> pooled = Collections.newSetFromMap(new IdentityHashMap<>());
+        long pooledBytes = 0;
+    }
+
+    public PooledByteBufAllocator(int maxBufferSize, long maxPooledBytes) {
+        this.maxBufferSize = maxBufferSize;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int size) {
+        if (size == 0 || size > maxBufferSize) {
+            return super.ioBuffer(size);
+        }
+        ByteArrayChannel chnl = null;
+        var pool = pools.get();
+        var queue = pool.bySize.get(size);
+        if (queue != null) {
+            chnl = queue.poll();
+        }
+        if (chnl == null) {
+            chnl = ByteArrayChannel.fromEmpty(size);
+        } else {
+            pool.pooled.remove(chnl);
+            pool.pooledBytes -= size;
+        }
+        return new ByteBuf(chnl, this);
+    }
+
+    @Override
+    public void release(ByteArrayChannel chnl) {
+        int size = chnl.getArray().length();
+        if (size == 0 || size > maxBufferSize) {
+            return;
+        }
+        var pool = pools.get();
+        if (pool.pooledBytes + size > maxPooledBytes) {
+            return;
+        }
+        if (!pool.pooled.add(chnl)) {
+            return; // released twice
+        }
+        var queue = pool.bySize.get(size);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            pool.bySize.put(size, queue);
+        }
+        chnl.reset();
+        queue.push(chnl);
+        pool.pooledBytes += size;
+    }
+
+    public long pooledBytes() {
+        return pools.get().pooledBytes;
+    }
+}
@@ -1,15 +1,59 @@
 package io.vproxy.base.selector.wrap.kcp.mock;
 
+import java.util.ArrayDeque;
+
+/**
+ * Objects are pooled per thread, an object recycled on another thread goes to the pool of that thread.
+ * Kcp objects are only used on their event loops, so no synchronization is required.
+ */
 public abstract class Recycler<E> {
+    private static final int DEFAULT_MAX_CAPACITY_PER_THREAD = 4096;
+
     public static class Handle<E> {
+        private final Recycler<E> recycler;
+        private E value;
+        private boolean recycled = false;
+
+        private Handle(Recycler<E> recycler) {
+            this.recycler = recycler;
+        }
+
         public void recycle(E e) {
-            // do nothing
+            if (e != value) {
+                throw new IllegalArgumentException("object does not belong to the handle");
+            }
+            if (recycled) {
+                throw new IllegalStateException("recycled already");
+            }
+            recycled = true;
+            var pool = recycler.pool.get();
+            if (pool.size() < recycler.maxCapacityPerThread) {
+                pool.push(this);
+            }
         }
     }
 
+    private final int maxCapacityPerThread;
+    private final ThreadLocal<ArrayDeque<Handle<E>>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+
+    protected Recycler() {
+        this(DEFAULT_MAX_CAPACITY_PER_THREAD);
+    }
+
+    protected Recycler(int maxCapacityPerThread) {
+        this.maxCapacityPerThread = maxCapacityPerThread;
+    }
+
     abstract protected E newObject(Handle<E> handle);
 
     public E get() {
-        return newObject(new Handle<>());
+        Handle<E> handle = pool.get().poll();
+        if (handle == null) {
+            handle = new Handle<>(this);
+            handle.value = newObject(handle);
+        } else {
+            handle.recycled = false;
+        }
+        return handle.value;
     }
 }
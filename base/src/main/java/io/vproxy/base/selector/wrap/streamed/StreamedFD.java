@@ -34,6 +34,17 @@ public class StreamedFD implements SocketFD, VirtualFD {
 
     private boolean readable = false;
     private boolean writable = false;
+    private Priority priority = Priority.normal;
+
+    // maintained by the handler
+    final Deque<ByteArray> sendQueue = new LinkedList<>();
+    int sendQueued = 0; // bytes in sendQueue
+    boolean finPending = false; // fin should be sent after data in sendQueue
+    int sendWindow = 0; // bytes allowed to send by the peer, only used when flow control is enabled
+    int deficit = 0; // deficit round-robin counter
+    boolean active = false; // whether it's in the scheduling queue
+    Priority activePriority; // the scheduling queue it's in
+    int recvConsumed = 0; // bytes read but not yet reported to the peer
 
     final MirrorDataFactory readingMirrorDataFactory;
     final MirrorDataFactory writingMirrorDataFactory;
@@ -56,6 +67,17 @@ public class StreamedFD implements SocketFD, VirtualFD {
         }
     }
 
+    /**
+     * Scheduling class of the stream when sending data.
+     * Streams with a higher priority are always served first,
+     * and streams with the same priority share the bandwidth.
+     */
+    public enum Priority {
+        high,
+        normal,
+        low,
+    }
+
     public StreamedFD(int streamId,
                       FD realFD,
                       WrappedSelector selector,
@@ -100,6 +122,17 @@ public class StreamedFD implements SocketFD, VirtualFD {
         return state;
     }
 
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * The new priority takes effect when the stream is scheduled next time.
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
     public void setRst() {
         this.rst = true;
     }
@@ -148,7 +181,7 @@ public class StreamedFD implements SocketFD, VirtualFD {
             return;
         }
         if (this.state != State.established && newState == State.established) {
-            if (handler.writableLen() > 0) {
+            if (handler.sendSpace(this) > 0) {
                 setWritable();
             }
         } else if (newState == State.fin_recv || newState == State.dead) {
@@ -247,6 +280,7 @@ public class StreamedFD implements SocketFD, VirtualFD {
         if (readingMirrorDataFactory.isEnabled()) {
             mirrorRead(dst, posBefore);
         }
+        handler.dataConsumed(this, n);
 
         if (readableBuffers.isEmpty()) {
             // nothing can be read anymore
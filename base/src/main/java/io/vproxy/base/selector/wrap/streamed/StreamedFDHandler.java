@@ -9,6 +9,7 @@ import io.vproxy.base.selector.SelectorEventLoop;
 import io.vproxy.base.selector.TimerEvent;
 import io.vproxy.base.selector.wrap.arqudp.ArqUDPSocketFD;
 import io.vproxy.base.util.*;
+import io.vproxy.base.util.coll.IntMap;
 import io.vproxy.base.util.log.LogLevel;
 import io.vproxy.base.util.log.ProbeType;
 import io.vproxy.base.util.nio.ByteArrayChannel;
@@ -20,13 +21,19 @@ import io.vproxy.vmirror.MirrorDataFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+/**
+ * Multiplex {@link StreamedFD}s over one arq udp socket.<br>
+ * Data written to a stream is kept in the send queue of the stream, and a deficit round-robin
+ * scheduler moves data from the streams into the socket, so that a bulk stream cannot starve others.
+ * Streams with a higher {@link StreamedFD.Priority} are always scheduled first.<br>
+ * When the implementation negotiates flow control with the peer, each stream can only send
+ * as much data as the peer has granted (the send window), and grants more to the peer when
+ * data is read from the stream, so a stream not being read does not pile up data in memory.
+ */
 @SuppressWarnings("UnusedReturnValue")
 public abstract class StreamedFDHandler implements Handler<SocketFD> {
     private static final String streamed_fd_handler_fd_map_count_current = "streamed_fd_handler_fd_map_count_current";
@@ -45,7 +52,32 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
     private Predicate<StreamedFD> acceptCallback;
 
     private TimerEvent handshakeTimeout = null;
-    private final Map<Integer, StreamedFD> fdMap = new HashMap<>();
+    private final IntMap<StreamedFD> fdMap = new IntMap<>();
+    // streams with data or fin to send, they may be already removed from fdMap
+    private final IntMap<StreamedFD> sendingStreams = new IntMap<>();
+    // streams which can send now, for each priority
+    @SuppressWarnings("unchecked")
+    private final Deque<StreamedFD>[] activeStreams = new Deque[StreamedFD.Priority.values().length];
+
+    {
+        for (int i = 0; i < activeStreams.length; ++i) {
+            activeStreams[i] = new ArrayDeque<>();
+        }
+    }
+
+    // max bytes kept in the send queue of each stream
+    private static final int STREAM_SEND_BUFFER = 16384;
+    // bytes added to the deficit counter of a stream in each round
+    private static final int QUANTUM = 4096;
+    // max payload of each data message
+    private static final int MAX_DATA_LEN = 16384;
+    /**
+     * The receive window of each stream to be advertised to the peer when flow control is used.
+     */
+    protected static final int STREAM_RECEIVE_WINDOW = 256 * 1024;
+
+    private boolean flowControl = false;
+    private int initialSendWindow = Integer.MAX_VALUE;
 
     private GaugeF statisticsFdMapCount;
 
@@ -111,6 +143,9 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         }
         isFailed = true;
         fdMap.values().forEach(fd -> fd.setState(StreamedFD.State.dead));
+        for (var sfd : new ArrayList<>(sendingStreams.values())) {
+            dropSendQueue(sfd);
+        }
         Logger.error(LogType.CONN_ERROR, "the stream thrown exception", t);
         if (sendRst) {
             ByteArray err = errorMessage(t);
@@ -416,6 +451,7 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         // else will not be called
     }
 
+    // control messages, sent before data of streams
     private final Deque<ByteArray> messagesToWrite = new LinkedList<>();
 
     int writableLen() {
@@ -435,26 +471,6 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         }
     }
 
-    private void checkAndCancelWritable() {
-        if (writableLen() <= 0) {
-            fdMap.values().forEach(StreamedFD::cancelWritable);
-            // also we should watch when we can write
-            watchWritable("checkAndCancelWritable");
-        }
-    }
-
-    private void checkAndSetWritableForEstablished() {
-        if (writableLen() > 0) {
-            fdMap.values().forEach(fd -> {
-                if (fd.getState() == StreamedFD.State.established) {
-                    fd.setWritable();
-                }
-            });
-            // no need to watch inside writable because this writable is set
-            unwatchWritable("writable");
-        }
-    }
-
     @Override
     public void writable(HandlerContext<SocketFD> ctx) {
         while (true) {
@@ -465,9 +481,7 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
                     return;
                 } else if (n == 0) {
                     // still got data to send
-                    // so the inside fd is not writable, we cancel writable event for the streamedFD
                     // wait for the next writable event
-                    checkAndCancelWritable();
                     return;
                 }
                 // fall through
@@ -482,23 +496,176 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
             }
             assert state == 2 || state == -1;
 
-            // something wrote, so check whether writable and
-            // set writable for all fds that's established
-            checkAndSetWritableForEstablished();
-            checkAndCancelWritable();
-            // note: after writing a packet into arq-udp, the writableLen might become smaller
-            // the free space we use to calculate is based on mtu and packet overhead
-            // but the fed packet is usually smaller than mtu, so free space is consumed,
-            // writableLen will be smaller
-
             ByteArray arr = messagesToWrite.poll();
             if (arr == null) {
-                return;
+                if (!hasActiveStreams()) {
+                    // nothing to write
+                    unwatchWritable("writable");
+                    return;
+                }
+                // note: after writing a packet into arq-udp, the writableLen might become smaller
+                // the free space we use to calculate is based on mtu and packet overhead
+                // but the fed packet is usually smaller than mtu, so free space is consumed,
+                // writableLen will be smaller
+                int room = fd.writableLen();
+                if (room <= 0) {
+                    // wait for the next writable event
+                    return;
+                }
+                arr = nextStreamMessage(room);
+                if (arr == null) {
+                    continue; // the scheduler may drop streams, check again
+                }
             }
             cachedMessageToWrite = ByteArrayChannel.fromFull(arr);
         }
     }
 
+    private boolean hasActiveStreams() {
+        for (var q : activeStreams) {
+            if (!q.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Deficit round-robin among active streams of the highest priority.
+     * The stream at the head of the queue is served until its deficit is used up or its queue is drained,
+     * then it's moved to the tail or removed.
+     *
+     * @return the next message to write, or null if the head stream is removed without sending anything
+     */
+    private ByteArray nextStreamMessage(int room) {
+        Deque<StreamedFD> q = null;
+        for (var queue : activeStreams) {
+            if (!queue.isEmpty()) {
+                q = queue;
+                break;
+            }
+        }
+        assert q != null;
+        StreamedFD sfd = q.peekFirst();
+        assert sfd != null;
+
+        if (sfd.sendQueued == 0) {
+            q.pollFirst();
+            sfd.active = false;
+            sfd.deficit = 0;
+            if (!sfd.finPending) {
+                return null;
+            }
+            sfd.finPending = false;
+            sendingStreams.remove(sfd.streamId);
+            return formatFIN(sfd.streamId);
+        }
+        if (sendWindow(sfd) <= 0) {
+            // wait for the window update
+            q.pollFirst();
+            sfd.active = false;
+            sfd.deficit = 0;
+            return null;
+        }
+        if (sfd.deficit <= 0) {
+            sfd.deficit += QUANTUM;
+        }
+        int len = Math.min(Math.min(sfd.deficit, sfd.sendQueued), Math.min(room, MAX_DATA_LEN));
+        len = Math.min(len, sendWindow(sfd));
+        ByteArray data = pollSendQueue(sfd, len);
+        sfd.deficit -= len;
+        if (flowControl) {
+            sfd.sendWindow -= len;
+        }
+        if (sfd.sendQueued == 0 && !sfd.finPending) {
+            q.pollFirst();
+            sfd.active = false;
+            sfd.deficit = 0;
+            sendingStreams.remove(sfd.streamId);
+        } else if (sfd.deficit <= 0) {
+            // next round
+            q.pollFirst();
+            q.addLast(sfd);
+        }
+        updateWritable(sfd);
+        return formatPSH(sfd.streamId, data);
+    }
+
+    private ByteArray pollSendQueue(StreamedFD sfd, int len) {
+        ByteArray ret = null;
+        int remaining = len;
+        while (remaining > 0) {
+            ByteArray head = sfd.sendQueue.peekFirst();
+            assert head != null;
+            ByteArray b;
+            if (head.length() <= remaining) {
+                sfd.sendQueue.pollFirst();
+                b = head;
+            } else {
+                b = head.sub(0, remaining);
+                sfd.sendQueue.pollFirst();
+                sfd.sendQueue.addFirst(head.sub(remaining, head.length() - remaining));
+            }
+            remaining -= b.length();
+            ret = ret == null ? b : ret.concat(b);
+        }
+        sfd.sendQueued -= len;
+        return ret;
+    }
+
+    private int sendWindow(StreamedFD sfd) {
+        return flowControl ? sfd.sendWindow : Integer.MAX_VALUE;
+    }
+
+    private void activate(StreamedFD sfd) {
+        if (sfd.active) {
+            return;
+        }
+        if (sfd.sendQueued == 0 && !sfd.finPending) {
+            return;
+        }
+        if (sfd.sendQueued > 0 && sendWindow(sfd) <= 0) {
+            return;
+        }
+        sfd.active = true;
+        sfd.activePriority = sfd.getPriority();
+        activeStreams[sfd.activePriority.ordinal()].addLast(sfd);
+        watchWritable("activate");
+    }
+
+    private void dropSendQueue(StreamedFD sfd) {
+        sfd.sendQueue.clear();
+        sfd.sendQueued = 0;
+        sfd.finPending = false;
+        sfd.deficit = 0;
+        if (sfd.active) {
+            activeStreams[sfd.activePriority.ordinal()].remove(sfd);
+            sfd.active = false;
+        }
+        sendingStreams.remove(sfd.streamId);
+    }
+
+    /**
+     * @return how many bytes can be written into the stream now
+     */
+    int sendSpace(StreamedFD sfd) {
+        int space = STREAM_SEND_BUFFER - sfd.sendQueued;
+        if (flowControl) {
+            space = Math.min(space, sfd.sendWindow - sfd.sendQueued);
+        }
+        return Math.max(space, 0);
+    }
+
+    private void updateWritable(StreamedFD sfd) {
+        if (sendSpace(sfd) > 0) {
+            if (sfd.getState() == StreamedFD.State.established) {
+                sfd.setWritable();
+            }
+        } else {
+            sfd.cancelWritable();
+        }
+    }
+
     @Override
     public final void removed(HandlerContext<SocketFD> ctx) {
         Logger.warn(LogType.IMPROPER_USE, "fd " + fd + " removed from loop, we have to invalid the fd");
@@ -557,13 +724,20 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
             remote = virtual;
         }
         StreamedFD sfd = new StreamedFD(streamId, fd, loop.selector, local, remote, this, client);
+        sfd.sendWindow = initialSendWindow;
         fdMap.put(streamId, sfd);
         assert Logger.lowLevelDebug("adding new fd to fdMap: " + fd);
         return true;
     }
 
+    private boolean containsStreamedFD(StreamedFD fd) {
+        return fdMap.get(fd.streamId) == fd;
+    }
+
     final void removeStreamedFD(StreamedFD fd) {
-        fdMap.values().remove(fd);
+        if (containsStreamedFD(fd)) {
+            fdMap.remove(fd.streamId);
+        }
     }
 
     @MethodForImplementation
@@ -590,6 +764,63 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         return true;
     }
 
+    abstract protected ByteArray formatWindowUpdate(int streamId, int increment);
+
+    /**
+     * Called by the implementation during handshaking when both sides agree to use flow control.
+     *
+     * @param peerInitialWindow the receive window of each stream advertised by the peer
+     */
+    @MethodForImplementation
+    protected final void flowControlNegotiated(int peerInitialWindow) {
+        assert Logger.lowLevelDebug("flow control negotiated on " + fd + ", peer window = " + peerInitialWindow);
+        flowControl = true;
+        initialSendWindow = peerInitialWindow;
+    }
+
+    @MethodForImplementation
+    protected final boolean isFlowControlEnabled() {
+        return flowControl;
+    }
+
+    @MethodForImplementation
+    protected final boolean windowUpdateReceived(int streamId, int increment) {
+        if (!flowControl) {
+            assert Logger.lowLevelDebug("calling windowUpdateReceived when flow control is not enabled: " + streamId);
+            return false;
+        }
+        StreamedFD sfd = sendingStreams.get(streamId);
+        if (sfd == null) {
+            sfd = fdMap.get(streamId);
+        }
+        if (sfd == null) {
+            assert Logger.lowLevelDebug("calling windowUpdateReceived on non-existing stream: " + streamId);
+            return false;
+        }
+        sfd.sendWindow = (int) Math.min((long) sfd.sendWindow + increment, Integer.MAX_VALUE);
+        activate(sfd);
+        updateWritable(sfd);
+        return true;
+    }
+
+    /**
+     * Called when data is read from the stream, grant more window to the peer.
+     */
+    final void dataConsumed(StreamedFD sfd, int n) {
+        if (!flowControl || n <= 0) {
+            return;
+        }
+        if (sfd.getState() != StreamedFD.State.syn_sent && sfd.getState() != StreamedFD.State.established
+            && sfd.getState() != StreamedFD.State.fin_sent) {
+            return; // the peer will not send more data
+        }
+        sfd.recvConsumed += n;
+        if (sfd.recvConsumed >= STREAM_RECEIVE_WINDOW / 2) {
+            addMessageToWrite(formatWindowUpdate(sfd.streamId, sfd.recvConsumed));
+            sfd.recvConsumed = 0;
+        }
+    }
+
     abstract protected ByteArray formatSYNACK(int streamId);
 
     @MethodForImplementation
@@ -680,6 +911,7 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         }
         sfd.setState(StreamedFD.State.dead);
         sfd.setRst();
+        dropSendQueue(sfd);
         // need to send RST back
         addMessageToWrite(formatRST(streamId));
         return true;
@@ -708,7 +940,6 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         assert Logger.lowLevelNetDebugPrintBytes(arr.toJavaArray());
         messagesToWrite.add(arr);
         watchWritable("addMessageToWrite");
-        checkAndCancelWritable();
     }
 
     private void pushMessageToWrite(ByteArray arr) {
@@ -717,14 +948,13 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         }
         messagesToWrite.push(arr);
         watchWritable("pushMessageToWrite");
-        checkAndCancelWritable();
     }
 
     abstract protected ByteArray formatPSH(int streamId, ByteArray data);
 
     @MethodForStreamedFD
     public final int send(StreamedFD fd, ByteBuffer src) throws IOException {
-        if (!fdMap.containsValue(fd)) {
+        if (!containsStreamedFD(fd)) {
             throw new IOException("fdMap does not contain fd " + fd);
         }
         if (fd.getState() != StreamedFD.State.syn_sent
@@ -737,18 +967,23 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
             assert Logger.lowLevelDebug("nothing to be sent, return 0");
             return 0;
         }
-        int len = Math.min(writableLen(), src.limit() - src.position());
+        int len = Math.min(sendSpace(fd), src.limit() - src.position());
         if (len <= 0) {
             // cannot write
             assert Logger.lowLevelDebug("cannot write, return 0");
-            checkAndCancelWritable();
+            fd.cancelWritable();
             return 0;
         }
         byte[] data = Utils.allocateByteArray(len);
         src.get(data);
-        // append to the last of the queue
-        addMessageToWrite(formatPSH(fd.streamId, ByteArray.from(data)));
-        checkAndCancelWritable();
+        // append to the send queue of the stream, the scheduler will format and send it
+        fd.sendQueue.add(ByteArray.from(data));
+        fd.sendQueued += len;
+        if (!sendingStreams.containsKey(fd.streamId)) {
+            sendingStreams.put(fd.streamId, fd);
+        }
+        activate(fd);
+        updateWritable(fd);
         return len;
     }
 
@@ -756,14 +991,19 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
 
     @MethodForStreamedFD
     public final void sendFIN(StreamedFD fd) throws IOException {
-        if (!fdMap.containsValue(fd)) {
+        if (!containsStreamedFD(fd)) {
             throw new IOException("fdMap does not contain fd " + fd);
         }
         if (fd.getState() == StreamedFD.State.dead) {
             throw new IOException(fd + " is already closed");
         }
-        // append to the last of the queue
-        addMessageToWrite(formatFIN(fd.streamId));
+        if (fd.sendQueued == 0) {
+            // append to the last of the queue
+            addMessageToWrite(formatFIN(fd.streamId));
+        } else if (!fd.finPending) {
+            // send after data in the send queue of the stream
+            fd.finPending = true;
+        }
 
         switch (fd.getState()) {
             case none:
@@ -830,7 +1070,7 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
             return;
         }
         // only send keepalive message if it's in idle
-        if (cachedMessageToWrite == null && messagesToWrite.isEmpty() && (Config.currentTimestamp - lastReadableTimestamp) > 5_000) {
+        if (cachedMessageToWrite == null && messagesToWrite.isEmpty() && !hasActiveStreams() && (Config.currentTimestamp - lastReadableTimestamp) > 5_000) {
             // send keepalive message
             long kId = ++nextKeepaliveId;
             // record with a timeout
@@ -854,9 +1094,8 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
                 Logger.probe("isClient=" + client + ", state=" + state);
                 IPPort arqSockLocal = fd.getLocalAddress();
                 String arqSockLocalStr = arqSockLocal.formatToIPPortString();
-                for (Map.Entry<Integer, StreamedFD> entry : fdMap.entrySet()) {
-                    int streamId = entry.getKey();
-                    StreamedFD sfd = entry.getValue();
+                for (StreamedFD sfd : fdMap.values()) {
+                    int streamId = sfd.streamId;
                     String local = sfd.getLocalAddress().formatToIPPortString();
                     String remote = sfd.getRemoteAddress().formatToIPPortString();
 
@@ -896,7 +1135,7 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
 
     @MethodForStreamedFD
     public final void sendSYN(StreamedFD fd) throws IOException {
-        if (!fdMap.containsValue(fd)) {
+        if (!containsStreamedFD(fd)) {
             throw new IOException("fdMap does not contain fd " + fd);
         }
         if (fd.getState() != StreamedFD.State.none) {
@@ -915,18 +1154,20 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
 
     @MethodForStreamedFD
     public final void sendRST(StreamedFD fd) throws IOException {
-        if (!fdMap.containsValue(fd)) {
+        if (!containsStreamedFD(fd)) {
             throw new IOException("fdMap does not contain fd " + fd);
         }
         if (fd.getState() == StreamedFD.State.dead) {
             throw new IOException(fd + " is already closed");
         }
+        // data not sent is discarded
+        dropSendQueue(fd);
         // append rst to the last of the queue
         addMessageToWrite(formatRST(fd.streamId));
         if (fd.getState() != StreamedFD.State.real_closed) {
             fd.setState(StreamedFD.State.dead);
         }
-        fdMap.values().remove(fd);
+        removeStreamedFD(fd);
 
         if (fd.writingMirrorDataFactory.isEnabled()) {
             mirror(fd, true, Consts.TCP_FLAGS_RST, ByteArray.allocate(0));
@@ -962,6 +1203,10 @@ public abstract class StreamedFDHandler implements Handler<SocketFD> {
         cachedMessageToWrite = null;
         cachedReceivedMessage = null;
         messagesToWrite.clear();
+        for (var q : activeStreams) {
+            q.clear();
+        }
+        sendingStreams.clear();
         fdMap.clear();
         keepaliveTimeouts.clear();
         if (statisticsFdMapCount != null) {
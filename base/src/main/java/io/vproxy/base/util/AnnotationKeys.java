@@ -9,6 +9,7 @@ public enum AnnotationKeys {
     ServerGroup_HCHttpHost("vproxy/hc-http-host"),
     ServerGroup_HCHttpStatus("vproxy/hc-http-status"),
     ServerGroup_HCDnsDomain("vproxy/hc-dns-domain"),
+    ServerGroup_MaglevLoadFactor("vproxy/maglev-load-factor"),
 
     SWNetwork_DockerNetworkDriverNetworkId("docker-network-driver/network-id"),
     SWIp_DockerNetworkDriverGatewayIp("docker-network-driver/gateway-ip"),
@@ -20,6 +21,9 @@ public enum AnnotationKeys {
 
     EventLoopGroup_PreferPoll("vproxy/event-loop-group-prefer-poll"),
     EventLoopGroup_UseMsQuic("vproxy/event-loop-group-use-msquic"),
+    EventLoopGroup_UseIOUring("vproxy/event-loop-group-use-io-uring"),
+    EventLoopGroup_UseTimingWheel("vproxy/event-loop-group-use-timing-wheel"),
+    EventLoopGroup_SelectMethod("vproxy/event-loop-group-select-method"),
     EventLoop_CoreAffinity("vproxy/event-loop-core-affinity"),
 
     Owner("vproxy.internal/owner"),
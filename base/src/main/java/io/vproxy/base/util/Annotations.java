@@ -16,8 +16,12 @@ public class Annotations {
     public final String ServerGroup_HCHttpHost;
     public final boolean[] ServerGroup_HCHttpStatus;
     public final String ServerGroup_HCDnsDomain;
+    public final double ServerGroup_MaglevLoadFactor;
     public final boolean EventLoopGroup_PreferPoll;
     public final boolean EventLoopGroup_UseMsQuic;
+    public final boolean EventLoopGroup_UseIOUring;
+    public final boolean EventLoopGroup_UseTimingWheel;
+    public final String EventLoopGroup_SelectMethod;
     public final long EventLoop_CoreAffinity;
     public final String owner;
     public final boolean nosave;
@@ -123,12 +127,42 @@ public class Annotations {
         {
             ServerGroup_HCDnsDomain = annotations.get(AnnotationKeys.ServerGroup_HCDnsDomain.name);
         }
+        {
+            // 0 means the load is not bounded
+            // otherwise the value must not be less than 1
+            String ServerGroup_MaglevLoadFactor = annotations.get(AnnotationKeys.ServerGroup_MaglevLoadFactor.name);
+            double factor = 1.25;
+            if (ServerGroup_MaglevLoadFactor != null) {
+                double n = -1;
+                try {
+                    n = Double.parseDouble(ServerGroup_MaglevLoadFactor);
+                } catch (NumberFormatException ignore) {
+                }
+                if (n == 0 || n >= 1) {
+                    factor = n;
+                } else {
+                    Logger.warn(LogType.INVALID_EXTERNAL_DATA, "invalid " + AnnotationKeys.ServerGroup_MaglevLoadFactor +
+                        ", should be 0 or a number >= 1: " + ServerGroup_MaglevLoadFactor);
+                    other.put(AnnotationKeys.ServerGroup_MaglevLoadFactor.name, ServerGroup_MaglevLoadFactor);
+                }
+            }
+            this.ServerGroup_MaglevLoadFactor = factor;
+        }
         {
             EventLoopGroup_PreferPoll = "true".equals(annotations.get(AnnotationKeys.EventLoopGroup_PreferPoll.name));
         }
         {
             EventLoopGroup_UseMsQuic = "true".equals(annotations.get(AnnotationKeys.EventLoopGroup_UseMsQuic.name));
         }
+        {
+            EventLoopGroup_UseIOUring = "true".equals(annotations.get(AnnotationKeys.EventLoopGroup_UseIOUring.name));
+        }
+        {
+            EventLoopGroup_UseTimingWheel = "true".equals(annotations.get(AnnotationKeys.EventLoopGroup_UseTimingWheel.name));
+        }
+        {
+            EventLoopGroup_SelectMethod = annotations.get(AnnotationKeys.EventLoopGroup_SelectMethod.name);
+        }
         {
             long coreAffinity = -1;
             String str = annotations.get(AnnotationKeys.EventLoop_CoreAffinity.name);
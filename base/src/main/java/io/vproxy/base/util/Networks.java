@@ -1,5 +1,6 @@
 package io.vproxy.base.util;
 
+import io.vproxy.base.util.coll.LPMTrie;
 import io.vproxy.base.util.functional.ConsumerEx;
 import io.vproxy.vfd.IP;
 import io.vproxy.vfd.IPv4;
@@ -12,8 +13,12 @@ import java.util.Map;
 import java.util.function.Predicate;
 
 public class Networks<R extends Networks.Rule> {
+    // rules grouped by mask, sorted from the longest mask to the shortest
     private final List<V4RulesGroupedByMask> v4Rules = new ArrayList<>(32);
     private final List<V6RulesGroupedByMask> v6Rules = new ArrayList<>(128);
+    // index of the above rules for ip lookups
+    private final LPMTrie<Rule> v4Trie = new LPMTrie<>(32);
+    private final LPMTrie<Rule> v6Trie = new LPMTrie<>(128);
 
     public interface Rule {
     }
@@ -70,29 +75,61 @@ public class Networks<R extends Networks.Rule> {
     }
 
     private Rule lookupV4(IPv4 ip) {
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0, size = v4Rules.size(); i < size; ++i) {
-            var rules = v4Rules.get(i);
-            var v4 = ip.maskValue(rules.mask);
-            var rule = rules.rules.get(v4);
-            if (rule != null) {
-                return rule;
-            }
-        }
-        return null;
+        return v4Trie.lookup(ip.getIPv4Value(), 0, 0, 0);
     }
 
     private Rule lookupV6(IPv6 ip) {
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0, size = v6Rules.size(); i < size; ++i) {
-            var rules = v6Rules.get(i);
-            var v6 = ip.maskValues(rules.mask);
-            var rule = rules.rules.get(v6);
-            if (rule != null) {
-                return rule;
-            }
+        return v6Trie.lookup(ip.getIPv6Value0(), ip.getIPv6Value1(), ip.getIPv6Value2(), ip.getIPv6Value3());
+    }
+
+    // a network with host bits set can never be matched by ip lookups, so it's not indexed
+    private static boolean isIndexable(Network net) {
+        if (net instanceof NetworkV4) {
+            var ip = (IPv4) net.getIp();
+            return ip.maskValue(net.getMask()) == ip.getIPv4Value();
+        } else {
+            var ip = (IPv6) net.getIp();
+            return ip.maskValues(net.getMask()).equals(ip.getIPv6Values());
+        }
+    }
+
+    private void trieAdd(Network net, Rule rule) {
+        if (!isIndexable(net)) {
+            return;
+        }
+        if (net instanceof NetworkV4) {
+            v4Trie.put(((IPv4) net.getIp()).getIPv4Value(), 0, 0, 0, net.getMask(), rule);
+        } else {
+            var ip = (IPv6) net.getIp();
+            v6Trie.put(ip.getIPv6Value0(), ip.getIPv6Value1(), ip.getIPv6Value2(), ip.getIPv6Value3(), net.getMask(), rule);
+        }
+    }
+
+    private void trieRemove(Network net) {
+        if (net instanceof NetworkV4) {
+            trieRemoveV4(((IPv4) net.getIp()).getIPv4Value(), net.getMask());
+        } else {
+            trieRemoveV6(((IPv6) net.getIp()).getIPv6Values(), net.getMask());
         }
-        return null;
+    }
+
+    // the trie masks the key before removing, so a rule with host bits set
+    // would remove the indexed rule of the masked network, check it before removing
+    private void trieRemoveV4(int value, int mask) {
+        if ((value & Utils.maskNumberToInt(mask)) != value) {
+            return;
+        }
+        v4Trie.remove(value, 0, 0, 0, mask);
+    }
+
+    private void trieRemoveV6(IPv6.Values v, int mask) {
+        var ip = IP.fromIPv6(ByteArray.allocate(16)
+            .int32(0, v.value0).int32(4, v.value1).int32(8, v.value2).int32(12, v.value3)
+            .toJavaArray());
+        if (!ip.maskValues(mask).equals(v)) {
+            return;
+        }
+        v6Trie.remove(v.value0, v.value1, v.value2, v.value3, mask);
     }
 
     public R add(Network net, R rule) {
@@ -124,6 +161,7 @@ public class Networks<R extends Networks.Rule> {
             group = new V4RulesGroupedByMask(mask);
             v4Rules.add(group);
         }
+        trieAdd(net, rule);
         return group.rules.put(((IPv4) net.getIp()).getIPv4Value(), rule);
     }
 
@@ -146,6 +184,7 @@ public class Networks<R extends Networks.Rule> {
             group = new V6RulesGroupedByMask(mask);
             v6Rules.add(group);
         }
+        trieAdd(net, rule);
         return group.rules.put(((IPv6) net.getIp()).getIPv6Values(), rule);
     }
 
@@ -169,6 +208,9 @@ public class Networks<R extends Networks.Rule> {
                 continue;
             }
             var ret = rules.rules.remove(((IPv4) net.getIp()).getIPv4Value());
+            if (ret != null) {
+                trieRemove(net);
+            }
             if (rules.rules.isEmpty()) {
                 v4Rules.remove(i);
             }
@@ -187,6 +229,9 @@ public class Networks<R extends Networks.Rule> {
                 continue;
             }
             var ret = rules.rules.remove(((IPv6) net.getIp()).getIPv6Values());
+            if (ret != null) {
+                trieRemove(net);
+            }
             if (rules.rules.isEmpty()) {
                 v6Rules.remove(i);
             }
@@ -211,10 +256,12 @@ public class Networks<R extends Networks.Rule> {
     public R removeBy(Predicate<R> f) {
         for (var iter = v4Rules.iterator(); iter.hasNext(); ) {
             V4RulesGroupedByMask rules = iter.next();
-            for (var iterator = rules.rules.values().iterator(); iterator.hasNext(); ) {
-                Rule rule = iterator.next();
+            for (var iterator = rules.rules.entrySet().iterator(); iterator.hasNext(); ) {
+                var entry = iterator.next();
+                Rule rule = entry.getValue();
                 if (f.test(cast(rule))) {
                     iterator.remove();
+                    trieRemoveV4(entry.getKey(), rules.mask);
                     if (rules.rules.isEmpty()) {
                         iter.remove();
                     }
@@ -224,10 +271,12 @@ public class Networks<R extends Networks.Rule> {
         }
         for (var iter = v6Rules.iterator(); iter.hasNext(); ) {
             V6RulesGroupedByMask rules = iter.next();
-            for (var iterator = rules.rules.values().iterator(); iterator.hasNext(); ) {
-                Rule rule = iterator.next();
+            for (var iterator = rules.rules.entrySet().iterator(); iterator.hasNext(); ) {
+                var entry = iterator.next();
+                Rule rule = entry.getValue();
                 if (f.test(cast(rule))) {
                     iterator.remove();
+                    trieRemoveV6(entry.getKey(), rules.mask);
                     if (rules.rules.isEmpty()) {
                         iter.remove();
                     }
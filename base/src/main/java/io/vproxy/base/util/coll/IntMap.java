@@ -134,6 +134,20 @@ public class IntMap<V> {
         return old;
     }
 
+    public int size() {
+        return keySet.size();
+    }
+
+    public boolean isEmpty() {
+        return keySet.isEmpty();
+    }
+
+    public void clear() {
+        ranges.clear();
+        keySet.clear();
+        values.clear();
+    }
+
     public Set<Integer> keySet() {
         return Collections.unmodifiableSet(keySet);
     }
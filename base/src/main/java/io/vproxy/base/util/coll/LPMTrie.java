@@ -0,0 +1,253 @@
+package io.vproxy.base.util.coll;
+
+/**
+ * A multibit trie for longest prefix matching, each level consumes 8 bits of the key.<br>
+ * A prefix is expanded into the slots of the node where it ends,
+ * so a lookup visits at most one node per byte, and does not allocate.<br>
+ * Keys are represented by four 32-bit words in network byte order,
+ * a 32-bit trie (ipv4) only uses the first word.
+ */
+public class LPMTrie<V> {
+    private static final int STRIDE = 8;
+    private static final int SLOTS = 1 << STRIDE;
+
+    private final int bits;
+    private final int levels;
+    private final Node root = new Node();
+    private int size = 0;
+
+    private static final class Node {
+        // the value of the longest prefix which covers the slot, and its length inside this node
+        Object[] best;
+        byte[] bestLen;
+        Node[] children;
+        int childrenCount;
+        // prefixes ending in this node, index: (1 << localLen) + (byte >>> (STRIDE - localLen))
+        int[] prefixIndexes;
+        Object[] prefixValues;
+        int prefixCount;
+
+        int indexOfPrefix(int prefixIndex) {
+            for (int i = 0; i < prefixCount; ++i) {
+                if (prefixIndexes[i] == prefixIndex) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Object getPrefix(int prefixIndex) {
+            int i = indexOfPrefix(prefixIndex);
+            return i == -1 ? null : prefixValues[i];
+        }
+
+        boolean isEmpty() {
+            return prefixCount == 0 && childrenCount == 0;
+        }
+    }
+
+    /**
+     * @param bits length of the keys, 32 for ipv4 and 128 for ipv6
+     */
+    public LPMTrie(int bits) {
+        if (bits <= 0 || bits > 128 || bits % STRIDE != 0) {
+            throw new IllegalArgumentException("bits must be a multiple of " + STRIDE + " in (0, 128]: " + bits);
+        }
+        this.bits = bits;
+        this.levels = bits / STRIDE;
+    }
+
+    private static int byteAt(int w0, int w1, int w2, int w3, int level) {
+        int w = switch (level >>> 2) {
+            case 0 -> w0;
+            case 1 -> w1;
+            case 2 -> w2;
+            default -> w3;
+        };
+        return (w >>> (24 - ((level & 3) << 3))) & 0xff;
+    }
+
+    private void checkPrefixLen(int prefixLen) {
+        if (prefixLen < 0 || prefixLen > bits) {
+            throw new IllegalArgumentException("prefix length out of range [0, " + bits + "]: " + prefixLen);
+        }
+    }
+
+    private static int levelOf(int prefixLen) {
+        return prefixLen == 0 ? 0 : (prefixLen - 1) / STRIDE;
+    }
+
+    /**
+     * @return the old value of the same prefix
+     */
+    public V put(int w0, int w1, int w2, int w3, int prefixLen, V value) {
+        checkPrefixLen(prefixLen);
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        int level = levelOf(prefixLen);
+        Node node = root;
+        for (int i = 0; i < level; ++i) {
+            int b = byteAt(w0, w1, w2, w3, i);
+            if (node.children == null) {
+                node.children = new Node[SLOTS];
+            }
+            Node next = node.children[b];
+            if (next == null) {
+                next = new Node();
+                node.children[b] = next;
+                ++node.childrenCount;
+            }
+            node = next;
+        }
+        int local = prefixLen - level * STRIDE;
+        int b = byteAt(w0, w1, w2, w3, level);
+        int prefixIndex = (1 << local) + (b >>> (STRIDE - local));
+
+        Object old = null;
+        int i = node.indexOfPrefix(prefixIndex);
+        if (i == -1) {
+            if (node.prefixIndexes == null) {
+                node.prefixIndexes = new int[4];
+                node.prefixValues = new Object[4];
+            } else if (node.prefixCount == node.prefixIndexes.length) {
+                int[] indexes = new int[node.prefixCount * 2];
+                Object[] values = new Object[node.prefixCount * 2];
+                System.arraycopy(node.prefixIndexes, 0, indexes, 0, node.prefixCount);
+                System.arraycopy(node.prefixValues, 0, values, 0, node.prefixCount);
+                node.prefixIndexes = indexes;
+                node.prefixValues = values;
+            }
+            node.prefixIndexes[node.prefixCount] = prefixIndex;
+            node.prefixValues[node.prefixCount] = value;
+            ++node.prefixCount;
+            ++size;
+        } else {
+            old = node.prefixValues[i];
+            node.prefixValues[i] = value;
+        }
+
+        if (node.best == null) {
+            node.best = new Object[SLOTS];
+            node.bestLen = new byte[SLOTS];
+        }
+        int start = (b >>> (STRIDE - local)) << (STRIDE - local);
+        int end = start + (1 << (STRIDE - local));
+        for (int s = start; s < end; ++s) {
+            if (node.best[s] == null || node.bestLen[s] <= local) {
+                node.best[s] = value;
+                node.bestLen[s] = (byte) local;
+            }
+        }
+        //noinspection unchecked
+        return (V) old;
+    }
+
+    /**
+     * @return the removed value, or null if the prefix does not exist
+     */
+    public V remove(int w0, int w1, int w2, int w3, int prefixLen) {
+        checkPrefixLen(prefixLen);
+        int level = levelOf(prefixLen);
+        Node[] path = new Node[level + 1];
+        Node node = root;
+        for (int i = 0; i < level; ++i) {
+            path[i] = node;
+            if (node.children == null) {
+                return null;
+            }
+            node = node.children[byteAt(w0, w1, w2, w3, i)];
+            if (node == null) {
+                return null;
+            }
+        }
+        path[level] = node;
+        int local = prefixLen - level * STRIDE;
+        int b = byteAt(w0, w1, w2, w3, level);
+        int prefixIndex = (1 << local) + (b >>> (STRIDE - local));
+
+        int i = node.indexOfPrefix(prefixIndex);
+        if (i == -1) {
+            return null;
+        }
+        Object old = node.prefixValues[i];
+        --node.prefixCount;
+        node.prefixIndexes[i] = node.prefixIndexes[node.prefixCount];
+        node.prefixValues[i] = node.prefixValues[node.prefixCount];
+        node.prefixValues[node.prefixCount] = null;
+        --size;
+
+        // slots filled by the removed prefix fall back to the next longest prefix in this node
+        int start = (b >>> (STRIDE - local)) << (STRIDE - local);
+        int end = start + (1 << (STRIDE - local));
+        for (int s = start; s < end; ++s) {
+            if (node.best[s] == null || node.bestLen[s] != local) {
+                continue;
+            }
+            Object v = null;
+            int len = local - 1;
+            for (; len >= 0; --len) {
+                v = node.getPrefix((1 << len) + (s >>> (STRIDE - len)));
+                if (v != null) {
+                    break;
+                }
+            }
+            node.best[s] = v;
+            node.bestLen[s] = (byte) Math.max(len, 0);
+        }
+        if (node.prefixCount == 0) {
+            node.best = null;
+            node.bestLen = null;
+            node.prefixIndexes = null;
+            node.prefixValues = null;
+        }
+
+        // release empty nodes
+        for (int l = level; l > 0 && path[l].isEmpty(); --l) {
+            Node parent = path[l - 1];
+            parent.children[byteAt(w0, w1, w2, w3, l - 1)] = null;
+            if (--parent.childrenCount == 0) {
+                parent.children = null;
+            }
+        }
+        //noinspection unchecked
+        return (V) old;
+    }
+
+    /**
+     * @return value of the longest prefix which matches the key, or null if not found
+     */
+    public V lookup(int w0, int w1, int w2, int w3) {
+        Object res = null;
+        Node node = root;
+        for (int level = 0; level < levels; ++level) {
+            int b = byteAt(w0, w1, w2, w3, level);
+            Object[] best = node.best;
+            if (best != null) {
+                Object o = best[b];
+                if (o != null) {
+                    res = o;
+                }
+            }
+            Node[] children = node.children;
+            if (children == null) {
+                break;
+            }
+            node = children[b];
+            if (node == null) {
+                break;
+            }
+        }
+        //noinspection unchecked
+        return (V) res;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "LPMTrie{bits=" + bits + ", size=" + size + "}";
+    }
+}
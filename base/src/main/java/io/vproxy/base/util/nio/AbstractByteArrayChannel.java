@@ -48,14 +48,10 @@ public abstract class AbstractByteArrayChannel implements ByteArrayChannel {
         }
 
         int writeBytes = Math.min(writeLen, len);
-        var tmp = Utils.allocateByteBuffer(len);
+        var tmp = Utils.allocateByteBuffer(writeBytes);
         src.read(tmp);
         tmp.flip();
-        write(tmp);
-
-        writeOff += writeBytes;
-        writeLen -= writeBytes;
-        return writeBytes;
+        return write(tmp); // offsets are updated in write(ByteBuffer)
     }
 
     @Override
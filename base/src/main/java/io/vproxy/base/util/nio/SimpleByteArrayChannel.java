@@ -52,6 +52,24 @@ public class SimpleByteArrayChannel extends AbstractByteArrayChannel implements
         return writeBytes;
     }
 
+    @Override
+    public int write(ByteArrayChannel src, int len) {
+        if (len < 0) {
+            throw new IllegalArgumentException("len = " + len + " < 0");
+        }
+        if (src.used() < len) {
+            throw new IndexOutOfBoundsException("src.used = " + src.used() + " < len = " + len);
+        }
+
+        // copy directly into the array without a temporary buffer
+        int writeBytes = Math.min(writeLen, len);
+        src.readableArray().copyInto(arr, writeOff, 0, writeBytes);
+        src.skip(writeBytes);
+        writeOff += writeBytes;
+        writeLen -= writeBytes;
+        return writeBytes;
+    }
+
     @Override
     public ByteArray readableArray() {
         int off = readOff;
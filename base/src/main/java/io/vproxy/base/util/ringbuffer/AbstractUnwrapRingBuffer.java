@@ -17,6 +17,10 @@ public abstract class AbstractUnwrapRingBuffer extends AbstractRingBuffer {
 
         @Override
         public void writableET() {
+            if (passthrough) {
+                triggerWritable(); // the app buffer has space to read from the channel
+                return;
+            }
             generalUnwrap();
         }
     }
@@ -32,6 +36,9 @@ public abstract class AbstractUnwrapRingBuffer extends AbstractRingBuffer {
     private boolean triggerWritable = false;
 
     private IOException exceptionToThrow = null;
+    // when set, the decryption is done by somewhere else (e.g. the kernel),
+    // data read from the channel will be stored into the plain buffer directly
+    private boolean passthrough = false;
 
     public AbstractUnwrapRingBuffer(ByteBufferRingBuffer plainBufferForApp) {
         this.plainBufferForApp = plainBufferForApp;
@@ -51,6 +58,9 @@ public abstract class AbstractUnwrapRingBuffer extends AbstractRingBuffer {
     @Override
     public int storeBytesFrom(ReadableByteStream channel) throws IOException {
         checkException();
+        if (passthrough) {
+            return plainBufferForApp.storeBytesFrom(channel);
+        }
         int len = 0;
         while (true) {
             int read = encryptedBufferForInput.storeBytesFrom(channel);
@@ -95,6 +105,26 @@ public abstract class AbstractUnwrapRingBuffer extends AbstractRingBuffer {
         return intermediateBuffers.size();
     }
 
+    /**
+     * @return true if all bytes read from the channel are unwrapped and moved into the plain buffer
+     */
+    protected boolean isEncryptedDataConsumed() {
+        return encryptedBufferForInput.used() == 0 && intermediateBuffers.isEmpty();
+    }
+
+    /**
+     * Stop unwrapping data, bytes read from the channel will be stored into the plain buffer as is.<br>
+     * Must be called only when {@link #isEncryptedDataConsumed()} returns true.
+     */
+    protected void enablePassthrough() {
+        assert isEncryptedDataConsumed();
+        passthrough = true;
+    }
+
+    protected boolean isPassthrough() {
+        return passthrough;
+    }
+
     protected ByteBuffer getTemporaryBuffer(int cap) {
         if (temporaryBuffer != null && temporaryBuffer.capacity() >= cap) {
             temporaryBuffer.limit(temporaryBuffer.capacity()).position(0);
@@ -112,6 +142,9 @@ public abstract class AbstractUnwrapRingBuffer extends AbstractRingBuffer {
     // -------------------
 
     protected void generalUnwrap() {
+        if (passthrough) {
+            return;
+        }
         if (isOperating()) {
             assert Logger.lowLevelDebug("generalUnwrap is operating");
             return; // should not call the method when it's operating
@@ -225,6 +258,9 @@ public abstract class AbstractUnwrapRingBuffer extends AbstractRingBuffer {
 
     @Override
     public int free() {
+        if (passthrough) {
+            return plainBufferForApp.free();
+        }
         // whether have space to store data is determined by network input buffer
         return encryptedBufferForInput.free();
     }
@@ -13,6 +13,10 @@ public abstract class AbstractWrapRingBuffer extends AbstractRingBuffer implemen
     class ReadableHandler implements RingBufferETHandler {
         @Override
         public void readableET() {
+            if (passthrough) {
+                triggerReadable(); // plain data is directly written to the channel
+                return;
+            }
             generalWrap();
         }
 
@@ -32,6 +36,9 @@ public abstract class AbstractWrapRingBuffer extends AbstractRingBuffer implemen
     private boolean triggerReadable = false;
     protected boolean transferring = false;
     private IOException exceptionToThrow = null;
+    // when set, the encryption is done by somewhere else (e.g. the kernel),
+    // plain data will be written to the channel directly
+    private boolean passthrough = false;
 
     public AbstractWrapRingBuffer(ByteBufferRingBuffer plainBytesBuffer) {
         this.plainBufferForApp = plainBytesBuffer;
@@ -76,6 +83,26 @@ public abstract class AbstractWrapRingBuffer extends AbstractRingBuffer implemen
         return intermediateBuffers.size();
     }
 
+    /**
+     * @return true if all wrapped bytes are already written to the channel
+     */
+    protected boolean isEncryptedDataFlushed() {
+        return encryptedBufferForOutput.used() == 0 && intermediateBuffers.isEmpty();
+    }
+
+    /**
+     * Stop wrapping data, bytes in the plain buffer will be written to the channel as is.<br>
+     * Must be called only when {@link #isEncryptedDataFlushed()} returns true.
+     */
+    protected void enablePassthrough() {
+        assert isEncryptedDataFlushed();
+        passthrough = true;
+    }
+
+    protected boolean isPassthrough() {
+        return passthrough;
+    }
+
     protected ByteBuffer getTemporaryBuffer(int cap) {
         if (temporaryBuffer != null && temporaryBuffer.capacity() >= cap) {
             temporaryBuffer.limit(temporaryBuffer.capacity()).position(0);
@@ -90,6 +117,9 @@ public abstract class AbstractWrapRingBuffer extends AbstractRingBuffer implemen
     }
 
     void generalWrap() {
+        if (passthrough) {
+            return;
+        }
         if (isOperating()) {
             assert Logger.lowLevelDebug("generalWrap is operating");
             return; // should not call the method when it's operating
@@ -220,6 +250,9 @@ public abstract class AbstractWrapRingBuffer extends AbstractRingBuffer implemen
     @Override
     public int writeTo(WritableByteStream channel, int maxBytesToWrite) throws IOException {
         checkException();
+        if (passthrough) {
+            return plainBufferForApp.writeTo(channel, maxBytesToWrite);
+        }
         // we write encrypted data to the channel
         int bytes = 0;
         while (true) {
@@ -247,6 +280,9 @@ public abstract class AbstractWrapRingBuffer extends AbstractRingBuffer implemen
 
     @Override
     public int used() {
+        if (passthrough) {
+            return plainBufferForApp.used();
+        }
         // whether have bytes to write is determined by network output buffer
         return encryptedBufferForOutput.used();
     }
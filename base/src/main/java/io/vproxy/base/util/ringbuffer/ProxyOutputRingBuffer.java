@@ -3,10 +3,13 @@ package io.vproxy.base.util.ringbuffer;
 import io.vproxy.base.util.Logger;
 import io.vproxy.base.util.RingBuffer;
 import io.vproxy.base.util.RingBufferETHandler;
+import io.vproxy.vfd.FD;
 import io.vproxy.vfd.ReadableByteStream;
 import io.vproxy.vfd.WritableByteStream;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class ProxyOutputRingBuffer extends AbstractRingBuffer {
     private class DefaultBufferETHandler implements RingBufferETHandler {
@@ -42,6 +45,8 @@ public class ProxyOutputRingBuffer extends AbstractRingBuffer {
     private final ProxyETHandler proxyETHandler = new ProxyETHandler();
 
     protected final SimpleRingBuffer defaultBuffer;
+    // header and body segments for gather writing
+    private final ByteBuffer[] segments = new ByteBuffer[4];
     private final int cap;
 
     public interface ProxyDoneCallback {
@@ -130,6 +135,9 @@ public class ProxyOutputRingBuffer extends AbstractRingBuffer {
             }
             return wrote;
         } else {
+            if (proxyHandle != null && channel instanceof FD && proxyHandle.rb instanceof SimpleRingBuffer body) {
+                return writeHeaderAndBody(channel, maxBytesToWrite, body);
+            }
             int wrote = defaultBuffer.writeTo(channel, maxBytesToWrite);
             if (defaultBuffer.used() == 0 && proxyHandle != null) {
                 assert Logger.lowLevelDebug("wrote all data from defaultBuffer, switch to proxy mode");
@@ -141,6 +149,42 @@ public class ProxyOutputRingBuffer extends AbstractRingBuffer {
         }
     }
 
+    /**
+     * flush bytes left in the defaultBuffer and the proxied bytes with one gather write.<br>
+     * only used when writing to fds, which would not call back into the ring buffers during writing
+     */
+    private int writeHeaderAndBody(WritableByteStream channel, int maxBytesToWrite, SimpleRingBuffer body) throws IOException {
+        int headerLen = Math.min(defaultBuffer.used(), maxBytesToWrite);
+        int n = defaultBuffer.readableSegments(segments, 0, headerLen);
+        int bodyLen = Math.min(proxyHandle.len, maxBytesToWrite - headerLen);
+        if (bodyLen > 0) {
+            n += body.readableSegments(segments, n, bodyLen);
+        }
+        int wrote;
+        try {
+            wrote = (int) channel.write(segments, 0, n);
+        } finally {
+            Arrays.fill(segments, null);
+        }
+
+        int headerWrote = Math.min(wrote, headerLen);
+        defaultBuffer.skipWritten(headerWrote);
+        if (defaultBuffer.used() == 0) {
+            assert Logger.lowLevelDebug("wrote all data from defaultBuffer, switch to proxy mode");
+            proxyHandle.enabled = true;
+        }
+        int bodyWrote = wrote - headerWrote;
+        if (bodyWrote > 0) {
+            body.skipWritten(bodyWrote);
+            proxyHandle.len -= bodyWrote;
+            if (proxyHandle.len == 0) {
+                proxyHandle.proxyDone();
+                proxyHandle = null;
+            }
+        }
+        return wrote;
+    }
+
     @Override
     public int free() {
         return cap - used();
@@ -7,6 +7,7 @@ import io.vproxy.base.util.nio.ByteArrayChannel;
 import io.vproxy.base.util.ringbuffer.ssl.SSL;
 import io.vproxy.base.util.thread.VProxyThread;
 import io.vproxy.dep.tlschannel.impl.impl.TlsExplorer;
+import io.vproxy.openssl.OpenSSLEngine;
 import io.vproxy.vfd.IPPort;
 import io.vproxy.vfd.NetworkFD;
 import io.vproxy.vfd.ReadableByteStream;
@@ -164,7 +165,30 @@ public class SSLUnwrapRingBuffer extends AbstractUnwrapByteBufferRingBuffer impl
         if (engine == null) {
             n += createSSLEngine(channel);
         }
-        return n + super.storeBytesFrom(channel);
+        n += super.storeBytesFrom(channel);
+        tryStartKTLS(channel);
+        return n;
+    }
+
+    // let the kernel decrypt the following records
+    // when the handshake is done and all received records are consumed
+    private void tryStartKTLS(ReadableByteStream channel) {
+        if (isPassthrough()) {
+            return;
+        }
+        if (!(engine instanceof OpenSSLEngine openSSLEngine) || !openSSLEngine.isKTLSEnabled()) {
+            return;
+        }
+        if (!isEncryptedDataConsumed()) {
+            return;
+        }
+        int fd = SSLUtils.ktlsFD(channel);
+        if (fd == -1) {
+            return;
+        }
+        if (openSSLEngine.startKTLS(fd, false)) {
+            enablePassthrough();
+        }
     }
 
     private int createSSLEngine(ReadableByteStream channel) throws IOException {
@@ -1,10 +1,13 @@
 package io.vproxy.base.util.ringbuffer;
 
 import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.util.OS;
 import io.vproxy.base.util.coll.Tuple;
 import io.vproxy.base.util.ringbuffer.ssl.SSL;
+import io.vproxy.vfd.FD;
 import io.vproxy.vfd.IPPort;
 import io.vproxy.vfd.NetworkFD;
+import io.vproxy.vfd.posix.PosixFD;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
@@ -112,6 +115,14 @@ public class SSLUtils {
         return genbufForServer(ssl, input, output, null, fd);
     }
 
+    // retrieve the socket fd for installing ktls keys, -1 if it's not a linux socket
+    static int ktlsFD(Object stream) {
+        if (OS.isLinux() && stream instanceof FD fd && fd.real() instanceof PosixFD posixFD) {
+            return posixFD.getFD();
+        }
+        return -1;
+    }
+
     public static SSLContext getDefaultClientSSLContext() {
         if (defaultClientSSLContext != null) {
             return defaultClientSSLContext;
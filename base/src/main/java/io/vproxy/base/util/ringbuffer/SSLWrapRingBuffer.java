@@ -1,8 +1,10 @@
 package io.vproxy.base.util.ringbuffer;
 
 import io.vproxy.base.util.*;
+import io.vproxy.openssl.OpenSSLEngine;
 import io.vproxy.vfd.IPPort;
 import io.vproxy.vfd.NetworkFD;
+import io.vproxy.vfd.WritableByteStream;
 import io.vproxy.vmirror.MirrorDataFactory;
 
 import javax.net.ssl.SSLEngine;
@@ -132,6 +134,42 @@ public class SSLWrapRingBuffer extends AbstractWrapByteBufferRingBuffer implemen
         }
     }
 
+    @Override
+    public int writeTo(WritableByteStream channel, int maxBytesToWrite) throws IOException {
+        if (isPassthrough()) {
+            return super.writeTo(channel, maxBytesToWrite);
+        }
+        int n = super.writeTo(channel, maxBytesToWrite);
+        if (tryStartKTLS(channel)) {
+            // the remaining plain bytes can be sent now
+            n += super.writeTo(channel, maxBytesToWrite - n);
+        }
+        return n;
+    }
+
+    // let the kernel encrypt the following records
+    // when the handshake is done and all wrapped records are sent
+    private boolean tryStartKTLS(WritableByteStream channel) {
+        if (!transferring) {
+            return false;
+        }
+        if (!(engine instanceof OpenSSLEngine openSSLEngine) || !openSSLEngine.isKTLSEnabled()) {
+            return false;
+        }
+        if (!isEncryptedDataFlushed()) {
+            return false;
+        }
+        int fd = SSLUtils.ktlsFD(channel);
+        if (fd == -1) {
+            return false;
+        }
+        if (!openSSLEngine.startKTLS(fd, true)) {
+            return false;
+        }
+        enablePassthrough();
+        return true;
+    }
+
     private String mirrorMeta(SSLEngineResult result) {
         return "r.s=" + result.getStatus() +
             ";" +
@@ -38,6 +38,9 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
     private final int cap;
     protected boolean ePosIsAfterSPos = true;
 
+    // views of the buffer, used for scatter/gather io
+    private ByteBuffer[] segments;
+
     private boolean notFirstOperator = false;
     private boolean operating = false;
     private boolean operatingBuffer = false;
@@ -102,7 +105,57 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
      */
     @Override
     public int storeBytesFrom(ReadableByteStream channel) throws IOException {
-        return operateOnByteBufferStoreIn(b -> channel.read(b.realBuffer()) != -1);
+        if (!ePosIsAfterSPos || sPos == 0) {
+            // free space is continuous
+            return operateOnByteBufferStoreIn(b -> channel.read(b.realBuffer()) != -1);
+        }
+        return scatterStoreFrom(channel);
+    }
+
+    /**
+     * free space is [ePos, cap) and [0, sPos), read into both segments with one call
+     */
+    private int scatterStoreFrom(ReadableByteStream channel) throws IOException {
+        if (operatingBuffer) {
+            throw new IllegalStateException("this buffer is operating");
+        }
+        ensureBufferAvailable();
+
+        boolean firstOperator = isFirstOperate();
+        operatingBuffer = true;
+
+        boolean triggerReadable = false;
+
+        try {
+            boolean triggerReadablePre = used() == 0;
+
+            var segments = getSegments();
+            int lim = cap - ePos;
+            segments[0].limit(cap).position(ePos);
+            segments[1].limit(sPos).position(0);
+            long n = channel.read(segments, 0, 2);
+            if (n < 0) {
+                return -1;
+            }
+            int read = (int) n;
+            if (read < lim) {
+                ePos += read;
+            } else {
+                ePos = read - lim;
+                ePosIsAfterSPos = false;
+            }
+            triggerReadable = triggerReadablePre && read > 0;
+            return read;
+        } finally {
+            operatingBuffer = false;
+            if (triggerReadable) {
+                assert Logger.lowLevelNetDebug("trigger readable for " + handler.size() + " times");
+                for (RingBufferETHandler aHandler : handler) {
+                    aHandler.readableET();
+                }
+            }
+            resetFirst(firstOperator);
+        }
     }
 
     protected void resetCursors() {
@@ -114,7 +167,122 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
 
     @Override
     public int writeTo(WritableByteStream channel, int maxBytesToWrite) throws IOException {
-        return operateOnByteBufferWriteOut(maxBytesToWrite, buffer -> channel.write(buffer.realBuffer()));
+        if (ePosIsAfterSPos || ePos == 0 || maxBytesToWrite <= cap - sPos) {
+            // bytes to write are continuous
+            return operateOnByteBufferWriteOut(maxBytesToWrite, buffer -> channel.write(buffer.realBuffer()));
+        }
+        return gatherWriteTo(channel, maxBytesToWrite);
+    }
+
+    /**
+     * bytes are stored in [sPos, cap) and [0, ePos), write both segments with one call
+     */
+    private int gatherWriteTo(WritableByteStream channel, int maxBytesToWrite) throws IOException {
+        if (operatingBuffer) {
+            throw new IllegalStateException("this buffer is operating");
+        }
+        ensureBufferAvailable();
+
+        boolean firstOperator = isFirstOperate();
+        operatingBuffer = true;
+
+        boolean triggerWritable = false;
+
+        try {
+            boolean triggerWritablePre = free() == 0;
+
+            var segments = getSegments();
+            int n = readableSegments(segments, 0, maxBytesToWrite);
+            int write = (int) channel.write(segments, 0, n);
+            consumeWritten(write);
+            triggerWritable = triggerWritablePre && write > 0;
+            return write;
+        } finally {
+            finishWriteOut(firstOperator, triggerWritable);
+        }
+    }
+
+    private ByteBuffer[] getSegments() {
+        if (segments == null) {
+            segments = new ByteBuffer[]{buffer.realBuffer().duplicate(), buffer.realBuffer().duplicate()};
+        }
+        return segments;
+    }
+
+    /**
+     * Fill views of at most {@code maxBytes} readable bytes into {@code out},
+     * the bytes are not consumed until {@link #skipWritten(int)} is called.
+     *
+     * @return number of views filled into {@code out}, at most 2
+     */
+    int readableSegments(ByteBuffer[] out, int off, int maxBytes) {
+        ensureBufferAvailable();
+
+        int lim = Math.min(retrieveLimit(), maxBytes);
+        if (lim == 0) {
+            return 0;
+        }
+        var segments = getSegments();
+        segments[0].limit(sPos + lim).position(sPos);
+        out[off] = segments[0];
+        if (ePosIsAfterSPos || lim == maxBytes || ePos == 0) {
+            return 1;
+        }
+        segments[1].limit(Math.min(ePos, maxBytes - lim)).position(0);
+        out[off + 1] = segments[1];
+        return 2;
+    }
+
+    /**
+     * consume bytes which are already written out from {@link #readableSegments(ByteBuffer[], int, int)}
+     */
+    void skipWritten(int write) {
+        if (operatingBuffer) {
+            throw new IllegalStateException("this buffer is operating");
+        }
+        ensureBufferAvailable();
+        if (write <= 0) {
+            return;
+        }
+
+        boolean firstOperator = isFirstOperate();
+        operatingBuffer = true;
+
+        boolean triggerWritablePre = free() == 0;
+        try {
+            consumeWritten(write);
+        } finally {
+            finishWriteOut(firstOperator, triggerWritablePre);
+        }
+    }
+
+    private void consumeWritten(int write) {
+        if (write <= 0) {
+            return;
+        }
+        int lim = retrieveLimit();
+        if (write < lim) {
+            sPos += write;
+        } else if (ePosIsAfterSPos) {
+            sPos = ePos;
+        } else {
+            sPos = write - lim;
+            ePosIsAfterSPos = true;
+        }
+        if (used() == 0) {
+            resetCursors();
+        }
+    }
+
+    private void finishWriteOut(boolean firstOperator, boolean triggerWritable) {
+        operatingBuffer = false;
+        if (triggerWritable) {
+            assert Logger.lowLevelNetDebug("trigger writable for " + handler.size() + " times");
+            for (RingBufferETHandler aHandler : handler) {
+                aHandler.writableET();
+            }
+        }
+        resetFirst(firstOperator);
     }
 
     @Override
@@ -200,6 +368,7 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
         if (cleaned)
             return;
         cleaned = true;
+        segments = null;
         if (isDirect) {
             buffer.clean();
         }
@@ -478,6 +647,7 @@ public class SimpleRingBuffer implements RingBuffer, ByteBufferRingBuffer {
             ePosIsAfterSPos = false;
         }
         buffer = newBuffer;
+        segments = null;
     }
 
     ByteBufferEx getBuffer() {
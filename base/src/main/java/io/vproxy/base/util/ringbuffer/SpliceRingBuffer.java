@@ -0,0 +1,266 @@
+package io.vproxy.base.util.ringbuffer;
+
+import io.vproxy.base.util.ByteBufferEx;
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.OS;
+import io.vproxy.base.util.direct.DirectMemoryUtils;
+import io.vproxy.vfd.FD;
+import io.vproxy.vfd.ReadableByteStream;
+import io.vproxy.vfd.WritableByteStream;
+import io.vproxy.vfd.posix.Posix;
+import io.vproxy.vfd.posix.PosixFD;
+
+import java.io.IOException;
+
+/**
+ * A ring buffer backed by a kernel pipe.<br>
+ * Bytes are moved between posix fds and the pipe with splice(2),
+ * so they never enter the user space.<br>
+ * Only bytes stored from posix fds are accepted. When writing to a non-posix stream,
+ * the bytes are copied out of the pipe first.
+ */
+public class SpliceRingBuffer extends AbstractRingBuffer {
+    private static final int COPY_BUFFER_SIZE = 16384;
+
+    private final Posix posix;
+    private final int readFd;
+    private final int writeFd;
+    private final int cap;
+
+    private int pipeUsed = 0;
+    // splice into the pipe moved nothing while the pipe still holds data.
+    // the pipe accounts capacity by pages rather than bytes, so it may be full before `cap` is reached
+    private boolean pipeFull = false;
+
+    // only used when writing to a non-posix stream
+    private ByteBufferEx copyBuffer;
+    private int copyPos;
+    private int copyLim;
+
+    private boolean cleaned = false;
+
+    private SpliceRingBuffer(Posix posix, int readFd, int writeFd, int cap) {
+        this.posix = posix;
+        this.readFd = readFd;
+        this.writeFd = writeFd;
+        this.cap = cap;
+    }
+
+    public static boolean isSupported(FD fd) {
+        return OS.isLinux() && fd.real() instanceof PosixFD;
+    }
+
+    /**
+     * @param fd   the fd which will be spliced, used to retrieve the posix impl
+     * @param size expected capacity of the pipe, the kernel may round it up
+     */
+    public static SpliceRingBuffer open(FD fd, int size) throws IOException {
+        if (!isSupported(fd)) {
+            throw new IOException("splice is not supported for " + fd);
+        }
+        Posix posix = ((PosixFD) fd.real()).getPosix();
+        int[] res = posix.openSplicePipe(size);
+        return new SpliceRingBuffer(posix, res[0], res[1], res[2]);
+    }
+
+    private static int posixFDOf(Object stream) {
+        if (stream instanceof FD fd && fd.real() instanceof PosixFD posixFD) {
+            return posixFD.getFD();
+        }
+        return -1;
+    }
+
+    private void ensureBufferAvailable() {
+        if (cleaned) {
+            throw new IllegalStateException("this buffer is already cleaned");
+        }
+    }
+
+    /**
+     * @return may return -1 for EOF
+     */
+    @Override
+    public int storeBytesFrom(ReadableByteStream channel) throws IOException {
+        ensureBufferAvailable();
+        int fd = posixFDOf(channel);
+        if (fd == -1) {
+            throw new IOException("splice buffer can only store bytes from posix fds, but got " + channel);
+        }
+        int len = free();
+        if (len == 0) {
+            return 0;
+        }
+
+        boolean first = !isOperating();
+        if (first) {
+            setOperating(true);
+        }
+        boolean triggerReadablePre = used() == 0;
+        int read = 0;
+        try {
+            read = posix.splice(fd, writeFd, len);
+            if (read > 0) {
+                pipeUsed += read;
+            } else if (read == 0 && pipeUsed > 0) {
+                assert Logger.lowLevelDebug("splice moved nothing into a non-empty pipe, consider it full");
+                pipeFull = true;
+            }
+            return read;
+        } finally {
+            if (triggerReadablePre && read > 0) {
+                triggerReadable();
+            }
+            if (first) {
+                setOperating(false);
+            }
+        }
+    }
+
+    @Override
+    public int writeTo(WritableByteStream channel, int maxBytesToWrite) throws IOException {
+        ensureBufferAvailable();
+
+        boolean first = !isOperating();
+        if (first) {
+            setOperating(true);
+        }
+        boolean triggerWritablePre = free() == 0;
+        int write = 0;
+        try {
+            if (copyLim > copyPos) {
+                write += writeCopied(channel, maxBytesToWrite);
+                if (copyLim > copyPos) {
+                    return write;
+                }
+            }
+            int len = Math.min(pipeUsed, maxBytesToWrite - write);
+            if (len == 0) {
+                return write;
+            }
+            int fd = posixFDOf(channel);
+            if (fd != -1) {
+                int n = posix.splice(readFd, fd, len);
+                if (n > 0) {
+                    pipeUsed -= n;
+                    write += n;
+                }
+            } else {
+                if (copyBuffer == null) {
+                    copyBuffer = DirectMemoryUtils.allocateDirectBuffer(COPY_BUFFER_SIZE);
+                }
+                int n = posix.read(readFd, copyBuffer.realBuffer(), 0, Math.min(len, COPY_BUFFER_SIZE));
+                if (n > 0) {
+                    pipeUsed -= n;
+                    copyPos = 0;
+                    copyLim = n;
+                    write += writeCopied(channel, maxBytesToWrite - write);
+                }
+            }
+            return write;
+        } finally {
+            if (write > 0) {
+                pipeFull = false;
+                if (triggerWritablePre) {
+                    triggerWritable();
+                }
+            }
+            if (first) {
+                setOperating(false);
+            }
+        }
+    }
+
+    private int writeCopied(WritableByteStream channel, int maxBytesToWrite) throws IOException {
+        int len = Math.min(copyLim - copyPos, maxBytesToWrite);
+        if (len <= 0) {
+            return 0;
+        }
+        copyBuffer.limit(copyPos + len).position(copyPos);
+        int n = channel.write(copyBuffer.realBuffer());
+        if (n > 0) {
+            copyPos += n;
+        }
+        if (copyPos == copyLim) {
+            copyPos = 0;
+            copyLim = 0;
+        }
+        return Math.max(n, 0);
+    }
+
+    @Override
+    public int free() {
+        if (pipeFull) {
+            return 0;
+        }
+        return Math.max(cap - used(), 0);
+    }
+
+    @Override
+    public int used() {
+        return pipeUsed + (copyLim - copyPos);
+    }
+
+    @Override
+    public int capacity() {
+        return cap;
+    }
+
+    /**
+     * close the pipe, bytes not sent are discarded
+     */
+    @Override
+    public void clean() {
+        if (cleaned)
+            return;
+        cleaned = true;
+        try {
+            posix.close(readFd);
+        } catch (IOException e) {
+            assert Logger.lowLevelDebug("closing pipe read end " + readFd + " failed: " + e);
+        }
+        try {
+            posix.close(writeFd);
+        } catch (IOException e) {
+            assert Logger.lowLevelDebug("closing pipe write end " + writeFd + " failed: " + e);
+        }
+        if (copyBuffer != null) {
+            copyBuffer.clean();
+            copyBuffer = null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        ensureBufferAvailable();
+
+        boolean triggerWritablePre = free() == 0;
+        copyPos = 0;
+        copyLim = 0;
+        if (pipeUsed > 0) {
+            if (copyBuffer == null) {
+                copyBuffer = DirectMemoryUtils.allocateDirectBuffer(COPY_BUFFER_SIZE);
+            }
+            while (pipeUsed > 0) {
+                int n;
+                try {
+                    n = posix.read(readFd, copyBuffer.realBuffer(), 0, Math.min(pipeUsed, COPY_BUFFER_SIZE));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (n <= 0) {
+                    break;
+                }
+                pipeUsed -= n;
+            }
+        }
+        pipeFull = false;
+        if (triggerWritablePre) {
+            triggerWritable();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SpliceRingBuffer(" + readFd + "," + writeFd + ")[used=" + used() + ",cap=" + cap + "]";
+    }
+}
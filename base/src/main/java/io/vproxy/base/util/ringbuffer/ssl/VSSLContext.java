@@ -1,9 +1,16 @@
 package io.vproxy.base.util.ringbuffer.ssl;
 
+import io.vproxy.openssl.OpenSSLContext;
+
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class VSSLContext {
     public final SSLContextHolder sslContextHolder;
+    // ssl contexts which are served by the native engine
+    private final Map<SSLContext, OpenSSLContext> openSSLContexts = new ConcurrentHashMap<>();
 
     public VSSLContext() {
         this(new SSLContextHolder());
@@ -13,7 +20,48 @@ public class VSSLContext {
         this.sslContextHolder = sslContextHolder;
     }
 
+    /**
+     * engines for the <code>sslContext</code> will be created from the <code>openSSLContext</code>
+     */
+    public void useOpenSSL(SSLContext sslContext, OpenSSLContext openSSLContext) {
+        var old = openSSLContexts.put(sslContext, openSSLContext);
+        if (old != null && old != openSSLContext) {
+            old.close();
+        }
+    }
+
+    /**
+     * engines for the <code>sslContext</code> will be created by the jdk, and the native context is released
+     */
+    public void removeOpenSSL(SSLContext sslContext) {
+        var old = openSSLContexts.remove(sslContext);
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /**
+     * release all native contexts, engines created afterwards fall back to the jdk,
+     * engines already created are not affected
+     */
+    public void close() {
+        for (var sslContext : openSSLContexts.keySet()) {
+            removeOpenSSL(sslContext);
+        }
+    }
+
     public SSL createSSL() {
-        return new SSL(sslContextHolder, new SSLEngineBuilder(SSLContext::createSSLEngine));
+        if (openSSLContexts.isEmpty()) {
+            return new SSL(sslContextHolder, new SSLEngineBuilder(SSLContext::createSSLEngine));
+        }
+        return new SSL(sslContextHolder, new SSLEngineBuilder(this::createSSLEngine));
+    }
+
+    private SSLEngine createSSLEngine(SSLContext sslContext) {
+        var openSSLContext = openSSLContexts.get(sslContext);
+        if (openSSLContext == null) {
+            return sslContext.createSSLEngine();
+        }
+        return openSSLContext.createSSLEngine();
     }
 }
@@ -11,6 +11,7 @@ import vjson.parser.ObjectParser;
 import vjson.parser.StringParser;
 import vjson.util.StringDictionary;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BooleanSupplier;
@@ -70,6 +71,10 @@ public interface VProxyThread {
         public StringParser threadLocalStringParserJavaObject;
         public StringDictionary threadLocalKeyDictionary;
 
+        // shared by arq udp sockets handled on this thread
+        public ByteBuffer threadLocalArqUDPReadBuffer;
+        public ByteBuffer threadLocalArqUDPWriteBuffer;
+
         public static final int XDPChunk_arrayLen = 2048;
         private final Allocator XDPChunkAllocator = Allocator.ofConfined();
         public final IntArray XDPIdxPtr = new IntArray(XDPChunkAllocator, 1);
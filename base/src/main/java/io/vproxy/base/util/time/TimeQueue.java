@@ -1,12 +1,17 @@
 package io.vproxy.base.util.time;
 
 import io.vproxy.base.util.time.impl.TimeQueueImpl;
+import io.vproxy.base.util.time.impl.TimingWheelImpl;
 
 public interface TimeQueue<T> {
     static <T> TimeQueue<T> create() {
         return new TimeQueueImpl<>();
     }
 
+    static <T> TimeQueue<T> createTimingWheel() {
+        return new TimingWheelImpl<>();
+    }
+
     TimeElem<T> add(long current, int timeout, T elem);
 
     /**
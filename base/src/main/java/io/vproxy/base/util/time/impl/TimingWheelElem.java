@@ -0,0 +1,35 @@
+package io.vproxy.base.util.time.impl;
+
+import io.vproxy.base.util.time.TimeElem;
+
+public class TimingWheelElem<T> implements TimeElem<T> {
+    static final int FREE = -3;
+    static final int FIRED = -2;
+    static final int READY = -1;
+
+    long triggerTime;
+    T elem;
+    // FREE, FIRED, READY, or level of the wheel
+    int level = FREE;
+    int slot;
+    TimingWheelElem<T> prev;
+    TimingWheelElem<T> next;
+    private final TimingWheelImpl<T> wheel;
+
+    TimingWheelElem(TimingWheelImpl<T> wheel) {
+        this.wheel = wheel;
+    }
+
+    @Override
+    public T get() {
+        return elem;
+    }
+
+    /**
+     * the element is recycled, so it must not be used after calling this method
+     */
+    @Override
+    public void removeSelf() {
+        wheel.remove(this);
+    }
+}
@@ -0,0 +1,273 @@
+package io.vproxy.base.util.time.impl;
+
+import io.vproxy.base.util.time.TimeElem;
+import io.vproxy.base.util.time.TimeQueue;
+
+/**
+ * A hashed hierarchical timing wheel.<br>
+ * Level 0 has 256 slots of 1 millisecond, and each of the 4 upper levels has 64 slots,
+ * a slot of level n covers all slots of level n-1, so any int timeout fits into the wheel.<br>
+ * Elements are linked into the slots, add and remove are O(1),
+ * elements of an upper level slot are moved down when the wheel reaches the slot.<br>
+ * Non-empty slots are recorded in bitmaps, so the time of the next event is calculated without scanning the slots.<br>
+ * Elements removed by {@link TimeElem#removeSelf()} are recycled.
+ */
+public class TimingWheelImpl<T> implements TimeQueue<T> {
+    private static final int[] SHIFTS = {0, 8, 14, 20, 26};
+    private static final int[] SLOTS = {256, 64, 64, 64, 64};
+    private static final int LEVELS = SHIFTS.length;
+    private static final int MAX_POOL_SIZE = 4096;
+
+    @SuppressWarnings("unchecked")
+    private final TimingWheelElem<T>[][] slots = new TimingWheelElem[LEVELS][];
+    private final long[][] bitmaps = new long[LEVELS][];
+
+    // elements already triggered
+    private TimingWheelElem<T> readyHead;
+    private TimingWheelElem<T> readyTail;
+    private int readyCount = 0;
+    private int wheelCount = 0;
+
+    private TimingWheelElem<T> pool;
+    private int poolSize = 0;
+
+    // all events before this timestamp are moved into the ready list
+    private long now = -1;
+
+    public TimingWheelImpl() {
+        for (int i = 0; i < LEVELS; ++i) {
+            //noinspection unchecked
+            slots[i] = new TimingWheelElem[SLOTS[i]];
+            bitmaps[i] = new long[(SLOTS[i] + 63) / 64];
+        }
+    }
+
+    @Override
+    public TimeElem<T> add(long current, int timeout, T elem) {
+        advance(current);
+        TimingWheelElem<T> e = pool;
+        if (e == null) {
+            e = new TimingWheelElem<>(this);
+        } else {
+            pool = e.next;
+            e.next = null;
+            --poolSize;
+        }
+        e.triggerTime = current + Math.max(timeout, 0);
+        e.elem = elem;
+        place(e);
+        return e;
+    }
+
+    private void place(TimingWheelElem<T> e) {
+        long delta = e.triggerTime - now;
+        if (delta <= 0) {
+            e.level = TimingWheelElem.READY;
+            e.prev = readyTail;
+            if (readyTail == null) {
+                readyHead = e;
+            } else {
+                readyTail.next = e;
+            }
+            readyTail = e;
+            ++readyCount;
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << SHIFTS[level + 1])) {
+            ++level;
+        }
+        int slot = (int) ((e.triggerTime >>> SHIFTS[level]) & (SLOTS[level] - 1));
+        e.level = level;
+        e.slot = slot;
+        var head = slots[level][slot];
+        e.next = head;
+        if (head != null) {
+            head.prev = e;
+        }
+        slots[level][slot] = e;
+        bitmaps[level][slot >>> 6] |= 1L << slot;
+        ++wheelCount;
+    }
+
+    private void unlink(TimingWheelElem<T> e) {
+        if (e.level == TimingWheelElem.READY) {
+            if (e.prev == null) {
+                readyHead = e.next;
+            } else {
+                e.prev.next = e.next;
+            }
+            if (e.next == null) {
+                readyTail = e.prev;
+            } else {
+                e.next.prev = e.prev;
+            }
+            --readyCount;
+        } else {
+            int level = e.level;
+            int slot = e.slot;
+            if (e.prev == null) {
+                slots[level][slot] = e.next;
+                if (e.next == null) {
+                    bitmaps[level][slot >>> 6] &= ~(1L << slot);
+                }
+            } else {
+                e.prev.next = e.next;
+            }
+            if (e.next != null) {
+                e.next.prev = e.prev;
+            }
+            --wheelCount;
+        }
+        e.prev = null;
+        e.next = null;
+    }
+
+    void remove(TimingWheelElem<T> e) {
+        if (e.level == TimingWheelElem.FREE) {
+            return;
+        }
+        if (e.level != TimingWheelElem.FIRED) {
+            unlink(e);
+        }
+        e.level = TimingWheelElem.FREE;
+        e.elem = null;
+        if (poolSize < MAX_POOL_SIZE) {
+            e.next = pool;
+            pool = e;
+            ++poolSize;
+        }
+    }
+
+    // time of the nearest slot which is going to be triggered or moved down
+    private long nextEventTime() {
+        long min = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; ++level) {
+            int n = SLOTS[level];
+            int shift = SHIFTS[level];
+            int cur = (int) ((now >>> shift) & (n - 1));
+            int d = distanceToNextSlot(bitmaps[level], n, cur);
+            if (d == -1) {
+                continue;
+            }
+            long t = ((now >>> shift) + d) << shift;
+            if (t < min) {
+                min = t;
+            }
+        }
+        return min;
+    }
+
+    // distance from cur to the next non-empty slot, the cur slot itself has distance n
+    private static int distanceToNextSlot(long[] bitmap, int n, int cur) {
+        for (int i = 1; i <= n; ) {
+            int idx = (cur + i) & (n - 1);
+            long word = bitmap[idx >>> 6] >>> (idx & 63);
+            if (word != 0) {
+                int d = i + Long.numberOfTrailingZeros(word);
+                return d > n ? -1 : d;
+            }
+            i += 64 - (idx & 63);
+        }
+        return -1;
+    }
+
+    private void advance(long current) {
+        if (now == -1 || wheelCount == 0) {
+            if (current > now) {
+                now = current;
+            }
+            return;
+        }
+        while (now < current && wheelCount > 0) {
+            long t = nextEventTime();
+            if (t > current) {
+                break;
+            }
+            now = t;
+            // move down from the upper levels first, so that the elements may fall into a slot handled in this round
+            int top = 0;
+            while (top < LEVELS - 1 && (now & ((1L << SHIFTS[top + 1]) - 1)) == 0) {
+                ++top;
+            }
+            for (int level = top; level >= 1; --level) {
+                cascade(level, (int) ((now >>> SHIFTS[level]) & (SLOTS[level] - 1)));
+            }
+            cascade(0, (int) (now & (SLOTS[0] - 1)));
+        }
+        if (current > now) {
+            now = current;
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        var e = slots[level][slot];
+        if (e == null) {
+            return;
+        }
+        slots[level][slot] = null;
+        bitmaps[level][slot >>> 6] &= ~(1L << slot);
+        while (e != null) {
+            var next = e.next;
+            e.prev = null;
+            e.next = null;
+            --wheelCount;
+            place(e);
+            e = next;
+        }
+    }
+
+    /**
+     * If no element is triggered yet, this method scans all slots to find the nearest one.
+     */
+    @Override
+    public T poll() {
+        var e = readyHead;
+        if (e == null) {
+            e = findNearest();
+            if (e == null) {
+                return null;
+            }
+        }
+        unlink(e);
+        e.level = TimingWheelElem.FIRED;
+        return e.elem;
+    }
+
+    private TimingWheelElem<T> findNearest() {
+        TimingWheelElem<T> res = null;
+        for (var level : slots) {
+            for (var e : level) {
+                for (; e != null; e = e.next) {
+                    if (res == null || e.triggerTime < res.triggerTime) {
+                        res = e;
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return readyCount == 0 && wheelCount == 0;
+    }
+
+    @Override
+    public int nextTime(long current) {
+        advance(current);
+        if (readyCount > 0) {
+            return 0;
+        }
+        if (wheelCount == 0) {
+            return Integer.MAX_VALUE;
+        }
+        long t = nextEventTime();
+        return (int) Math.min(Math.max(t - current, 0), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheelImpl{now=" + now + ", ready=" + readyCount + ", wheel=" + wheelCount + ", pool=" + poolSize + "}";
+    }
+}
@@ -0,0 +1,127 @@
+package io.vproxy.openssl;
+
+import io.vproxy.base.util.LogType;
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.Utils;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.Cleaner;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Entry of the native tls engine, which is backed by openssl (or a compatible library) through the vpssl library.<br>
+ * The library is loaded lazily, use {@link #isSupported()} to check whether it's available.
+ */
+public class OpenSSL {
+    // return values of the native functions, see vpssl.h
+    static final int HANDSHAKE_DONE = 1;
+    static final int HANDSHAKE_WANT_READ = 0;
+    static final int HANDSHAKE_CLIENT_HELLO = 2;
+    static final int ERROR = -1;
+    static final int CLOSED = -2;
+
+    // flags returned by sessionFlags
+    static final int SESSION_RESUMED = 1;
+    static final int SESSION_TICKET_LOOKUP = 2;
+    static final int SESSION_CACHE_LOOKUP = 4;
+
+    static final int TLS1_VERSION = 0x0301;
+    static final int TLS1_1_VERSION = 0x0302;
+    static final int TLS1_2_VERSION = 0x0303;
+    static final int TLS1_3_VERSION = 0x0304;
+
+    static final Cleaner CLEANER = Cleaner.create();
+
+    // the engine runs on event loops, each thread uses its own buffer
+    // to pass heap buffers to the native functions
+    static final int SCRATCH_SIZE = 32 * 1024;
+    private static final ThreadLocal<MemorySegment> scratch = ThreadLocal.withInitial(() -> Arena.ofAuto().allocate(SCRATCH_SIZE));
+
+    private OpenSSL() {
+    }
+
+    private static volatile boolean loaded = false;
+    private static UnsatisfiedLinkError loadError = null;
+
+    public static boolean isSupported() {
+        try {
+            loadNative();
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    static void loadNative() throws UnsatisfiedLinkError {
+        if (loaded) {
+            return;
+        }
+        synchronized (OpenSSL.class) {
+            if (loaded) {
+                return;
+            }
+            if (loadError != null) {
+                throw loadError;
+            }
+            try {
+                Utils.loadDynamicLibrary("vpssl");
+            } catch (UnsatisfiedLinkError e) {
+                Logger.warn(LogType.SYS_ERROR, "unable to load the vpssl library, the native tls engine is disabled", e);
+                loadError = e;
+                throw e;
+            }
+            loaded = true;
+        }
+    }
+
+    /**
+     * Generate a new session ticket key now instead of waiting for the rotation interval,
+     * tickets encrypted with the previous keys are still accepted.
+     * Does nothing if no server context is created yet.
+     */
+    public static void rotateTicketKeys() {
+        OpenSSLTicketKeys.rotateNow();
+    }
+
+    static MemorySegment scratch(int size) {
+        if (size > SCRATCH_SIZE) {
+            return Arena.ofAuto().allocate(size);
+        }
+        return scratch.get();
+    }
+
+    static String lastError() {
+        var buf = scratch(256);
+        int n = OpenSSLFunc.get().lastError(buf, 256);
+        if (n <= 0) {
+            return "unknown error";
+        }
+        return toString(buf, n);
+    }
+
+    static String toString(MemorySegment seg, int len) {
+        return new String(seg.asSlice(0, len).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    static String versionName(int version) {
+        return switch (version) {
+            case TLS1_VERSION -> "TLSv1";
+            case TLS1_1_VERSION -> "TLSv1.1";
+            case TLS1_2_VERSION -> "TLSv1.2";
+            case TLS1_3_VERSION -> "TLSv1.3";
+            default -> "NONE";
+        };
+    }
+
+    static int version(String name) {
+        return switch (name) {
+            case "TLSv1" -> TLS1_VERSION;
+            case "TLSv1.1" -> TLS1_1_VERSION;
+            case "TLSv1.2" -> TLS1_2_VERSION;
+            case "TLSv1.3" -> TLS1_3_VERSION;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package io.vproxy.openssl;
+
+import io.vproxy.base.Config;
+import io.vproxy.pni.Allocator;
+import io.vproxy.pni.PNIString;
+
+import javax.net.ssl.SSLException;
+import java.lang.foreign.MemorySegment;
+import java.lang.ref.Cleaner;
+
+/**
+ * Wraps a native SSL_CTX, engines created from the same context share the certificate and the key.<br>
+ * The native context is released when {@link #close()} is called or when the object is collected,
+ * engines already created keep their own reference to the native context,
+ * so it's released after the last of them creates its native ssl object.
+ */
+public class OpenSSLContext implements AutoCloseable {
+    final MemorySegment ctx;
+    final boolean server;
+    private final Cleaner.Cleanable cleanable;
+    private volatile boolean closed = false;
+    private int refCnt = 1; // the context itself and the engines which have not created the native ssl yet
+    private volatile boolean ktls = false;
+
+    private OpenSSLContext(MemorySegment ctx, boolean server) {
+        this.ctx = ctx;
+        this.server = server;
+        this.cleanable = OpenSSL.CLEANER.register(this, () -> OpenSSLFunc.get().ctxFree(ctx));
+    }
+
+    /**
+     * Create a server context with session cache settings from {@link Config}.
+     *
+     * @param certChainPem the certificate and the chain in pem format, the first one is the server certificate
+     * @param keyPem       the private key in pem format
+     */
+    public static OpenSSLContext forServer(String certChainPem, String keyPem) throws SSLException {
+        return forServer(certChainPem, keyPem, Config.sslSessionCacheSize, Config.sslSessionTimeout);
+    }
+
+    /**
+     * Sessions are cached in a striped cache shared by all engines (thus all event loops) of the context,
+     * session tickets are encrypted with keys shared by all server contexts, see {@link OpenSSLTicketKeys}.
+     *
+     * @param certChainPem     the certificate and the chain in pem format, the first one is the server certificate
+     * @param keyPem           the private key in pem format
+     * @param sessionCacheSize max number of cached sessions for session id resumption, 0 to disable
+     * @param sessionTimeout   lifetime of sessions and tickets in seconds
+     */
+    public static OpenSSLContext forServer(String certChainPem, String keyPem, int sessionCacheSize, int sessionTimeout) throws SSLException {
+        OpenSSL.loadNative();
+        OpenSSLTicketKeys.ensureStarted();
+        try (var allocator = Allocator.ofConfined()) {
+            var ctx = OpenSSLFunc.get().ctxNew(1, 0,
+                new PNIString(allocator, certChainPem),
+                new PNIString(allocator, keyPem));
+            if (ctx == null) {
+                throw new SSLException("failed to create openssl server context: " + OpenSSL.lastError());
+            }
+            var ret = new OpenSSLContext(ctx, true);
+            if (OpenSSLFunc.get().ctxSetSessionCache(ctx, sessionCacheSize, sessionTimeout) != 0) {
+                ret.close();
+                throw new SSLException("invalid session cache settings: size=" + sessionCacheSize + ", timeout=" + sessionTimeout);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * @param verify verify the server certificate with the system default trust store
+     */
+    public static OpenSSLContext forClient(boolean verify) throws SSLException {
+        OpenSSL.loadNative();
+        var ctx = OpenSSLFunc.get().ctxNew(0, verify ? 1 : 0, null, null);
+        if (ctx == null) {
+            throw new SSLException("failed to create openssl client context: " + OpenSSL.lastError());
+        }
+        return new OpenSSLContext(ctx, false);
+    }
+
+    public OpenSSLEngine createSSLEngine() {
+        return new OpenSSLEngine(this, null, -1, ktls);
+    }
+
+    public OpenSSLEngine createSSLEngine(String peerHost, int peerPort) {
+        return new OpenSSLEngine(this, peerHost, peerPort, ktls);
+    }
+
+    /**
+     * Engines created after this call will try to install the tls keys into the kernel when handshake is done,
+     * see {@link OpenSSLEngine#startKTLS(int, boolean)}.
+     */
+    public OpenSSLContext setKTLS(boolean ktls) {
+        this.ktls = ktls;
+        return this;
+    }
+
+    public boolean isKTLS() {
+        return ktls;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    synchronized boolean retain() {
+        if (closed) {
+            return false;
+        }
+        ++refCnt;
+        return true;
+    }
+
+    synchronized void release() {
+        if (--refCnt == 0) {
+            cleanable.clean();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        release();
+    }
+
+    @Override
+    public String toString() {
+        return "OpenSSLContext{" +
+            "server=" + server +
+            ", ktls=" + ktls +
+            '}';
+    }
+}
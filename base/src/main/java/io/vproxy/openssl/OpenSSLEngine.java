@@ -0,0 +1,789 @@
+package io.vproxy.openssl;
+
+import io.vproxy.base.GlobalInspection;
+import io.vproxy.base.util.Logger;
+import io.vproxy.pni.Allocator;
+import io.vproxy.pni.PNIString;
+
+import javax.net.ssl.*;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * An {@link SSLEngine} backed by the native tls library.<br>
+ * The native SSL object reads encrypted bytes from and writes encrypted bytes into memory buffers,
+ * so the engine works with the existing ring buffers without any change.<br>
+ * Differences from the jdk engine:<br>
+ * 1. the handshake runs inline, {@link #getDelegatedTask()} always returns null<br>
+ * 2. cipher suites are chosen by the native library, the enabled cipher suites are recorded but not applied<br>
+ * 3. client authentication is not supported<br>
+ * 4. {@link #unwrap(ByteBuffer, ByteBuffer[], int, int)} consumes at most one tls record each time<br>
+ * <br>
+ * When ktls is enabled, the negotiated keys can be installed into the kernel after the handshake,
+ * then the socket reads and writes plain bytes, and the engine must not be used for that direction any more.
+ */
+public class OpenSSLEngine extends SSLEngine {
+    static final int MAX_PLAINTEXT_LENGTH = 16384;
+    static final int PACKET_BUFFER_SIZE = 16709; // same as the jdk engine
+    private static final int RECORD_HEADER_LENGTH = 5;
+    private static final String[] SUPPORTED_PROTOCOLS = {"TLSv1.2", "TLSv1.3"};
+    private static final String[] DEFAULT_CIPHER_SUITES = {
+        "TLS_AES_128_GCM_SHA256",
+        "TLS_AES_256_GCM_SHA384",
+        "TLS_CHACHA20_POLY1305_SHA256",
+        "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+        "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+        "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384",
+        "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+        "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+        "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+    };
+
+    private final OpenSSLContext context;
+    private final OpenSSLSession session;
+    private boolean contextRetained; // released after the native ssl is created
+
+    private NativeSSL nativeSSL;
+    private Cleaner.Cleanable cleanable;
+
+    private boolean clientMode;
+    private boolean needClientAuth = false;
+    private boolean wantClientAuth = false;
+    private boolean enableSessionCreation = true;
+    private String[] enabledProtocols = SUPPORTED_PROTOCOLS;
+    private String[] enabledCipherSuites = DEFAULT_CIPHER_SUITES;
+    private String[] applicationProtocols = new String[0];
+    private List<SNIServerName> serverNames = null;
+    private String endpointIdentificationAlgorithm = null;
+    private BiFunction<SSLEngine, List<String>, String> applicationProtocolSelector = null;
+
+    private String applicationProtocol = null;
+    private boolean handshakeStarted = false;
+    private boolean handshakeDone = false;
+    private boolean inboundDone = false;
+    private boolean outboundDone = false;
+
+    private final boolean ktls;
+    private boolean ktlsFailed = false;
+    private boolean ktlsTx = false;
+    private boolean ktlsRx = false;
+
+    OpenSSLEngine(OpenSSLContext context, String peerHost, int peerPort, boolean ktls) {
+        super(peerHost, peerPort);
+        this.context = context;
+        this.ktls = ktls;
+        this.clientMode = !context.server;
+        this.session = new OpenSSLSession(this);
+        this.contextRetained = context.retain();
+    }
+
+    // holds the native pointer, must not reference the engine
+    private static class NativeSSL implements Runnable {
+        private MemorySegment ssl;
+
+        NativeSSL(MemorySegment ssl) {
+            this.ssl = ssl;
+        }
+
+        @Override
+        public void run() {
+            var ssl = this.ssl;
+            if (ssl == null) {
+                return;
+            }
+            this.ssl = null;
+            OpenSSLFunc.get().sslFree(ssl);
+        }
+    }
+
+    private MemorySegment ssl() throws SSLException {
+        if (nativeSSL != null) {
+            var ssl = nativeSSL.ssl;
+            if (ssl == null) {
+                throw new SSLException("the engine is closed");
+            }
+            return ssl;
+        }
+        if (!contextRetained) {
+            throw new SSLException("the openssl context is closed");
+        }
+        if (clientMode && context.server) {
+            throw new SSLException("cannot use a server context in client mode");
+        }
+        if (!clientMode && !context.server) {
+            throw new SSLException("cannot use a client context in server mode");
+        }
+        var sni = clientSNI();
+        MemorySegment ssl;
+        try (var allocator = Allocator.ofConfined()) {
+            ssl = OpenSSLFunc.get().sslNew(context.ctx, clientMode ? 0 : 1, sni == null ? null : new PNIString(allocator, sni));
+        }
+        if (ssl == null) {
+            throw new SSLException("failed to create openssl engine: " + OpenSSL.lastError());
+        }
+        // the native ssl holds a reference of the native context
+        contextRetained = false;
+        context.release();
+        nativeSSL = new NativeSSL(ssl);
+        cleanable = OpenSSL.CLEANER.register(this, nativeSSL);
+        if (ktls) {
+            // record secrets and sequence numbers during the handshake
+            OpenSSLFunc.get().ktlsPrepare(ssl);
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (var p : enabledProtocols) {
+            int v = OpenSSL.version(p);
+            if (v == 0) {
+                continue;
+            }
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        if (max == 0) {
+            throw new SSLException("no protocol enabled: " + String.join(",", enabledProtocols));
+        }
+        if (OpenSSLFunc.get().setVersions(ssl, min, max) != 0) {
+            throw new SSLException("failed to set protocol versions: " + OpenSSL.lastError());
+        }
+        if (clientMode) {
+            if (applicationProtocols.length != 0) {
+                var protos = encodeAlpn(List.of(applicationProtocols));
+                var seg = OpenSSL.scratch(protos.length);
+                MemorySegment.copy(protos, 0, seg, ValueLayout.JAVA_BYTE, 0, protos.length);
+                if (OpenSSLFunc.get().setAlpn(ssl, seg, protos.length) != 0) {
+                    throw new SSLException("failed to set alpn: " + OpenSSL.lastError());
+                }
+            }
+        } else if (applicationProtocolSelector != null || applicationProtocols.length != 0) {
+            // alpn is chosen by the java code when client hello arrives
+            OpenSSLFunc.get().pauseClientHello(ssl);
+        }
+        return ssl;
+    }
+
+    private String clientSNI() {
+        if (!clientMode) {
+            return null;
+        }
+        if (serverNames != null) {
+            for (var n : serverNames) {
+                if (n instanceof SNIHostName h) {
+                    return h.getAsciiName();
+                }
+            }
+        }
+        var host = getPeerHost();
+        if (host == null || host.isEmpty() || Character.isDigit(host.charAt(host.length() - 1)) || host.contains(":")) {
+            return null; // ip address is not allowed in sni
+        }
+        return host;
+    }
+
+    private static byte[] encodeAlpn(List<String> protocols) {
+        int len = 0;
+        for (var p : protocols) {
+            len += 1 + p.getBytes(StandardCharsets.UTF_8).length;
+        }
+        byte[] res = new byte[len];
+        int off = 0;
+        for (var p : protocols) {
+            byte[] b = p.getBytes(StandardCharsets.UTF_8);
+            res[off++] = (byte) b.length;
+            System.arraycopy(b, 0, res, off, b.length);
+            off += b.length;
+        }
+        return res;
+    }
+
+    private static List<String> decodeAlpn(MemorySegment seg, int len) {
+        var res = new ArrayList<String>();
+        int off = 0;
+        while (off < len) {
+            int l = seg.get(ValueLayout.JAVA_BYTE, off) & 0xff;
+            if (off + 1 + l > len) {
+                break;
+            }
+            res.add(OpenSSL.toString(seg.asSlice(off + 1), l));
+            off += 1 + l;
+        }
+        return res;
+    }
+
+    // return true if the handshake finishes in this call
+    private boolean handshake(MemorySegment ssl) throws SSLException {
+        if (handshakeDone) {
+            return false;
+        }
+        handshakeStarted = true;
+        while (true) {
+            int r = OpenSSLFunc.get().handshake(ssl);
+            if (r == OpenSSL.HANDSHAKE_DONE) {
+                handshakeDone = true;
+                applicationProtocol = retrieveApplicationProtocol(ssl);
+                if (!clientMode) {
+                    recordResumption(ssl);
+                }
+                return true;
+            }
+            if (r == OpenSSL.HANDSHAKE_WANT_READ) {
+                return false;
+            }
+            if (r == OpenSSL.HANDSHAKE_CLIENT_HELLO) {
+                selectApplicationProtocol(ssl);
+                continue;
+            }
+            throw new SSLHandshakeException("handshake failed: " + OpenSSL.lastError());
+        }
+    }
+
+    private void recordResumption(MemorySegment ssl) {
+        int flags = OpenSSLFunc.get().sessionFlags(ssl);
+        boolean resumed = (flags & OpenSSL.SESSION_RESUMED) != 0;
+        var inspection = GlobalInspection.getInstance();
+        if ((flags & OpenSSL.SESSION_CACHE_LOOKUP) != 0) {
+            inspection.sslSessionLookup(false, resumed);
+            inspection.sslHandshake(resumed ? GlobalInspection.SSL_HANDSHAKE_SESSION_ID : GlobalInspection.SSL_HANDSHAKE_FULL);
+        } else if ((flags & OpenSSL.SESSION_TICKET_LOOKUP) != 0) {
+            inspection.sslSessionLookup(true, resumed);
+            inspection.sslHandshake(resumed ? GlobalInspection.SSL_HANDSHAKE_TICKET : GlobalInspection.SSL_HANDSHAKE_FULL);
+        } else {
+            inspection.sslHandshake(GlobalInspection.SSL_HANDSHAKE_FULL);
+        }
+    }
+
+    private void selectApplicationProtocol(MemorySegment ssl) throws SSLException {
+        var buf = OpenSSL.scratch(1024);
+        int n = OpenSSLFunc.get().clientAlpn(ssl, buf, 1024);
+        var offered = decodeAlpn(buf, n);
+        String selected = null;
+        if (!offered.isEmpty()) {
+            if (applicationProtocolSelector != null) {
+                selected = applicationProtocolSelector.apply(this, offered);
+            } else {
+                for (var p : applicationProtocols) {
+                    if (offered.contains(p)) {
+                        selected = p;
+                        break;
+                    }
+                }
+            }
+        }
+        assert Logger.lowLevelDebug("alpn offered: " + offered + ", selected: " + selected);
+        byte[] b = selected == null ? new byte[0] : selected.getBytes(StandardCharsets.UTF_8);
+        MemorySegment.copy(b, 0, buf, ValueLayout.JAVA_BYTE, 0, b.length);
+        if (OpenSSLFunc.get().setAlpn(ssl, buf, b.length) != 0) {
+            throw new SSLHandshakeException("failed to set selected alpn: " + selected);
+        }
+    }
+
+    private String retrieveApplicationProtocol(MemorySegment ssl) {
+        var buf = OpenSSL.scratch(256);
+        int n = OpenSSLFunc.get().getAlpn(ssl, buf, 256);
+        if (n <= 0) {
+            return "";
+        }
+        return OpenSSL.toString(buf, n);
+    }
+
+    private SSLEngineResult.HandshakeStatus handshakeStatus(MemorySegment ssl, boolean finished) {
+        if (finished) {
+            return SSLEngineResult.HandshakeStatus.FINISHED;
+        }
+        if (handshakeDone || !handshakeStarted) {
+            return SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
+        }
+        return OpenSSLFunc.get().pending(ssl) > 0
+            ? SSLEngineResult.HandshakeStatus.NEED_WRAP
+            : SSLEngineResult.HandshakeStatus.NEED_UNWRAP;
+    }
+
+    // copy from the native memory buffer into dst
+    private int drain(MemorySegment ssl, ByteBuffer dst) {
+        int len = dst.remaining();
+        if (len == 0) {
+            return 0;
+        }
+        int n;
+        if (dst.isDirect()) {
+            n = OpenSSLFunc.get().drain(ssl, MemorySegment.ofBuffer(dst), len);
+        } else {
+            len = Math.min(len, OpenSSL.SCRATCH_SIZE);
+            var seg = OpenSSL.scratch(len);
+            n = OpenSSLFunc.get().drain(ssl, seg, len);
+            if (n > 0) {
+                MemorySegment.copy(seg, 0, MemorySegment.ofBuffer(dst), 0, n);
+            }
+        }
+        if (n > 0) {
+            dst.position(dst.position() + n);
+        }
+        return n;
+    }
+
+    @Override
+    public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+        var ssl = ssl();
+        if (ktlsTx) {
+            throw new SSLException("outbound records are handled by the kernel");
+        }
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        boolean finished = handshake(ssl);
+
+        int pending = OpenSSLFunc.get().pending(ssl);
+        if (pending > 0) {
+            if (dst.remaining() < Math.min(pending, PACKET_BUFFER_SIZE)) {
+                return new SSLEngineResult(SSLEngineResult.Status.BUFFER_OVERFLOW, handshakeStatus(ssl, false), 0, 0);
+            }
+            int produced = drain(ssl, dst);
+            var status = outboundDone ? SSLEngineResult.Status.CLOSED : SSLEngineResult.Status.OK;
+            return new SSLEngineResult(status, handshakeStatus(ssl, finished), 0, produced);
+        }
+        if (outboundDone) {
+            return new SSLEngineResult(SSLEngineResult.Status.CLOSED, handshakeStatus(ssl, finished), 0, 0);
+        }
+        if (!handshakeDone) {
+            return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus(ssl, finished), 0, 0);
+        }
+
+        int total = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            total += srcs[i].remaining();
+        }
+        if (total == 0) {
+            return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus(ssl, finished), 0, 0);
+        }
+        if (dst.remaining() < PACKET_BUFFER_SIZE) {
+            return new SSLEngineResult(SSLEngineResult.Status.BUFFER_OVERFLOW, handshakeStatus(ssl, finished), 0, 0);
+        }
+        int len = Math.min(total, MAX_PLAINTEXT_LENGTH);
+        MemorySegment seg = null;
+        for (int i = offset; i < offset + length; ++i) {
+            var src = srcs[i];
+            if (src.remaining() == 0) {
+                continue;
+            }
+            if (src.isDirect() && src.remaining() >= len) {
+                seg = MemorySegment.ofBuffer(src);
+            }
+            break;
+        }
+        if (seg == null) {
+            // gather into the scratch buffer
+            seg = OpenSSL.scratch(len);
+            int off = 0;
+            for (int i = offset; i < offset + length && off < len; ++i) {
+                var src = srcs[i];
+                int n = Math.min(src.remaining(), len - off);
+                MemorySegment.copy(MemorySegment.ofBuffer(src), 0, seg, off, n);
+                off += n;
+            }
+        }
+        int n = OpenSSLFunc.get().write(ssl, seg, len);
+        if (n <= 0) {
+            throw new SSLException("write failed: " + OpenSSL.lastError());
+        }
+        // mark consumed
+        int consumed = n;
+        for (int i = offset; i < offset + length && consumed > 0; ++i) {
+            var src = srcs[i];
+            int c = Math.min(src.remaining(), consumed);
+            src.position(src.position() + c);
+            consumed -= c;
+        }
+        int produced = drain(ssl, dst);
+        return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus(ssl, finished), n, produced);
+    }
+
+    @Override
+    public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+        var ssl = ssl();
+        if (ktlsRx) {
+            throw new SSLException("inbound records are handled by the kernel");
+        }
+        if (inboundDone) {
+            return new SSLEngineResult(SSLEngineResult.Status.CLOSED, handshakeStatus(ssl, false), 0, 0);
+        }
+        int dstRemaining = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            dstRemaining += dsts[i].remaining();
+        }
+
+        // feed exactly one record, so no bytes are left in the native buffer
+        // and the status can be reported with the same semantic as the jdk engine
+        int consumed = 0;
+        int pos = src.position();
+        if (src.remaining() < RECORD_HEADER_LENGTH) {
+            return new SSLEngineResult(SSLEngineResult.Status.BUFFER_UNDERFLOW, handshakeStatus(ssl, false), 0, 0);
+        }
+        int recordLen = RECORD_HEADER_LENGTH + (((src.get(pos + 3) & 0xff) << 8) | (src.get(pos + 4) & 0xff));
+        if (src.remaining() < recordLen) {
+            return new SSLEngineResult(SSLEngineResult.Status.BUFFER_UNDERFLOW, handshakeStatus(ssl, false), 0, 0);
+        }
+        // the plaintext is never longer than the record payload, which is the bound used by the jdk engine as well
+        if (handshakeDone && dstRemaining < Math.min(recordLen - RECORD_HEADER_LENGTH, MAX_PLAINTEXT_LENGTH)) {
+            return new SSLEngineResult(SSLEngineResult.Status.BUFFER_OVERFLOW, handshakeStatus(ssl, false), 0, 0);
+        }
+        MemorySegment seg;
+        if (src.isDirect()) {
+            seg = MemorySegment.ofBuffer(src);
+        } else {
+            seg = OpenSSL.scratch(recordLen);
+            MemorySegment.copy(MemorySegment.ofBuffer(src), 0, seg, 0, recordLen);
+        }
+        int fed = OpenSSLFunc.get().feed(ssl, seg, recordLen);
+        if (fed != recordLen) {
+            throw new SSLException("failed to feed the record: " + OpenSSL.lastError());
+        }
+        src.position(pos + recordLen);
+        consumed += recordLen;
+
+        boolean finished = handshake(ssl);
+        if (!handshakeDone) {
+            return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus(ssl, false), consumed, 0);
+        }
+
+        int produced = 0;
+        var status = SSLEngineResult.Status.OK;
+        for (int i = offset; i < offset + length; ++i) {
+            var dst = dsts[i];
+            while (dst.hasRemaining()) {
+                int n = read(ssl, dst);
+                if (n == OpenSSL.CLOSED) {
+                    inboundDone = true;
+                    status = SSLEngineResult.Status.CLOSED;
+                    break;
+                }
+                if (n == 0) {
+                    break;
+                }
+                produced += n;
+            }
+            if (status == SSLEngineResult.Status.CLOSED || dst.hasRemaining()) {
+                break;
+            }
+        }
+        return new SSLEngineResult(status, handshakeStatus(ssl, finished), consumed, produced);
+    }
+
+    private int read(MemorySegment ssl, ByteBuffer dst) throws SSLException {
+        int len = dst.remaining();
+        int n;
+        if (dst.isDirect()) {
+            n = OpenSSLFunc.get().read(ssl, MemorySegment.ofBuffer(dst), len);
+        } else {
+            len = Math.min(len, OpenSSL.SCRATCH_SIZE);
+            var seg = OpenSSL.scratch(len);
+            n = OpenSSLFunc.get().read(ssl, seg, len);
+            if (n > 0) {
+                MemorySegment.copy(seg, 0, MemorySegment.ofBuffer(dst), 0, n);
+            }
+        }
+        if (n == OpenSSL.ERROR) {
+            throw new SSLException("read failed: " + OpenSSL.lastError());
+        }
+        if (n > 0) {
+            dst.position(dst.position() + n);
+        }
+        return n;
+    }
+
+    @Override
+    public Runnable getDelegatedTask() {
+        return null;
+    }
+
+    @Override
+    public void closeInbound() {
+        inboundDone = true;
+        releaseIfDone();
+    }
+
+    @Override
+    public boolean isInboundDone() {
+        return inboundDone;
+    }
+
+    @Override
+    public void closeOutbound() {
+        if (outboundDone) {
+            return;
+        }
+        outboundDone = true;
+        if (nativeSSL != null && nativeSSL.ssl != null && handshakeDone) {
+            // generates close_notify, which will be retrieved by wrap()
+            OpenSSLFunc.get().shutdown(nativeSSL.ssl);
+        }
+        releaseIfDone();
+    }
+
+    @Override
+    public boolean isOutboundDone() {
+        if (!outboundDone) {
+            return false;
+        }
+        return nativeSSL == null || nativeSSL.ssl == null || OpenSSLFunc.get().pending(nativeSSL.ssl) == 0;
+    }
+
+    private void releaseIfDone() {
+        if (cleanable != null && isInboundDone() && isOutboundDone()) {
+            cleanable.clean();
+        }
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return DEFAULT_CIPHER_SUITES.clone();
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+        return enabledCipherSuites.clone();
+    }
+
+    @Override
+    public void setEnabledCipherSuites(String[] suites) {
+        enabledCipherSuites = suites.clone();
+    }
+
+    @Override
+    public String[] getSupportedProtocols() {
+        return SUPPORTED_PROTOCOLS.clone();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+        return enabledProtocols.clone();
+    }
+
+    @Override
+    public void setEnabledProtocols(String[] protocols) {
+        enabledProtocols = protocols.clone();
+    }
+
+    @Override
+    public SSLSession getSession() {
+        return session;
+    }
+
+    @Override
+    public void beginHandshake() throws SSLException {
+        handshake(ssl());
+    }
+
+    @Override
+    public SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+        if (nativeSSL == null || nativeSSL.ssl == null) {
+            return SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
+        }
+        return handshakeStatus(nativeSSL.ssl, false);
+    }
+
+    @Override
+    public void setUseClientMode(boolean mode) {
+        if (handshakeStarted) {
+            throw new IllegalArgumentException("cannot change mode after handshake started");
+        }
+        clientMode = mode;
+    }
+
+    @Override
+    public boolean getUseClientMode() {
+        return clientMode;
+    }
+
+    @Override
+    public void setNeedClientAuth(boolean need) {
+        needClientAuth = need;
+    }
+
+    @Override
+    public boolean getNeedClientAuth() {
+        return needClientAuth;
+    }
+
+    @Override
+    public void setWantClientAuth(boolean want) {
+        wantClientAuth = want;
+    }
+
+    @Override
+    public boolean getWantClientAuth() {
+        return wantClientAuth;
+    }
+
+    @Override
+    public void setEnableSessionCreation(boolean flag) {
+        enableSessionCreation = flag;
+    }
+
+    @Override
+    public boolean getEnableSessionCreation() {
+        return enableSessionCreation;
+    }
+
+    @Override
+    public SSLParameters getSSLParameters() {
+        var params = new SSLParameters(getEnabledCipherSuites(), getEnabledProtocols());
+        if (needClientAuth) {
+            params.setNeedClientAuth(true);
+        } else if (wantClientAuth) {
+            params.setWantClientAuth(true);
+        }
+        params.setApplicationProtocols(applicationProtocols);
+        if (serverNames != null) {
+            params.setServerNames(serverNames);
+        }
+        params.setEndpointIdentificationAlgorithm(endpointIdentificationAlgorithm);
+        return params;
+    }
+
+    @Override
+    public void setSSLParameters(SSLParameters params) {
+        if (params.getCipherSuites() != null) {
+            setEnabledCipherSuites(params.getCipherSuites());
+        }
+        if (params.getProtocols() != null) {
+            setEnabledProtocols(params.getProtocols());
+        }
+        if (params.getNeedClientAuth()) {
+            setNeedClientAuth(true);
+        } else {
+            setWantClientAuth(params.getWantClientAuth());
+        }
+        applicationProtocols = params.getApplicationProtocols();
+        if (params.getServerNames() != null) {
+            serverNames = params.getServerNames();
+        }
+        endpointIdentificationAlgorithm = params.getEndpointIdentificationAlgorithm();
+    }
+
+    @Override
+    public String getApplicationProtocol() {
+        return applicationProtocol;
+    }
+
+    @Override
+    public String getHandshakeApplicationProtocol() {
+        return handshakeDone ? null : applicationProtocol;
+    }
+
+    @Override
+    public void setHandshakeApplicationProtocolSelector(BiFunction<SSLEngine, List<String>, String> selector) {
+        applicationProtocolSelector = selector;
+    }
+
+    @Override
+    public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+        return applicationProtocolSelector;
+    }
+
+    /**
+     * @return true if ktls is requested and not failed yet
+     */
+    public boolean isKTLSEnabled() {
+        return ktls && !ktlsFailed;
+    }
+
+    public boolean isKTLSTx() {
+        return ktlsTx;
+    }
+
+    public boolean isKTLSRx() {
+        return ktlsRx;
+    }
+
+    /**
+     * Install the keys of one direction into the kernel.<br>
+     * The caller must make sure that all encrypted bytes of the direction are already consumed:
+     * for rx, no more records are buffered in the user space, for tx, all records are written into the socket.<br>
+     * If the kernel or the cipher does not support ktls, the engine keeps working in the user space,
+     * and will not try again.
+     *
+     * @param fd the posix socket fd
+     * @param tx true for the sending direction, false for the receiving direction
+     * @return true if the keys are installed
+     */
+    public boolean startKTLS(int fd, boolean tx) {
+        if (!isKTLSEnabled() || !handshakeDone || outboundDone || inboundDone) {
+            return false;
+        }
+        if (tx ? ktlsTx : ktlsRx) {
+            return true;
+        }
+        if (nativeSSL == null || nativeSSL.ssl == null) {
+            return false;
+        }
+        var ssl = nativeSSL.ssl;
+        if (tx && OpenSSLFunc.get().pending(ssl) > 0) {
+            return false;
+        }
+        int r = OpenSSLFunc.get().ktlsStart(ssl, fd, tx ? 1 : 0);
+        if (r == 0) {
+            assert Logger.lowLevelDebug("ktls " + (tx ? "tx" : "rx") + " started on fd " + fd);
+            if (tx) {
+                ktlsTx = true;
+            } else {
+                ktlsRx = true;
+            }
+            return true;
+        }
+        ktlsFailed = true;
+        if (r == OpenSSL.ERROR) {
+            assert Logger.lowLevelDebug("ktls is not supported for " + session.getProtocol() + " " + session.getCipherSuite());
+        } else {
+            assert Logger.lowLevelDebug("ktls is rejected by the kernel on fd " + fd + ", errno=" + r);
+        }
+        return false;
+    }
+
+    // used by the session
+    int nativeVersion() {
+        if (nativeSSL == null || nativeSSL.ssl == null || !handshakeDone) {
+            return 0;
+        }
+        return OpenSSLFunc.get().getVersion(nativeSSL.ssl);
+    }
+
+    String nativeCipher() {
+        if (nativeSSL == null || nativeSSL.ssl == null || !handshakeDone) {
+            return null;
+        }
+        var buf = OpenSSL.scratch(256);
+        int n = OpenSSLFunc.get().getCipher(nativeSSL.ssl, buf, 256);
+        if (n <= 0) {
+            return null;
+        }
+        return OpenSSL.toString(buf, n);
+    }
+
+    int pendingEncrypted() {
+        if (nativeSSL == null || nativeSSL.ssl == null) {
+            return 0;
+        }
+        return OpenSSLFunc.get().pending(nativeSSL.ssl);
+    }
+
+    @Override
+    public String toString() {
+        return "OpenSSLEngine{" +
+            "clientMode=" + clientMode +
+            ", handshakeDone=" + handshakeDone +
+            ", inboundDone=" + inboundDone +
+            ", outboundDone=" + outboundDone +
+            ", applicationProtocol=" + applicationProtocol +
+            ", ktlsTx=" + ktlsTx +
+            ", ktlsRx=" + ktlsRx +
+            '}';
+    }
+}
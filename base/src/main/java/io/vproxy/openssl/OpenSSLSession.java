@@ -0,0 +1,133 @@
+package io.vproxy.openssl;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import java.security.Principal;
+import java.security.cert.Certificate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session info of an {@link OpenSSLEngine}, values are retrieved from the native SSL object on demand.<br>
+ * Certificates are not exposed, session resumption is handled by the native library.
+ */
+public class OpenSSLSession implements SSLSession {
+    private final OpenSSLEngine engine;
+    private final long creationTime = System.currentTimeMillis();
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private volatile boolean valid = true;
+
+    OpenSSLSession(OpenSSLEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public byte[] getId() {
+        return new byte[0];
+    }
+
+    @Override
+    public SSLSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        return creationTime;
+    }
+
+    @Override
+    public void invalidate() {
+        valid = false;
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public void putValue(String name, Object value) {
+        values.put(name, value);
+    }
+
+    @Override
+    public Object getValue(String name) {
+        return values.get(name);
+    }
+
+    @Override
+    public void removeValue(String name) {
+        values.remove(name);
+    }
+
+    @Override
+    public String[] getValueNames() {
+        return values.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public Certificate[] getPeerCertificates() throws SSLPeerUnverifiedException {
+        throw new SSLPeerUnverifiedException("peer certificates are not exposed by the openssl engine");
+    }
+
+    @Override
+    public Certificate[] getLocalCertificates() {
+        return null;
+    }
+
+    @Override
+    public Principal getPeerPrincipal() throws SSLPeerUnverifiedException {
+        throw new SSLPeerUnverifiedException("peer principal is not exposed by the openssl engine");
+    }
+
+    @Override
+    public Principal getLocalPrincipal() {
+        return null;
+    }
+
+    @Override
+    public String getCipherSuite() {
+        var cipher = engine.nativeCipher();
+        return cipher == null ? "SSL_NULL_WITH_NULL_NULL" : cipher;
+    }
+
+    @Override
+    public String getProtocol() {
+        return OpenSSL.versionName(engine.nativeVersion());
+    }
+
+    @Override
+    public String getPeerHost() {
+        return engine.getPeerHost();
+    }
+
+    @Override
+    public int getPeerPort() {
+        return engine.getPeerPort();
+    }
+
+    @Override
+    public int getPacketBufferSize() {
+        return Math.max(OpenSSLEngine.PACKET_BUFFER_SIZE, engine.pendingEncrypted());
+    }
+
+    @Override
+    public int getApplicationBufferSize() {
+        return OpenSSLEngine.MAX_PLAINTEXT_LENGTH;
+    }
+
+    @Override
+    public String toString() {
+        return "OpenSSLSession{" +
+            "protocol=" + getProtocol() +
+            ", cipherSuite=" + getCipherSuite() +
+            '}';
+    }
+}
@@ -0,0 +1,225 @@
+package io.vproxy.openssl;
+
+import io.vproxy.base.Config;
+import io.vproxy.base.GlobalInspection;
+import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.util.LogType;
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.thread.VProxyThread;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Session ticket keys shared by all server contexts in the process.<br>
+ * A new key is generated every rotation interval, and is used to encrypt new tickets.
+ * Tickets encrypted with the previous keys are still accepted, and the clients receive renewed tickets.<br>
+ * When a key file is configured, keys are loaded from the file and saved into it after rotation,
+ * so instances sharing the file (or a copy of it) are able to resume sessions issued by each other.<br>
+ * File format: one key per line, the newest first, each line is {@code <created-millis> <base64 of the key>}.
+ */
+class OpenSSLTicketKeys {
+    static final int KEY_SIZE = 80; // name(16) + hmac key(32) + aes key(32)
+    private static final int MAX_KEYS = 8; // see vpssl.h
+    private static final int PREVIOUS_KEYS = 2;
+    private static final int CHECK_INTERVAL = 60_000;
+
+    private static OpenSSLTicketKeys started = null;
+
+    private record Key(long created, byte[] bytes) {
+        boolean same(Key other) {
+            return created == other.created && Arrays.equals(bytes, other.bytes);
+        }
+    }
+
+    private final Path file;
+    private final long rotateInterval;
+    private final SecureRandom random = new SecureRandom();
+    private List<Key> keys = List.of();
+
+    private OpenSSLTicketKeys(String file, long rotateInterval) {
+        this.file = file == null ? null : Path.of(file);
+        this.rotateInterval = Math.max(1_000, rotateInterval);
+    }
+
+    // called when a server context is created, the native library is already loaded
+    static synchronized void ensureStarted() {
+        if (started != null) {
+            return;
+        }
+        var keys = new OpenSSLTicketKeys(Config.sslTicketKeyFile, Config.sslTicketKeyRotateInterval * 1000L);
+        started = keys;
+        keys.check();
+
+        SelectorEventLoop loop;
+        try {
+            loop = SelectorEventLoop.open();
+        } catch (IOException e) {
+            Logger.error(LogType.SYS_ERROR, "failed to create the loop for rotating ssl ticket keys", e);
+            return;
+        }
+        loop.loop(r -> VProxyThread.create(r, "ssl-ticket-key-loop"));
+        loop.period((int) Math.min(CHECK_INTERVAL, keys.rotateInterval), keys::check);
+    }
+
+    // generate a new key now, tickets encrypted with the previous keys are still accepted
+    static void rotateNow() {
+        OpenSSLTicketKeys keys;
+        synchronized (OpenSSLTicketKeys.class) {
+            keys = started;
+        }
+        if (keys == null) {
+            return;
+        }
+        synchronized (keys) {
+            var rotated = keys.rotate(keys.keys, System.currentTimeMillis());
+            if (keys.file != null) {
+                keys.save(rotated);
+            }
+            install(rotated);
+            keys.keys = rotated;
+        }
+    }
+
+    private synchronized void check() {
+        long now = System.currentTimeMillis();
+        List<Key> keys = this.keys;
+        if (file != null) {
+            // the file may be updated by other instances
+            var loaded = load();
+            if (!loaded.isEmpty() && (keys.isEmpty() || loaded.get(0).created > keys.get(0).created)) {
+                keys = loaded;
+            }
+        }
+        if (keys.isEmpty() || now - keys.get(0).created >= rotateInterval) {
+            keys = rotate(keys, now);
+            if (file != null) {
+                save(keys);
+            }
+        }
+        if (!sameKeys(keys, this.keys)) {
+            install(keys);
+            this.keys = keys;
+        }
+    }
+
+    private List<Key> rotate(List<Key> keys, long now) {
+        var bytes = new byte[KEY_SIZE];
+        random.nextBytes(bytes);
+        var ret = new ArrayList<Key>(PREVIOUS_KEYS + 1);
+        ret.add(new Key(now, bytes));
+        for (int i = 0; i < keys.size() && i < PREVIOUS_KEYS; ++i) {
+            ret.add(keys.get(i));
+        }
+        assert Logger.lowLevelDebug("ssl ticket key rotated, " + ret.size() + " keys in use");
+        GlobalInspection.getInstance().sslTicketKeyRotate();
+        return ret;
+    }
+
+    private static boolean sameKeys(List<Key> a, List<Key> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); ++i) {
+            if (!a.get(i).same(b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void install(List<Key> keys) {
+        int n = Math.min(keys.size(), MAX_KEYS);
+        var buf = OpenSSL.scratch(n * KEY_SIZE);
+        for (int i = 0; i < n; ++i) {
+            MemorySegment.copy(MemorySegment.ofArray(keys.get(i).bytes), 0, buf, (long) i * KEY_SIZE, KEY_SIZE);
+        }
+        int r = OpenSSLFunc.get().setTicketKeys(buf, n);
+        buf.asSlice(0, (long) n * KEY_SIZE).fill((byte) 0);
+        if (r != 0) {
+            Logger.error(LogType.SSL_ERROR, "failed to install ssl ticket keys");
+        }
+    }
+
+    private List<Key> load() {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Logger.error(LogType.FILE_ERROR, "failed to read ssl ticket key file " + file, e);
+            return List.of();
+        }
+        var ret = new ArrayList<Key>();
+        for (var line : lines) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            var split = line.split(" ");
+            byte[] bytes;
+            long created;
+            try {
+                created = Long.parseLong(split[0]);
+                bytes = Base64.getDecoder().decode(split[split.length - 1]);
+            } catch (IllegalArgumentException e) {
+                bytes = null;
+                created = 0;
+            }
+            if (split.length != 2 || bytes == null || bytes.length != KEY_SIZE) {
+                Logger.warn(LogType.INVALID_EXTERNAL_DATA, "invalid line in ssl ticket key file " + file);
+                continue;
+            }
+            ret.add(new Key(created, bytes));
+            if (ret.size() == MAX_KEYS) {
+                break;
+            }
+        }
+        return ret;
+    }
+
+    private void save(List<Key> keys) {
+        var sb = new StringBuilder();
+        for (var k : keys) {
+            sb.append(k.created).append(" ").append(Base64.getEncoder().encodeToString(k.bytes)).append("\n");
+        }
+        // other instances may read or rotate the file at the same time,
+        // so write a uniquely named file (readable only by the owner) and rename it,
+        // readers see either the old keys or the new keys
+        Path tmp = null;
+        try {
+            var dir = file.toAbsolutePath().getParent();
+            tmp = Files.createTempFile(dir, file.getFileName() + ".", ".tmp");
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                var buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException e) {
+            // the file might be read only and distributed by others, keep using keys in memory
+            Logger.warn(LogType.FILE_ERROR, "failed to save ssl ticket keys into " + file, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,50 @@
 package io.vproxy.vfd;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface DatagramFD extends AbstractDatagramFD<IPPort> {
     default void ensureDummyFD() throws IOException {
         bind(new IPPort("0.0.0.0", 0));
     }
+
+    /**
+     * Receive at most {@code count} datagrams in one call.<br>
+     * The i-th datagram is stored into {@code bufs[i]} from its position,
+     * and its source address is stored into {@code remotes[i]}.
+     *
+     * @return number of datagrams received, 0 if nothing to receive for now
+     */
+    default int receiveBatch(ByteBuffer[] bufs, IPPort[] remotes, int count) throws IOException {
+        int n = 0;
+        while (n < count) {
+            int pos = bufs[n].position();
+            IPPort remote = receive(bufs[n]);
+            if (remote == null || bufs[n].position() == pos) {
+                break;
+            }
+            remotes[n] = remote;
+            ++n;
+        }
+        return n;
+    }
+
+    /**
+     * Send at most {@code count} datagrams in one call.<br>
+     * The i-th datagram is bytes between position and limit of {@code bufs[i]},
+     * and it's sent to {@code remotes[i]}.
+     *
+     * @return number of datagrams sent, the following datagrams are not touched
+     */
+    default int sendBatch(ByteBuffer[] bufs, IPPort[] remotes, int count) throws IOException {
+        int n = 0;
+        while (n < count) {
+            int len = bufs[n].limit() - bufs[n].position();
+            if (send(bufs[n], remotes[n]) < len && len != 0) {
+                break;
+            }
+            ++n;
+        }
+        return n;
+    }
 }
@@ -5,9 +5,13 @@ import java.io.IOException;
 public interface FDsWithOpts {
     FDSelector openSelector(Options opts) throws IOException;
 
-    record Options(boolean preferPoll, int epfd) {
+    /**
+     * @param ioUring use io_uring instead of libae if the platform supports it,
+     *                otherwise this option is ignored
+     */
+    record Options(boolean preferPoll, int epfd, boolean ioUring) {
         public static Options defaultValue() {
-            return new Options(false, 0);
+            return new Options(false, 0, VFDConfig.useIOUring);
         }
     }
 }
@@ -9,4 +9,26 @@ public interface ReadableByteStream {
     default int readBlocking(ByteBuffer dst) throws IOException {
         return read(dst);
     }
+
+    /**
+     * Scatter read into {@code dsts[off]} ... {@code dsts[off + count - 1]} in order.<br>
+     * Implementations may override this method to read into all buffers with one syscall.
+     *
+     * @return bytes read, -1 for EOF
+     */
+    default long read(ByteBuffer[] dsts, int off, int count) throws IOException {
+        long total = 0;
+        for (int i = off; i < off + count; ++i) {
+            int len = dsts[i].limit() - dsts[i].position();
+            int n = read(dsts[i]);
+            if (n < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += n;
+            if (n < len) {
+                break;
+            }
+        }
+        return total;
+    }
 }
@@ -17,6 +17,10 @@ public class VFDConfig {
     // the setsize for each libae aeEventLoop
     public static final int aesetsize;
 
+    // -Dvfd_io_uring=1
+    // use io_uring instead of libae for all selectors if supported
+    public static final boolean useIOUring;
+
     static {
         vfdImpl = Utils.getSystemProperty("vfd", "provided");
 
@@ -25,5 +29,8 @@ public class VFDConfig {
 
         String aesetsizeStr = Utils.getSystemProperty("ae_setsize", "" + (128 * 1024));
         aesetsize = Integer.parseInt(aesetsizeStr);
+
+        String ioUringConf = Utils.getSystemProperty("vfd_io_uring", "0");
+        useIOUring = !ioUringConf.equals("0");
     }
 }
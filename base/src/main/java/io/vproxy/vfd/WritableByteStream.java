@@ -5,4 +5,25 @@ import java.nio.ByteBuffer;
 
 public interface WritableByteStream {
     int write(ByteBuffer src) throws IOException;
+
+    /**
+     * Gather write bytes of {@code srcs[off]} ... {@code srcs[off + count - 1]} in order.<br>
+     * Implementations may override this method to write all buffers with one syscall.
+     *
+     * @return bytes written
+     */
+    default long write(ByteBuffer[] srcs, int off, int count) throws IOException {
+        long total = 0;
+        for (int i = off; i < off + count; ++i) {
+            int len = srcs[i].limit() - srcs[i].position();
+            int n = write(srcs[i]);
+            if (n > 0) {
+                total += n;
+            }
+            if (n < len) {
+                break;
+            }
+        }
+        return total;
+    }
 }
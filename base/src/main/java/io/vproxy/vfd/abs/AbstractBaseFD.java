@@ -131,4 +131,85 @@ public abstract class AbstractBaseFD implements FD {
         }
         return n;
     }
+
+    @FunctionalInterface
+    protected interface IOVecFunc {
+        int apply(ByteBuffer[] directBuffers, int off, int count) throws IOException;
+    }
+
+    protected long utilReadv(ByteBuffer[] dsts, int off, int count, IOVecFunc fv, ReadFunc f) throws IOException {
+        boolean allDirect = true;
+        int total = 0;
+        for (int i = off; i < off + count; ++i) {
+            if (!dsts[i].isDirect()) {
+                allDirect = false;
+            }
+            total += dsts[i].limit() - dsts[i].position();
+        }
+        if (allDirect) {
+            int n = fv.apply(dsts, off, count);
+            if (n > 0) {
+                advance(dsts, off, count, n);
+            }
+            return n;
+        }
+        // read into one direct buffer then distribute the bytes
+        ByteBuffer directBuffer = getDirectBufferForReading(total).realBuffer();
+        int n = 0;
+        try {
+            n = f.read(directBuffer, 0, total);
+            if (n > 0) {
+                directBuffer.limit(n).position(0);
+                for (int i = off; i < off + count && directBuffer.hasRemaining(); ++i) {
+                    int step = Math.min(directBuffer.remaining(), dsts[i].limit() - dsts[i].position());
+                    directBuffer.limit(directBuffer.position() + step);
+                    dsts[i].put(directBuffer);
+                    directBuffer.limit(n);
+                }
+            }
+        } finally {
+            resetDirectBufferForReading();
+        }
+        return n;
+    }
+
+    protected long utilWritev(ByteBuffer[] srcs, int off, int count, IOVecFunc fv, WriteFunc f) throws IOException {
+        boolean allDirect = true;
+        int total = 0;
+        for (int i = off; i < off + count; ++i) {
+            if (!srcs[i].isDirect()) {
+                allDirect = false;
+            }
+            total += srcs[i].limit() - srcs[i].position();
+        }
+        int n = 0;
+        if (allDirect) {
+            n = fv.apply(srcs, off, count);
+        } else {
+            // copy into one direct buffer and write it at once
+            ByteBuffer directBuffer = getDirectBufferForWriting(total).realBuffer();
+            try {
+                for (int i = off; i < off + count; ++i) {
+                    int pos = srcs[i].position();
+                    directBuffer.put(srcs[i]);
+                    srcs[i].position(pos);
+                }
+                n = f.write(directBuffer, 0, total);
+            } finally {
+                resetDirectBufferForWriting();
+            }
+        }
+        if (n > 0) {
+            advance(srcs, off, count, n);
+        }
+        return n;
+    }
+
+    private static void advance(ByteBuffer[] bufs, int off, int count, int n) {
+        for (int i = off; i < off + count && n > 0; ++i) {
+            int step = Math.min(n, bufs[i].limit() - bufs[i].position());
+            bufs[i].position(bufs[i].position() + step);
+            n -= step;
+        }
+    }
 }
@@ -60,6 +60,16 @@ public class SocketChannelFD extends ChannelFD implements SocketFD {
         return channel.write(src);
     }
 
+    @Override
+    public long read(ByteBuffer[] dsts, int off, int count) throws IOException {
+        return channel.read(dsts, off, count);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int off, int count) throws IOException {
+        return channel.write(srcs, off, count);
+    }
+
     @Override
     public SocketChannel getChannel() {
         return channel;
@@ -4,6 +4,7 @@ import io.vproxy.base.util.thread.VProxyThread;
 import io.vproxy.pni.Allocator;
 import io.vproxy.pni.PNIString;
 import io.vproxy.pni.array.IntArray;
+import io.vproxy.pni.array.LongArray;
 import io.vproxy.vfd.TapInfo;
 
 import java.io.IOException;
@@ -98,6 +99,47 @@ public class GeneralPosix implements Posix {
         PosixNative.get().aeDeleteEventLoop(VProxyThread.current().getEnv(), ae);
     }
 
+    @Override
+    public long uringCreate(int entries, int setsize) throws IOException {
+        return PosixNative.get().uringCreate(VProxyThread.current().getEnv(),
+            entries, setsize);
+    }
+
+    @Override
+    public MemorySegment uringGetFired(long ring) {
+        return PosixNative.get().uringGetFired(VProxyThread.current().getEnv(),
+            ring);
+    }
+
+    @Override
+    public MemorySegment uringGetAccepted(long ring) {
+        return PosixNative.get().uringGetAccepted(VProxyThread.current().getEnv(),
+            ring);
+    }
+
+    @Override
+    public int uringGetAcceptedNum(long ring) {
+        return PosixNative.get().uringGetAcceptedNum(VProxyThread.current().getEnv(),
+            ring);
+    }
+
+    @Override
+    public int uringPoll(long ring, long wait) throws IOException {
+        return PosixNative.get().uringPoll(VProxyThread.current().getEnv(),
+            ring, wait);
+    }
+
+    @Override
+    public void uringUpdateFileEvent(long ring, int fd, int mask, boolean accept) throws IOException {
+        PosixNative.get().uringUpdateFileEvent(VProxyThread.current().getEnv(),
+            ring, fd, mask, accept);
+    }
+
+    @Override
+    public void uringDeleteEventLoop(long ring) {
+        PosixNative.get().uringDeleteEventLoop(VProxyThread.current().getEnv(), ring);
+    }
+
     @Override
     public void setBlocking(int fd, boolean v) throws IOException {
         PosixNative.get().setBlocking(VProxyThread.current().getEnv(),
@@ -301,6 +343,33 @@ public class GeneralPosix implements Posix {
             fd, directBuffer, off, len);
     }
 
+    @Override
+    public int writev(int fd, ByteBuffer[] directBuffers, int off, int count) throws IOException {
+        return iov(false, fd, directBuffers, off, count);
+    }
+
+    @Override
+    public int readv(int fd, ByteBuffer[] directBuffers, int off, int count) throws IOException {
+        return iov(true, fd, directBuffers, off, count);
+    }
+
+    private int iov(boolean read, int fd, ByteBuffer[] directBuffers, int off, int count) throws IOException {
+        try (var allocator = Allocator.ofPooled()) {
+            var addrs = new LongArray(allocator, count);
+            var lens = new IntArray(allocator, count);
+            for (int i = 0; i < count; ++i) {
+                var buf = directBuffers[off + i];
+                // the segment starts from position of the buffer
+                addrs.set(i, MemorySegment.ofBuffer(buf).address());
+                lens.set(i, buf.limit() - buf.position());
+            }
+            var env = VProxyThread.current().getEnv();
+            return read
+                ? PosixNative.get().readv(env, fd, addrs, lens, count)
+                : PosixNative.get().writev(env, fd, addrs, lens, count);
+        }
+    }
+
     @Override
     public int sendtoIPv4(int fd, ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws IOException {
         return PosixNative.get().sendtoIPv4(VProxyThread.current().getEnv(),
@@ -335,6 +404,55 @@ public class GeneralPosix implements Posix {
         }
     }
 
+    @Override
+    public int recvmmsgIPv4(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException {
+        return mmsg(true, false, fd, directBuffer, slotLen, vlen, meta);
+    }
+
+    @Override
+    public int recvmmsgIPv6(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException {
+        return mmsg(false, false, fd, directBuffer, slotLen, vlen, meta);
+    }
+
+    @Override
+    public int sendmmsgIPv4(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException {
+        return mmsg(true, true, fd, directBuffer, slotLen, vlen, meta);
+    }
+
+    @Override
+    public int sendmmsgIPv6(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException {
+        return mmsg(false, true, fd, directBuffer, slotLen, vlen, meta);
+    }
+
+    private int mmsg(boolean ipv4, boolean send, int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException {
+        int metaLen = ipv4 ? 3 : 6;
+        try (var allocator = Allocator.ofPooled()) {
+            var arr = new IntArray(allocator, vlen * metaLen);
+            if (send) {
+                for (int i = 0; i < vlen * metaLen; ++i) {
+                    arr.set(i, meta[i]);
+                }
+            }
+            var env = VProxyThread.current().getEnv();
+            int n;
+            if (ipv4) {
+                n = send
+                    ? PosixNative.get().sendmmsgIPv4(env, fd, directBuffer, slotLen, vlen, arr)
+                    : PosixNative.get().recvmmsgIPv4(env, fd, directBuffer, slotLen, vlen, arr);
+            } else {
+                n = send
+                    ? PosixNative.get().sendmmsgIPv6(env, fd, directBuffer, slotLen, vlen, arr)
+                    : PosixNative.get().recvmmsgIPv6(env, fd, directBuffer, slotLen, vlen, arr);
+            }
+            if (!send) {
+                for (int i = 0; i < n * metaLen; ++i) {
+                    meta[i] = arr.get(i);
+                }
+            }
+            return n;
+        }
+    }
+
     @Override
     public long currentTimeMillis() {
         return PosixNative.get().currentTimeMillis(VProxyThread.current().getEnv());
@@ -364,4 +482,18 @@ public class GeneralPosix implements Posix {
     public void setCoreAffinityForCurrentThread(long mask) throws IOException {
         PosixNative.get().setCoreAffinityForCurrentThread(VProxyThread.current().getEnv(), mask);
     }
+
+    @Override
+    public int[] openSplicePipe(int size) throws IOException {
+        try (var allocator = Allocator.ofPooled()) {
+            var arr = new IntArray(allocator, 2);
+            int cap = PosixNative.get().openSplicePipe(VProxyThread.current().getEnv(), arr, size);
+            return new int[]{arr.get(0), arr.get(1), cap};
+        }
+    }
+
+    @Override
+    public int splice(int fdIn, int fdOut, int len) throws IOException {
+        return PosixNative.get().splice(VProxyThread.current().getEnv(), fdIn, fdOut, len);
+    }
 }
@@ -0,0 +1,336 @@
+package io.vproxy.vfd.posix;
+
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.direct.DirectByteBuffer;
+import io.vproxy.base.util.direct.DirectMemoryUtils;
+import io.vproxy.base.util.objectpool.GarbageFree;
+import io.vproxy.vfd.*;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.util.*;
+
+/**
+ * A selector based on linux io_uring.<br>
+ * Readiness is still reported in the same way as {@link AESelector} (level triggered),
+ * the registrations are submitted in batch along with the poll syscall.<br>
+ * Server socket fds registered with READABLE are accepted with multishot accept,
+ * the accepted fds are stored into the {@link PosixServerSocketFD} and retrieved by {@link PosixServerSocketFD#accept()}.<br>
+ * Note that registrations are not thread safe, they must be operated on the selecting thread.
+ */
+public class IOUringSelector implements FDSelector {
+    // should be the same as URING_ACCEPTED_MAX in the native code
+    private static final int ACCEPTED_MAX = 1024;
+
+    private final SelectedEntryPrototypeObjectList selectedEntryList = new SelectedEntryPrototypeObjectList(128, SelectedEntry::new);
+    private final FDInfoPrototypeObjectList fdInfoList = new FDInfoPrototypeObjectList(128, FDInfo::new);
+
+    private final Posix posix;
+    private final long ring;
+    private final int[] pipefd; // pipefd[read][write], might be the same if using linux eventfd
+    private final Att[] attachments;
+    private final DirectByteBuffer bufferForPipeFD;
+    private boolean closed = false;
+
+    private final int aeReadable;
+    private final int aeWritable;
+
+    private final AEFiredEvent.Array fired;
+    private final MemorySegment accepted;
+
+    public IOUringSelector(Posix posix, long ring, int[] pipefd, int setsize) throws IOException {
+        this.posix = posix;
+        this.ring = ring;
+        this.aeReadable = posix.aeReadable();
+        this.aeWritable = posix.aeWritable();
+        this.pipefd = pipefd;
+        bufferForPipeFD = DirectMemoryUtils.allocateDirectBuffer(8); // linux eventfd requires 8 bytes buffer
+        posix.uringUpdateFileEvent(ring, pipefd[0], this.aeReadable, false);
+        attachments = new Att[setsize];
+        for (int i = 0; i < setsize; ++i) {
+            attachments[i] = new Att();
+        }
+        fired = new AEFiredEvent.Array(posix.uringGetFired(ring).reinterpret(setsize * AEFiredEvent.LAYOUT.byteSize()));
+        accepted = posix.uringGetAccepted(ring).reinterpret(ACCEPTED_MAX * 2 * ValueLayout.JAVA_INT.byteSize());
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    private EventSet getJavaEvents(int events) {
+        EventSet ret = EventSet.none();
+        if ((events & aeReadable) == aeReadable) {
+            ret = ret.combine(EventSet.read());
+        }
+        if ((events & aeWritable) == aeWritable) {
+            ret = ret.combine(EventSet.write());
+        }
+        return ret;
+    }
+
+    private void clearPipeFD() {
+        while (true) {
+            int x;
+            try {
+                x = posix.read(pipefd[0], bufferForPipeFD.realBuffer(), 0, 8);
+            } catch (IOException e) {
+                Logger.shouldNotHappen("reading from read end of pipefd failed", e);
+                break;
+            }
+            assert x == 0 || x == 8;
+            if (x == 0) {
+                break;
+            }
+        }
+    }
+
+    private Collection<SelectedEntry> handleSelectResult() {
+        if (fdInfoList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        clearPipeFD();
+        selectedEntryList.clear();
+
+        for (FDInfo res : fdInfoList) {
+            Att att = (Att) res.attachment();
+            if (att.fd == null) // for the internal pipe fds
+                continue;
+            int ev = res.events();
+            selectedEntryList.add(att.fd, getJavaEvents(ev), att.att);
+        }
+        return selectedEntryList;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new ClosedSelectorException();
+        }
+    }
+
+    private void handleAccepted() {
+        int n = posix.uringGetAcceptedNum(ring);
+        for (int i = 0; i < n; ++i) {
+            int listenFd = accepted.getAtIndex(ValueLayout.JAVA_INT, i * 2L);
+            int subFd = accepted.getAtIndex(ValueLayout.JAVA_INT, i * 2L + 1);
+            FD fd = attachments[listenFd].fd;
+            if (fd != null && fd.real() instanceof PosixServerSocketFD server && server.fd == listenFd) {
+                server.offerAccepted(subFd);
+                continue;
+            }
+            assert Logger.lowLevelDebug("the listening fd " + listenFd + " is already removed, close the accepted fd " + subFd);
+            try {
+                posix.close(subFd);
+            } catch (IOException e) {
+                Logger.shouldNotHappen("closing accepted fd " + subFd + " failed", e);
+            }
+        }
+    }
+
+    private void fillFDsList(int n) {
+        handleAccepted();
+        for (int i = 0; i < n; ++i) {
+            int fd = fired.get(i).getFd();
+            int evt = fired.get(i).getMask();
+            fdInfoList.add(fd, evt, attachments[fd]);
+        }
+    }
+
+    @GarbageFree
+    @Override
+    public Collection<SelectedEntry> select() throws IOException {
+        checkOpen();
+        fdInfoList.clear();
+        int n = posix.uringPoll(ring, 24 * 60 * 60 * 1000);
+        fillFDsList(n);
+        return handleSelectResult();
+    }
+
+    @GarbageFree
+    @Override
+    public Collection<SelectedEntry> selectNow() throws IOException {
+        checkOpen();
+        fdInfoList.clear();
+        int n = posix.uringPoll(ring, 0);
+        fillFDsList(n);
+        return handleSelectResult();
+    }
+
+    @GarbageFree
+    @Override
+    public Collection<SelectedEntry> select(long millis) throws IOException {
+        checkOpen();
+        fdInfoList.clear();
+        int n = posix.uringPoll(ring, Math.max(millis, 0));
+        fillFDsList(n);
+        return handleSelectResult();
+    }
+
+    @Override
+    public void wakeup() {
+        checkOpen();
+        bufferForPipeFD.getMemorySegment().set(ValueLayout.JAVA_LONG, 0, 1L);
+        try {
+            posix.write(pipefd[1], bufferForPipeFD.realBuffer(), 0, 8);
+        } catch (IOException e) {
+            Logger.shouldNotHappen("writing to write end of pipefd[1] failed", e);
+        }
+    }
+
+    private void checkFDMatch(FD fd, boolean allowNotExist) {
+        var real = (PosixFD) fd.real();
+        int fdnum = real.fd;
+        if (attachments[fdnum].fd == null) {
+            if (allowNotExist)
+                return;
+        }
+        if (attachments[fdnum].fd != fd) {
+            throw new IllegalArgumentException("fd mismatch: " +
+                "input: " + fd + ", existing: " + attachments[fdnum].fd);
+        }
+    }
+
+    @Override
+    public boolean isRegistered(FD fd) {
+        checkOpen();
+        var real = (PosixFD) fd.real();
+        int fdnum = real.fd;
+        var stored = attachments[fdnum].fd;
+        if (stored == null) {
+            return false;
+        }
+        return stored == fd;
+    }
+
+    private int getIntEvents(EventSet events) {
+        int ret = 0;
+        if (events.have(Event.READABLE)) {
+            ret |= aeReadable;
+        }
+        if (events.have(Event.WRITABLE)) {
+            ret |= aeWritable;
+        }
+        return ret;
+    }
+
+    private void updateFileEvent(FD fd, int fdnum, EventSet ops) {
+        boolean accept = ops != null && ops.have(Event.READABLE) && fd.real() instanceof PosixServerSocketFD;
+        int mask = ops == null ? 0 : getIntEvents(ops);
+        try {
+            posix.uringUpdateFileEvent(ring, fdnum, mask, accept);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("updating " + fd + " in ioUringSelector failed", e);
+        }
+    }
+
+    @Override
+    public void register(FD fd, EventSet ops, Object registerData) throws ClosedChannelException {
+        checkOpen();
+        if (!fd.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        var real = (PosixFD) fd.real();
+        int fdnum = real.fd;
+        if (attachments[fdnum].fd != null) {
+            throw new IllegalArgumentException("trying to overwrite an existing fd in ioUringSelector: " +
+                "input: " + fd + ", existing: " + attachments[fdnum].fd);
+        }
+        attachments[fdnum].set(fd, ops, registerData);
+        updateFileEvent(fd, fdnum, ops);
+    }
+
+    @Override
+    public void remove(FD fd) {
+        checkOpen();
+        checkFDMatch(fd, true);
+
+        var real = (PosixFD) fd.real();
+        int fdnum = real.fd;
+        attachments[fdnum].set(null, null, null);
+        updateFileEvent(fd, fdnum, null);
+    }
+
+    @Override
+    public void modify(FD fd, EventSet ops) {
+        checkOpen();
+        checkFDMatch(fd, false);
+
+        var real = (PosixFD) fd.real();
+        int fdnum = real.fd;
+        attachments[fdnum].ops = ops;
+        updateFileEvent(fd, fdnum, ops);
+    }
+
+    @Override
+    public EventSet events(FD fd) {
+        checkOpen();
+        checkFDMatch(fd, false);
+        var real = (PosixFD) fd.real();
+        int fdnum = real.fd;
+        return attachments[fdnum].ops;
+    }
+
+    @Override
+    public Object attachment(FD fd) {
+        checkOpen();
+        checkFDMatch(fd, false);
+        var real = (PosixFD) fd.real();
+        int fdnum = real.fd;
+        return attachments[fdnum].att;
+    }
+
+    @Override
+    public Collection<RegisterEntry> entries() {
+        checkOpen();
+        List<RegisterEntry> ret = new ArrayList<>(attachments.length / 2 + 1);
+        for (Att att : attachments) {
+            if (att.fd == null) // for the internal pipe fds
+                continue;
+            ret.add(new RegisterEntry(att.fd, att.ops, att.att));
+        }
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        posix.uringDeleteEventLoop(ring);
+        if (bufferForPipeFD != null) {
+            bufferForPipeFD.clean();
+        }
+        try {
+            posix.close(pipefd[0]);
+        } catch (IOException e) {
+            Logger.shouldNotHappen("closing read end of the pipefd failed", e);
+        }
+        if (pipefd[1] != pipefd[0]) {
+            try {
+                posix.close(pipefd[1]);
+            } catch (IOException e) {
+                Logger.shouldNotHappen("closing write end of the pipefd failed", e);
+            }
+        }
+    }
+
+    @SuppressWarnings({"removal"})
+    @Override
+    protected void finalize() {
+        close();
+    }
+
+    @Override
+    public String toString() {
+        return "IOUringSelector{" +
+            "ring=" + ring +
+            ", pipefd=" + Arrays.toString(pipefd) +
+            ", closed=" + closed +
+            '}';
+    }
+}
@@ -35,6 +35,20 @@ public interface Posix {
 
     void aeDeleteEventLoop(long ae);
 
+    long uringCreate(int entries, int setsize) throws IOException;
+
+    MemorySegment uringGetFired(long ring);
+
+    MemorySegment uringGetAccepted(long ring);
+
+    int uringGetAcceptedNum(long ring);
+
+    int uringPoll(long ring, long wait) throws IOException;
+
+    void uringUpdateFileEvent(long ring, int fd, int mask, boolean accept) throws IOException;
+
+    void uringDeleteEventLoop(long ring);
+
     void setBlocking(int fd, boolean v) throws IOException;
 
     void setSoLinger(int fd, int v) throws IOException;
@@ -97,6 +111,23 @@ public interface Posix {
 
     int write(int fd, ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    /**
+     * gather write bytes between position and limit of
+     * {@code directBuffers[off]} ... {@code directBuffers[off + count - 1]} with one syscall.<br>
+     * positions of the buffers are not modified.
+     *
+     * @return bytes written
+     */
+    int writev(int fd, ByteBuffer[] directBuffers, int off, int count) throws IOException;
+
+    /**
+     * scatter read into space between position and limit of the buffers.
+     *
+     * @return bytes read, -1 for EOF
+     * @see #writev(int, ByteBuffer[], int, int)
+     */
+    int readv(int fd, ByteBuffer[] directBuffers, int off, int count) throws IOException;
+
     int sendtoIPv4(int fd, ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws IOException;
 
     int sendtoIPv6(int fd, ByteBuffer directBuffer, int off, int len, String fullAddr, int port) throws IOException;
@@ -105,6 +136,35 @@ public interface Posix {
 
     UDPRecvResult recvfromIPv6(int fd, ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    /**
+     * the directBuffer is split into {@code vlen} slots, each slot is {@code slotLen} bytes.<br>
+     * meta: {addrHostOrder, port, len} for each message
+     *
+     * @return number of messages received
+     */
+    int recvmmsgIPv4(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
+    /**
+     * meta: {addr0, addr1, addr2, addr3, port, len} for each message,
+     * the address is split into 4 big endian ints
+     *
+     * @return number of messages received
+     * @see #recvmmsgIPv4(int, ByteBuffer, int, int, int[])
+     */
+    int recvmmsgIPv6(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
+    /**
+     * @return number of messages sent
+     * @see #recvmmsgIPv4(int, ByteBuffer, int, int, int[])
+     */
+    int sendmmsgIPv4(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
+    /**
+     * @return number of messages sent
+     * @see #recvmmsgIPv6(int, ByteBuffer, int, int, int[])
+     */
+    int sendmmsgIPv6(int fd, ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
     long currentTimeMillis();
 
     boolean tapNonBlockingSupported() throws IOException;
@@ -114,4 +174,14 @@ public interface Posix {
     TapInfo createTapFD(String dev, boolean isTun) throws IOException;
 
     void setCoreAffinityForCurrentThread(long mask) throws IOException;
+
+    /**
+     * @return {readFd, writeFd, pipeCapacity}
+     */
+    int[] openSplicePipe(int size) throws IOException;
+
+    /**
+     * @return bytes moved, 0 if nothing can be moved for now, -1 for EOF
+     */
+    int splice(int fdIn, int fdOut, int len) throws IOException;
 }
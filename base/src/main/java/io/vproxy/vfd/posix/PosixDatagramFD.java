@@ -1,12 +1,15 @@
 package io.vproxy.vfd.posix;
 
+import io.vproxy.base.util.OS;
 import io.vproxy.vfd.*;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
 public class PosixDatagramFD extends PosixInetNetworkFD implements DatagramFD {
+    private static final int MMSG_MAX_VLEN = 64; // same as the native impl
     private boolean bond = false;
+    private int[] mmsgMeta;
 
     public PosixDatagramFD(Posix posix) {
         super(posix);
@@ -162,4 +165,133 @@ public class PosixDatagramFD extends PosixInetNetworkFD implements DatagramFD {
         }
         return l4addr.toIPPort();
     }
+
+    private int[] getMMsgMeta(int vlen) {
+        int len = vlen * (ipv4 ? 3 : 6);
+        if (mmsgMeta == null || mmsgMeta.length < len) {
+            mmsgMeta = new int[MMSG_MAX_VLEN * 6];
+        }
+        return mmsgMeta;
+    }
+
+    private static int minRemaining(ByteBuffer[] bufs, int count) {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < count; ++i) {
+            min = Math.min(min, bufs[i].limit() - bufs[i].position());
+        }
+        return min;
+    }
+
+    @Override
+    public int receiveBatch(ByteBuffer[] bufs, IPPort[] remotes, int count) throws IOException {
+        if (!OS.isLinux()) {
+            return DatagramFD.super.receiveBatch(bufs, remotes, count);
+        }
+        checkFD();
+        checkNotClosed();
+        if (!bond) {
+            throw new IOException("not bond");
+        }
+        int vlen = Math.min(count, MMSG_MAX_VLEN);
+        int slotLen = minRemaining(bufs, vlen);
+        if (vlen == 0 || slotLen == 0) {
+            return 0;
+        }
+        int[] meta = getMMsgMeta(vlen);
+        ByteBuffer directBuffer = getDirectBufferForReading(slotLen * vlen).realBuffer();
+        try {
+            int n;
+            if (ipv4) {
+                n = posix.recvmmsgIPv4(fd, directBuffer, slotLen, vlen, meta);
+            } else {
+                n = posix.recvmmsgIPv6(fd, directBuffer, slotLen, vlen, meta);
+            }
+            for (int i = 0; i < n; ++i) {
+                int len;
+                if (ipv4) {
+                    remotes[i] = new IPPort(IP.fromIPv4(IP.ipv4Int2Bytes(meta[i * 3])), meta[i * 3 + 1] & 0xffff);
+                    len = meta[i * 3 + 2];
+                } else {
+                    byte[] addr = new byte[16];
+                    for (int w = 0; w < 4; ++w) {
+                        int word = meta[i * 6 + w];
+                        addr[w * 4] = (byte) (word >>> 24);
+                        addr[w * 4 + 1] = (byte) (word >>> 16);
+                        addr[w * 4 + 2] = (byte) (word >>> 8);
+                        addr[w * 4 + 3] = (byte) word;
+                    }
+                    remotes[i] = new IPPort(IP.fromIPv6(addr), meta[i * 6 + 4] & 0xffff);
+                    len = meta[i * 6 + 5];
+                }
+                len = Math.min(len, slotLen); // the datagram might be truncated
+                directBuffer.limit(i * slotLen + len).position(i * slotLen);
+                bufs[i].put(directBuffer);
+            }
+            return n;
+        } finally {
+            resetDirectBufferForReading();
+        }
+    }
+
+    @Override
+    public int sendBatch(ByteBuffer[] bufs, IPPort[] remotes, int count) throws IOException {
+        if (!OS.isLinux() || connected || fd == -1) {
+            // let the single-datagram impl create fd or report errors
+            return DatagramFD.super.sendBatch(bufs, remotes, count);
+        }
+        checkNotClosed();
+        int vlen = Math.min(count, MMSG_MAX_VLEN);
+        if (vlen == 0) {
+            return 0;
+        }
+        int slotLen = 0;
+        for (int i = 0; i < vlen; ++i) {
+            if (ipv4 != (remotes[i].getAddress() instanceof IPv4)) {
+                throw new IOException("unsupported address for this fd: " + remotes[i]);
+            }
+            slotLen = Math.max(slotLen, bufs[i].limit() - bufs[i].position());
+        }
+        if (slotLen == 0) {
+            slotLen = 1; // all datagrams are empty
+        }
+        int[] meta = getMMsgMeta(vlen);
+        ByteBuffer directBuffer = getDirectBufferForWriting(slotLen * vlen).realBuffer();
+        int n = 0;
+        try {
+            for (int i = 0; i < vlen; ++i) {
+                int len = bufs[i].limit() - bufs[i].position();
+                int pos = bufs[i].position();
+                directBuffer.limit(i * slotLen + len).position(i * slotLen);
+                directBuffer.put(bufs[i]);
+                bufs[i].position(pos); // restore, will be set after sent
+                int port = remotes[i].getPort();
+                if (ipv4) {
+                    meta[i * 3] = IP.ipv4Bytes2Int(remotes[i].getAddress().getAddress());
+                    meta[i * 3 + 1] = port;
+                    meta[i * 3 + 2] = len;
+                } else {
+                    byte[] addr = remotes[i].getAddress().getAddress();
+                    for (int w = 0; w < 4; ++w) {
+                        meta[i * 6 + w] = ((addr[w * 4] & 0xff) << 24)
+                            | ((addr[w * 4 + 1] & 0xff) << 16)
+                            | ((addr[w * 4 + 2] & 0xff) << 8)
+                            | (addr[w * 4 + 3] & 0xff);
+                    }
+                    meta[i * 6 + 4] = port;
+                    meta[i * 6 + 5] = len;
+                }
+            }
+            if (ipv4) {
+                n = posix.sendmmsgIPv4(fd, directBuffer, slotLen, vlen, meta);
+            } else {
+                n = posix.sendmmsgIPv6(fd, directBuffer, slotLen, vlen, meta);
+            }
+        } finally {
+            for (int i = 0; i < n; ++i) {
+                bufs[i].position(bufs[i].limit());
+            }
+            resetDirectBufferForWriting();
+        }
+        return n;
+    }
 }
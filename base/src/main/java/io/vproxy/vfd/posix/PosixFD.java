@@ -26,6 +26,10 @@ public class PosixFD extends AbstractBaseFD implements FD {
         return fd;
     }
 
+    public Posix getPosix() {
+        return posix;
+    }
+
     protected void checkFD() throws IOException {
         if (fd == -1) {
             throw new IOException("connect() or bind() not called");
@@ -1,5 +1,8 @@
 package io.vproxy.vfd.posix;
 
+import io.vproxy.base.util.LogType;
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.OS;
 import io.vproxy.base.util.Utils;
 import io.vproxy.vfd.*;
 
@@ -7,6 +10,8 @@ import java.io.IOException;
 import java.lang.reflect.Proxy;
 
 public class PosixFDs implements FDs, FDsWithTap, FDsWithOpts, FDsWithCoreAffinity {
+    private static final int URING_ENTRIES = 4096;
+
     public final Posix posix;
 
     public PosixFDs() {
@@ -59,6 +64,18 @@ public class PosixFDs implements FDs, FDsWithTap, FDsWithOpts, FDsWithCoreAffini
     @Override
     public FDSelector openSelector(Options opts) throws IOException {
         int[] pipeFd = posix.openPipe();
+        if (opts.ioUring() && OS.isLinux()) {
+            long ring = 0;
+            try {
+                ring = posix.uringCreate(URING_ENTRIES, VFDConfig.aesetsize);
+                return new IOUringSelector(posix, ring, pipeFd, VFDConfig.aesetsize);
+            } catch (IOException e) {
+                if (ring != 0) {
+                    posix.uringDeleteEventLoop(ring);
+                }
+                Logger.warn(LogType.SYS_ERROR, "failed to create io_uring selector, fallback to ae", e);
+            }
+        }
         long ae;
         try {
             ae = posix.aeCreateEventLoop(VFDConfig.aesetsize, opts.epfd(), opts.preferPoll());
@@ -43,4 +43,24 @@ public class PosixNetworkFD extends PosixFD {
 
         return utilWrite(src, (buf, off, len) -> posix.write(fd, buf, off, len));
     }
+
+    public long read(ByteBuffer[] dsts, int off, int count) throws IOException {
+        checkFD();
+        checkConnected();
+        checkNotClosed();
+
+        return utilReadv(dsts, off, count,
+            (bufs, o, c) -> posix.readv(fd, bufs, o, c),
+            (buf, o, len) -> posix.read(fd, buf, o, len));
+    }
+
+    public long write(ByteBuffer[] srcs, int off, int count) throws IOException {
+        checkFD();
+        checkConnected();
+        checkNotClosed();
+
+        return utilWritev(srcs, off, count,
+            (bufs, o, c) -> posix.writev(fd, bufs, o, c),
+            (buf, o, len) -> posix.write(fd, buf, o, len));
+    }
 }
@@ -6,6 +6,10 @@ import java.io.IOException;
 
 public class PosixServerSocketFD extends PosixFD implements ServerSocketFD {
     private IPPort local;
+    // fds already accepted by the io_uring selector
+    private int[] accepted = null;
+    private int acceptedHead = 0;
+    private int acceptedSize = 0;
 
     protected PosixServerSocketFD(Posix posix) {
         super(posix);
@@ -20,13 +24,52 @@ public class PosixServerSocketFD extends PosixFD implements ServerSocketFD {
     public SocketFD accept() throws IOException {
         checkFD();
         checkNotClosed();
-        int subFd = posix.accept(fd);
+        int subFd;
+        if (acceptedSize > 0) {
+            subFd = accepted[acceptedHead];
+            acceptedHead = (acceptedHead + 1) % accepted.length;
+            --acceptedSize;
+        } else {
+            subFd = posix.accept(fd);
+        }
         if (subFd == 0) {
             return null;
         }
         return new PosixSocketFD(posix, subFd, local.getAddress() instanceof IPv4);
     }
 
+    /**
+     * Store an fd accepted by {@link IOUringSelector}, it will be returned by {@link #accept()}.
+     */
+    void offerAccepted(int subFd) {
+        if (accepted == null) {
+            accepted = new int[16];
+        } else if (acceptedSize == accepted.length) {
+            int[] arr = new int[accepted.length * 2];
+            for (int i = 0; i < acceptedSize; ++i) {
+                arr[i] = accepted[(acceptedHead + i) % accepted.length];
+            }
+            accepted = arr;
+            acceptedHead = 0;
+        }
+        accepted[(acceptedHead + acceptedSize) % accepted.length] = subFd;
+        ++acceptedSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        while (acceptedSize > 0) {
+            int subFd = accepted[acceptedHead];
+            acceptedHead = (acceptedHead + 1) % accepted.length;
+            --acceptedSize;
+            try {
+                posix.close(subFd);
+            } catch (IOException ignore) {
+            }
+        }
+        super.close();
+    }
+
     @Override
     public void bind(IPPort l4addr) throws IOException {
         checkNotClosed();
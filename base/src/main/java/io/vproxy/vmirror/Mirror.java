@@ -1,6 +1,7 @@
 package io.vproxy.vmirror;
 
 import io.vproxy.base.util.*;
+import io.vproxy.vfd.FDProvider;
 import io.vproxy.vfd.IP;
 import io.vproxy.vfd.IPv4;
 import io.vproxy.vfd.IPv6;
@@ -11,10 +12,6 @@ import vjson.JSON;
 import vjson.parser.ParserOptions;
 import vjson.parser.ParserUtils;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -337,6 +334,9 @@ public class Mirror {
         boolean thisEnabledOld = this.enabled;
         this.enabled = false;
         destroyMirrors();
+        for (var c : mirrorConfigs) {
+            c.writer.start();
+        }
         this.mirrors = mirrorConfigs;
         this.enabledOrigins = enabledOrigins;
         this.filters = filters;
@@ -378,18 +378,29 @@ public class Mirror {
         runSub(handling -> {
             handling[0] = "output";
             mirrorConfig.outputFilePath = Utils.filename(mirror.getString("output"));
-            try {
-                if (new File(mirrorConfig.outputFilePath).exists()) {
-                    mirrorConfig.output = new FileOutputStream(mirrorConfig.outputFilePath, true);
-                } else {
-                    mirrorConfig.output = new FileOutputStream(mirrorConfig.outputFilePath);
-                    mirrorConfig.output.write(new PcapGlobalHeader().build().toJavaArray());
-                }
-            } catch (FileNotFoundException e) {
-                throw new IllegalArgumentException("file not found: " + mirrorConfig.outputFilePath);
-            } catch (IOException e) {
-                throw new IllegalArgumentException("writing pcap global header failed: " + mirrorConfig.outputFilePath);
+
+            handling[0] = "segmentSize";
+            long segmentSize = MirrorWriter.DEFAULT_SEGMENT_SIZE;
+            if (mirror.containsKey("segmentSize")) {
+                segmentSize = mirror.getInt("segmentSize");
+            }
+            handling[0] = "rotateInterval";
+            int rotateInterval = 0;
+            if (mirror.containsKey("rotateInterval")) {
+                rotateInterval = mirror.getInt("rotateInterval");
             }
+            handling[0] = "snaplen";
+            int snaplen = MirrorWriter.DEFAULT_SNAPLEN;
+            if (mirror.containsKey("snaplen")) {
+                snaplen = mirror.getInt("snaplen");
+            }
+            handling[0] = "ringSize";
+            int ringSize = MirrorWriter.DEFAULT_RING_SIZE;
+            if (mirror.containsKey("ringSize")) {
+                ringSize = mirror.getInt("ringSize");
+            }
+            handling[0] = "output";
+            mirrorConfig.writer = new MirrorWriter(mirrorConfig.outputFilePath, segmentSize, rotateInterval, snaplen, ringSize);
 
             handling[0] = "origins";
             JSON.Array origins = mirror.getArray("origins");
@@ -483,13 +494,10 @@ public class Mirror {
     }
 
     private void sendPacket(MirrorConfig config, List<? extends EthernetPacket> packets) {
+        long ts = FDProvider.get().currentTimeMillis();
         for (var pkt : packets) {
-            var pcap = new PcapPacket(pkt);
-            try {
-                config.output.write(pcap.build().toJavaArray());
-            } catch (Throwable t) {
-                Logger.error(LogType.CONN_ERROR, "sending mirror packet to " + config.outputFilePath + " failed");
-            }
+            // dropped packets are counted and reported by the writer
+            config.writer.write(ts, pkt.getRawPacket(0));
         }
     }
 }
@@ -0,0 +1,125 @@
+package io.vproxy.vmirror;
+
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.Utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single producer single consumer ring of pcap records.<br>
+ * The producer is the thread forwarding the traffic, the consumer is the mirror writer thread.
+ * Records are stored exactly as they will be written into the pcap file,
+ * so the consumer only needs to copy them.<br>
+ * A record never wraps around the end of the buffer.
+ * If the space at the end is not enough for a record header, the consumer skips it,
+ * otherwise a header with caplen -1 is written to mark the padding.
+ */
+class MirrorRing {
+    static final int RECORD_HEADER_LEN = 16;
+    private static final int PADDING = -1;
+
+    final Thread producer;
+    private final byte[] buf;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // written by the producer
+    private long cachedHead = 0; // the producer's view of head
+    private volatile long dropped = 0; // written by the producer
+
+    MirrorRing(int capacity, Thread producer) {
+        this.producer = producer;
+        capacity = Utils.minPow2GreaterThan(capacity);
+        this.buf = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    // called by the producer
+    boolean offer(long ts, ByteArray pkt, int snaplen) {
+        int origLen = pkt.length();
+        int capLen = Math.min(origLen, snaplen);
+        int recordLen = RECORD_HEADER_LEN + capLen;
+
+        long t = tail.get();
+        int off = (int) (t & mask);
+        int toEnd = buf.length - off;
+        int pad = toEnd < recordLen ? toEnd : 0;
+        if (t + pad + recordLen - cachedHead > buf.length) {
+            cachedHead = head.getAcquire();
+            if (t + pad + recordLen - cachedHead > buf.length) {
+                //noinspection NonAtomicOperationOnVolatileField
+                ++dropped; // only modified by the producer
+                return false;
+            }
+        }
+        if (pad > 0) {
+            if (pad >= RECORD_HEADER_LEN) {
+                int32(off + 8, PADDING);
+            }
+            t += pad;
+            off = 0;
+        }
+        int32(off, (int) (ts / 1000));
+        int32(off + 4, (int) (ts % 1000) * 1000);
+        int32(off + 8, capLen);
+        int32(off + 12, origLen);
+        if (capLen == origLen) {
+            pkt.toNewJavaArray(buf, off + RECORD_HEADER_LEN);
+        } else {
+            pkt.sub(0, capLen).toNewJavaArray(buf, off + RECORD_HEADER_LEN);
+        }
+        // a volatile write, so that it's not reordered with reading the parked flag of the writer
+        tail.set(t + recordLen);
+        return true;
+    }
+
+    // called by the consumer
+    int drain(MirrorWriter writer) {
+        long h = head.get();
+        long t = tail.getAcquire();
+        int n = 0;
+        while (h != t) {
+            int off = (int) (h & mask);
+            int toEnd = buf.length - off;
+            if (toEnd < RECORD_HEADER_LEN) {
+                h += toEnd;
+                continue;
+            }
+            int capLen = int32(off + 8);
+            if (capLen == PADDING) {
+                h += toEnd;
+                continue;
+            }
+            int recordLen = RECORD_HEADER_LEN + capLen;
+            writer.append(buf, off, recordLen);
+            h += recordLen;
+            // release the space as soon as possible, the producer may be waiting for it
+            head.setRelease(h);
+            ++n;
+        }
+        head.setRelease(h);
+        return n;
+    }
+
+    // pcap records are written in the byte order of the magic number in the global header, which is little endian here
+    private void int32(int off, int v) {
+        buf[off] = (byte) v;
+        buf[off + 1] = (byte) (v >>> 8);
+        buf[off + 2] = (byte) (v >>> 16);
+        buf[off + 3] = (byte) (v >>> 24);
+    }
+
+    private int int32(int off) {
+        return (buf[off] & 0xff)
+               | ((buf[off + 1] & 0xff) << 8)
+               | ((buf[off + 2] & 0xff) << 16)
+               | ((buf[off + 3] & 0xff) << 24);
+    }
+}
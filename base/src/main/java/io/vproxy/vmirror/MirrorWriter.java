@@ -0,0 +1,301 @@
+package io.vproxy.vmirror;
+
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.LogType;
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.Utils;
+import io.vproxy.base.util.anno.Blocking;
+import io.vproxy.base.util.thread.VProxyThread;
+import io.vproxy.vpacket.PcapGlobalHeader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes mirrored packets into pcap files without blocking the threads forwarding the traffic.<br>
+ * Each producing thread gets its own {@link MirrorRing}, packets are dropped and counted when the ring is full.
+ * A dedicated thread drains the rings and appends the records into memory-mapped pcap segments,
+ * a ring is unregistered after its thread terminates and it's drained.<br>
+ * A segment is rotated when it's full or when it has been open for the rotate interval,
+ * then it's truncated to the written length.
+ * Segments are named {@code <prefix>-<time>[-n]<suffix>}, e.g. {@code vproxy-mirror-2024-01-01_00-00-00.pcap}.
+ */
+public class MirrorWriter {
+    private static final int GLOBAL_HEADER_LEN = 24;
+    private static final long PARK_NANOS = 1_000_000; // 1ms
+    private static final long DROP_REPORT_INTERVAL = 10_000;
+    private static final long OPEN_RETRY_INTERVAL = 1_000;
+    private static final long RING_PRUNE_INTERVAL = 1_000;
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SNAPLEN = 65536;
+    public static final int DEFAULT_RING_SIZE = 1024 * 1024;
+
+    private final String prefix;
+    private final String suffix;
+    private final long segmentSize;
+    private final long rotateInterval; // millis, 0 means only rotate when the segment is full
+    private final int snaplen;
+    private final int ringSize;
+
+    private final ThreadLocal<MirrorRing> ring = new ThreadLocal<>();
+    private final CopyOnWriteArrayList<MirrorRing> rings = new CopyOnWriteArrayList<>();
+    private final VProxyThread thread;
+    private volatile boolean parked = false;
+    private volatile boolean closed = false;
+
+    // fields below are only accessed by the writer thread
+    private Arena arena;
+    private FileChannel channel;
+    private MemorySegment segment;
+    private long segmentPos;
+    private long segmentCreated;
+    private String segmentPath;
+    private long openFailed = 0;
+    private volatile long writerDropped = 0;
+    private volatile long prunedDropped = 0; // dropped count of the unregistered rings
+    private long lastPrune = 0;
+    private long lastReportedDropped = 0;
+    private long lastReport = 0;
+
+    public MirrorWriter(String output, long segmentSize, int rotateIntervalSeconds, int snaplen, int ringSize) {
+        if (snaplen <= 0) {
+            throw new IllegalArgumentException("snaplen must be positive");
+        }
+        if (segmentSize < GLOBAL_HEADER_LEN + MirrorRing.RECORD_HEADER_LEN + snaplen) {
+            throw new IllegalArgumentException("segmentSize is too small for the snaplen");
+        }
+        if (ringSize < 2 * (MirrorRing.RECORD_HEADER_LEN + snaplen)) {
+            throw new IllegalArgumentException("ringSize must be at least twice the max record size (16 + snaplen)");
+        }
+        if (rotateIntervalSeconds < 0) {
+            throw new IllegalArgumentException("rotateInterval must not be negative");
+        }
+        output = Utils.filename(output);
+        String lower = output.toLowerCase();
+        if (lower.endsWith(".pcap")) {
+            this.prefix = output.substring(0, output.length() - ".pcap".length());
+            this.suffix = output.substring(output.length() - ".pcap".length());
+        } else {
+            this.prefix = output;
+            this.suffix = ".pcap";
+        }
+        File dir = new File(prefix).getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory()) {
+            throw new IllegalArgumentException("directory not found: " + dir);
+        }
+        this.segmentSize = segmentSize;
+        this.rotateInterval = rotateIntervalSeconds * 1000L;
+        this.snaplen = snaplen;
+        this.ringSize = ringSize;
+        this.thread = VProxyThread.create(this::loop, "mirror-writer");
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Called on the threads forwarding the traffic, never blocks.
+     *
+     * @return false if the packet is dropped
+     */
+    public boolean write(long ts, ByteArray pkt) {
+        if (closed) {
+            return false;
+        }
+        var r = ring.get();
+        if (r == null) {
+            r = new MirrorRing(ringSize, Thread.currentThread());
+            ring.set(r);
+            rings.add(r);
+        }
+        boolean ok = r.offer(ts, pkt, snaplen);
+        if (parked) {
+            parked = false;
+            LockSupport.unpark(thread.thread());
+        }
+        return ok;
+    }
+
+    public long getDropped() {
+        long n = writerDropped + prunedDropped;
+        for (var r : rings) {
+            n += r.getDropped();
+        }
+        return n;
+    }
+
+    public int getRingCount() {
+        return rings.size();
+    }
+
+    /**
+     * Stop accepting packets, write the pending ones and close the current segment.
+     */
+    @Blocking
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread.thread());
+        if (thread.thread() == Thread.currentThread() || !thread.thread().isAlive()) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Logger.shouldNotHappen("interrupted when waiting for the mirror writer to finish", e);
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            boolean stopping = closed;
+            int n = 0;
+            for (var r : rings) {
+                n += r.drain(this);
+            }
+            long now = System.currentTimeMillis();
+            if (segment != null && rotateInterval > 0 && now - segmentCreated >= rotateInterval) {
+                closeSegment();
+            }
+            pruneRings(now);
+            reportDropped(now);
+            if (n > 0) {
+                continue;
+            }
+            if (stopping) {
+                break;
+            }
+            parked = true;
+            if (allEmpty() && !closed) {
+                // the producers unpark this thread after parked is set,
+                // and the park timeout is required by the time based rotation
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            parked = false;
+        }
+        closeSegment();
+        reportDropped(Long.MAX_VALUE);
+    }
+
+    private void pruneRings(long now) {
+        if (now - lastPrune < RING_PRUNE_INTERVAL) {
+            return;
+        }
+        lastPrune = now;
+        for (var r : rings) {
+            if (r.producer.isAlive()) {
+                continue;
+            }
+            // the producer is dead, so nothing would be offered after this drain
+            r.drain(this);
+            rings.remove(r);
+            //noinspection NonAtomicOperationOnVolatileField
+            prunedDropped += r.getDropped(); // only modified by the writer thread
+        }
+    }
+
+    private boolean allEmpty() {
+        for (var r : rings) {
+            if (!r.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // called by MirrorRing on the writer thread
+    void append(byte[] buf, int off, int len) {
+        if (segment != null && segmentPos + len > segment.byteSize()) {
+            closeSegment();
+        }
+        if (segment == null && !openSegment()) {
+            //noinspection NonAtomicOperationOnVolatileField
+            ++writerDropped; // only modified by the writer thread
+            return;
+        }
+        MemorySegment.copy(buf, off, segment, ValueLayout.JAVA_BYTE, segmentPos, len);
+        segmentPos += len;
+    }
+
+    private boolean openSegment() {
+        long now = System.currentTimeMillis();
+        if (now - openFailed < OPEN_RETRY_INTERVAL) {
+            // avoid creating files for every packet when the directory is not writable
+            return false;
+        }
+        String base = prefix + "-" + Utils.formatTimestampForFileName(now);
+        String path = base + suffix;
+        for (int i = 1; new File(path).exists(); ++i) {
+            path = base + "-" + i + suffix;
+        }
+        FileChannel channel = null;
+        Arena arena = Arena.ofConfined();
+        try {
+            channel = FileChannel.open(new File(path).toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize, arena);
+        } catch (IOException e) {
+            arena.close();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                }
+            }
+            openFailed = now;
+            Logger.error(LogType.FILE_ERROR, "creating mirror output file " + path + " failed", e);
+            return false;
+        }
+        this.arena = arena;
+        this.channel = channel;
+        this.segmentPath = path;
+        this.segmentCreated = now;
+
+        byte[] header = new PcapGlobalHeader(snaplen, PcapGlobalHeader.LINKTYPE_ETHERNET).build().toJavaArray();
+        MemorySegment.copy(header, 0, segment, ValueLayout.JAVA_BYTE, 0, header.length);
+        segmentPos = header.length;
+        return true;
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        // not forced, the pages are written back by the kernel after unmapping
+        arena.close();
+        try {
+            channel.truncate(segmentPos);
+        } catch (IOException e) {
+            Logger.error(LogType.FILE_ERROR, "truncating mirror output file " + segmentPath + " failed", e);
+        }
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+        arena = null;
+        channel = null;
+        segment = null;
+        segmentPath = null;
+    }
+
+    private void reportDropped(long now) {
+        if (now - lastReport < DROP_REPORT_INTERVAL) {
+            return;
+        }
+        lastReport = now;
+        long dropped = getDropped();
+        if (dropped != lastReportedDropped) {
+            Logger.warn(LogType.BUFFER_INSUFFICIENT, "mirror " + prefix + "..." + suffix + " dropped " + (dropped - lastReportedDropped) +
+                                                     " packets, total " + dropped);
+            lastReportedDropped = dropped;
+        }
+    }
+}
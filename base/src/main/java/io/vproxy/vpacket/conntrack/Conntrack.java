@@ -1,5 +1,8 @@
 package io.vproxy.vpacket.conntrack;
 
+import io.vproxy.base.GlobalInspection;
+import io.vproxy.base.prometheus.GaugeF;
+import io.vproxy.base.prometheus.Metric;
 import io.vproxy.base.selector.SelectorEventLoop;
 import io.vproxy.base.util.LogType;
 import io.vproxy.base.util.Logger;
@@ -25,10 +28,12 @@ public class Conntrack {
 
     private final Map<IPPort, TcpListenEntry> tcpListenEntries = new HashMap<>();
     private final Map<IPPort, UdpListenEntry> udpListenEntries = new HashMap<>();
-    // dstIPPort => srcIPPort => TcpEntry
-    // make dstIPPort to be the first key for better performance
-    private final Map<IPPort, Map<IPPort, TcpEntry>> tcpEntries = new HashMap<>();
-    private final Map<IPPort, Map<IPPort, UdpEntry>> udpEntries = new HashMap<>();
+    // (remote, local) => entry
+    private final FlowTable<TcpEntry> tcpEntries = new FlowTable<>();
+    private final FlowTable<UdpEntry> udpEntries = new FlowTable<>();
+    // local => udp entries, so removing a listening address does not scan the whole table
+    private final Map<IPPort, Set<UdpEntry>> udpEntriesByLocal = new HashMap<>();
+    private final List<Metric> metrics = new ArrayList<>();
 
     private static final IP ipv4BindAny = IP.from("0.0.0.0");
     private static final IP ipv6BindAny = IP.from("::");
@@ -54,35 +59,54 @@ public class Conntrack {
     }
 
     public int countTcpEntries() {
-        int total = 0;
-        for (var map : tcpEntries.values()) {
-            total += map.size();
-        }
-        return total;
+        return tcpEntries.size();
     }
 
     public Collection<TcpEntry> listTcpEntries() {
-        List<TcpEntry> ls = new LinkedList<>();
-        for (var map : tcpEntries.values()) {
-            ls.addAll(map.values());
-        }
-        return ls;
+        return tcpEntries.values();
+    }
+
+    public int tcpTableLoadFactorPercent() {
+        return tcpEntries.loadFactorPercent();
     }
 
     public int countUdpEntries() {
-        int total = 0;
-        for (var map : udpEntries.values()) {
-            total += map.size();
-        }
-        return total;
+        return udpEntries.size();
     }
 
     public Collection<UdpEntry> listUdpEntries() {
-        List<UdpEntry> ls = new LinkedList<>();
-        for (var map : udpEntries.values()) {
-            ls.addAll(map.values());
+        return udpEntries.values();
+    }
+
+    public int udpTableLoadFactorPercent() {
+        return udpEntries.loadFactorPercent();
+    }
+
+    /**
+     * Export flow count and load factor of the tables with the provided labels.<br>
+     * Call {@link #deregisterMetrics()} when the conntrack is no longer used.
+     */
+    public void registerMetrics(Map<String, String> labels) {
+        deregisterMetrics();
+        var inspection = GlobalInspection.getInstance();
+        inspection.registerHelpMessage("conntrack_flow_count_current", "Current count of tracked flows");
+        inspection.registerHelpMessage("conntrack_table_load_factor_percent", "Current load factor of the conntrack table in percentage");
+        for (String proto : new String[]{"tcp", "udp"}) {
+            var table = proto.equals("tcp") ? tcpEntries : udpEntries;
+            var l = new HashMap<>(labels);
+            l.put("protocol", proto);
+            metrics.add(inspection.addMetric("conntrack_flow_count_current", l,
+                (m, lb) -> new GaugeF(m, lb, () -> (long) table.size())));
+            metrics.add(inspection.addMetric("conntrack_table_load_factor_percent", l,
+                (m, lb) -> new GaugeF(m, lb, () -> (long) table.loadFactorPercent())));
+        }
+    }
+
+    public void deregisterMetrics() {
+        for (var m : metrics) {
+            GlobalInspection.getInstance().removeMetric(m);
         }
-        return ls;
+        metrics.clear();
     }
 
     public TcpListenEntry lookupTcpListen(IPPort dst) {
@@ -104,27 +128,19 @@ public class Conntrack {
     }
 
     public TcpEntry lookupTcp(AbstractIpPacket ip, TcpPacket tcp) {
-        return lookupTcp(new IPPort(ip.getSrc(), tcp.getSrcPort()), new IPPort(ip.getDst(), tcp.getDstPort()));
+        return tcpEntries.get(ip.getSrc(), tcp.getSrcPort(), ip.getDst(), tcp.getDstPort());
     }
 
     public TcpEntry lookupTcp(IPPort remote, IPPort local) {
-        var map = tcpEntries.get(local);
-        if (map == null) {
-            return null;
-        }
-        return map.get(remote);
+        return tcpEntries.get(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort());
     }
 
     public UdpEntry lookupUdp(AbstractIpPacket ip, UdpPacket udp) {
-        return lookupUdp(new IPPort(ip.getSrc(), udp.getSrcPort()), new IPPort(ip.getDst(), udp.getDstPort()));
+        return udpEntries.get(ip.getSrc(), udp.getSrcPort(), ip.getDst(), udp.getDstPort());
     }
 
     public UdpEntry lookupUdp(IPPort remote, IPPort local) {
-        var map = udpEntries.get(local);
-        if (map == null) {
-            return null;
-        }
-        return map.get(remote);
+        return udpEntries.get(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort());
     }
 
     protected TcpEntry createTcpEntry(TcpListenEntry listenEntry, IPPort remote, IPPort local, long seq) {
@@ -140,9 +156,8 @@ public class Conntrack {
     }
 
     private TcpEntry createTcp(IPPort remote, IPPort local, BiFunction<IPPort, IPPort, TcpEntry> constructor) {
-        var map = tcpEntries.computeIfAbsent(local, x -> new HashMap<>());
         TcpEntry entry = constructor.apply(remote, local);
-        var old = map.put(remote, entry);
+        var old = tcpEntries.put(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort(), entry);
         if (old != null) {
             Logger.error(LogType.IMPROPER_USE, "found old connection " + old + " but a new connection with the same tuple is created");
             old.destroy();
@@ -158,10 +173,29 @@ public class Conntrack {
         return createTcp(remote, local, this::createTcpEntry);
     }
 
+    private UdpEntry putUdp(IPPort remote, IPPort local, UdpEntry entry) {
+        var old = udpEntries.put(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort(), entry);
+        if (old != null) {
+            unindexUdp(local, old);
+        }
+        udpEntriesByLocal.computeIfAbsent(local, k -> new HashSet<>()).add(entry);
+        return old;
+    }
+
+    private void unindexUdp(IPPort local, UdpEntry entry) {
+        var entries = udpEntriesByLocal.get(local);
+        if (entries == null) {
+            return;
+        }
+        entries.remove(entry);
+        if (entries.isEmpty()) {
+            udpEntriesByLocal.remove(local);
+        }
+    }
+
     public UdpEntry recordUdp(IPPort remote, IPPort local) {
-        var map = udpEntries.computeIfAbsent(local, x -> new HashMap<>());
         UdpEntry entry = createUdpEntry(remote, local);
-        var old = map.put(remote, entry);
+        var old = putUdp(remote, local, entry);
         if (old != null) {
             Logger.error(LogType.IMPROPER_USE, "found old udp entry " + old + " but a new udp entry with the same tuple is created");
             old.destroy(false);
@@ -170,11 +204,10 @@ public class Conntrack {
     }
 
     public UdpEntry recordUdp(IPPort remote, IPPort local, Supplier<UdpEntry> entrySupplier) {
-        var map = udpEntries.computeIfAbsent(local, x -> new HashMap<>());
-        var old = map.get(remote);
+        var old = lookupUdp(remote, local);
         if (old == null) {
             old = entrySupplier.get();
-            map.put(remote, old);
+            putUdp(remote, local, old);
         } else {
             old.update();
         }
@@ -208,33 +241,24 @@ public class Conntrack {
     public void removeUdpListen(IPPort dst) {
         udpListenEntries.remove(dst);
         // remove udp entries as well
-        var map = udpEntries.remove(dst);
-        if (map != null) {
-            for (var x : map.values()) {
-                x.destroy();
-            }
+        var entries = udpEntriesByLocal.remove(dst);
+        if (entries == null) {
+            return;
+        }
+        for (var x : entries) {
+            x.destroy(false);
+            udpEntries.remove(x.remote.getAddress(), x.remote.getPort(), dst.getAddress(), dst.getPort());
         }
     }
 
     public void removeTcp(IPPort remote, IPPort local) {
-        var map = tcpEntries.get(local);
-        if (map == null) {
-            return;
-        }
-        map.remove(remote);
-        if (map.isEmpty()) {
-            tcpEntries.remove(local);
-        }
+        tcpEntries.remove(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort());
     }
 
     public void removeUdp(IPPort remote, IPPort local) {
-        var map = udpEntries.get(local);
-        if (map == null) {
-            return;
-        }
-        map.remove(remote);
-        if (map.isEmpty()) {
-            udpEntries.remove(local);
+        var old = udpEntries.remove(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort());
+        if (old != null) {
+            unindexUdp(local, old);
         }
     }
 
@@ -0,0 +1,252 @@
+package io.vproxy.vpacket.conntrack;
+
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.IPv4;
+import io.vproxy.vfd.IPv6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An open addressing hash table keyed by the (remote ip, remote port, local ip, local port) tuple.<br>
+ * Keys are stored in a flat int array, {@link #KEY_INTS} ints per slot, and compared word by word,
+ * so lookups do not allocate and touch at most a few adjacent cache lines.<br>
+ * Collisions are resolved by linear probing, and removal uses backward shift instead of tombstones.<br>
+ * Note that the table is not thread safe, it should be operated on the event loop which owns the conntrack.
+ */
+public class FlowTable<E> {
+    // remote ip (4 ints), local ip (4 ints), ports, flags
+    private static final int KEY_INTS = 10;
+    private static final int PORTS_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 9;
+    private static final int FLAG_REMOTE_V6 = 1;
+    private static final int FLAG_LOCAL_V6 = 2;
+    private static final int MIN_CAPACITY = 16;
+    private static final int LOAD_FACTOR_PERCENT = 75;
+
+    private int[] keys;
+    private int[] hashes;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+
+    private final int[] probe = new int[KEY_INTS];
+
+    public FlowTable() {
+        this(MIN_CAPACITY);
+    }
+
+    public FlowTable(int initialCapacity) {
+        int cap = MIN_CAPACITY;
+        while (cap < initialCapacity) {
+            cap <<= 1;
+        }
+        init(cap);
+    }
+
+    private void init(int cap) {
+        keys = new int[cap * KEY_INTS];
+        hashes = new int[cap];
+        values = new Object[cap];
+        mask = cap - 1;
+        threshold = (int) ((long) cap * LOAD_FACTOR_PERCENT / 100);
+    }
+
+    private static void fillKey(int[] k, int off, IP remoteIp, int remotePort, IP localIp, int localPort) {
+        int flags = 0;
+        if (remoteIp instanceof IPv4 v4) {
+            k[off] = v4.getIPv4Value();
+            k[off + 1] = 0;
+            k[off + 2] = 0;
+            k[off + 3] = 0;
+        } else {
+            IPv6 v6 = (IPv6) remoteIp;
+            k[off] = v6.getIPv6Value0();
+            k[off + 1] = v6.getIPv6Value1();
+            k[off + 2] = v6.getIPv6Value2();
+            k[off + 3] = v6.getIPv6Value3();
+            flags |= FLAG_REMOTE_V6;
+        }
+        if (localIp instanceof IPv4 v4) {
+            k[off + 4] = v4.getIPv4Value();
+            k[off + 5] = 0;
+            k[off + 6] = 0;
+            k[off + 7] = 0;
+        } else {
+            IPv6 v6 = (IPv6) localIp;
+            k[off + 4] = v6.getIPv6Value0();
+            k[off + 5] = v6.getIPv6Value1();
+            k[off + 6] = v6.getIPv6Value2();
+            k[off + 7] = v6.getIPv6Value3();
+            flags |= FLAG_LOCAL_V6;
+        }
+        k[off + PORTS_OFFSET] = (remotePort << 16) | (localPort & 0xffff);
+        k[off + FLAGS_OFFSET] = flags;
+    }
+
+    // murmur3 style word mixing, the loop has a fixed trip count and no branches
+    private static int hash(int[] k) {
+        int h = 0x9747b28c;
+        for (int i = 0; i < KEY_INTS; ++i) {
+            int w = k[i] * 0xcc9e2d51;
+            w = Integer.rotateLeft(w, 15) * 0x1b873593;
+            h ^= w;
+            h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private boolean keyEquals(int slot, int[] k) {
+        int off = slot * KEY_INTS;
+        int[] keys = this.keys;
+        int diff = 0;
+        for (int i = 0; i < KEY_INTS; ++i) {
+            diff |= keys[off + i] ^ k[i];
+        }
+        return diff == 0;
+    }
+
+    private int find(int[] k, int h) {
+        int i = h & mask;
+        while (values[i] != null) {
+            if (hashes[i] == h && keyEquals(i, k)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public E get(IP remoteIp, int remotePort, IP localIp, int localPort) {
+        fillKey(probe, 0, remoteIp, remotePort, localIp, localPort);
+        int i = find(probe, hash(probe));
+        //noinspection unchecked
+        return i == -1 ? null : (E) values[i];
+    }
+
+    /**
+     * @return the old value of the same tuple
+     */
+    public E put(IP remoteIp, int remotePort, IP localIp, int localPort, E value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        fillKey(probe, 0, remoteIp, remotePort, localIp, localPort);
+        int h = hash(probe);
+        int i = h & mask;
+        while (values[i] != null) {
+            if (hashes[i] == h && keyEquals(i, probe)) {
+                Object old = values[i];
+                values[i] = value;
+                //noinspection unchecked
+                return (E) old;
+            }
+            i = (i + 1) & mask;
+        }
+        System.arraycopy(probe, 0, keys, i * KEY_INTS, KEY_INTS);
+        hashes[i] = h;
+        values[i] = value;
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value, or null if the tuple does not exist
+     */
+    public E remove(IP remoteIp, int remotePort, IP localIp, int localPort) {
+        fillKey(probe, 0, remoteIp, remotePort, localIp, localPort);
+        int i = find(probe, hash(probe));
+        if (i == -1) {
+            return null;
+        }
+        Object old = values[i];
+        --size;
+
+        // shift the following entries of the same cluster back, so no tombstone is needed
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                break;
+            }
+            int home = hashes[j] & mask;
+            // move the entry if its home slot is not inside (hole, j]
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                System.arraycopy(keys, j * KEY_INTS, keys, hole * KEY_INTS, KEY_INTS);
+                hashes[hole] = hashes[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = null;
+        //noinspection unchecked
+        return (E) old;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        init(oldValues.length << 1);
+        for (int s = 0; s < oldValues.length; ++s) {
+            if (oldValues[s] == null) {
+                continue;
+            }
+            int i = oldHashes[s] & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            System.arraycopy(oldKeys, s * KEY_INTS, keys, i * KEY_INTS, KEY_INTS);
+            hashes[i] = oldHashes[s];
+            values[i] = oldValues[s];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * @return size / capacity in percentage
+     */
+    public int loadFactorPercent() {
+        return (int) ((long) size * 100 / values.length);
+    }
+
+    public void forEach(Consumer<E> f) {
+        for (Object o : values) {
+            if (o != null) {
+                //noinspection unchecked
+                f.accept((E) o);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of all values, modifying the table while iterating the result is allowed
+     */
+    public List<E> values() {
+        List<E> ls = new ArrayList<>(size);
+        forEach(ls::add);
+        return ls;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowTable{size=" + size + ", capacity=" + values.length + "}";
+    }
+}
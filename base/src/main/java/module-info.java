@@ -87,6 +87,7 @@ module io.vproxy.base {
     exports io.vproxy.msquic.callback;
     exports io.vproxy.msquic.wrap;
     exports io.vproxy.msquic;
+    exports io.vproxy.openssl;
     exports io.vproxy.vfd;
     exports io.vproxy.vfd.abs;
     exports io.vproxy.vfd.jdk;
@@ -13,6 +13,7 @@ import io.vproxy.base.util.Logger;
 import io.vproxy.base.util.exception.AlreadyExistException;
 import io.vproxy.base.util.exception.ClosedException;
 import io.vproxy.base.util.exception.NotFoundException;
+import io.vproxy.base.util.exception.XException;
 import io.vproxy.base.util.ringbuffer.ssl.VSSLContext;
 import io.vproxy.component.proxy.*;
 import io.vproxy.component.secure.SecurityGroup;
@@ -44,9 +45,15 @@ public class TcpLB {
     }
 
     class LBAttach implements EventLoopGroupAttach {
+        private final String id;
+
+        LBAttach(String id) {
+            this.id = id;
+        }
+
         @Override
         public String id() {
-            return "TcpLB:" + alias;
+            return id;
         }
 
         @Override
@@ -74,6 +81,11 @@ public class TcpLB {
     private int timeout; // modifiable
     private int inBufferSize; // modifiable
     private int outBufferSize; // modifiable
+    private boolean splice = false; // modifiable
+    // listen with one reuseport socket on each worker loop, and serve the connections on the accepting loop
+    private boolean reusePortShard = false; // modifiable
+    // idle backend connections shared among sessions, only used by processors
+    private BackendConnectionPool backendPool = null; // modifiable
     public final String protocol;
     public final Processor processor;
     private VSSLContext sslContext;
@@ -90,6 +102,7 @@ public class TcpLB {
     private boolean destroyed = false;
 
     private final LBAttach attach;
+    private final LBAttach shardAttach;
 
     public final ConcurrentMap<ServerSock, Proxy> servers = new ConcurrentHashMap<>();
     private final LBProxyEventHandler proxyEventHandler = new LBProxyEventHandler();
@@ -135,8 +148,10 @@ public class TcpLB {
         // so create it in start() method
 
         // attach to acceptorGroup
-        this.attach = new LBAttach();
+        this.attach = new LBAttach("TcpLB:" + alias);
         acceptorGroup.attachResource(attach);
+        // attached to workerGroup when reusePortShard is enabled
+        this.shardAttach = new LBAttach("TcpLB-shard:" + alias);
     }
 
     // this method can override
@@ -194,6 +209,8 @@ public class TcpLB {
             .setTimeout(timeout)
             .setInBufferSize(inBufferSize)
             .setOutBufferSize(outBufferSize)
+            .setSplice(splice)
+            .setBackendPool(backendPool)
             .setServer(server)
             .setAcceptLoop(eventLoop)
             .setSslContext(sslContext);
@@ -208,7 +225,7 @@ public class TcpLB {
 
             stopped = false;
 
-            List<EventLoopWrapper> eventLoops = acceptorGroup.list();
+            List<EventLoopWrapper> eventLoops = reusePortShard ? workerGroup.list() : acceptorGroup.list();
             if (eventLoops.isEmpty()) {
                 assert Logger.lowLevelDebug("cannot start because event loop list is empty, will start later");
                 return;
@@ -295,6 +312,19 @@ public class TcpLB {
         } catch (NotFoundException e) {
             // ignore
         }
+        if (reusePortShard) {
+            try {
+                workerGroup.detachResource(shardAttach);
+            } catch (NotFoundException e) {
+                // ignore
+            }
+        }
+        if (backendPool != null) {
+            backendPool.close();
+        }
+        if (sslContext != null) {
+            sslContext.close();
+        }
     }
 
     public int sessionCount() {
@@ -325,6 +355,85 @@ public class TcpLB {
         }
     }
 
+    public void setSplice(boolean splice) {
+        this.splice = splice;
+        for (Proxy pxy : servers.values()) {
+            pxy.config.setSplice(splice);
+        }
+    }
+
+    /**
+     * Enable or disable sharded accepting.<br>
+     * When enabled, one SO_REUSEPORT listening socket is opened on each loop of the workerGroup
+     * instead of the acceptorGroup, the kernel distributes new connections among these sockets,
+     * and each loop serves the connections accepted by itself, so no cross-thread handoff happens.<br>
+     * The listening sockets are re-created if the lb is running.
+     */
+    public void setReusePortShard(boolean reusePortShard) throws XException, IOException {
+        synchronized (this) {
+            if (this.reusePortShard == reusePortShard) {
+                return;
+            }
+            if (destroyed) {
+                throw new XException("the lb is already destroyed");
+            }
+            if (reusePortShard) {
+                if (bindAddress instanceof UDSPath) {
+                    throw new XException("reuseport sharding is not supported on unix domain socket");
+                }
+                if (!ServerSock.supportReusePort() || !Config.supportReusePortLB()) {
+                    throw new XException("reuseport load balancing is not supported by the operating system");
+                }
+                try {
+                    workerGroup.attachResource(shardAttach);
+                } catch (AlreadyExistException e) {
+                    // ignore
+                } catch (ClosedException e) {
+                    throw new XException("the worker event loop group is closed", e);
+                }
+            } else {
+                try {
+                    workerGroup.detachResource(shardAttach);
+                } catch (NotFoundException e) {
+                    // ignore
+                }
+            }
+
+            boolean running = !stopped;
+            if (running) {
+                stop();
+            }
+            this.reusePortShard = reusePortShard;
+            if (running) {
+                start();
+            }
+        }
+    }
+
+    /**
+     * Enable or disable reusing idle backend connections across sessions.<br>
+     * It only works when the lb runs with a processor which supports reusing backend connections.
+     * The previous pool is closed when replaced, idle connections in it are closed as well.
+     *
+     * @param backendPool the pool, or null to disable
+     */
+    public void setBackendPool(BackendConnectionPool backendPool) throws XException {
+        if (backendPool != null && processor == null) {
+            throw new XException("backend connection pool is only available when running with a processor");
+        }
+        BackendConnectionPool old;
+        synchronized (this) {
+            old = this.backendPool;
+            this.backendPool = backendPool;
+            for (Proxy pxy : servers.values()) {
+                pxy.config.setBackendPool(backendPool);
+            }
+        }
+        if (old != null && old != backendPool) {
+            old.close();
+        }
+    }
+
     public void setTimeout(int timeout) {
         this.timeout = timeout;
         for (Proxy pxy : servers.values()) {
@@ -333,10 +442,14 @@ public class TcpLB {
     }
 
     public void setCertKeys(VSSLContext sslContext, CertKey[] certKeys) {
+        VSSLContext old = this.sslContext;
         this.sslContext = sslContext;
         this.certKeys = certKeys;
 
         servers.forEach((k, v) -> v.config.setSslContext(sslContext));
+        if (old != null && old != sslContext) {
+            old.close();
+        }
     }
 
     public int getInBufferSize() {
@@ -347,6 +460,18 @@ public class TcpLB {
         return outBufferSize;
     }
 
+    public boolean isSplice() {
+        return splice;
+    }
+
+    public boolean isReusePortShard() {
+        return reusePortShard;
+    }
+
+    public BackendConnectionPool getBackendPool() {
+        return backendPool;
+    }
+
     public int getTimeout() {
         return timeout;
     }
@@ -0,0 +1,224 @@
+package io.vproxy.component.proxy;
+
+import io.vproxy.base.Config;
+import io.vproxy.base.connection.*;
+import io.vproxy.base.util.LogType;
+import io.vproxy.base.util.Logger;
+import io.vproxy.base.util.anno.ThreadSafe;
+import io.vproxy.vfd.IPPort;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Idle backend connections of processor sessions, which can be borrowed by other sessions on the same event loop.<br>
+ * A backend connection is released into the pool when its frontend connection is closing,
+ * if the processor reports that no request or response is in progress on it
+ * (see {@link io.vproxy.base.processor.Processor#reusable}).<br>
+ * Connections are grouped by event loop and backend address, the groups are only accessed on their event loops.
+ * An idle connection is closed when the backend sends any data or closes it,
+ * when it's idle for longer than the idle timeout, or when it's borrowed after the max lifetime.
+ */
+public class BackendConnectionPool {
+    public static final int DEFAULT_MAX_IDLE_PER_SERVER = 16;
+    public static final int DEFAULT_IDLE_TIMEOUT = 60_000;
+    public static final int DEFAULT_MAX_LIFETIME = 600_000;
+
+    private final int maxIdlePerServer;
+    private final int idleTimeout;
+    private final int maxLifetime;
+
+    private final Map<NetEventLoop, Map<IPPort, ArrayDeque<Entry>>> loops = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    public BackendConnectionPool() {
+        this(DEFAULT_MAX_IDLE_PER_SERVER, DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_LIFETIME);
+    }
+
+    /**
+     * @param maxIdlePerServer max idle connections to one backend on each event loop
+     * @param idleTimeout      close the connection if it stays in the pool for longer than this value (millis)
+     * @param maxLifetime      the connection won't be reused if it's created earlier than this value (millis)
+     */
+    public BackendConnectionPool(int maxIdlePerServer, int idleTimeout, int maxLifetime) {
+        if (maxIdlePerServer <= 0)
+            throw new IllegalArgumentException("maxIdlePerServer must be > 0");
+        if (idleTimeout <= 0)
+            throw new IllegalArgumentException("idleTimeout must be > 0");
+        if (maxLifetime <= 0)
+            throw new IllegalArgumentException("maxLifetime must be > 0");
+        this.maxIdlePerServer = maxIdlePerServer;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+    }
+
+    static final class Entry {
+        final ConnectableConnection conn;
+        final long createTime;
+        private ArrayDeque<Entry> queue;
+
+        Entry(ConnectableConnection conn, long createTime) {
+            this.conn = conn;
+            this.createTime = createTime;
+        }
+    }
+
+    private final class IdleHandler implements ConnectableConnectionHandler {
+        private final Entry entry;
+
+        IdleHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void connected(ConnectableConnectionHandlerContext ctx) {
+            // ignore the event, it's fired when the connection is stored
+        }
+
+        @Override
+        public void readable(ConnectionHandlerContext ctx) {
+            assert Logger.lowLevelDebug("the idle backend connection " + ctx.connection + " is receiving data, closing ...");
+            drop();
+        }
+
+        @Override
+        public void writable(ConnectionHandlerContext ctx) {
+            // ignore the event
+        }
+
+        @Override
+        public void exception(ConnectionHandlerContext ctx, IOException err) {
+            assert Logger.lowLevelDebug("the idle backend connection " + ctx.connection + " got exception: " + err);
+            drop();
+        }
+
+        @Override
+        public void remoteClosed(ConnectionHandlerContext ctx) {
+            assert Logger.lowLevelDebug("the idle backend connection " + ctx.connection + " is closed by remote");
+            drop();
+        }
+
+        @Override
+        public void closed(ConnectionHandlerContext ctx) {
+            drop();
+        }
+
+        @Override
+        public void removed(ConnectionHandlerContext ctx) {
+            // the entry is already taken out of the queue if it's borrowed
+            drop();
+        }
+
+        private void drop() {
+            if (entry.queue != null && entry.queue.remove(entry)) {
+                entry.queue = null;
+                entry.conn.close();
+            }
+        }
+    }
+
+    /**
+     * Take an idle connection to the remote, must be called on the loop thread.
+     * The connection is removed from the loop, and its timeout should be set by the caller.
+     *
+     * @return null if no connection available
+     */
+    Entry borrow(NetEventLoop loop, IPPort remote) {
+        if (closed) {
+            return null;
+        }
+        var servers = loops.get(loop);
+        if (servers == null) {
+            return null;
+        }
+        var queue = servers.get(remote);
+        if (queue == null) {
+            return null;
+        }
+        long now = Config.currentTimestamp;
+        Entry e;
+        while ((e = queue.pollLast()) != null) { // the most recently used one
+            e.queue = null;
+            if (e.conn.isClosed() || e.conn.isRemoteClosed() || now - e.createTime > maxLifetime) {
+                e.conn.close();
+                continue;
+            }
+            loop.removeConnection(e.conn);
+            assert Logger.lowLevelDebug("reuse idle backend connection " + e.conn);
+            return e;
+        }
+        return null;
+    }
+
+    /**
+     * Put the connection into the pool, or close it if the pool cannot hold it. Must be called on the loop thread,
+     * and the connection must be already removed from the loop.
+     */
+    void release(NetEventLoop loop, ConnectableConnection conn, long createTime) {
+        if (closed || conn.isClosed() || Config.currentTimestamp - createTime > maxLifetime) {
+            conn.close();
+            return;
+        }
+        var queue = loops.computeIfAbsent(loop, _ -> new HashMap<>())
+            .computeIfAbsent(conn.remote, _ -> new ArrayDeque<>());
+        if (queue.size() >= maxIdlePerServer) {
+            assert Logger.lowLevelDebug("too many idle connections to " + conn.remote + ", closing " + conn);
+            conn.close();
+            return;
+        }
+        var e = new Entry(conn, createTime);
+        conn.setTimeout(idleTimeout);
+        try {
+            loop.addConnectableConnection(conn, null, new IdleHandler(e));
+        } catch (IOException ex) {
+            Logger.error(LogType.EVENT_LOOP_ADD_FAIL, "adding idle backend connection " + conn + " to loop failed", ex);
+            conn.close();
+            return;
+        }
+        e.queue = queue;
+        queue.addLast(e);
+        assert Logger.lowLevelDebug("idle backend connection " + conn + " is stored into the pool");
+    }
+
+    /**
+     * Close all idle connections, connections released after closing will be closed directly.
+     */
+    @ThreadSafe
+    public void close() {
+        closed = true;
+        for (var entry : loops.entrySet()) {
+            var loop = entry.getKey();
+            var servers = entry.getValue();
+            Runnable r = () -> {
+                for (var queue : servers.values()) {
+                    Entry e;
+                    while ((e = queue.pollFirst()) != null) {
+                        e.queue = null;
+                        e.conn.close();
+                    }
+                }
+            };
+            if (loop.getSelectorEventLoop().isClosed()) {
+                r.run();
+            } else {
+                loop.getSelectorEventLoop().runOnLoop(r);
+            }
+        }
+        loops.clear();
+    }
+
+    public int getMaxIdlePerServer() {
+        return maxIdlePerServer;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getMaxLifetime() {
+        return maxLifetime;
+    }
+}
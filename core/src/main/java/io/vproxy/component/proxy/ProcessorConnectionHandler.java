@@ -1,5 +1,6 @@
 package io.vproxy.component.proxy;
 
+import io.vproxy.base.Config;
 import io.vproxy.base.connection.*;
 import io.vproxy.base.processor.ConnectionDelegate;
 import io.vproxy.base.processor.Hint;
@@ -52,6 +53,24 @@ class ProcessorConnectionHandler implements ConnectionHandler {
         conns[connId] = null;
     }
 
+    /**
+     * Hand over the backend connection to the pool if it's idle.
+     *
+     * @return true if the backend is released, it's no longer recorded in this handler
+     */
+    private boolean releaseBackend(BackendConnectionHandler backend) {
+        BackendConnectionPool pool = config.backendPool;
+        if (pool == null || !backend.isReusable()) {
+            return false;
+        }
+        assert Logger.lowLevelDebug("release backend connection " + backend.conn + " of " + frontendConnection + " to the pool");
+        removeBackend(backend);
+        backend.released = true;
+        loop.removeConnection(backend.conn);
+        pool.release(loop, backend.conn, backend.createTime);
+        return true;
+    }
+
     /**
      * a util function. NOTE: this method should be called in a while loop until no data to send or buffer is full
      *
@@ -248,7 +267,10 @@ class ProcessorConnectionHandler implements ConnectionHandler {
 
         private final Processor.SubContext subCtx;
         private final ConnectableConnection conn;
-        private boolean isConnected = false;
+        private final long createTime;
+        private boolean isConnected;
+        // set to true when the connection is handed over to the pool
+        private boolean released = false;
 
         private ByteArrayChannel chnl = null;
         private final BackendConnectionHandler.ByteFlow backendByteFlow = new BackendConnectionHandler.ByteFlow();
@@ -259,9 +281,20 @@ class ProcessorConnectionHandler implements ConnectionHandler {
         // set to true when processor.disconnected(...) is called, this prevents being called multiple times in exception()/closed()/removed() event handlers
         private boolean disconnectedCalled = false;
 
-        BackendConnectionHandler(Processor.SubContext subCtx, ConnectableConnection conn) {
+        BackendConnectionHandler(Processor.SubContext subCtx, ConnectableConnection conn, long createTime, boolean isConnected) {
             this.subCtx = subCtx;
             this.conn = conn;
+            this.createTime = createTime;
+            this.isConnected = isConnected;
+        }
+
+        boolean isReusable() {
+            return isConnected && !disconnectedCalled && !paused && chnl == null
+                   && !conn.isClosed() && !conn.isRemoteClosed() && !conn.isWriteClosed()
+                   && conn.getInBuffer().used() == 0 && conn.getOutBuffer().used() == 0
+                   && backendByteFlow.currentSegment == null && backendByteFlow.sendingQueue.isEmpty() && !backendByteFlow.closed
+                   && frontendByteFlow.currentSegment == null && frontendByteFlow.sendingQueue.isEmpty()
+                   && processor.reusable(topCtx, subCtx);
         }
 
         void writeToBackend(ByteArray data, Runnable callback) {
@@ -341,6 +374,10 @@ class ProcessorConnectionHandler implements ConnectionHandler {
 
         @Override
         public void connected(ConnectableConnectionHandlerContext ctx) {
+            if (isConnected) {
+                // the connection is retrieved from the pool, the data will be written when it's provided
+                return;
+            }
             isConnected = true;
             // no need to call processor.connected(...) here, it's already called when retrieving the connection
             doBackendWrite();
@@ -537,6 +574,9 @@ class ProcessorConnectionHandler implements ConnectionHandler {
 
         @Override
         public void removed(ConnectionHandlerContext ctx) {
+            if (released) {
+                return;
+            }
             if (!ctx.connection.isClosed()) {
                 Logger.error(LogType.IMPROPER_USE, "backend connection " + ctx.connection + " removed from event loop " + loop);
                 closeAll();
@@ -860,15 +900,30 @@ class ProcessorConnectionHandler implements ConnectionHandler {
             }
         }
 
+        // try to reuse an idle connection released by other sessions
+        ConnectableConnection connectableConnection = null;
+        long createTime = Config.currentTimestamp;
+        boolean reused = false;
+        if (config.backendPool != null) {
+            BackendConnectionPool.Entry pooled = config.backendPool.borrow(loop, connector.remote);
+            if (pooled != null) {
+                connectableConnection = pooled.conn;
+                createTime = pooled.createTime;
+                reused = true;
+                connectableConnection.setTimeout(config.timeout);
+            }
+        }
+
         // get a new connection
-        ConnectableConnection connectableConnection;
-        try {
-            connectableConnection = connector.connect(
-                new ConnectionOpts().setTimeout(config.timeout),
-                RingBuffer.allocateDirect(config.inBufferSize), ProxyOutputRingBuffer.allocateDirect(config.outBufferSize));
-        } catch (IOException e) {
-            Logger.fatal(LogType.CONN_ERROR, "make passive connection failed, maybe provided endpoint info is invalid", e);
-            return null;
+        if (connectableConnection == null) {
+            try {
+                connectableConnection = connector.connect(
+                    new ConnectionOpts().setTimeout(config.timeout),
+                    RingBuffer.allocateDirect(config.inBufferSize), ProxyOutputRingBuffer.allocateDirect(config.outBufferSize));
+            } catch (IOException e) {
+                Logger.fatal(LogType.CONN_ERROR, "make passive connection failed, maybe provided endpoint info is invalid", e);
+                return null;
+            }
         }
 
         // record in collections
@@ -889,7 +944,7 @@ class ProcessorConnectionHandler implements ConnectionHandler {
                 handlerPtr[0].resume();
             }
         }));
-        BackendConnectionHandler bh = new BackendConnectionHandler(subCtx, connectableConnection);
+        BackendConnectionHandler bh = new BackendConnectionHandler(subCtx, connectableConnection, createTime, reused);
         handlerPtr[0] = bh;
         recordBackend(bh, newConnId);
         // register
@@ -905,6 +960,12 @@ class ProcessorConnectionHandler implements ConnectionHandler {
             return null;
         }
 
+        if (reused) {
+            // the processor already initialized the connection
+            chosen.accept(bh.subCtx);
+            return bh;
+        }
+
         Processor.HandleTODO handleTODO = processor.connected(topCtx, bh.subCtx);
         Processor.HandleTODO.doneNoData(handleTODO);
         chosen.accept(bh.subCtx);
@@ -948,6 +1009,9 @@ class ProcessorConnectionHandler implements ConnectionHandler {
         boolean allBackendRemoteClosed = true;
         for (int i : ints) {
             BackendConnectionHandler be = conns[i];
+            if (releaseBackend(be)) {
+                continue; // idle backends are kept for other sessions instead of sending FIN
+            }
             be.conn.closeWrite();
             if (be.conn.getOutBuffer().used() != 0 || !be.conn.isRemoteClosed()) {
                 allBackendRemoteClosed = false;
@@ -989,6 +1053,9 @@ class ProcessorConnectionHandler implements ConnectionHandler {
         List<Integer> ints = new ArrayList<>(conn2intMap.values());
         for (int i : ints) {
             BackendConnectionHandler be = conns[i];
+            if (releaseBackend(be)) {
+                continue;
+            }
             removeBackend(be);
             be.conn.close();
         }
@@ -16,6 +16,7 @@ import io.vproxy.base.util.coll.Tuple;
 import io.vproxy.base.util.ringbuffer.ByteBufferRingBuffer;
 import io.vproxy.base.util.ringbuffer.ProxyOutputRingBuffer;
 import io.vproxy.base.util.ringbuffer.SSLUtils;
+import io.vproxy.base.util.ringbuffer.SpliceRingBuffer;
 import io.vproxy.base.util.ringbuffer.ssl.SSL;
 import io.vproxy.base.util.ringbuffer.ssl.SSLEngineBuilder;
 import io.vproxy.vfd.SocketFD;
@@ -111,6 +112,19 @@ public class Proxy {
                 return;
             }
 
+            if (connection.getInBuffer() instanceof SpliceRingBuffer
+                && !SpliceRingBuffer.isSupported(connectableConnection.channel)) {
+                // the connector created a backend fd which cannot be spliced
+                try {
+                    fallbackFromSplice(connection, connectableConnection);
+                } catch (IOException e) {
+                    Logger.error(LogType.SYS_ERROR, "replacing splice buffers failed", e);
+                    utilCloseSessionAndReleaseBuffers(new Session(connection, connectableConnection));
+                    connector.close();
+                    return;
+                }
+            }
+
             Session session = new Session(connection, connectableConnection);
             ConnectableConnectionHandler handler = new SessionConnectableConnectionHandler(session);
 
@@ -302,8 +316,42 @@ public class Proxy {
             }
         }
 
+        // both connections are not registered yet, so the buffers are still empty
+        private void fallbackFromSplice(Connection active, ConnectableConnection passive) throws IOException {
+            assert Logger.lowLevelDebug("backend " + passive.channel + " does not support splice, fallback to user space buffers");
+            RingBuffer in = RingBuffer.allocateDirect(config.inBufferSize);
+            RingBuffer out = RingBuffer.allocateDirect(config.outBufferSize);
+            passive.replaceBuffer(out, in, false, false);
+            // the pipes are closed here
+            active.replaceBuffer(in, out, false, true);
+        }
+
+        private Tuple<RingBuffer, RingBuffer> getSpliceBuffers(SocketFD channel) {
+            SpliceRingBuffer inBuffer = null;
+            try {
+                inBuffer = SpliceRingBuffer.open(channel, config.inBufferSize);
+                return new Tuple<>(inBuffer, SpliceRingBuffer.open(channel, config.outBufferSize));
+            } catch (IOException e) {
+                if (inBuffer != null) {
+                    inBuffer.clean();
+                }
+                Logger.warn(LogType.SYS_ERROR, "failed to open splice pipes for " + channel + ", fallback to user space buffers", e);
+                return null;
+            }
+        }
+
         @Override
         public Tuple<RingBuffer, RingBuffer> getIOBuffers(SocketFD channel) {
+            if (config.splice && config.sslContext == null
+                && config.connGen.type() == ConnectorGen.Type.direct
+                && SpliceRingBuffer.isSupported(channel)) {
+                // bytes are moved between the two sockets through pipes, and never enter the user space
+                var tup = getSpliceBuffers(channel);
+                if (tup != null) {
+                    return tup;
+                }
+            }
+
             int inBufferSize, outBufferSize;
             if (config.sslContext == null) {
                 inBufferSize = config.inBufferSize;
@@ -21,6 +21,8 @@ public class ProxyNetConfig {
 
     int inBufferSize = 128;
     int outBufferSize = 128;
+    boolean splice = false; // only effective for direct proxy without tls on linux posix fds
+    BackendConnectionPool backendPool = null; // only effective for processors
 
     VSSLContext sslContext = null;
     BiConsumer<SSLEngine, SSLParameters> sslEngineManipulator = null;
@@ -69,11 +71,21 @@ public class ProxyNetConfig {
         return this;
     }
 
+    public ProxyNetConfig setSplice(boolean splice) {
+        this.splice = splice;
+        return this;
+    }
+
     public ProxyNetConfig setTimeout(int timeout) {
         this.timeout = timeout;
         return this;
     }
 
+    public ProxyNetConfig setBackendPool(BackendConnectionPool backendPool) {
+        this.backendPool = backendPool;
+        return this;
+    }
+
     public ProxyNetConfig setSslContext(VSSLContext sslContext) {
         this.sslContext = sslContext;
         return this;
@@ -108,6 +120,14 @@ public class ProxyNetConfig {
         return outBufferSize;
     }
 
+    public boolean isSplice() {
+        return splice;
+    }
+
+    public BackendConnectionPool getBackendPool() {
+        return backendPool;
+    }
+
     public int getTimeout() {
         return timeout;
     }
@@ -1,12 +1,17 @@
 package io.vproxy.component.ssl;
 
+import io.vproxy.base.Config;
+import io.vproxy.base.util.LogType;
 import io.vproxy.base.util.Logger;
 import io.vproxy.base.util.coll.Tuple;
 import io.vproxy.base.util.ringbuffer.ssl.VSSLContext;
+import io.vproxy.openssl.OpenSSL;
+import io.vproxy.openssl.OpenSSLContext;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -89,8 +94,23 @@ public class CertKey {
         KeyManager[] km = kmf.getKeyManagers();
         // init ctx
         ctx.init(km, null, null);
+        // the jdk server session cache is shared by all engines of the ctx
+        // note: 0 means unlimited for the jdk
+        if (Config.sslSessionCacheSize > 0) {
+            ctx.getServerSessionContext().setSessionCacheSize(Config.sslSessionCacheSize);
+        }
+        ctx.getServerSessionContext().setSessionTimeout(Config.sslSessionTimeout);
 
         vsslContext.sslContextHolder.add(ctx, certs);
+
+        if (Config.useOpenSSL && OpenSSL.isSupported()) {
+            try {
+                vsslContext.useOpenSSL(ctx, OpenSSLContext.forServer(String.join("\n", this.certs), this.key)
+                    .setKTLS(Config.useKTLS));
+            } catch (SSLException e) {
+                Logger.warn(LogType.SSL_ERROR, "failed to load cert-key " + alias + " into openssl, the jdk engine will be used", e);
+            }
+        }
     }
 
     public SSLContext buildSSLContext() throws Exception {
@@ -3,6 +3,7 @@ package io.vproxy.component.svrgroup;
 import io.vproxy.base.component.svrgroup.ServerGroup;
 import io.vproxy.base.connection.Connector;
 import io.vproxy.base.processor.Hint;
+import io.vproxy.base.processor.HintIndex;
 import io.vproxy.base.util.Annotations;
 import io.vproxy.base.util.exception.AlreadyExistException;
 import io.vproxy.base.util.exception.NotFoundException;
@@ -46,6 +47,7 @@ public class Upstream {
                 annotations = new Annotations();
             }
             this.annotations = annotations;
+            rebuildHintIndex();
         }
     }
 
@@ -62,10 +64,19 @@ public class Upstream {
     public final String alias;
     private ArrayList<ServerGroupHandle> serverGroupHandles = new ArrayList<>(0);
     private WRR _wrr;
+    private volatile HintIndex<ServerGroupHandle> hintIndex;
+    private final AtomicInteger version = new AtomicInteger(0); // increased when groups, weights or annotations change
+    private final Runnable groupAnnotationsListener = this::rebuildHintIndex;
 
     public Upstream(String alias) {
         this.alias = alias;
         recalculateWRR();
+        rebuildHintIndex();
+    }
+
+    private synchronized void rebuildHintIndex() {
+        hintIndex = HintIndex.build(serverGroupHandles, h -> new Annotations[]{h.annotations, h.group.getAnnotations()});
+        version.incrementAndGet();
     }
 
     private void recalculateWRR() {
@@ -116,6 +127,7 @@ public class Upstream {
         }
 
         _wrr = wrr;
+        version.incrementAndGet();
     }
 
     private static int sum(int[] weights) {
@@ -156,6 +168,8 @@ public class Upstream {
         newLs.add(h);
         serverGroupHandles = newLs;
         recalculateWRR();
+        group.addAnnotationsListener(groupAnnotationsListener);
+        rebuildHintIndex();
         return h;
     }
 
@@ -177,27 +191,29 @@ public class Upstream {
         }
         serverGroupHandles = newLs;
         recalculateWRR();
+        group.removeAnnotationsListener(groupAnnotationsListener);
+        rebuildHintIndex();
     }
 
     public List<ServerGroupHandle> getServerGroupHandles() {
         return new ArrayList<>(serverGroupHandles);
     }
 
+    /**
+     * @return a number which changes when groups are added or removed, or when their weights or annotations change.
+     * Changes inside the groups are tracked by {@link ServerGroup#getVersion()}.
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
     public Connector next(IPPort source) {
         return next(source, null);
     }
 
     public ServerGroupHandle searchForGroup(Hint hint) {
-        int level = 0;
-        ServerGroupHandle lastMax = null;
-        for (ServerGroupHandle h : serverGroupHandles) {
-            int l = hint.matchLevel(h.annotations, h.group.getAnnotations());
-            if (l > level) {
-                level = l;
-                lastMax = h;
-            }
-        }
-        return lastMax;
+        // same result as picking the first handle with the max hint.matchLevel(h.annotations, h.group.getAnnotations())
+        return hintIndex.search(hint);
     }
 
     public Connector seek(IPPort source, Hint hint) {
@@ -0,0 +1,151 @@
+package io.vproxy.dns;
+
+import io.vproxy.base.util.coll.LRUMap;
+import io.vproxy.component.svrgroup.Upstream;
+import io.vproxy.vfd.IP;
+import io.vproxy.vpacket.dns.DNSPacket;
+import io.vproxy.vpacket.dns.DNSType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encoded responses of the queries answered by the dns server itself, keyed by the request bytes except the id.<br>
+ * The key covers the flags, the question and the additional records (e.g. edns options),
+ * so a request is only answered from the cache when it's identical to a previous one.<br>
+ * Only accessed on the event loop of the dns server.
+ */
+class DNSResponseCache {
+    private static final int MAX_ENTRIES = 4096;
+
+    private final LRUMap<Key, Entry> entries = new LRUMap<>(MAX_ENTRIES);
+    private final Key lookupKey = new Key();
+
+    Entry get(byte[] request, int len) {
+        if (len <= 2) {
+            return null;
+        }
+        lookupKey.set(request, len);
+        var e = entries.get(lookupKey);
+        lookupKey.set(null, 0);
+        return e;
+    }
+
+    void put(byte[] request, Entry entry) {
+        if (request.length <= 2) {
+            return;
+        }
+        var key = new Key();
+        key.set(request, request.length);
+        entries.put(key, entry);
+    }
+
+    void remove(byte[] request, int len) {
+        lookupKey.set(request, len);
+        entries.remove(lookupKey);
+        lookupKey.set(null, 0);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Set the id of an encoded response.
+     */
+    static void setId(byte[] response, int id) {
+        response[0] = (byte) (id >> 8);
+        response[1] = (byte) id;
+    }
+
+    static final class Entry {
+        final DNSPacket request;
+        final DNSType qtype;
+        final Upstream.ServerGroupHandle gh; // null if answered from hosts
+        final int upstreamVersion;
+        final int groupVersion;
+        final int ttl;
+        // the response if it does not depend on the chosen server
+        final byte[] response;
+        // responses of A/AAAA queries by the chosen server, the null key means no active server
+        final Map<IP, byte[]> responses;
+
+        // answered from hosts
+        Entry(DNSPacket request, DNSType qtype, int ttl, byte[] response) {
+            this.request = request;
+            this.qtype = qtype;
+            this.gh = null;
+            this.upstreamVersion = 0;
+            this.groupVersion = 0;
+            this.ttl = ttl;
+            this.response = response;
+            this.responses = null;
+        }
+
+        // answered from rrsets
+        Entry(DNSPacket request, DNSType qtype, Upstream.ServerGroupHandle gh, int upstreamVersion, int groupVersion, int ttl,
+              byte[] response, IP target) {
+            this.request = request;
+            this.qtype = qtype;
+            this.gh = gh;
+            this.upstreamVersion = upstreamVersion;
+            this.groupVersion = groupVersion;
+            this.ttl = ttl;
+            if (qtype == DNSType.SRV) {
+                this.response = response;
+                this.responses = null;
+            } else {
+                this.response = null;
+                this.responses = new HashMap<>();
+                this.responses.put(target, response);
+            }
+        }
+
+        boolean isValid(Upstream rrsets, int ttl) {
+            if (this.ttl != ttl) {
+                return false;
+            }
+            if (gh == null) {
+                return true; // the cache is cleared when hosts change
+            }
+            return upstreamVersion == rrsets.getVersion() && groupVersion == gh.group.getVersion();
+        }
+    }
+
+    private static final class Key {
+        private byte[] bytes;
+        private int len;
+        private int hash;
+
+        void set(byte[] bytes, int len) {
+            this.bytes = bytes;
+            this.len = len;
+            if (bytes == null) {
+                this.hash = 0;
+                return;
+            }
+            int h = 1;
+            for (int i = 2; i < len; ++i) {
+                h = 31 * h + bytes[i];
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return hash == key.hash && Arrays.equals(bytes, 2, len, key.bytes, 2, key.len);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
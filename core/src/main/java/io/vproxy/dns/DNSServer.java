@@ -1,6 +1,7 @@
 package io.vproxy.dns;
 
 import io.vproxy.base.Config;
+import io.vproxy.base.GlobalInspection;
 import io.vproxy.base.component.elgroup.EventLoopAttach;
 import io.vproxy.base.component.elgroup.EventLoopGroup;
 import io.vproxy.base.component.elgroup.EventLoopGroupAttach;
@@ -17,6 +18,9 @@ import io.vproxy.vpacket.dns.rdata.AAAA;
 import io.vproxy.vpacket.dns.rdata.RData;
 import io.vproxy.vpacket.dns.rdata.SRV;
 import io.vproxy.base.processor.Hint;
+import io.vproxy.base.prometheus.Counter;
+import io.vproxy.base.prometheus.GaugeF;
+import io.vproxy.base.prometheus.Metric;
 import io.vproxy.base.selector.Handler;
 import io.vproxy.base.selector.HandlerContext;
 import io.vproxy.base.util.*;
@@ -46,6 +50,11 @@ public class DNSServer {
     private Map<String, IP> hosts;
     private final ByteBuffer buffer = Utils.allocateByteBuffer(Config.udpMtu);
     private final ConcurrentHashSet<ResolvingInfoRecorder> resolvingInfoRecorders = new ConcurrentHashSet<>();
+    private final DNSResponseCache responseCache = new DNSResponseCache();
+    private final List<Metric> metrics = new ArrayList<>();
+    private Counter queryCount;
+    private Counter cacheHitCount;
+    private Counter cacheMissCount;
 
     private final ELGAttach elgAttach = new ELGAttach();
     private final ELAttach elAttach = new ELAttach();
@@ -116,7 +125,18 @@ public class DNSServer {
         resolvingInfoRecorders.remove(r);
     }
 
-    private void handleRequest(DNSPacket p, IPPort remote) {
+    /**
+     * @param raw the request bytes if the datagram only contains this packet, the response may be cached in this case
+     */
+    private void handleRequest(DNSPacket p, IPPort remote, byte[] raw) {
+        // only responses of one question answered from hosts or rrsets are cached
+        boolean cacheable = raw != null && p.questions.size() == 1;
+        // retrieve the versions before reading the servers, so that changes during the process invalidate the cache
+        int upstreamVersion = rrsets.getVersion();
+        int groupVersion = 0;
+        Upstream.ServerGroupHandle cacheGroup = null;
+        IP cacheTarget = null;
+
         Map<String, Map<DNSType, List<DNSRecord>>> addresses = new LinkedHashMap<>();
         for (DNSQuestion q : p.questions) {
             String domain = q.qname;
@@ -140,6 +160,7 @@ public class DNSServer {
                     if (gh == null) {
                         // not found in user defined rrsets
                         // try some internal queries
+                        cacheable = false;
                         if (IP.isIpLiteral(domain)) {
                             IP l3addr = IP.from(domain);
                             if ((q.qtype == DNSType.A && l3addr instanceof IPv4)
@@ -167,6 +188,8 @@ public class DNSServer {
                         runRecursive(p, remote);
                         return;
                     }
+                    cacheGroup = gh;
+                    groupVersion = gh.group.getVersion();
                     if (q.qtype == DNSType.SRV) {
                         var servers = gh.group.getServerHandles();
                         for (var svr : servers) {
@@ -189,6 +212,7 @@ public class DNSServer {
                             continue;
                         }
                         records.add(new DNSRecord(connector.remote));
+                        cacheTarget = connector.remote.getAddress();
                     }
                     break;
                 default:
@@ -197,7 +221,65 @@ public class DNSServer {
             }
         }
         // it means we can directly respond when reaches here
+        byte[] bytes = buildResponse(p, addresses).toByteArray().toJavaArray();
+        if (cacheable) {
+            DNSType qtype = p.questions.get(0).qtype;
+            DNSResponseCache.Entry entry;
+            if (cacheGroup == null) {
+                entry = new DNSResponseCache.Entry(p, qtype, ttl, bytes);
+            } else {
+                entry = new DNSResponseCache.Entry(p, qtype, cacheGroup, upstreamVersion, groupVersion, ttl, bytes, cacheTarget);
+            }
+            responseCache.put(raw, entry);
+        }
+        sendBytes(bytes, remote);
+    }
+
+    /**
+     * Respond with the cached response if the request was answered before and the answer is not changed.
+     *
+     * @return true if responded
+     */
+    private boolean respondFromCache(byte[] request, int len, IPPort remote) {
+        var entry = responseCache.get(request, len);
+        if (entry == null) {
+            return false;
+        }
+        if (!entry.isValid(rrsets, ttl)) {
+            responseCache.remove(request, len);
+            return false;
+        }
+        byte[] resp;
+        if (entry.response != null) {
+            resp = entry.response;
+        } else {
+            // still pick a server for every request, so the load balancing of the group applies
+            Connector connector;
+            if (entry.qtype == DNSType.A) {
+                connector = entry.gh.group.nextIPv4(remote);
+            } else {
+                connector = entry.gh.group.nextIPv6(remote);
+            }
+            IP target = connector == null ? null : connector.remote.getAddress();
+            resp = entry.responses.get(target);
+            if (resp == null) {
+                List<DNSRecord> records = new ArrayList<>(1);
+                if (target != null) {
+                    records.add(new DNSRecord(target));
+                }
+                Map<String, Map<DNSType, List<DNSRecord>>> addresses = new LinkedHashMap<>();
+                addresses.computeIfAbsent(entry.request.questions.get(0).qname, k -> new LinkedHashMap<>()).put(entry.qtype, records);
+                resp = buildResponse(entry.request, addresses).toByteArray().toJavaArray();
+                entry.responses.put(target, resp);
+            }
+        }
+        // only accessed on the loop thread, and the bytes are copied when sending
+        DNSResponseCache.setId(resp, ((request[0] & 0xff) << 8) | (request[1] & 0xff));
+        sendBytes(resp, remote);
+        return true;
+    }
 
+    private DNSPacket buildResponse(DNSPacket p, Map<String, Map<DNSType, List<DNSRecord>>> addresses) {
         // a map of additional A/AAAA records for srv records
         Map<String, List<IP>> additional = new LinkedHashMap<>();
 
@@ -287,7 +369,7 @@ public class DNSServer {
                 resp.additionalResources.add(r);
             }
         }
-        sendPacket(p.id, remote, resp);
+        return resp;
     }
 
     protected IP getLocalAddressFor(IPPort remote) {
@@ -367,7 +449,11 @@ public class DNSServer {
 
     protected void sendPacket(int id, IPPort remote, DNSPacket p) {
         p.id = id;
-        ByteBuffer buf = ByteBuffer.wrap(p.toByteArray().toJavaArray());
+        sendBytes(p.toByteArray().toJavaArray(), remote);
+    }
+
+    private void sendBytes(byte[] bytes, IPPort remote) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
         int len = buf.limit();
         int sent;
         try {
@@ -445,6 +531,7 @@ public class DNSServer {
             sock.setOption(StandardSocketOptions.SO_REUSEPORT, true);
         }
         sock.bind(bindAddress);
+        registerMetrics();
         loop.getSelectorEventLoop().add(sock, EventSet.read(), null, new Handler<>() {
             @Override
             public void accept(HandlerContext<DatagramFD> ctx) {
@@ -478,6 +565,12 @@ public class DNSServer {
                     if (read == 0) {
                         return;
                     }
+                    queryCount.incr(1);
+                    if (respondFromCache(buffer.array(), read, remote)) {
+                        cacheHitCount.incr(1);
+                        continue;
+                    }
+                    cacheMissCount.incr(1);
                     buffer.flip();
                     byte[] bytes = Utils.allocateByteArray(read);
                     buffer.get(bytes);
@@ -500,7 +593,7 @@ public class DNSServer {
                             runRecursive(p, remote);
                             continue;
                         }
-                        handleRequest(p, remote);
+                        handleRequest(p, remote, packets.size() == 1 ? bytes : null);
                     }
                 }
             }
@@ -523,7 +616,38 @@ public class DNSServer {
         });
 
         // start reloading hosts
-        loop.getSelectorEventLoop().period(30_000, () -> hosts = Resolver.getHosts());
+        loop.getSelectorEventLoop().period(30_000, () -> {
+            var newHosts = Resolver.getHosts();
+            if (newHosts != hosts) { // the same map is returned if the file is not modified
+                hosts = newHosts;
+                responseCache.clear();
+            }
+        });
+    }
+
+    private void registerMetrics() {
+        deregisterMetrics();
+        var inspection = GlobalInspection.getInstance();
+        inspection.registerHelpMessage("dns_server_query_count_total", "Total queries received by the dns server");
+        inspection.registerHelpMessage("dns_server_response_cache_hit_count_total", "Total queries answered from the response cache");
+        inspection.registerHelpMessage("dns_server_response_cache_miss_count_total", "Total queries not answered from the response cache");
+        inspection.registerHelpMessage("dns_server_response_cache_entry_count_current", "Current count of cached responses");
+        var labels = Map.of("dns_server", alias);
+        queryCount = inspection.addMetric("dns_server_query_count_total", labels, Counter::new);
+        cacheHitCount = inspection.addMetric("dns_server_response_cache_hit_count_total", labels, Counter::new);
+        cacheMissCount = inspection.addMetric("dns_server_response_cache_miss_count_total", labels, Counter::new);
+        metrics.add(queryCount);
+        metrics.add(cacheHitCount);
+        metrics.add(cacheMissCount);
+        metrics.add(inspection.addMetric("dns_server_response_cache_entry_count_current", labels,
+            (m, lb) -> new GaugeF(m, lb, () -> (long) responseCache.size())));
+    }
+
+    private void deregisterMetrics() {
+        for (var m : metrics) {
+            GlobalInspection.getInstance().removeMetric(m);
+        }
+        metrics.clear();
     }
 
     protected FDs getFDs() {
@@ -561,6 +685,8 @@ public class DNSServer {
         }
         loop = null;
         sock = null;
+        responseCache.clear();
+        deregisterMetrics();
         assert Logger.lowLevelDebug("dns server " + alias + " stopped");
     }
 }
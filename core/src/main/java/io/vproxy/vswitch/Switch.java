@@ -197,6 +197,7 @@ public class Switch {
         eventLoop = netLoop;
         refreshCacheEvent = eventLoop.getSelectorEventLoop().period(40_000, this::refreshCache);
         networks.values().forEach(t -> t.setLoop(loop));
+        networks.values().forEach(this::registerMetrics);
         started = true;
     }
 
@@ -215,10 +216,15 @@ public class Switch {
 
     private void stopStack() {
         for (var net : networks.values()) {
+            net.conntrack.deregisterMetrics();
             net.conntrack.destroy();
         }
     }
 
+    private void registerMetrics(VirtualNetwork net) {
+        net.conntrack.registerMetrics(Map.of("switch", alias, "vrf", "" + net.vrf));
+    }
+
     private void cancelNetworks() {
         for (var net : networks.values()) {
             net.clearCache();
@@ -311,6 +317,7 @@ public class Switch {
         }
         VirtualNetwork t = new VirtualNetwork(sw, vrf, eventLoop, v4network, v6network, macTableTimeout, arpTableTimeout, annotations);
         networks.put(vrf, t);
+        registerMetrics(t);
         return t;
     }
 
@@ -320,6 +327,7 @@ public class Switch {
             throw new NotFoundException("vrf", "" + vrf);
         }
         t.clearCache();
+        t.conntrack.deregisterMetrics();
     }
 
     public List<Iface> getIfaces() {
@@ -19,13 +19,20 @@ public class DatagramInputHandler implements Handler<DatagramFD> {
     private static final int TOTAL_LEN = SwitchUtils.TOTAL_RCV_BUF_LEN;
     private static final int PRESERVED_LEN = SwitchUtils.RCV_HEAD_PRESERVE_LEN;
 
+    private static final int BATCH = 32;
+
     private final SwitchDelegate swCtx;
-    private final ByteBuffer rcvBuf = Utils.allocateByteBuffer(TOTAL_LEN);
-    private final ByteArray raw = ByteArray.from(rcvBuf.array());
-    private final RingQueue<PacketBuffer> rcvQ = new RingQueue<>(1);
+    private final ByteBuffer[] rcvBufs = new ByteBuffer[BATCH];
+    private final ByteArray[] raws = new ByteArray[BATCH];
+    private final IPPort[] remotes = new IPPort[BATCH];
+    private final RingQueue<PacketBuffer> rcvQ = new RingQueue<>(BATCH);
 
     public DatagramInputHandler(SwitchDelegate swCtx) {
         this.swCtx = swCtx;
+        for (int i = 0; i < BATCH; ++i) {
+            rcvBufs[i] = Utils.allocateByteBuffer(TOTAL_LEN);
+            raws[i] = ByteArray.from(rcvBufs[i].array());
+        }
     }
 
     @Override
@@ -46,37 +53,52 @@ public class DatagramInputHandler implements Handler<DatagramFD> {
     private void readable0(HandlerContext<DatagramFD> ctx) {
         DatagramFD sock = ctx.getChannel();
         while (true) {
-            VProxyThread.current().newUuidDebugInfo();
-
-            rcvBuf.limit(TOTAL_LEN).position(PRESERVED_LEN);
-            IPPort remote;
+            for (int i = 0; i < BATCH; ++i) {
+                rcvBufs[i].limit(TOTAL_LEN).position(PRESERVED_LEN);
+            }
+            int n;
             try {
-                remote = sock.receive(rcvBuf);
+                n = sock.receiveBatch(rcvBufs, remotes, BATCH);
             } catch (IOException e) {
                 Logger.error(LogType.CONN_ERROR, "udp sock " + ctx.getChannel() + " got error when reading", e);
                 return;
             }
-            if (rcvBuf.position() == PRESERVED_LEN) {
+            if (n == 0) {
                 break; // nothing read, quit loop
             }
 
-            var pkb = handleNetworkAndGetPKB(remote);
-            if (pkb == null) {
-                assert Logger.lowLevelDebug("no pkb provided, ignore");
-                continue;
-            }
+            for (int i = 0; i < n; ++i) {
+                VProxyThread.current().newUuidDebugInfo();
 
-            pkb.devin.statistics.incrRxPkts();
-            if (pkb.pktBuf != null) {
-                pkb.devin.statistics.incrRxBytes(pkb.pktBuf.length());
-            }
+                if (rcvBufs[i].position() == PRESERVED_LEN) {
+                    assert Logger.lowLevelDebug("empty datagram from " + remotes[i] + ", ignore");
+                    continue;
+                }
+                var pkb = handleNetworkAndGetPKB(remotes[i], raws[i], rcvBufs[i]);
+                remotes[i] = null;
+                if (pkb == null) {
+                    assert Logger.lowLevelDebug("no pkb provided, ignore");
+                    continue;
+                }
+
+                pkb.devin.statistics.incrRxPkts();
+                if (pkb.pktBuf != null) {
+                    pkb.devin.statistics.incrRxBytes(pkb.pktBuf.length());
+                }
 
-            rcvQ.add(pkb);
-            swCtx.alertPacketsArrive(rcvQ);
+                rcvQ.add(pkb);
+            }
+            // hand the whole batch to the switch, which schedules them together
+            if (!rcvQ.isEmpty()) {
+                swCtx.alertPacketsArrive(rcvQ);
+            }
+            if (n < BATCH) {
+                break; // the socket is drained
+            }
         }
     }
 
-    private PacketBuffer handleNetworkAndGetPKB(IPPort remote) {
+    private PacketBuffer handleNetworkAndGetPKB(IPPort remote, ByteArray raw, ByteBuffer rcvBuf) {
         PacketBuffer pkb;
         assert Logger.lowLevelDebug("handle vxlan packet");
         {
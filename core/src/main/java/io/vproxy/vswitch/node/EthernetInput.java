@@ -11,6 +11,10 @@ import io.vproxy.vpacket.AbstractPacket;
 import io.vproxy.vpacket.ArpPacket;
 import io.vproxy.vpacket.IcmpPacket;
 import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.VirtualNetwork;
+import io.vproxy.vswitch.iface.Iface;
+
+import java.util.List;
 
 public class EthernetInput extends Node {
     private final NodeEgress unicastInput = new NodeEgress("unicast-input");
@@ -48,7 +52,34 @@ public class EthernetInput extends Node {
         } else {
             assert Logger.lowLevelDebug("no iface provided with this packet");
         }
+        return handleRecorded(pkb);
+    }
+
+    @Override
+    protected void handle(List<PacketBuffer> pkbs, HandleResult[] results, NodeGraphScheduler scheduler) {
+        // packets in the same vector usually come from the same hosts,
+        // the mac table is only touched when the source changes
+        VirtualNetwork lastNetwork = null;
+        Iface lastDevin = null;
+        MacAddress lastSrc = null;
+        for (int i = 0, n = pkbs.size(); i < n; ++i) {
+            scheduler.resetForNewPacket();
+            var pkb = pkbs.get(i);
+            MacAddress src = pkb.pkt.getSrc();
+            if (pkb.devin == null) {
+                assert Logger.lowLevelDebug("no iface provided with this packet");
+            } else if (pkb.network != lastNetwork || pkb.devin != lastDevin || !src.equals(lastSrc)) {
+                assert Logger.lowLevelDebug("record the mac -> iface info");
+                pkb.network.macTable.record(src, pkb.devin);
+                lastNetwork = pkb.network;
+                lastDevin = pkb.devin;
+                lastSrc = src;
+            }
+            results[i] = handleRecorded(pkb);
+        }
+    }
 
+    private HandleResult handleRecorded(PacketBuffer pkb) {
         // check whether need to refresh the arp table
         updateArpTable(pkb);
 
@@ -5,11 +5,15 @@ import io.vproxy.commons.graph.GraphBuilder;
 import io.vproxy.commons.graph.GraphNode;
 import io.vproxy.vswitch.PacketBuffer;
 
+import java.util.List;
+
 public abstract class Node extends GraphNode<Node> {
     protected static final int DEFAULT_EDGE_DISTANCE = 10_000;
     protected static final int BUILT_IN_DISTANCE_DELTA = 100;
 
     protected final NodeEgress errorDrop = new NodeEgress("error-drop");
+    // assigned when the node is added into the graph
+    int index = -1;
 
     public Node(String name) {
         super(name);
@@ -27,6 +31,15 @@ public abstract class Node extends GraphNode<Node> {
     // the code in handle() is executed in this node
     protected abstract HandleResult handle(PacketBuffer pkb, NodeGraphScheduler scheduler);
 
+    // handle all packets scheduled to this node in one call, results[i] is the result of pkbs.get(i)
+    // override this method when something can be shared between packets of the same vector
+    protected void handle(List<PacketBuffer> pkbs, HandleResult[] results, NodeGraphScheduler scheduler) {
+        for (int i = 0, n = pkbs.size(); i < n; ++i) {
+            scheduler.resetForNewPacket();
+            results[i] = handle(pkbs.get(i), scheduler);
+        }
+    }
+
     protected void fillEdges(NodeEgress egress) {
         egress.edges = getEdges(egress.name);
     }
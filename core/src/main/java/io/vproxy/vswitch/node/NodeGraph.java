@@ -6,6 +6,17 @@ public class NodeGraph extends GraphBuilder<Node> {
     public NodeGraph() {
     }
 
+    @Override
+    public GraphBuilder<Node> addNode(Node n) {
+        super.addNode(n);
+        n.index = nodes.size() - 1;
+        return this;
+    }
+
+    public int nodeCount() {
+        return nodes.size();
+    }
+
     public Node getNode(String name) {
         return nodes.get(name);
     }
@@ -5,32 +5,40 @@ import io.vproxy.base.util.coll.RingQueue;
 import io.vproxy.vswitch.PacketBuffer;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Packets are queued on the node which they are scheduled to,
+ * and each node handles all packets queued on it (at most {@link #VECTOR_SIZE}) in one call,
+ * see {@link Node#handle(List, HandleResult[], NodeGraphScheduler)}.<br>
+ * Nodes are looked up by {@link Node#index} instead of hashing.
+ */
 public class NodeGraphScheduler {
+    public static final int VECTOR_SIZE = 256;
+
     public final NodeGraph graph;
     private boolean generated = false;
     private boolean isScheduling = false;
-    private final Map<Node, RingQueue<PacketBuffer>> nextMap = new HashMap<>();
+
+    // index of node => packets to be handled by the node
+    @SuppressWarnings("unchecked")
+    private RingQueue<PacketBuffer>[] queues = new RingQueue[0];
+    // nodes which have packets queued, each node appears at most once
+    private final RingQueue<Node> pendingNodes = new RingQueue<>();
+    private boolean[] pending = new boolean[0];
+
+    private final List<PacketBuffer> vector = new ArrayList<>(VECTOR_SIZE);
+    private final HandleResult[] results = new HandleResult[VECTOR_SIZE];
 
     public NodeGraphScheduler(NodeGraph graph) {
         this.graph = graph;
     }
 
     public void schedule(PacketBuffer pkb) {
-        if (isScheduling) {
-            add(pkb);
-        } else {
-            setTrace(pkb);
-            isScheduling = true;
-            try {
-                doSchedule(pkb);
-                postHandle();
-            } finally {
-                isScheduling = false;
-            }
+        add(pkb);
+        if (!isScheduling) {
+            run();
         }
     }
 
@@ -38,17 +46,12 @@ public class NodeGraphScheduler {
         if (ls.isEmpty()) {
             return;
         }
-        if (isScheduling) {
-            for (var pkb : ls) {
-                add(pkb);
-            }
-            return;
+        for (var pkb : ls) {
+            add(pkb);
         }
-        var first = ls.get(0);
-        for (int i = 1; i < ls.size(); ++i) {
-            add(ls.get(i));
+        if (!isScheduling) {
+            run();
         }
-        schedule(first);
     }
 
     protected void packetDroppedOrStolen(PacketBuffer pkb) {
@@ -70,12 +73,26 @@ public class NodeGraphScheduler {
             return;
         }
         setTrace(pkb);
-        RingQueue<PacketBuffer> q = nextMap.get(pkb.next);
+        var next = pkb.next;
+        int index = next.index;
+        if (index < 0) {
+            throw new IllegalStateException("node " + next.name + " is not added into the graph");
+        }
+        if (index >= queues.length) {
+            int len = Math.max(graph.nodeCount(), index + 1);
+            queues = Arrays.copyOf(queues, len);
+            pending = Arrays.copyOf(pending, len);
+        }
+        var q = queues[index];
         if (q == null) {
-            q = new RingQueue<>();
-            nextMap.put(pkb.next, q);
+            q = new RingQueue<>(VECTOR_SIZE);
+            queues[index] = q;
         }
         q.add(pkb);
+        if (!pending[index]) {
+            pending[index] = true;
+            pendingNodes.add(next);
+        }
         generated = true;
     }
 
@@ -92,135 +109,77 @@ public class NodeGraphScheduler {
         return generated;
     }
 
-    private void doSchedule(PacketBuffer pkb) {
-        loop:
-        while (true) {
-            if (pkb.debugger.isDebugOn()) {
-                pkb.debugger.resetIndent();
-            }
-            var next = pkb.next;
-            if (next == null) {
-                assert Logger.lowLevelDebug("no next node for redirecting the pkb " + pkb);
-                if (pkb.debugger.isDebugOn()) {
-                    pkb.debugger.append("dropped: next node is not set");
-                    pkb.debugger.newLine();
-                }
-                packetDroppedOrStolen(pkb);
-                break;
-            }
-            assert Logger.lowLevelDebug("next node is " + next.name);
-
-            if (pkb.debugger.isDebugOn()) {
-                pkb.debugger.append("node: ").append(next.name);
-                pkb.debugger.newLine();
-            }
-
-            if (pkb.debugger.isDebugOn()) {
-                pkb.debugger.incIndent();
-                pkb.debugger.incIndent();
-            }
-            resetForNewPacket();
-            pkb.next = null;
-            var res = next.handle(pkb, this);
-            assert Logger.lowLevelDebug("handle result: " + res + ", next: " + (pkb.next == null ? "null" : pkb.next.name));
-            if (pkb.debugger.isDebugOn()) {
-                pkb.debugger.decIndent();
-                pkb.debugger.append("result: ").append(res);
-                pkb.debugger.newLine();
-            }
-            switch (res) {
-                case PASS:
-                case PICK:
-                    assert Logger.lowLevelDebug("picked");
-
-                    scheduleNextMap(next);
-                    continue;
-                case CONTINUE:
-                case DROP:
-                    assert Logger.lowLevelDebug("dropped");
-                    packetDroppedOrStolen(pkb);
-
-                    scheduleNextMap(next);
-                    break loop;
-                case STOLEN:
-                    assert Logger.lowLevelDebug("stolen");
-                    packetDroppedOrStolen(pkb);
-
-                    scheduleNextMap(next);
-                    break loop;
+    private void run() {
+        isScheduling = true;
+        try {
+            Node node;
+            while ((node = pendingNodes.poll()) != null) {
+                handleVector(node);
             }
+        } finally {
+            isScheduling = false;
         }
     }
 
-    private void scheduleNextMap(Node next) {
-        var q = nextMap.get(next);
-        if (q == null || q.isEmpty()) {
-            return;
-        }
+    private void handleVector(Node node) {
+        var q = queues[node.index];
         PacketBuffer pkb;
-        while ((pkb = q.poll()) != null) {
+        while (vector.size() < VECTOR_SIZE && (pkb = q.poll()) != null) {
+            assert Logger.lowLevelDebug("next node is " + node.name);
             if (pkb.debugger.isDebugOn()) {
                 pkb.debugger.resetIndent();
-                pkb.debugger.append("node: ").append(next.name);
+                pkb.debugger.append("node: ").append(node.name);
                 pkb.debugger.newLine();
                 pkb.debugger.incIndent();
                 pkb.debugger.incIndent();
             }
-            resetForNewPacket();
             pkb.next = null;
-            var res = next.handle(pkb, this);
-            assert Logger.lowLevelDebug("handle result: " + res + ", next: " + (pkb.next == null ? "null" : pkb.next.name));
-            if (pkb.debugger.isDebugOn()) {
-                pkb.debugger.decIndent();
-                pkb.debugger.append("result: ").append(res);
-                pkb.debugger.newLine();
-            }
-            switch (res) {
-                case PASS:
-                case PICK:
-                    assert Logger.lowLevelDebug("picked");
-                    if (pkb.next == null) {
-                        assert Logger.lowLevelDebug("no next node for redirecting the pkb " + pkb);
-                        if (pkb.debugger.isDebugOn()) {
-                            pkb.debugger.append("dropped: next node is not set");
-                            pkb.debugger.newLine();
-                        }
-                        packetDroppedOrStolen(pkb);
-                    } else {
+            vector.add(pkb);
+        }
+        // the node is handled again later if too many packets are queued
+        if (q.isEmpty()) {
+            pending[node.index] = false;
+        } else {
+            pendingNodes.add(node);
+        }
+
+        int n = vector.size();
+        try {
+            node.handle(vector, results, this);
+            for (int i = 0; i < n; ++i) {
+                pkb = vector.get(i);
+                var res = results[i];
+                assert Logger.lowLevelDebug("handle result: " + res + ", next: " + (pkb.next == null ? "null" : pkb.next.name));
+                if (pkb.debugger.isDebugOn()) {
+                    pkb.debugger.decIndent();
+                    pkb.debugger.append("result: ").append(res);
+                    pkb.debugger.newLine();
+                }
+                switch (res) {
+                    case PASS:
+                    case PICK:
+                        assert Logger.lowLevelDebug("picked");
                         add(pkb);
-                    }
-                    continue;
-                case CONTINUE:
-                case DROP:
-                    assert Logger.lowLevelDebug("dropped");
-                    packetDroppedOrStolen(pkb);
-                    break;
-                case STOLEN:
-                    assert Logger.lowLevelDebug("stolen");
-                    packetDroppedOrStolen(pkb);
-                    break;
+                        break;
+                    case CONTINUE:
+                    case DROP:
+                        assert Logger.lowLevelDebug("dropped");
+                        packetDroppedOrStolen(pkb);
+                        break;
+                    case STOLEN:
+                        assert Logger.lowLevelDebug("stolen");
+                        packetDroppedOrStolen(pkb);
+                        break;
+                }
             }
+        } finally {
+            vector.clear();
+            Arrays.fill(results, 0, n, null);
         }
     }
 
-    private void resetForNewPacket() {
+    // must be called before handling each packet
+    void resetForNewPacket() {
         generated = false;
     }
-
-    private void postHandle() {
-        while (true) {
-            var handled = false;
-            for (var q : new ArrayList<>(nextMap.values())) {
-                var pkb = q.poll();
-                if (pkb == null) {
-                    continue;
-                }
-                doSchedule(pkb);
-                handled = true;
-            }
-            if (!handled) {
-                break;
-            }
-        }
-    }
 }
@@ -6,8 +6,12 @@ import io.vproxy.commons.graph.GraphBuilder;
 import io.vproxy.vfd.IPPort;
 import io.vproxy.vpacket.PartialPacket;
 import io.vproxy.vpacket.TcpPacket;
+import io.vproxy.vpacket.conntrack.tcp.TcpEntry;
 import io.vproxy.vpacket.conntrack.tcp.TcpListenEntry;
 import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.VirtualNetwork;
+
+import java.util.List;
 
 public class TcpInput extends Node {
     private final NodeEgress tcpReset = new NodeEgress("tcp-reset");
@@ -46,13 +50,49 @@ public class TcpInput extends Node {
 
         var ipPkt = pkb.ipPkt;
         var tcpPkt = (TcpPacket) ipPkt.getPacket();
-        IPPort src = tcpPkt.getSrc(ipPkt);
-        IPPort dst = tcpPkt.getDst(ipPkt);
-        var tcpEntry = pkb.network.conntrack.lookupTcp(src, dst);
+        return handleLookedUp(pkb, tcpPkt, pkb.network.conntrack.lookupTcp(ipPkt, tcpPkt));
+    }
+
+    @Override
+    protected void handle(List<PacketBuffer> pkbs, HandleResult[] results, NodeGraphScheduler scheduler) {
+        // packets of the same connection usually arrive in a row,
+        // reuse the conntrack entry instead of looking up again
+        TcpEntry last = null;
+        VirtualNetwork lastNetwork = null;
+        for (int i = 0, n = pkbs.size(); i < n; ++i) {
+            scheduler.resetForNewPacket();
+            var pkb = pkbs.get(i);
+            if (last != null && pkb.network == lastNetwork
+                && !pkb.ensurePartialPacketParsed(PartialPacket.LEVEL_HANDLED_FIELDS)
+                && isSameFlow(pkb, last)) {
+                results[i] = handleLookedUp(pkb, (TcpPacket) pkb.ipPkt.getPacket(), last);
+                continue;
+            }
+            results[i] = handle(pkb, scheduler);
+            if (pkb.tcp != null) {
+                last = pkb.tcp;
+                lastNetwork = pkb.network;
+            }
+        }
+    }
+
+    private static boolean isSameFlow(PacketBuffer pkb, TcpEntry entry) {
+        var ipPkt = pkb.ipPkt;
+        var tcpPkt = (TcpPacket) ipPkt.getPacket();
+        return tcpPkt.getSrcPort() == entry.remote.getPort()
+            && tcpPkt.getDstPort() == entry.local.getPort()
+            && ipPkt.getSrc().ipEquals(entry.remote.getAddress())
+            && ipPkt.getDst().ipEquals(entry.local.getAddress());
+    }
+
+    private HandleResult handleLookedUp(PacketBuffer pkb, TcpPacket tcpPkt, TcpEntry tcpEntry) {
+        var ipPkt = pkb.ipPkt;
         if (tcpEntry != null) {
             pkb.tcp = tcpEntry;
         } else if (tcpPkt.getFlags() == Consts.TCP_FLAGS_SYN) {
             // only consider the packets with only SYN on it
+            IPPort src = tcpPkt.getSrc(ipPkt);
+            IPPort dst = tcpPkt.getDst(ipPkt);
             var listenEntry = pkb.network.conntrack.lookupTcpListen(dst);
             if (listenEntry == null) {
                 assert Logger.lowLevelDebug("no tcp entry nor tcp listen entry found");
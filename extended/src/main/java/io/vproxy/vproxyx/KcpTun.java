@@ -21,11 +21,13 @@ import java.io.IOException;
 
 public class KcpTun {
     private static final String HELP_STR = "" +
-        "vproxy kcptun usage: mode {client|server} bind {port} target {host:port} [fast=1|2|3|4]" +
+        "vproxy kcptun usage: mode {client|server} bind {port} target {host:port} [fast=1|2|3|4] [flowctl on|off]" +
         "\n\t\tmode                     Run kcptun client or server" +
         "\n\t\tbind                     The listening port. TCP+localhost for client, UDP+any for server" +
         "\n\t\ttarget                   The target endpoint. KcpTun server for client, TCP endpoint for server" +
         "\n\t\tfast                     The retransmission speed" +
+        "\n\t\tflowctl                  Client only, whether to enable per-stream flow control, default off." +
+        "\n\t\t                         The server must be of a version which supports it" +
         "";
 
     public static void main0(String[] args) throws Exception {
@@ -33,6 +35,7 @@ public class KcpTun {
         String bindStr = "";
         String targetStr = "";
         String fastStr = "";
+        String flowctlStr = "";
         for (int i = 0; i < args.length; ++i) {
             String arg = args[i];
             String next = (args.length > i + 1) ? args[i + 1] : null;
@@ -69,6 +72,13 @@ public class KcpTun {
                     fastStr = next;
                     ++i;
                     break;
+                case "flowctl":
+                    if (next == null) {
+                        throw new Exception("`flowctl` should be followed with `on` or `off`");
+                    }
+                    flowctlStr = next;
+                    ++i;
+                    break;
                 default:
                     throw new Exception("unknown parameter " + arg);
             }
@@ -77,6 +87,7 @@ public class KcpTun {
         bindStr = bindStr.trim();
         targetStr = targetStr.trim();
         fastStr = fastStr.trim();
+        flowctlStr = flowctlStr.trim();
         if (modeStr.isEmpty()) {
             throw new Exception("`mode` should be set");
         }
@@ -89,11 +100,15 @@ public class KcpTun {
         if (fastStr.isEmpty()) {
             fastStr = "4";
         }
+        if (flowctlStr.isEmpty()) {
+            flowctlStr = "off";
+        }
 
         boolean isServer;
         int port;
         IPPort target;
         KCPFDs kcpFDs;
+        boolean flowctl;
         {
             if (modeStr.equals("client")) {
                 isServer = false;
@@ -144,12 +159,22 @@ public class KcpTun {
             } else {
                 kcpFDs = KCPFDs.getDefault();
             }
+            if (flowctlStr.equals("on")) {
+                flowctl = true;
+            } else if (flowctlStr.equals("off")) {
+                flowctl = false;
+            } else {
+                throw new Exception("invalid value for `flowctl`");
+            }
         }
 
         System.out.println("mode:   " + (isServer ? "server" : "client"));
         System.out.println("bind:   " + port);
         System.out.println("target: " + target);
         System.out.println("fast:   " + fastStr);
+        if (!isServer) {
+            System.out.println("flowctl: " + flowctlStr);
+        }
 
         SelectorEventLoop sLoop = SelectorEventLoop.open();
         NetEventLoop loop = new NetEventLoop(sLoop);
@@ -168,7 +193,7 @@ public class KcpTun {
             ServerSock.checkBind(local);
             sock = ServerSock.create(local);
             // connect to remote server using kcptun
-            H2StreamedClientFDs fds = new H2StreamedClientFDs(kcpFDs, sLoop, target);
+            H2StreamedClientFDs fds = new H2StreamedClientFDs(kcpFDs, sLoop, target, flowctl);
             connectorGen = (v, hint) -> {
                 ConnectableConnection conn;
                 try {
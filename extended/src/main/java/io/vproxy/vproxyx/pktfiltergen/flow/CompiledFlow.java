@@ -0,0 +1,394 @@
+package io.vproxy.vproxyx.pktfiltergen.flow;
+
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.Consts;
+import io.vproxy.base.util.Utils;
+import io.vproxy.base.util.bitwise.BitwiseIntMatcher;
+import io.vproxy.base.util.bitwise.BitwiseMatcher;
+import io.vproxy.base.util.misc.IntMatcher;
+import io.vproxy.base.util.net.PortPool;
+import io.vproxy.base.util.net.SNatIPPortPool;
+import io.vproxy.base.util.ratelimit.RateLimiter;
+import io.vproxy.base.util.ratelimit.SimpleRateLimiter;
+import io.vproxy.vfd.IPv4;
+import io.vproxy.vfd.IPv6;
+import io.vproxy.vpacket.*;
+import io.vproxy.vproxyx.pktfiltergen.IfaceHolder;
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.PacketFilterHelper;
+import io.vproxy.vswitch.plugin.FilterResult;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A flow prepared for the {@link FlowClassifier}.<br>
+ * The fields which can be hashed are converted into masked {@link FlowKey} dimensions,
+ * the others (e.g. port ranges, ct_state) are only checked by {@link #matches(PacketFilterHelper, PacketBuffer)},
+ * which is always called after a hash lookup hits.<br>
+ * The conditions and actions are the same as the code generated by {@link Flows#gen(String)},
+ * except that packets of unexpected types do not match instead of throwing exceptions.
+ */
+final class CompiledFlow {
+    final Flow flow;
+    final int order; // index in the table, smaller is preferred
+    final long[] masks = new long[FlowKey.DIMENSIONS];
+    final long[] values = new long[FlowKey.DIMENSIONS];
+    final LongAdder hits = new LongAdder();
+
+    private final IfaceHolder inPort;
+    private final boolean needsEther;
+    private final boolean needsArp;
+    private final boolean needsIp;
+    private final boolean needsTransport;
+    private Step[] steps;
+
+    interface Step {
+        /**
+         * @return null to continue with the next step
+         */
+        FilterResult execute(PacketFilterHelper helper, PacketBuffer pkb);
+    }
+
+    CompiledFlow(Flow flow, int order, Function<String, IfaceHolder> ifaces) throws Exception {
+        this.flow = flow;
+        this.order = order;
+
+        var m = flow.matcher;
+        if (m.predicate != null) {
+            throw new Exception("predicate is not supported by the flow classifier: " + flow);
+        }
+        for (var action : flow.actions) {
+            // implemented by subclasses of the generated filter
+            if (action.run != null || action.invoke != null) {
+                throw new Exception(action + " is not supported by the flow classifier: " + flow);
+            }
+        }
+        if (m.in_port != null) {
+            inPort = ifaces.apply(m.in_port);
+            set(FlowKey.IN_PORT, FlowKey.inPortValue(m.in_port), -1L);
+        } else {
+            inPort = null;
+        }
+        set(FlowKey.DL_DST_HI, m.dl_dst);
+        set(FlowKey.DL_SRC_HI, m.dl_src);
+        if (m.dl_type != 0) {
+            set(FlowKey.DL_TYPE, m.dl_type, -1L);
+        }
+        if (m.arp_op != 0) {
+            set(FlowKey.ARP_OP, m.arp_op, -1L);
+        }
+        set(FlowKey.ARP_SPA_HI, m.arp_spa);
+        set(FlowKey.ARP_TPA_HI, m.arp_tpa);
+        set(FlowKey.ARP_SHA_HI, m.arp_sha);
+        set(FlowKey.ARP_THA_HI, m.arp_tha);
+        set(FlowKey.NW_SRC_HI, m.nw_src);
+        set(FlowKey.NW_DST_HI, m.nw_dst);
+        if (m.nw_proto != 0) {
+            set(FlowKey.NW_PROTO, m.nw_proto, -1L);
+        }
+        set(FlowKey.TP_SRC, m.tp_src);
+        set(FlowKey.TP_DST, m.tp_dst);
+        if (m.vrf != 0) {
+            set(FlowKey.VRF, m.vrf, -1L);
+        }
+
+        needsArp = m.arp_op != 0 || m.arp_spa != null || m.arp_tpa != null || m.arp_sha != null || m.arp_tha != null;
+        needsTransport = m.tp_src != null || m.tp_dst != null;
+        needsIp = needsTransport || m.nw_src != null || m.nw_dst != null || m.nw_proto != 0;
+        needsEther = needsArp || needsIp || m.dl_dst != null || m.dl_src != null || m.dl_type != 0;
+    }
+
+    private void set(int dim, long value, long mask) {
+        masks[dim] = mask;
+        values[dim] = value & mask;
+    }
+
+    private void set(int hiDim, BitwiseMatcher matcher) {
+        if (matcher == null) {
+            return;
+        }
+        ByteArray bytes = matcher.getMatcher();
+        ByteArray mask = matcher.getMask();
+        if (bytes.length() != mask.length() || bytes.length() > 16) {
+            return; // not hashable, only checked by matches()
+        }
+        set(hiDim, FlowKey.high(bytes), FlowKey.high(mask));
+        set(hiDim + 1, FlowKey.low(bytes), FlowKey.low(mask));
+    }
+
+    // ports are 16 bits
+    private void set(int dim, IntMatcher matcher) {
+        if (matcher instanceof BitwiseIntMatcher b) {
+            set(dim, b.getMatcher(), b.getMask() & 0xffffL);
+        } else if (matcher instanceof PortPool pool) {
+            // a single port is also parsed into a pool
+            String s = pool.serialize();
+            if (Utils.isInteger(s)) {
+                set(dim, Integer.parseInt(s), 0xffffL);
+            }
+        }
+    }
+
+    boolean matches(PacketFilterHelper helper, PacketBuffer pkb) {
+        var m = flow.matcher;
+        if (inPort != null && (pkb.devin == null || pkb.devin != inPort.iface)) {
+            return false;
+        }
+        if (needsEther) {
+            if (!matchesPacket(pkb)) {
+                return false;
+            }
+        }
+        if (m.ct_state != null) {
+            boolean tracked = helper.isNatTracked(pkb);
+            if (m.ct_state.contains("+trk") != tracked) {
+                return false;
+            }
+        }
+        if (m.vrf != 0) {
+            return pkb.network != null && pkb.network.vrf == m.vrf;
+        }
+        return true;
+    }
+
+    private boolean matchesPacket(PacketBuffer pkb) {
+        var m = flow.matcher;
+        var ether = pkb.pkt;
+        if (ether == null) {
+            return false;
+        }
+        if (m.dl_dst != null && !m.dl_dst.match(ether.getDst())) {
+            return false;
+        }
+        if (m.dl_src != null && !m.dl_src.match(ether.getSrc())) {
+            return false;
+        }
+        var pkt = ether.getPacket();
+        if (m.dl_type != 0) {
+            if (ether.getType() != m.dl_type) {
+                return false;
+            }
+            if (m.dl_type == Consts.ETHER_TYPE_IPv4 && !(pkt instanceof Ipv4Packet)) {
+                return false;
+            }
+            if (m.dl_type == Consts.ETHER_TYPE_IPv6 && !(pkt instanceof Ipv6Packet)) {
+                return false;
+            }
+        }
+        if (needsArp) {
+            if (!(pkt instanceof ArpPacket arp)) {
+                return false;
+            }
+            if (m.arp_op != 0 && arp.getOpcode() != m.arp_op) {
+                return false;
+            }
+            if (m.arp_spa != null && !m.arp_spa.match(arp.getSenderIp())) {
+                return false;
+            }
+            if (m.arp_tpa != null && !m.arp_tpa.match(arp.getTargetIp())) {
+                return false;
+            }
+            if (m.arp_sha != null && !m.arp_sha.match(arp.getSenderMac())) {
+                return false;
+            }
+            if (m.arp_tha != null && !m.arp_tha.match(arp.getTargetMac())) {
+                return false;
+            }
+        }
+        if (needsIp) {
+            if (!(pkt instanceof AbstractIpPacket ip)) {
+                return false;
+            }
+            if (m.nw_src != null && !m.nw_src.match(ip.getSrc())) {
+                return false;
+            }
+            if (m.nw_dst != null && !m.nw_dst.match(ip.getDst())) {
+                return false;
+            }
+            if (m.nw_proto != 0 && ip.getProtocol() != m.nw_proto) {
+                return false;
+            }
+            if (needsTransport) {
+                int src;
+                int dst;
+                if (m.nw_proto == Consts.IP_PROTOCOL_UDP) {
+                    if (!(ip.getPacket() instanceof UdpPacket udp)) {
+                        return false;
+                    }
+                    src = udp.getSrcPort();
+                    dst = udp.getDstPort();
+                } else {
+                    if (!(ip.getPacket() instanceof TcpPacket tcp)) {
+                        return false;
+                    }
+                    src = tcp.getSrcPort();
+                    dst = tcp.getDstPort();
+                }
+                if (m.tp_src != null && !m.tp_src.match(src)) {
+                    return false;
+                }
+                //noinspection RedundantIfStatement
+                if (m.tp_dst != null && !m.tp_dst.match(dst)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    FilterResult execute(PacketFilterHelper helper, PacketBuffer pkb) {
+        hits.increment();
+        for (var step : steps) {
+            var res = step.execute(helper, pkb);
+            if (res != null) {
+                return res;
+            }
+        }
+        return FilterResult.DROP;
+    }
+
+    void compileActions(Map<Integer, FlowTable> tables, Function<String, IfaceHolder> ifaces) {
+        var actions = flow.actions;
+        var last = actions.get(actions.size() - 1);
+        // same as the generated code: when the only terminating action is the last output, the packet is redirected
+        boolean redirect = last.output != null;
+        for (int i = 0; i < actions.size() - 1; ++i) {
+            if (actions.get(i).allowTerminating()) {
+                redirect = false;
+                break;
+            }
+        }
+        steps = new Step[actions.size()];
+        for (int i = 0; i < actions.size(); ++i) {
+            var action = actions.get(i);
+            if (redirect && action == last) {
+                var holder = ifaces.apply(action.output);
+                steps[i] = (helper, pkb) -> helper.redirect(pkb, holder.iface);
+            } else {
+                steps[i] = compileAction(action, tables, ifaces);
+            }
+        }
+    }
+
+    private Step compileAction(FlowAction action, Map<Integer, FlowTable> tables, Function<String, IfaceHolder> ifaces) {
+        if (action.normal) {
+            return (helper, pkb) -> FilterResult.PASS;
+        } else if (action.drop) {
+            return (helper, pkb) -> FilterResult.DROP;
+        } else if (action.tx) {
+            return (helper, pkb) -> FilterResult.TX;
+        } else if (action.l3tx) {
+            return (helper, pkb) -> FilterResult.L3_TX;
+        } else if (action.l4tx) {
+            return (helper, pkb) -> FilterResult.L4_TX;
+        } else if (action.table != 0) {
+            var table = tables.get(action.table);
+            return table::handle;
+        } else if (action.mod_dl_dst != null) {
+            var mac = action.mod_dl_dst;
+            return (helper, pkb) -> {
+                pkb.pkt.setDst(mac);
+                return null;
+            };
+        } else if (action.mod_dl_src != null) {
+            var mac = action.mod_dl_src;
+            return (helper, pkb) -> {
+                pkb.pkt.setSrc(mac);
+                return null;
+            };
+        } else if (action.mod_nw_src != null) {
+            var ip = action.mod_nw_src;
+            return (helper, pkb) -> {
+                var pkt = pkb.pkt.getPacket();
+                if (ip instanceof IPv4 v4 && pkt instanceof Ipv4Packet ipPkt) {
+                    ipPkt.setSrc(v4);
+                } else if (ip instanceof IPv6 v6 && pkt instanceof Ipv6Packet ipPkt) {
+                    ipPkt.setSrc(v6);
+                }
+                return null;
+            };
+        } else if (action.mod_nw_dst != null) {
+            var ip = action.mod_nw_dst;
+            return (helper, pkb) -> {
+                var pkt = pkb.pkt.getPacket();
+                if (ip instanceof IPv4 v4 && pkt instanceof Ipv4Packet ipPkt) {
+                    ipPkt.setDst(v4);
+                } else if (ip instanceof IPv6 v6 && pkt instanceof Ipv6Packet ipPkt) {
+                    ipPkt.setDst(v6);
+                }
+                return null;
+            };
+        } else if (action.mod_tp_src != 0) {
+            int port = action.mod_tp_src;
+            return (helper, pkb) -> {
+                var pkt = transport(pkb);
+                if (pkt instanceof TcpPacket tcp) {
+                    tcp.setSrcPort(port);
+                } else if (pkt instanceof UdpPacket udp) {
+                    udp.setSrcPort(port);
+                }
+                return null;
+            };
+        } else if (action.mod_tp_dst != 0) {
+            int port = action.mod_tp_dst;
+            return (helper, pkb) -> {
+                var pkt = transport(pkb);
+                if (pkt instanceof TcpPacket tcp) {
+                    tcp.setDstPort(port);
+                } else if (pkt instanceof UdpPacket udp) {
+                    udp.setDstPort(port);
+                }
+                return null;
+            };
+        } else if (action.output != null) {
+            var holder = ifaces.apply(action.output);
+            return (helper, pkb) -> {
+                helper.sendPacket(pkb, holder.iface);
+                return null;
+            };
+        } else if (action.log != null) {
+            var log = action.log;
+            return (helper, pkb) -> {
+                helper.log(pkb, log);
+                return null;
+            };
+        } else if (action.limit_bps != 0) {
+            long bps = action.limit_bps;
+            RateLimiter rl = new SimpleRateLimiter(bps, bps / 1000 + (bps % 1000 == 0 ? 0 : 1));
+            return (helper, pkb) -> helper.ratelimitByBitsPerSecond(pkb, rl) ? null : FilterResult.DROP;
+        } else if (action.limit_pps != 0) {
+            long pps = action.limit_pps;
+            RateLimiter rl = new SimpleRateLimiter(pps, pps / 1000 + (pps % 1000 == 0 ? 0 : 1));
+            return (helper, pkb) -> helper.ratelimitByPacketsPerSecond(pkb, rl) ? null : FilterResult.DROP;
+        } else if (action.nat) {
+            return (helper, pkb) -> helper.executeNat(pkb) ? null : FilterResult.DROP;
+        } else if (action.dnat != null) {
+            var dst = action.dnat;
+            return (helper, pkb) -> helper.executeDNat(pkb, dst) ? null : FilterResult.DROP;
+        } else if (action.snat != null) {
+            // each filter owns its pools, the same as the generated fields
+            var pool = new SNatIPPortPool(action.snat.serialize());
+            return (helper, pkb) -> helper.executeSNat(pkb, pool) ? null : FilterResult.DROP;
+        } else if (action.fnat != null) {
+            var pool = new SNatIPPortPool(action.fnat._1.serialize());
+            var dst = action.fnat._2;
+            return (helper, pkb) -> helper.executeFNat(pkb, pool, dst) ? null : FilterResult.DROP;
+        } else {
+            throw new IllegalStateException("cannot compile " + action);
+        }
+    }
+
+    private static AbstractPacket transport(PacketBuffer pkb) {
+        if (pkb.pkt.getPacket() instanceof AbstractIpPacket ip) {
+            return ip.getPacket();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return flow.toString();
+    }
+}
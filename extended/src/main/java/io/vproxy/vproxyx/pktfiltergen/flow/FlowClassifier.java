@@ -0,0 +1,107 @@
+package io.vproxy.vproxyx.pktfiltergen.flow;
+
+import io.vproxy.vproxyx.pktfiltergen.IfaceHolder;
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.PacketFilterHelper;
+import io.vproxy.vswitch.plugin.FilterResult;
+
+import java.util.*;
+
+/**
+ * Classify packets with flows in process, without generating and compiling the filter source code.<br>
+ * Each table is searched by {@link FlowTable}, the result and the actions are the same as the filter
+ * generated by {@link Flows#gen(String)}. Flows using {@code predicate}, {@code run} or {@code invoke}
+ * are not supported because they are implemented by subclasses of the generated filter.<br>
+ * The classifier is immutable except the hit counters, build a new one when flows change and swap it.
+ */
+public class FlowClassifier {
+    private final List<Flow> flows;
+    private final CompiledFlow[] compiledFlows;
+    private final Map<Integer, FlowTable> tables = new HashMap<>();
+    private final FlowTable table0;
+    private final Map<String, IfaceHolder> ifaces = new LinkedHashMap<>();
+
+    FlowClassifier(List<Flow> flows) throws Exception {
+        this.flows = List.copyOf(flows);
+        this.compiledFlows = new CompiledFlow[flows.size()];
+
+        // flows are sorted by table and priority
+        Map<Integer, List<CompiledFlow>> tableFlows = new LinkedHashMap<>();
+        for (int i = 0; i < flows.size(); ++i) {
+            var flow = flows.get(i);
+            var list = tableFlows.computeIfAbsent(flow.table, _ -> new ArrayList<>());
+            var f = new CompiledFlow(flow, list.size(), this::ifaceHolder);
+            list.add(f);
+            compiledFlows[i] = f;
+        }
+        for (var e : tableFlows.entrySet()) {
+            tables.put(e.getKey(), new FlowTable(e.getKey(), e.getValue()));
+        }
+        for (var f : compiledFlows) {
+            f.compileActions(tables, this::ifaceHolder);
+        }
+        table0 = tables.get(0);
+    }
+
+    private IfaceHolder ifaceHolder(String name) {
+        return ifaces.computeIfAbsent(name, n -> new IfaceHolder(n, null));
+    }
+
+    /**
+     * Handle an ingress packet, starting from table 0.
+     */
+    public FilterResult handle(PacketFilterHelper helper, PacketBuffer pkb) {
+        if (table0 == null) {
+            return FilterResult.DROP;
+        }
+        return table0.handle(helper, pkb);
+    }
+
+    /**
+     * Find the flow matching the packet in the table, actions are not executed.
+     *
+     * @return null if no flow matches
+     */
+    public Flow lookup(PacketFilterHelper helper, PacketBuffer pkb, int table) {
+        var t = tables.get(table);
+        if (t == null) {
+            return null;
+        }
+        var f = t.lookup(helper, pkb);
+        return f == null ? null : f.flow;
+    }
+
+    /**
+     * Same as {@link #lookup(PacketFilterHelper, PacketBuffer, int)}, but checks flows one by one.
+     */
+    public Flow lookupLinear(PacketFilterHelper helper, PacketBuffer pkb, int table) {
+        var t = tables.get(table);
+        if (t == null) {
+            return null;
+        }
+        var f = t.lookupLinear(helper, pkb);
+        return f == null ? null : f.flow;
+    }
+
+    /**
+     * The ifaces used by in_port and output, {@link IfaceHolder#iface} should be set by the caller.
+     */
+    public Collection<IfaceHolder> getIfaceHolders() {
+        return Collections.unmodifiableCollection(ifaces.values());
+    }
+
+    /**
+     * @return flows sorted by table and priority
+     */
+    public List<Flow> getFlows() {
+        return flows;
+    }
+
+    /**
+     * @param index index of the flow in {@link #getFlows()}
+     * @return how many packets are handled by the flow
+     */
+    public long getHitCount(int index) {
+        return compiledFlows[index].hits.sum();
+    }
+}
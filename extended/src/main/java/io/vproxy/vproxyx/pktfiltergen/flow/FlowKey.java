@@ -0,0 +1,157 @@
+package io.vproxy.vproxyx.pktfiltergen.flow;
+
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.vpacket.*;
+import io.vproxy.vswitch.PacketBuffer;
+
+/**
+ * Packet fields used by the {@link FlowClassifier} for hashing, each field (dimension) is stored as a long.<br>
+ * Bitwise fields (mac and ip) are right-aligned into two dimensions (HI and LO),
+ * which is consistent with {@link io.vproxy.base.util.bitwise.BitwiseMatcher#match(ByteArray)}:
+ * bytes are compared from the tail, and missing leading bytes are considered as zero.<br>
+ * A dimension is absent when the packet does not carry the field, no flow matching the field can match the packet.
+ */
+final class FlowKey {
+    static final int IN_PORT = 0;
+    static final int DL_DST_HI = 1;
+    static final int DL_DST_LO = 2;
+    static final int DL_SRC_HI = 3;
+    static final int DL_SRC_LO = 4;
+    static final int DL_TYPE = 5;
+    static final int ARP_OP = 6;
+    static final int ARP_SPA_HI = 7;
+    static final int ARP_SPA_LO = 8;
+    static final int ARP_TPA_HI = 9;
+    static final int ARP_TPA_LO = 10;
+    static final int ARP_SHA_HI = 11;
+    static final int ARP_SHA_LO = 12;
+    static final int ARP_THA_HI = 13;
+    static final int ARP_THA_LO = 14;
+    static final int NW_SRC_HI = 15;
+    static final int NW_SRC_LO = 16;
+    static final int NW_DST_HI = 17;
+    static final int NW_DST_LO = 18;
+    static final int NW_PROTO = 19;
+    static final int TP_SRC = 20;
+    static final int TP_DST = 21;
+    static final int VRF = 22;
+    static final int DIMENSIONS = 23;
+
+    private static final int ETHER_DIMS = bits(DL_DST_HI, DL_DST_LO, DL_SRC_HI, DL_SRC_LO, DL_TYPE);
+    private static final int ARP_DIMS = bits(ARP_OP, ARP_SPA_HI, ARP_SPA_LO, ARP_TPA_HI, ARP_TPA_LO,
+        ARP_SHA_HI, ARP_SHA_LO, ARP_THA_HI, ARP_THA_LO);
+    private static final int IP_DIMS = bits(NW_SRC_HI, NW_SRC_LO, NW_DST_HI, NW_DST_LO, NW_PROTO);
+    private static final int TP_DIMS = bits(TP_SRC, TP_DST);
+
+    final long[] values = new long[DIMENSIONS];
+    private int present; // bitset of dimensions
+
+    private FlowKey() {
+    }
+
+    boolean has(int dim) {
+        return (present & (1 << dim)) != 0;
+    }
+
+    private static int bits(int... dims) {
+        int n = 0;
+        for (int d : dims) {
+            n |= 1 << d;
+        }
+        return n;
+    }
+
+    /**
+     * @param dims bitset of dimensions to extract, other dimensions are left absent
+     */
+    static FlowKey extract(PacketBuffer pkb, int dims) {
+        var key = new FlowKey();
+        if ((dims & (1 << IN_PORT)) != 0 && pkb.devin != null) {
+            key.set(IN_PORT, inPortValue(pkb.devin.name()));
+        }
+        if ((dims & (1 << VRF)) != 0 && pkb.network != null) {
+            key.set(VRF, pkb.network.vrf);
+        }
+        if ((dims & (ETHER_DIMS | ARP_DIMS | IP_DIMS | TP_DIMS)) == 0) {
+            return key;
+        }
+        var ether = pkb.pkt;
+        if (ether == null) {
+            return key;
+        }
+        if ((dims & ETHER_DIMS) != 0) {
+            key.set(DL_DST_HI, ether.getDst().bytes);
+            key.set(DL_SRC_HI, ether.getSrc().bytes);
+            key.set(DL_TYPE, ether.getType());
+        }
+        if ((dims & (ARP_DIMS | IP_DIMS | TP_DIMS)) == 0) {
+            return key;
+        }
+        var pkt = ether.getPacket();
+        if (pkt instanceof ArpPacket arp) {
+            if ((dims & ARP_DIMS) != 0) {
+                key.set(ARP_OP, arp.getOpcode());
+                key.set(ARP_SPA_HI, arp.getSenderIp());
+                key.set(ARP_TPA_HI, arp.getTargetIp());
+                key.set(ARP_SHA_HI, arp.getSenderMac());
+                key.set(ARP_THA_HI, arp.getTargetMac());
+            }
+        } else if (pkt instanceof AbstractIpPacket ip) {
+            if ((dims & IP_DIMS) != 0) {
+                key.set(NW_SRC_HI, ip.getSrc().bytes);
+                key.set(NW_DST_HI, ip.getDst().bytes);
+                key.set(NW_PROTO, ip.getProtocol());
+            }
+            if ((dims & TP_DIMS) != 0) {
+                var tp = ip.getPacket();
+                if (tp instanceof TcpPacket tcp) {
+                    key.set(TP_SRC, tcp.getSrcPort());
+                    key.set(TP_DST, tcp.getDstPort());
+                } else if (tp instanceof UdpPacket udp) {
+                    key.set(TP_SRC, udp.getSrcPort());
+                    key.set(TP_DST, udp.getDstPort());
+                }
+            }
+        }
+        return key;
+    }
+
+    private void set(int dim, long value) {
+        values[dim] = value;
+        present |= 1 << dim;
+    }
+
+    // set the HI dimension and the following LO dimension
+    private void set(int hiDim, ByteArray bytes) {
+        if (bytes == null) {
+            return;
+        }
+        values[hiDim] = high(bytes);
+        values[hiDim + 1] = low(bytes);
+        present |= 3 << hiDim;
+    }
+
+    static long inPortValue(String ifaceName) {
+        return ifaceName.hashCode();
+    }
+
+    // the last 8 bytes
+    static long low(ByteArray bytes) {
+        int len = bytes.length();
+        long n = 0;
+        for (int i = Math.max(0, len - 8); i < len; ++i) {
+            n = (n << 8) | (bytes.get(i) & 0xff);
+        }
+        return n;
+    }
+
+    // the 8 bytes before the last 8 bytes
+    static long high(ByteArray bytes) {
+        int len = bytes.length();
+        long n = 0;
+        for (int i = Math.max(0, len - 16); i < len - 8; ++i) {
+            n = (n << 8) | (bytes.get(i) & 0xff);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,355 @@
+package io.vproxy.vproxyx.pktfiltergen.flow;
+
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.PacketFilterHelper;
+import io.vproxy.vswitch.plugin.FilterResult;
+
+import java.util.*;
+
+/**
+ * Flows of one table, classified by a tuple space search.<br>
+ * Flows with the same masks (the tuple) are stored in the same hash table keyed by the masked values,
+ * so a lookup costs one hash probe per tuple instead of one check per flow.
+ * Tuples are sorted by their most preferred flow, and the search stops when no remaining tuple can do better.<br>
+ * When a table is large, it's first split by a decision tree on the field whose values have the highest entropy,
+ * so that each leaf only searches the tuples of flows which can match the packet.
+ */
+final class FlowTable {
+    private static final int SPLIT_THRESHOLD = 64;
+    private static final int MAX_DEPTH = 4;
+    private static final double MIN_SPLIT_ENTROPY = 1.0; // bits
+    private static final int MAX_REPLICATION = 4; // flows in children / flows in the node
+
+    final int table;
+    private final CompiledFlow[] flows;
+    private final Node root;
+    private final int dims; // bitset of dimensions used by the tree and tuples
+
+    FlowTable(int table, List<CompiledFlow> flows) {
+        this.table = table;
+        this.flows = flows.toArray(new CompiledFlow[0]);
+        int[] dims = {0};
+        this.root = build(flows, 0, dims);
+        this.dims = dims[0];
+    }
+
+    FilterResult handle(PacketFilterHelper helper, PacketBuffer pkb) {
+        var flow = lookup(helper, pkb);
+        if (flow == null) {
+            return FilterResult.DROP;
+        }
+        return flow.execute(helper, pkb);
+    }
+
+    CompiledFlow lookup(PacketFilterHelper helper, PacketBuffer pkb) {
+        var key = FlowKey.extract(pkb, dims);
+        return root.lookup(helper, pkb, key);
+    }
+
+    // check flows one by one, the same as the generated code
+    CompiledFlow lookupLinear(PacketFilterHelper helper, PacketBuffer pkb) {
+        for (var f : flows) {
+            if (f.matches(helper, pkb)) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private static Node build(List<CompiledFlow> flows, int depth, int[] dims) {
+        if (flows.size() >= SPLIT_THRESHOLD && depth < MAX_DEPTH) {
+            var split = Split.build(flows, depth, dims);
+            if (split != null) {
+                return split;
+            }
+        }
+        return new Leaf(flows, dims);
+    }
+
+    private interface Node {
+        CompiledFlow lookup(PacketFilterHelper helper, PacketBuffer pkb, FlowKey key);
+    }
+
+    private static final class Split implements Node {
+        private final int dim;
+        private final long mask;
+        private final long[] values; // sorted
+        private final Node[] children;
+        private final Node others; // flows not specifying the dimension with the mask
+
+        private Split(int dim, long mask, long[] values, Node[] children, Node others) {
+            this.dim = dim;
+            this.mask = mask;
+            this.values = values;
+            this.children = children;
+            this.others = others;
+        }
+
+        /**
+         * Choose the (dimension, mask) pair with the highest entropy among the flows specifying it.
+         * Flows not specifying it are copied into every child, so the pair is only used when
+         * most flows specify it and the copies are limited.
+         *
+         * @return null if no dimension is worth splitting
+         */
+        static Split build(List<CompiledFlow> flows, int depth, int[] dims) {
+            int bestDim = -1;
+            long bestMask = 0;
+            double bestScore = 0;
+            for (int d = 0; d < FlowKey.DIMENSIONS; ++d) {
+                // the most used mask of the dimension
+                Map<Long, Integer> maskCount = new HashMap<>();
+                for (var f : flows) {
+                    if (f.masks[d] != 0) {
+                        maskCount.merge(f.masks[d], 1, Integer::sum);
+                    }
+                }
+                for (var e : maskCount.entrySet()) {
+                    int n = e.getValue();
+                    if (n * 2 < flows.size()) {
+                        continue;
+                    }
+                    long mask = e.getKey();
+                    Map<Long, Integer> valueCount = new HashMap<>();
+                    for (var f : flows) {
+                        if (f.masks[d] == mask) {
+                            valueCount.merge(f.values[d], 1, Integer::sum);
+                        }
+                    }
+                    double entropy = 0;
+                    for (int c : valueCount.values()) {
+                        double p = c / (double) n;
+                        entropy -= p * Math.log(p) / Math.log(2);
+                    }
+                    if (entropy < MIN_SPLIT_ENTROPY) {
+                        continue;
+                    }
+                    long wildcards = flows.size() - n;
+                    if (n + wildcards * (valueCount.size() + 1) > (long) MAX_REPLICATION * flows.size()) {
+                        continue;
+                    }
+                    double score = entropy * n / flows.size();
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestDim = d;
+                        bestMask = mask;
+                    }
+                }
+            }
+            if (bestDim == -1) {
+                return null;
+            }
+
+            final int dim = bestDim;
+            final long mask = bestMask;
+            TreeMap<Long, List<CompiledFlow>> groups = new TreeMap<>();
+            List<CompiledFlow> others = new ArrayList<>();
+            for (var f : flows) {
+                if (f.masks[dim] == mask) {
+                    groups.computeIfAbsent(f.values[dim], _ -> new ArrayList<>());
+                }
+            }
+            for (var f : flows) { // keep the order of flows in each group
+                if (f.masks[dim] == mask) {
+                    groups.get(f.values[dim]).add(f);
+                } else {
+                    for (var g : groups.values()) {
+                        g.add(f);
+                    }
+                    others.add(f);
+                }
+            }
+            long[] values = new long[groups.size()];
+            Node[] children = new Node[groups.size()];
+            int i = 0;
+            for (var e : groups.entrySet()) {
+                values[i] = e.getKey();
+                children[i] = build(e.getValue(), depth + 1, dims);
+                ++i;
+            }
+            dims[0] |= 1 << dim;
+            return new Split(dim, mask, values, children, build(others, depth + 1, dims));
+        }
+
+        @Override
+        public CompiledFlow lookup(PacketFilterHelper helper, PacketBuffer pkb, FlowKey key) {
+            if (key.has(dim)) {
+                int idx = Arrays.binarySearch(values, key.values[dim] & mask);
+                if (idx >= 0) {
+                    return children[idx].lookup(helper, pkb, key);
+                }
+            }
+            return others.lookup(helper, pkb, key);
+        }
+    }
+
+    private static final class Leaf implements Node {
+        private final Tuple[] tuples; // sorted by minOrder
+
+        Leaf(List<CompiledFlow> flows, int[] dims) {
+            Map<MaskKey, List<CompiledFlow>> groups = new LinkedHashMap<>();
+            for (var f : flows) {
+                groups.computeIfAbsent(new MaskKey(f.masks), _ -> new ArrayList<>()).add(f);
+            }
+            tuples = new Tuple[groups.size()];
+            int i = 0;
+            for (var e : groups.entrySet()) {
+                var t = new Tuple(e.getKey().masks, e.getValue());
+                for (int d : t.dims) {
+                    dims[0] |= 1 << d;
+                }
+                tuples[i++] = t;
+            }
+            // flows are sorted, so the first flow of each group is the most preferred one
+            // and the groups are already sorted by it
+        }
+
+        @Override
+        public CompiledFlow lookup(PacketFilterHelper helper, PacketBuffer pkb, FlowKey key) {
+            CompiledFlow best = null;
+            for (var t : tuples) {
+                if (best != null && t.minOrder >= best.order) {
+                    break;
+                }
+                var f = t.lookup(helper, pkb, key, best == null ? Integer.MAX_VALUE : best.order);
+                if (f != null) {
+                    best = f;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class MaskKey {
+        final long[] masks;
+
+        MaskKey(long[] masks) {
+            this.masks = masks;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MaskKey that)) return false;
+            return Arrays.equals(masks, that.masks);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(masks);
+        }
+    }
+
+    private static final class Tuple {
+        final int[] dims;
+        final long[] masks;
+        final int minOrder;
+        private final Bucket[] buckets;
+
+        private static final class Bucket {
+            final long[] values;
+            final int hash;
+            final List<CompiledFlow> flows = new ArrayList<>();
+            CompiledFlow[] flowArray;
+            Bucket next;
+
+            Bucket(long[] values, int hash) {
+                this.values = values;
+                this.hash = hash;
+            }
+        }
+
+        Tuple(long[] allMasks, List<CompiledFlow> flows) {
+            int n = 0;
+            for (long m : allMasks) {
+                if (m != 0) ++n;
+            }
+            dims = new int[n];
+            masks = new long[n];
+            n = 0;
+            for (int d = 0; d < allMasks.length; ++d) {
+                if (allMasks[d] != 0) {
+                    dims[n] = d;
+                    masks[n] = allMasks[d];
+                    ++n;
+                }
+            }
+            minOrder = flows.get(0).order;
+
+            int cap = 1;
+            while (cap < flows.size() * 2) {
+                cap <<= 1;
+            }
+            buckets = new Bucket[cap];
+            for (var f : flows) {
+                long[] values = new long[dims.length];
+                for (int i = 0; i < dims.length; ++i) {
+                    values[i] = f.values[dims[i]];
+                }
+                int hash = hash(values);
+                int idx = hash & (buckets.length - 1);
+                Bucket b = buckets[idx];
+                while (b != null && (b.hash != hash || !Arrays.equals(b.values, values))) {
+                    b = b.next;
+                }
+                if (b == null) {
+                    b = new Bucket(values, hash);
+                    b.next = buckets[idx];
+                    buckets[idx] = b;
+                }
+                b.flows.add(f);
+            }
+            for (var b : buckets) {
+                for (; b != null; b = b.next) {
+                    b.flowArray = b.flows.toArray(new CompiledFlow[0]);
+                }
+            }
+        }
+
+        private static int hash(long[] values) {
+            int h = 1;
+            for (long v : values) {
+                h = 31 * h + Long.hashCode(v);
+            }
+            return h ^ (h >>> 16);
+        }
+
+        CompiledFlow lookup(PacketFilterHelper helper, PacketBuffer pkb, FlowKey key, int bestOrder) {
+            int h = 1;
+            for (int i = 0; i < dims.length; ++i) {
+                if (!key.has(dims[i])) {
+                    return null;
+                }
+                h = 31 * h + Long.hashCode(key.values[dims[i]] & masks[i]);
+            }
+            h = h ^ (h >>> 16);
+            Bucket b = buckets[h & (buckets.length - 1)];
+            for (; b != null; b = b.next) {
+                if (b.hash == h && equals(b.values, key)) {
+                    break;
+                }
+            }
+            if (b == null) {
+                return null;
+            }
+            for (var f : b.flowArray) {
+                if (f.order >= bestOrder) {
+                    return null;
+                }
+                if (f.matches(helper, pkb)) {
+                    return f;
+                }
+            }
+            return null;
+        }
+
+        private boolean equals(long[] values, FlowKey key) {
+            for (int i = 0; i < dims.length; ++i) {
+                if (values[i] != (key.values[dims[i]] & masks[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
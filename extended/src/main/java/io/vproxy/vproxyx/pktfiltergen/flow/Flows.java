@@ -81,6 +81,13 @@ public class Flows {
         }
     }
 
+    /**
+     * Build a classifier which handles packets with the flows directly.
+     */
+    public FlowClassifier compile() throws Exception {
+        return new FlowClassifier(flows);
+    }
+
     @SuppressWarnings("ConcatenationWithEmptyString")
     private static final String GEN_CLASS_TEMPLATE = "" +
         "{{Imports}}" +
@@ -4,11 +4,11 @@ import io.vproxy.base.util.LogType;
 import io.vproxy.base.util.Logger;
 
 import java.util.*;
-import java.util.function.Function;
 import java.util.regex.Pattern;
 
 /**
- * https://github.com/gfwlist/gfwlist/wiki/Syntax
+ * https://github.com/gfwlist/gfwlist/wiki/Syntax<br>
+ * Rules are compiled into a {@link DomainRuleSet}, the first rule matching the input decides the result.
  */
 public class ABP {
     private final Set<Character> validSimpleRuleStart = new HashSet<>() {{
@@ -24,7 +24,20 @@ public class ABP {
     }};
     private final String abpSource;
     private final boolean defaultBlock;
-    private final List<Function<String, Boolean>> checkers = new LinkedList<>();
+    private final DomainRuleSet rules = new DomainRuleSet();
+    private final List<Action> actions = new ArrayList<>(); // index of the rule -> action
+
+    private static final class Action {
+        final boolean block;
+        final boolean debug; // only log when debugging
+        final String desc;
+
+        Action(boolean block, boolean debug, String desc) {
+            this.block = block;
+            this.debug = debug;
+            this.desc = desc;
+        }
+    }
 
     public ABP(String abpSource, boolean defaultBlock) {
         this.abpSource = abpSource;
@@ -35,15 +48,31 @@ public class ABP {
         return abpSource;
     }
 
+    /**
+     * The first rule matching the input decides the result.
+     */
     public boolean block(String input) {
-        for (var func : checkers) {
-            Boolean result = func.apply(input);
-            if (result == null) { // null means don't know
-                continue;
-            }
-            return result;
+        return result(input, rules.lookup(input));
+    }
+
+    /**
+     * Same as {@link #block(String)}, but checks rules one by one.
+     */
+    public boolean blockLinear(String input) {
+        return result(input, rules.lookupLinear(input));
+    }
+
+    private boolean result(String input, int index) {
+        if (index == -1) {
+            return defaultBlock;
+        }
+        var action = actions.get(index);
+        if (action.debug) {
+            assert Logger.lowLevelDebug(input + " matches ABP " + action.desc);
+        } else {
+            Logger.alert(input + " matches ABP " + action.desc);
         }
-        return defaultBlock;
+        return action.block;
     }
 
     public void addBase64(String base64) {
@@ -76,7 +105,7 @@ public class ABP {
             addWhitelistRuleRegexp(line.substring("@@/".length(), line.length() - "/".length()));
         } else if (line.startsWith("@@.") && line.length() > "@@.".length()) {
             addWhitelistSuffixRule(line.substring("@@.".length()));
-        } else if (line.startsWith("@@") && line.length() > "@@".length() && validSimpleRuleStart.contains(line.charAt(3))) {
+        } else if (line.startsWith("@@") && line.length() > "@@".length() && validSimpleRuleStart.contains(line.charAt(2))) {
             addWhitelistSimpleRule(line.substring("@@".length()));
         } else if (line.startsWith(".") && line.length() > ".".length()) {
             addSuffixRule(line.substring(".".length()));
@@ -87,152 +116,51 @@ public class ABP {
         }
     }
 
-    private interface MatchingSpecificURI extends Function<String, Boolean> {
-    }
-
     private void addMatchingSpecificURI(String rule) {
-        var host = extractHost(rule);
-        var addDot = "." + host;
-        checkers.add((MatchingSpecificURI) input -> {
-            if (input.equals(host) || (input.endsWith(addDot) && input.length() > addDot.length())) {
-                Logger.alert(input + " matches ABP matching specific uri rule: " + rule);
-                return true;
-            }
-            return null;
-        });
-    }
-
-    private interface MatchingFromBeginning extends Function<String, Boolean> {
+        add(DomainRuleSet.Type.DOMAIN, extractHost(rule), true, false, "matching specific uri rule: " + rule);
     }
 
     private void addMatchingFromBeginning(String rule) {
-        var host = extractHost(rule);
-        checkers.add((MatchingFromBeginning) input -> {
-            if (input.equals(host)) {
-                Logger.alert(input + " matches ABP matching from beginning rule: " + rule);
-                return true;
-            }
-            return null;
-        });
-    }
-
-    private interface MatchingRegexp extends Function<String, Boolean> {
+        add(DomainRuleSet.Type.EXACT, extractHost(rule), true, false, "matching from beginning rule: " + rule);
     }
 
     private void addMatchingRegexp(String rule) {
-        Pattern pattern = Pattern.compile(rule);
-        checkers.add((MatchingRegexp) input -> {
-            String[] protocols = new String[]{"", "http://", "https://"};
-            for (String protocol : protocols) {
-                if (pattern.matcher(protocol + input).matches()) {
-                    Logger.alert(input + " matches ABP matching regexp rule: " + rule);
-                    return true;
-                }
-            }
-            return null;
-        });
-    }
-
-    private interface WhitelistRuleMatchingSpecificURI extends Function<String, Boolean> {
+        int index = rules.addRegexp(Pattern.compile(rule), true);
+        actions.add(index, new Action(true, false, "matching regexp rule: " + rule));
     }
 
     private void addWhitelistRuleMatchingSpecificURI(String rule) {
-        var host = extractHost(rule);
-        var addDot = "." + host;
-        checkers.add((WhitelistRuleMatchingSpecificURI) input -> {
-            if (input.equals(host) || (input.endsWith(addDot) || input.length() > addDot.length())) {
-                assert Logger.lowLevelDebug(input + " matches ABP WHITELIST matching specific uri rule: " + rule);
-                return false;
-            }
-            return null;
-        });
-    }
-
-    private interface WhitelistMatchingFromBeginningRule extends Function<String, Boolean> {
+        add(DomainRuleSet.Type.DOMAIN, extractHost(rule), false, true, "WHITELIST matching specific uri rule: " + rule);
     }
 
     private void addWhitelistRuleMatchingFromBeginning(String rule) {
-        var host = extractHost(rule);
-        checkers.add((WhitelistMatchingFromBeginningRule) input -> {
-            if (input.startsWith(host)) {
-                assert Logger.lowLevelDebug(input + " matches ABP WHITELIST matching from beginning rule: " + rule);
-                return false;
-            }
-            return null;
-        });
-    }
-
-    private interface WhitelistSimpleRule extends Function<String, Boolean> {
+        add(DomainRuleSet.Type.PREFIX, extractHost(rule), false, true, "WHITELIST matching from beginning rule: " + rule);
     }
 
     private void addWhitelistSimpleRule(String rule) {
-        var host = extractHost(rule);
-        checkers.add((WhitelistSimpleRule) input -> {
-            if (input.contains(host)) {
-                assert Logger.lowLevelDebug(input + " matches ABP WHITELIST simple rule: " + rule);
-                return false;
-            }
-            return null;
-        });
-    }
-
-    private interface WhitelistRegexpRule extends Function<String, Boolean> {
+        add(DomainRuleSet.Type.CONTAINS, extractHost(rule), false, true, "WHITELIST simple rule: " + rule);
     }
 
     private void addWhitelistRuleRegexp(String rule) {
-        Pattern pattern = Pattern.compile(rule);
-        checkers.add((WhitelistRegexpRule) input -> {
-            String[] protocols = new String[]{"", "http://", "https://"};
-            for (String protocol : protocols) {
-                if (pattern.matcher(protocol + input).matches()) {
-                    Logger.alert(input + " matches ABP WHITELIST regexp rule: " + rule);
-                    return false;
-                }
-            }
-            return null;
-        });
-    }
-
-    private interface WhitelistSuffixRule extends Function<String, Boolean> {
+        int index = rules.addRegexp(Pattern.compile(rule), true);
+        actions.add(index, new Action(false, false, "WHITELIST regexp rule: " + rule));
     }
 
     private void addWhitelistSuffixRule(String rule) {
-        var host = extractHost(rule);
-        checkers.add((WhitelistSuffixRule) input -> {
-            if (input.endsWith(host)) {
-                Logger.alert(input + " matches ABP WHITELIST suffix rule: " + rule);
-                return false;
-            }
-            return null;
-        });
-    }
-
-    private interface SuffixRule extends Function<String, Boolean> {
+        add(DomainRuleSet.Type.SUFFIX, extractHost(rule), false, false, "WHITELIST suffix rule: " + rule);
     }
 
     private void addSuffixRule(String rule) {
-        var host = extractHost(rule);
-        checkers.add((SuffixRule) input -> {
-            if (input.endsWith(host)) {
-                Logger.alert(input + " matches ABP suffix rule: " + rule);
-                return true;
-            }
-            return null;
-        });
+        add(DomainRuleSet.Type.SUFFIX, extractHost(rule), true, false, "suffix rule: " + rule);
     }
 
-    private interface SimpleRule extends Function<String, Boolean> {
+    private void addSimpleRule(String rule) {
+        add(DomainRuleSet.Type.CONTAINS, extractHost(rule), true, false, "simple rule: " + rule);
     }
 
-    private void addSimpleRule(String rule) {
-        var host = extractHost(rule);
-        checkers.add((SimpleRule) input -> {
-            if (input.contains(host)) {
-                Logger.alert(input + " matches ABP simple rule: " + rule);
-                return true;
-            }
-            return null;
-        });
+    private void add(DomainRuleSet.Type type, String host, boolean block, boolean debug, String desc) {
+        int index = rules.add(type, host);
+        actions.add(index, new Action(block, debug, desc));
     }
 
     private String extractHost(String uri) {
@@ -29,10 +29,10 @@ import java.util.stream.Collectors;
 
 public class AgentDNSServer extends DNSServer {
     private final Map<String, ServerGroup> serverGroups;
-    private final Map<String, List<DomainChecker>> resolves;
+    private final Map<String, DomainMatcher> resolves;
     private final Map<String, IP> cache = new HashMap<>();
-    private final List<DomainChecker> selfDomains = new LinkedList<>();
-    private final List<DomainChecker> bondDomains = new LinkedList<>();
+    private final DomainMatcher selfDomains;
+    private final DomainMatcher bondDomains;
     private final ConfigProcessor config;
     private final DomainBinder domainBinder;
 
@@ -41,18 +41,22 @@ public class AgentDNSServer extends DNSServer {
                           DomainBinder domainBinder) {
         super(alias, bindAddress, eventLoopGroup, new Upstream("not-used"), 0, SecurityGroup.allowAll());
         this.serverGroups = config.getServers();
-        this.resolves = config.getProxyResolves();
+        this.resolves = DomainMatcher.compile(config.getProxyResolves());
+        List<DomainChecker> selfDomains = new ArrayList<>();
+        List<DomainChecker> bondDomains = new ArrayList<>();
         boolean directRelay = config.isDirectRelay();
         if (directRelay) {
-            this.selfDomains.addAll(config.getHttpsSniErasureDomains());
+            selfDomains.addAll(config.getHttpsSniErasureDomains());
             for (List<DomainChecker> domains : config.getDomains().values()) {
                 if (domainBinder == null) {
-                    this.selfDomains.addAll(domains);
+                    selfDomains.addAll(domains);
                 } else {
-                    this.bondDomains.addAll(domains);
+                    bondDomains.addAll(domains);
                 }
             }
         }
+        this.selfDomains = new DomainMatcher(selfDomains);
+        this.bondDomains = new DomainMatcher(bondDomains);
         this.config = config;
         this.domainBinder = domainBinder;
     }
@@ -202,20 +206,16 @@ public class AgentDNSServer extends DNSServer {
                 domain = domain.substring(0, domain.length() - 1);
             }
             // check self domains
-            for (DomainChecker chk : selfDomains) {
-                if (chk.needProxy(domain, 0)) {
-                    Logger.alert("[DNS] resolve to self ip for " + domain);
-                    respondWithSelfIp(p, domain, remote);
-                    return;
-                }
+            if (selfDomains.matches(domain, 0)) {
+                Logger.alert("[DNS] resolve to self ip for " + domain);
+                respondWithSelfIp(p, domain, remote);
+                return;
             }
             // check bond domains
-            for (DomainChecker chk : bondDomains) {
-                if (chk.needProxy(domain, 0)) {
-                    Logger.alert("[DNS] resolve to bond ip for " + domain);
-                    respondWithBondIp(p, domain, remote);
-                    return;
-                }
+            if (bondDomains.matches(domain, 0)) {
+                Logger.alert("[DNS] resolve to bond ip for " + domain);
+                respondWithBondIp(p, domain, remote);
+                return;
             }
             // try cache
             {
@@ -226,15 +226,12 @@ public class AgentDNSServer extends DNSServer {
                     return;
                 }
             }
-            for (Map.Entry<String, List<DomainChecker>> entry : resolves.entrySet()) {
+            for (Map.Entry<String, DomainMatcher> entry : resolves.entrySet()) {
                 var servers = entry.getKey();
-                var ls = entry.getValue();
-                for (DomainChecker chk : ls) {
-                    if (chk.needProxy(domain, 0)) {
-                        Logger.alert("[DNS] dispatch resolving query for " + domain + " via " + servers);
-                        requestAndResponse(p, serverGroups.get(servers), domain, remote);
-                        return;
-                    }
+                if (entry.getValue().matches(domain, 0)) {
+                    Logger.alert("[DNS] dispatch resolving query for " + domain + " via " + servers);
+                    requestAndResponse(p, serverGroups.get(servers), domain, remote);
+                    return;
                 }
             }
         }
@@ -255,15 +252,12 @@ public class AgentDNSServer extends DNSServer {
         if (domain.endsWith(".")) {
             domain = domain.substring(0, domain.length() - 1);
         }
-        for (Map.Entry<String, List<DomainChecker>> entry : resolves.entrySet()) {
+        for (Map.Entry<String, DomainMatcher> entry : resolves.entrySet()) {
             var servers = entry.getKey();
-            var ls = entry.getValue();
-            for (DomainChecker chk : ls) {
-                if (chk.needProxy(domain, 0)) {
-                    Logger.alert("[DNS] dispatch resolving query for " + domain + " via " + servers);
-                    requestAndGetResult(serverGroups.get(servers), domain, cb);
-                    return;
-                }
+            if (entry.getValue().matches(domain, 0)) {
+                Logger.alert("[DNS] dispatch resolving query for " + domain + " via " + servers);
+                requestAndGetResult(serverGroups.get(servers), domain, cb);
+                return;
             }
         }
         // otherwise no need to do resolve proxy
@@ -10,7 +10,7 @@ public interface DomainChecker {
     class SuffixDomainChecker implements DomainChecker {
         public final String suffix;
 
-        SuffixDomainChecker(String suffix) {
+        public SuffixDomainChecker(String suffix) {
             this.suffix = suffix;
         }
 
@@ -28,7 +28,7 @@ public interface DomainChecker {
     class PatternDomainChecker implements DomainChecker {
         public final Pattern pattern;
 
-        PatternDomainChecker(Pattern pattern) {
+        public PatternDomainChecker(Pattern pattern) {
             this.pattern = pattern;
         }
 
@@ -46,7 +46,7 @@ public interface DomainChecker {
     class ABPDomainChecker implements DomainChecker {
         public final ABP abp;
 
-        ABPDomainChecker(ABP abp) {
+        public ABPDomainChecker(ABP abp) {
             this.abp = abp;
         }
 
@@ -64,7 +64,7 @@ public interface DomainChecker {
     class PortChecker implements DomainChecker {
         public final int port;
 
-        PortChecker(int port) {
+        public PortChecker(int port) {
             this.port = port;
         }
 
@@ -0,0 +1,86 @@
+package io.vproxy.vproxyx.websocks;
+
+import java.util.*;
+
+/**
+ * Check whether any of the {@link DomainChecker}s matches, without running them one by one.<br>
+ * Suffix and pattern checkers are compiled into one {@link DomainRuleSet},
+ * port checkers are kept in a sorted array, and abp checkers use the rule set compiled by {@link ABP}.
+ */
+public class DomainMatcher {
+    private final List<DomainChecker> checkers;
+    private final DomainRuleSet rules = new DomainRuleSet();
+    private final int[] ports; // sorted
+    private final List<ABP> abps = new ArrayList<>();
+    private final List<DomainChecker> others = new ArrayList<>();
+
+    public DomainMatcher(Collection<? extends DomainChecker> checkers) {
+        this.checkers = List.copyOf(checkers);
+        Set<Integer> ports = new TreeSet<>();
+        for (var chk : checkers) {
+            if (chk instanceof DomainChecker.SuffixDomainChecker suffix) {
+                rules.add(DomainRuleSet.Type.SUFFIX, suffix.suffix);
+            } else if (chk instanceof DomainChecker.PatternDomainChecker pattern) {
+                rules.addRegexp(pattern.pattern, false);
+            } else if (chk instanceof DomainChecker.PortChecker port) {
+                ports.add(port.port);
+            } else if (chk instanceof DomainChecker.ABPDomainChecker abp) {
+                abps.add(abp.abp);
+            } else {
+                others.add(chk);
+            }
+        }
+        this.ports = ports.stream().mapToInt(p -> p).toArray();
+    }
+
+    /**
+     * Compile each list of the map, the iteration order is kept.
+     */
+    public static LinkedHashMap<String, DomainMatcher> compile(Map<String, List<DomainChecker>> map) {
+        LinkedHashMap<String, DomainMatcher> ret = new LinkedHashMap<>();
+        for (var e : map.entrySet()) {
+            ret.put(e.getKey(), new DomainMatcher(e.getValue()));
+        }
+        return ret;
+    }
+
+    public boolean matches(String domain, int port) {
+        if (ports.length != 0 && Arrays.binarySearch(ports, port) >= 0) {
+            return true;
+        }
+        if (rules.lookup(domain) != -1) {
+            return true;
+        }
+        for (var abp : abps) {
+            if (abp.block(domain)) {
+                return true;
+            }
+        }
+        for (var chk : others) {
+            if (chk.needProxy(domain, port)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #matches(String, int)}, but runs the checkers one by one.
+     */
+    public boolean matchesLinear(String domain, int port) {
+        for (var chk : checkers) {
+            if (chk instanceof DomainChecker.ABPDomainChecker abp) {
+                if (abp.abp.blockLinear(domain)) {
+                    return true;
+                }
+            } else if (chk.needProxy(domain, port)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<DomainChecker> getCheckers() {
+        return checkers;
+    }
+}
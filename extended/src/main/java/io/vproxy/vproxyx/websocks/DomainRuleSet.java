@@ -0,0 +1,534 @@
+package io.vproxy.vproxyx.websocks;
+
+import io.vproxy.base.util.coll.LRUMap;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Ordered domain rules compiled for matching, a lookup returns the index of the first rule matching the input.<br>
+ * Exact, suffix and domain rules are merged into a trie of reversed strings, walked once from the end of the input.
+ * Prefix and contains rules are merged into an Aho-Corasick automaton, walked once from the beginning of the input.
+ * Regexps which are only a literal surrounded by {@code .*} are converted into one of the rules above,
+ * other regexps are checked one by one, and only when they are prior to the rule already found.<br>
+ * When regexps are checked, results are cached in a bounded lru map.<br>
+ * Rules can be added at any time, they are compiled on the next lookup.
+ */
+class DomainRuleSet {
+    private static final int CACHE_SIZE = 4096;
+    private static final String[] PROTOCOLS = {"", "http://", "https://"};
+
+    enum Type {
+        EXACT, // input.equals(value)
+        DOMAIN, // the domain or any sub domain of it
+        SUFFIX, // input.endsWith(value)
+        PREFIX, // input.startsWith(value)
+        CONTAINS, // input.contains(value)
+        REGEXP, // pattern.matcher(input).matches()
+    }
+
+    static final class Rule {
+        final int index;
+        final Type type;
+        final String value;
+        final Pattern pattern;
+        final boolean withProtocols; // also try the input prefixed with http:// and https://
+
+        private Rule(int index, Type type, String value, Pattern pattern, boolean withProtocols) {
+            this.index = index;
+            this.type = type;
+            this.value = value;
+            this.pattern = pattern;
+            this.withProtocols = withProtocols;
+        }
+
+        /**
+         * Check the rule alone. For regexps, the pattern is always used even if it's converted.
+         */
+        boolean matches(String input) {
+            if (pattern != null) {
+                if (!withProtocols) {
+                    return pattern.matcher(input).matches();
+                }
+                for (String protocol : PROTOCOLS) {
+                    if (pattern.matcher(protocol + input).matches()) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return switch (type) {
+                case EXACT -> input.equals(value);
+                case DOMAIN -> input.equals(value)
+                    || (input.endsWith("." + value) && input.length() > value.length() + 1);
+                case SUFFIX -> input.endsWith(value);
+                case PREFIX -> input.startsWith(value);
+                case CONTAINS -> input.contains(value);
+                case REGEXP -> false; // pattern is never null for regexps
+            };
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + (pattern == null ? value : pattern.pattern()) + ")";
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private volatile Compiled compiled;
+
+    int size() {
+        return rules.size();
+    }
+
+    Rule get(int index) {
+        return rules.get(index);
+    }
+
+    /**
+     * @return index of the rule
+     */
+    synchronized int add(Type type, String value) {
+        if (type == Type.REGEXP) {
+            return addRegexp(Pattern.compile(value), false);
+        }
+        return add(new Rule(rules.size(), type, value, null, false));
+    }
+
+    /**
+     * @param withProtocols the rule matches if the input, or the input prefixed with http:// or https://, matches
+     * @return index of the rule
+     */
+    synchronized int addRegexp(Pattern pattern, boolean withProtocols) {
+        int index = rules.size();
+        Rule rule = reduce(index, pattern, withProtocols);
+        if (rule == null) {
+            rule = new Rule(index, Type.REGEXP, null, pattern, withProtocols);
+        }
+        return add(rule);
+    }
+
+    private int add(Rule rule) {
+        rules.add(rule);
+        compiled = null;
+        return rule.index;
+    }
+
+    /**
+     * Convert regexps like {@code .*abc\.com}, {@code ^abc.*$} or {@code .*abc.*} into suffix, prefix or contains rules.
+     *
+     * @return null if the regexp cannot be converted
+     */
+    private static Rule reduce(int index, Pattern pattern, boolean withProtocols) {
+        if (pattern.flags() != 0) {
+            return null;
+        }
+        String s = pattern.pattern();
+        if (s.startsWith("^")) {
+            s = s.substring(1);
+        }
+        if (s.endsWith("$") && !s.endsWith("\\$")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        boolean anyBefore = false;
+        boolean anyAfter = false;
+        while (s.startsWith(".*")) {
+            anyBefore = true;
+            s = s.substring(2);
+        }
+        while (s.endsWith(".*") && !s.endsWith("\\.*")) {
+            anyAfter = true;
+            s = s.substring(0, s.length() - 2);
+        }
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < s.length() && s.charAt(i + 1) == '.') {
+                    literal.append('.');
+                    ++i;
+                    continue;
+                }
+                return null;
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+                literal.append(c);
+                continue;
+            }
+            return null;
+        }
+        String value = literal.toString();
+        if (anyBefore && !anyAfter && value.isEmpty()) {
+            anyAfter = true; // .* matches everything
+        }
+
+        Type type;
+        if (anyBefore && anyAfter) {
+            type = Type.CONTAINS;
+        } else if (anyBefore) {
+            type = Type.SUFFIX;
+        } else if (anyAfter) {
+            type = Type.PREFIX;
+        } else {
+            type = Type.EXACT;
+        }
+        // the literal does not contain ':' or '/', so it can only match the protocol
+        // when it's fully inside the protocol
+        if (withProtocols) {
+            for (String protocol : PROTOCOLS) {
+                if ((type == Type.CONTAINS && protocol.contains(value)) || (type == Type.PREFIX && protocol.startsWith(value))) {
+                    type = Type.CONTAINS;
+                    value = "";
+                    break;
+                }
+            }
+        }
+        return new Rule(index, type, value, pattern, withProtocols);
+    }
+
+    /**
+     * @return index of the first rule matching the input, or -1 if no rule matches
+     */
+    int lookup(String input) {
+        var c = compiled;
+        if (c == null) {
+            c = compile();
+        }
+        return c.lookup(input);
+    }
+
+    /**
+     * Same as {@link #lookup(String)}, but checks rules one by one.
+     */
+    int lookupLinear(String input) {
+        var c = compiled;
+        if (c == null) {
+            c = compile();
+        }
+        for (var r : c.rules) {
+            if (r.matches(input)) {
+                return r.index;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized Compiled compile() {
+        var c = compiled;
+        if (c == null) {
+            c = new Compiled(rules.toArray(new Rule[0]));
+            compiled = c;
+        }
+        return c;
+    }
+
+    private static final class Compiled {
+        final Rule[] rules;
+        final CharTrie suffixes; // reversed
+        final int[] exactIdx;
+        final int[] suffixIdx;
+        final int[] subDomainIdx; // the node is ".{domain}" reversed, input must be longer
+        final CharTrie prefixes;
+        final int[] fail;
+        final int[] prefixIdx;
+        final int[] containsIdx; // including the rules of the fail chain
+        final Rule[] regexps;
+        final LRUMap<String, Integer> cache;
+
+        Compiled(Rule[] rules) {
+            this.rules = rules;
+
+            var suffixesBuilder = new CharTrie.Builder();
+            var prefixesBuilder = new CharTrie.Builder();
+            List<Rule> regexps = new ArrayList<>();
+            for (var r : rules) {
+                switch (r.type) {
+                    case EXACT, SUFFIX -> suffixesBuilder.add(reverse(r.value));
+                    case DOMAIN -> {
+                        suffixesBuilder.add(reverse(r.value));
+                        suffixesBuilder.add(reverse("." + r.value));
+                    }
+                    case PREFIX, CONTAINS -> prefixesBuilder.add(r.value);
+                    case REGEXP -> regexps.add(r);
+                }
+            }
+            suffixes = suffixesBuilder.build();
+            prefixes = prefixesBuilder.build();
+            exactIdx = newIndexArray(suffixes.size());
+            suffixIdx = newIndexArray(suffixes.size());
+            subDomainIdx = newIndexArray(suffixes.size());
+            prefixIdx = newIndexArray(prefixes.size());
+            containsIdx = newIndexArray(prefixes.size());
+            for (var r : rules) {
+                switch (r.type) {
+                    case EXACT -> setMin(exactIdx, suffixes.find(reverse(r.value)), r.index);
+                    case SUFFIX -> setMin(suffixIdx, suffixes.find(reverse(r.value)), r.index);
+                    case DOMAIN -> {
+                        setMin(exactIdx, suffixes.find(reverse(r.value)), r.index);
+                        setMin(subDomainIdx, suffixes.find(reverse("." + r.value)), r.index);
+                    }
+                    case PREFIX -> setMin(prefixIdx, prefixes.find(r.value), r.index);
+                    case CONTAINS -> setMin(containsIdx, prefixes.find(r.value), r.index);
+                }
+            }
+            fail = buildFailLinks(prefixes, containsIdx);
+
+            this.regexps = regexps.toArray(new Rule[0]);
+            cache = regexps.isEmpty() ? null : new LRUMap<>(CACHE_SIZE);
+        }
+
+        private static String reverse(String s) {
+            return new StringBuilder(s).reverse().toString();
+        }
+
+        private static int[] newIndexArray(int size) {
+            int[] arr = new int[size];
+            Arrays.fill(arr, Integer.MAX_VALUE);
+            return arr;
+        }
+
+        private static void setMin(int[] arr, int node, int index) {
+            if (index < arr[node]) {
+                arr[node] = index;
+            }
+        }
+
+        // bfs over the trie, and merge rules of the fail node into containsIdx
+        private static int[] buildFailLinks(CharTrie trie, int[] containsIdx) {
+            int[] fail = new int[trie.size()];
+            int[] queue = new int[trie.size()];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = 0;
+            while (head < tail) {
+                int node = queue[head++];
+                char[] chars = trie.chars(node);
+                int[] children = trie.children(node);
+                for (int i = 0; i < chars.length; ++i) {
+                    int child = children[i];
+                    int f = 0;
+                    if (node != 0) {
+                        f = fail[node];
+                        while (true) {
+                            int next = trie.child(f, chars[i]);
+                            if (next >= 0) {
+                                f = next;
+                                break;
+                            }
+                            if (f == 0) {
+                                break;
+                            }
+                            f = fail[f];
+                        }
+                    }
+                    fail[child] = f;
+                    setMin(containsIdx, child, containsIdx[f]);
+                    queue[tail++] = child;
+                }
+            }
+            return fail;
+        }
+
+        int lookup(String input) {
+            if (cache == null) {
+                return doLookup(input);
+            }
+            Integer cached;
+            synchronized (cache) {
+                cached = cache.get(input);
+            }
+            if (cached != null) {
+                return cached;
+            }
+            int res = doLookup(input);
+            synchronized (cache) {
+                cache.put(input, res);
+            }
+            return res;
+        }
+
+        private int doLookup(String input) {
+            int best = Integer.MAX_VALUE;
+            final int len = input.length();
+
+            // suffixes, the node represents the last d chars of the input
+            int node = 0;
+            for (int d = 0; ; ++d) {
+                best = Math.min(best, suffixIdx[node]);
+                if (d == len) {
+                    best = Math.min(best, exactIdx[node]);
+                    break;
+                }
+                best = Math.min(best, subDomainIdx[node]);
+                node = suffixes.child(node, input.charAt(len - 1 - d));
+                if (node < 0) {
+                    break;
+                }
+            }
+
+            // prefixes, the node represents the first d chars of the input
+            node = 0;
+            for (int d = 0; ; ++d) {
+                best = Math.min(best, prefixIdx[node]);
+                if (d == len) {
+                    break;
+                }
+                node = prefixes.child(node, input.charAt(d));
+                if (node < 0) {
+                    break;
+                }
+            }
+
+            // contains
+            int state = 0;
+            best = Math.min(best, containsIdx[0]);
+            for (int i = 0; i < len; ++i) {
+                char c = input.charAt(i);
+                while (true) {
+                    int next = prefixes.child(state, c);
+                    if (next >= 0) {
+                        state = next;
+                        break;
+                    }
+                    if (state == 0) {
+                        break;
+                    }
+                    state = fail[state];
+                }
+                best = Math.min(best, containsIdx[state]);
+            }
+
+            // regexps prior to the found rule
+            for (var r : regexps) {
+                if (r.index >= best) {
+                    break;
+                }
+                if (r.matches(input)) {
+                    best = r.index;
+                    break;
+                }
+            }
+            return best == Integer.MAX_VALUE ? -1 : best;
+        }
+    }
+
+    /**
+     * Immutable char trie, node 0 is the root. Children are stored in one open addressing table keyed by (node, char).
+     */
+    private static final class CharTrie {
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+        private final char[][] chars; // chars of children of each node
+        private final int[][] children;
+
+        private CharTrie(Builder b) {
+            int n = b.nodes.size();
+            int edges = n - 1;
+            int cap = 2;
+            while (cap < edges * 2) {
+                cap <<= 1;
+            }
+            keys = new long[cap];
+            Arrays.fill(keys, -1);
+            values = new int[cap];
+            mask = cap - 1;
+            chars = new char[n][];
+            children = new int[n][];
+            for (int node = 0; node < n; ++node) {
+                var m = b.nodes.get(node);
+                chars[node] = new char[m.size()];
+                children[node] = new int[m.size()];
+                int i = 0;
+                for (var e : m.entrySet()) {
+                    chars[node][i] = e.getKey();
+                    children[node][i] = e.getValue();
+                    ++i;
+                    long key = key(node, e.getKey());
+                    int idx = slot(key);
+                    while (keys[idx] != -1) {
+                        idx = (idx + 1) & mask;
+                    }
+                    keys[idx] = key;
+                    values[idx] = e.getValue();
+                }
+            }
+        }
+
+        private static long key(int node, char c) {
+            return ((long) node << 16) | c;
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+
+        int size() {
+            return chars.length;
+        }
+
+        char[] chars(int node) {
+            return chars[node];
+        }
+
+        int[] children(int node) {
+            return children[node];
+        }
+
+        /**
+         * @return -1 if not found
+         */
+        int child(int node, char c) {
+            long key = key(node, c);
+            int idx = slot(key);
+            while (true) {
+                long k = keys[idx];
+                if (k == key) {
+                    return values[idx];
+                }
+                if (k == -1) {
+                    return -1;
+                }
+                idx = (idx + 1) & mask;
+            }
+        }
+
+        /**
+         * @return the node of the string, which must be added
+         */
+        int find(String s) {
+            int node = 0;
+            for (int i = 0; i < s.length(); ++i) {
+                node = child(node, s.charAt(i));
+            }
+            return node;
+        }
+
+        static final class Builder {
+            private final List<TreeMap<Character, Integer>> nodes = new ArrayList<>();
+
+            Builder() {
+                nodes.add(new TreeMap<>());
+            }
+
+            void add(String s) {
+                int node = 0;
+                for (int i = 0; i < s.length(); ++i) {
+                    var m = nodes.get(node);
+                    Integer next = m.get(s.charAt(i));
+                    if (next == null) {
+                        next = nodes.size();
+                        m.put(s.charAt(i), next);
+                        nodes.add(new TreeMap<>());
+                    }
+                    node = next;
+                }
+            }
+
+            CharTrie build() {
+                return new CharTrie(this);
+            }
+        }
+    }
+}
@@ -633,9 +633,9 @@ public class WebSocksProxyAgentConnectorProvider implements Socks5ConnectorProvi
     }
 
     private final boolean strictMode;
-    private final LinkedHashMap<String, List<DomainChecker>> proxyDomains;
-    private final LinkedHashMap<String, List<DomainChecker>> noProxyDomains;
-    private final List<DomainChecker> httpsSniErasureDomains;
+    private final LinkedHashMap<String, DomainMatcher> proxyDomains;
+    private final DomainMatcher noProxyDomains;
+    private final DomainMatcher httpsSniErasureDomains;
     private final Map<String, ServerGroup> servers;
     private final String user;
     private final String pass;
@@ -643,9 +643,13 @@ public class WebSocksProxyAgentConnectorProvider implements Socks5ConnectorProvi
 
     public WebSocksProxyAgentConnectorProvider(ConfigProcessor config) {
         this.strictMode = config.isStrictMode();
-        this.proxyDomains = config.getDomains();
-        this.noProxyDomains = config.getNoProxyDomains();
-        this.httpsSniErasureDomains = config.getHttpsSniErasureDomains();
+        this.proxyDomains = DomainMatcher.compile(config.getDomains());
+        List<DomainChecker> noProxyDomains = new ArrayList<>();
+        for (List<DomainChecker> domains : config.getNoProxyDomains().values()) {
+            noProxyDomains.addAll(domains);
+        }
+        this.noProxyDomains = new DomainMatcher(noProxyDomains);
+        this.httpsSniErasureDomains = new DomainMatcher(config.getHttpsSniErasureDomains());
         this.servers = config.getServers();
         this.user = config.getUser();
         this.pass = config.getPass();
@@ -665,19 +669,12 @@ public class WebSocksProxyAgentConnectorProvider implements Socks5ConnectorProvi
     }
 
     private String getProxy(String address, int port) {
-        for (Map.Entry<String, List<DomainChecker>> entry : noProxyDomains.entrySet()) {
-            for (DomainChecker checker : entry.getValue()) {
-                // HERE, needProxy means "DO NOT need proxy"
-                if (checker.needProxy(address, port)) {
-                    return null;
-                }
-            }
+        if (noProxyDomains.matches(address, port)) {
+            return null;
         }
-        for (Map.Entry<String, List<DomainChecker>> entry : proxyDomains.entrySet()) {
-            for (DomainChecker checker : entry.getValue()) {
-                if (checker.needProxy(address, port)) {
-                    return entry.getKey();
-                }
+        for (Map.Entry<String, DomainMatcher> entry : proxyDomains.entrySet()) {
+            if (entry.getValue().matches(address, port)) {
+                return entry.getKey();
             }
         }
         return null;
@@ -687,12 +684,7 @@ public class WebSocksProxyAgentConnectorProvider implements Socks5ConnectorProvi
         if (port != 443) { // only 443 (https)
             return false;
         }
-        for (DomainChecker checker : httpsSniErasureDomains) {
-            if (checker.needProxy(address, port)) {
-                return true;
-            }
-        }
-        return false;
+        return httpsSniErasureDomains.matches(address, port);
     }
 
     @Override
@@ -21,6 +21,7 @@ import io.vproxy.vfd.IP;
 import io.vproxy.vfd.IPPort;
 import io.vproxy.vproxyx.websocks.ConfigProcessor;
 import io.vproxy.vproxyx.websocks.DomainChecker;
+import io.vproxy.vproxyx.websocks.DomainMatcher;
 import io.vproxy.vproxyx.websocks.WebSocksProxyAgentConnectorProvider;
 import io.vproxy.vproxyx.websocks.WebSocksUtils;
 
@@ -34,16 +35,17 @@ import java.util.List;
 
 public class RelayHttpsServer {
     private final WebSocksProxyAgentConnectorProvider connectorProvider;
-    private final List<DomainChecker> httpsSniErasureDomains;
-    private final List<DomainChecker> proxyDomains;
+    private final DomainMatcher httpsSniErasureDomains;
+    private final DomainMatcher proxyDomains;
 
     public RelayHttpsServer(WebSocksProxyAgentConnectorProvider connectorProvider, ConfigProcessor config) {
         this.connectorProvider = connectorProvider;
-        httpsSniErasureDomains = config.getHttpsSniErasureDomains();
-        proxyDomains = new LinkedList<>();
+        httpsSniErasureDomains = new DomainMatcher(config.getHttpsSniErasureDomains());
+        List<DomainChecker> proxyDomains = new LinkedList<>();
         for (List<DomainChecker> domains : config.getDomains().values()) {
             proxyDomains.addAll(domains);
         }
+        this.proxyDomains = new DomainMatcher(proxyDomains);
     }
 
     public Proxy launch(EventLoopGroup acceptor, EventLoopGroup worker) throws IOException {
@@ -124,31 +126,27 @@ public class RelayHttpsServer {
         }
 
         private void handle(ProtocolHandlerContext<Tuple<RelayHttpsProtocolContext, Callback<Connector, IOException>>> ctx, String hostname) {
-            for (DomainChecker chk : httpsSniErasureDomains) {
-                if (chk.needProxy(hostname, 443)) {
-                    // get alpn
-                    String[][] alpn = new String[1][];
-                    {
-                        IOException err = SSLHelper.extractAlpnFromClientHello(ctx.inBuffer, alpn);
-                        if (err != null) {
-                            ctx.data.left.errored = true;
-                            ctx.data.right.failed(err);
-                            return;
-                        }
+            if (httpsSniErasureDomains.matches(hostname, 443)) {
+                // get alpn
+                String[][] alpn = new String[1][];
+                {
+                    IOException err = SSLHelper.extractAlpnFromClientHello(ctx.inBuffer, alpn);
+                    if (err != null) {
+                        ctx.data.left.errored = true;
+                        ctx.data.right.failed(err);
+                        return;
                     }
-
-                    Logger.alert("[CLIENT_HELLO] sni = " + hostname + ", alpn = " + (alpn[0] == null ? "null" : Arrays.toString(alpn[0])));
-                    handleRelay(ctx, hostname, alpn[0]);
-                    return;
                 }
+
+                Logger.alert("[CLIENT_HELLO] sni = " + hostname + ", alpn = " + (alpn[0] == null ? "null" : Arrays.toString(alpn[0])));
+                handleRelay(ctx, hostname, alpn[0]);
+                return;
             }
 
             Logger.alert("[CLIENT_HELLO] sni = " + hostname);
-            for (DomainChecker chk : proxyDomains) { // proxy relay may cover more conditions than direct relay
-                if (chk.needProxy(hostname, 443)) {
-                    handleProxy(ctx, hostname);
-                    return;
-                }
+            if (proxyDomains.matches(hostname, 443)) { // proxy relay may cover more conditions than direct relay
+                handleProxy(ctx, hostname);
+                return;
             }
             // cannot handle the condition
             ctx.data.left.errored = true;
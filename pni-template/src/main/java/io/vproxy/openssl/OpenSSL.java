@@ -0,0 +1,124 @@
+package io.vproxy.openssl;
+
+import io.vproxy.pni.annotation.*;
+
+import java.lang.foreign.MemorySegment;
+
+// functions in libvpssl, a thin layer over SSL objects bound to memory BIOs
+@Downcall
+@Include("vpssl.h")
+interface PNIOpenSSLFunc {
+    @Name("vpssl_ctx_new")
+    @Style(Styles.critical)
+    MemorySegment ctxNew(int server, int verify, String certChainPem, String keyPem);
+
+    @Name("vpssl_ctx_free")
+    @Style(Styles.critical)
+    void ctxFree(MemorySegment ctx);
+
+    @Name("vpssl_ctx_set_session_cache")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int ctxSetSessionCache(MemorySegment ctx, int size, int timeout);
+
+    @Name("vpssl_set_ticket_keys")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int setTicketKeys(@Raw byte[] keys, int n);
+
+    @Name("vpssl_new")
+    @Style(Styles.critical)
+    MemorySegment sslNew(MemorySegment ctx, int server, String sni);
+
+    @Name("vpssl_free")
+    @Style(Styles.critical)
+    void sslFree(MemorySegment ssl);
+
+    @Name("vpssl_set_versions")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int setVersions(MemorySegment ssl, int min, int max);
+
+    @Name("vpssl_pause_client_hello")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    void pauseClientHello(MemorySegment ssl);
+
+    @Name("vpssl_handshake")
+    @Style(Styles.critical)
+    int handshake(MemorySegment ssl);
+
+    @Name("vpssl_feed")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int feed(MemorySegment ssl, @Raw byte[] buf, int len);
+
+    @Name("vpssl_drain")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int drain(MemorySegment ssl, @Raw byte[] buf, int len);
+
+    @Name("vpssl_pending")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int pending(MemorySegment ssl);
+
+    @Name("vpssl_write")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int write(MemorySegment ssl, @Raw byte[] buf, int len);
+
+    @Name("vpssl_read")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int read(MemorySegment ssl, @Raw byte[] buf, int len);
+
+    @Name("vpssl_shutdown")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int shutdown(MemorySegment ssl);
+
+    @Name("vpssl_client_alpn")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int clientAlpn(MemorySegment ssl, @Raw byte[] buf, int len);
+
+    @Name("vpssl_set_alpn")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int setAlpn(MemorySegment ssl, @Raw byte[] protos, int len);
+
+    @Name("vpssl_get_alpn")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int getAlpn(MemorySegment ssl, @Raw byte[] buf, int len);
+
+    @Name("vpssl_session_flags")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int sessionFlags(MemorySegment ssl);
+
+    @Name("vpssl_get_version")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int getVersion(MemorySegment ssl);
+
+    @Name("vpssl_get_cipher")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int getCipher(MemorySegment ssl, @Raw byte[] buf, int len);
+
+    @Name("vpssl_last_error")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    int lastError(@Raw byte[] buf, int len);
+
+    @Name("vpssl_ktls_prepare")
+    @Style(Styles.critical)
+    @LinkerOption.Critical
+    void ktlsPrepare(MemorySegment ssl);
+
+    @Name("vpssl_ktls_start")
+    @Style(Styles.critical)
+    int ktlsStart(MemorySegment ssl, int fd, int tx);
+}
@@ -56,6 +56,26 @@ interface PNIPosixNative {
     @LinkerOption.Critical
     void aeDeleteEventLoop(long ae);
 
+    @LinkerOption.Critical
+    long uringCreate(int entries, int setsize) throws IOException;
+
+    @LinkerOption.Critical
+    MemorySegment uringGetFired(long ring);
+
+    @LinkerOption.Critical
+    MemorySegment uringGetAccepted(long ring);
+
+    @LinkerOption.Critical
+    int uringGetAcceptedNum(long ring);
+
+    int uringPoll(long ring, long wait) throws IOException;
+
+    @LinkerOption.Critical
+    void uringUpdateFileEvent(long ring, int fd, int mask, boolean accept) throws IOException;
+
+    @LinkerOption.Critical
+    void uringDeleteEventLoop(long ring);
+
     @LinkerOption.Critical
     void setBlocking(int fd, boolean v) throws IOException;
 
@@ -148,6 +168,12 @@ interface PNIPosixNative {
     @LinkerOption.Critical
     int write(int fd, @Raw ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    @LinkerOption.Critical
+    int writev(int fd, long[] addrs, int[] lens, int count) throws IOException;
+
+    @LinkerOption.Critical
+    int readv(int fd, long[] addrs, int[] lens, int count) throws IOException;
+
     @LinkerOption.Critical
     int sendtoIPv4(int fd, @Raw ByteBuffer directBuffer, int off, int len, int addrHostOrder, int port) throws IOException;
 
@@ -160,6 +186,18 @@ interface PNIPosixNative {
     @LinkerOption.Critical
     PNIUDPRecvResultIPv6ST recvfromIPv6(int fd, @Raw ByteBuffer directBuffer, int off, int len) throws IOException;
 
+    @LinkerOption.Critical
+    int recvmmsgIPv4(int fd, @Raw ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
+    @LinkerOption.Critical
+    int recvmmsgIPv6(int fd, @Raw ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
+    @LinkerOption.Critical
+    int sendmmsgIPv4(int fd, @Raw ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
+    @LinkerOption.Critical
+    int sendmmsgIPv6(int fd, @Raw ByteBuffer directBuffer, int slotLen, int vlen, int[] meta) throws IOException;
+
     @LinkerOption.Critical
     long currentTimeMillis();
 
@@ -174,6 +212,12 @@ interface PNIPosixNative {
 
     @LinkerOption.Critical
     void setCoreAffinityForCurrentThread(long mask) throws IOException;
+
+    @LinkerOption.Critical
+    int openSplicePipe(int[] fds, int size) throws IOException;
+
+    @LinkerOption.Critical
+    int splice(int fdIn, int fdOut, int len) throws IOException;
 }
 
 @SuppressWarnings("unused")
@@ -0,0 +1,120 @@
+package io.vproxy.poc;
+
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vpacket.conntrack.FlowTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// compare the FlowTable used by Conntrack with the previous implementation
+// which allocates two IPPort objects per lookup and looks up nested HashMaps (local => remote => entry)
+public class ConntrackBenchmark {
+    private static final int FLOWS = 1_000_000;
+    private static final int LOCALS = 64;
+    private static final int LOOKUPS = 20_000_000;
+
+    private static class E {
+        final IP rip;
+        final int rport;
+        final IP lip;
+        final int lport;
+
+        E(IP rip, int rport, IP lip, int lport) {
+            this.rip = rip;
+            this.rport = rport;
+            this.lip = lip;
+            this.lport = lport;
+        }
+    }
+
+    public static void main(String[] args) {
+        for (boolean v4 : new boolean[]{true, false}) {
+            run(v4);
+        }
+    }
+
+    private static void run(boolean v4) {
+        Random rand = new Random(FLOWS);
+        IP[] locals = new IP[LOCALS];
+        for (int i = 0; i < LOCALS; ++i) {
+            locals[i] = randomIP(rand, v4);
+        }
+        var table = new FlowTable<E>();
+        var baseline = new HashMap<IPPort, Map<IPPort, E>>();
+        E[] flows = new E[FLOWS];
+        int added = 0;
+        long begin = System.nanoTime();
+        while (added < FLOWS) {
+            var e = new E(randomIP(rand, v4), 1024 + rand.nextInt(60000), locals[rand.nextInt(LOCALS)], 80 + rand.nextInt(4));
+            if (table.put(e.rip, e.rport, e.lip, e.lport, e) != null) {
+                continue;
+            }
+            flows[added++] = e;
+        }
+        long tableInsert = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (E e : flows) {
+            baseline.computeIfAbsent(new IPPort(e.lip, e.lport), x -> new HashMap<>()).put(new IPPort(e.rip, e.rport), e);
+        }
+        long mapsInsert = System.nanoTime() - begin;
+        for (E e : flows) {
+            if (table.get(e.rip, e.rport, e.lip, e.lport) != lookupBaseline(baseline, e)) {
+                throw new IllegalStateException("result mismatch");
+            }
+        }
+
+        // warm up then measure
+        measureTable(table, flows);
+        long tableLookup = measureTable(table, flows);
+        measureBaseline(baseline, flows);
+        long mapsLookup = measureBaseline(baseline, flows);
+
+        System.out.printf("%s flows=%d load=%d%% insert: table=%.1fns maps=%.1fns lookup: table=%.1fns maps=%.1fns%n",
+            v4 ? "ipv4" : "ipv6", FLOWS, table.loadFactorPercent(),
+            tableInsert / (double) FLOWS, mapsInsert / (double) FLOWS,
+            tableLookup / (double) LOOKUPS, mapsLookup / (double) LOOKUPS);
+    }
+
+    private static IP randomIP(Random rand, boolean v4) {
+        byte[] b = new byte[v4 ? 4 : 16];
+        rand.nextBytes(b);
+        return IP.from(b);
+    }
+
+    private static E lookupBaseline(Map<IPPort, Map<IPPort, E>> maps, E e) {
+        var map = maps.get(new IPPort(e.lip, e.lport));
+        if (map == null) {
+            return null;
+        }
+        return map.get(new IPPort(e.rip, e.rport));
+    }
+
+    private static long measureTable(FlowTable<E> table, E[] flows) {
+        int hit = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; ++i) {
+            E e = flows[i % FLOWS];
+            if (table.get(e.rip, e.rport, e.lip, e.lport) != null) {
+                ++hit;
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (hit == -1) System.out.println(); // prevent dead code elimination
+        return cost;
+    }
+
+    private static long measureBaseline(Map<IPPort, Map<IPPort, E>> maps, E[] flows) {
+        int hit = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; ++i) {
+            if (lookupBaseline(maps, flows[i % FLOWS]) != null) {
+                ++hit;
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (hit == -1) System.out.println(); // prevent dead code elimination
+        return cost;
+    }
+}
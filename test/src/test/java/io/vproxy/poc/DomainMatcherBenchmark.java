@@ -0,0 +1,102 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.util.Logger;
+import io.vproxy.lib.http1.CoroutineHttp1ClientConnection;
+import io.vproxy.vproxyx.websocks.ABP;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+// compare the compiled abp rules with checking rules one by one
+// usage: DomainMatcherBenchmark [abp file (base64 or plain text)], gfwlist is downloaded if not specified
+public class DomainMatcherBenchmark {
+    private static final String GFWLIST = "https://gitee.com/wkgcass/gfwlist/raw/master/gfwlist.txt";
+    private static final int INPUTS = 50_000;
+    private static final int HOT_INPUTS = 1_000;
+    private static final int LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) throws Throwable {
+        String content;
+        if (args.length > 0) {
+            content = Files.readString(Path.of(args[0]));
+        } else {
+            content = new String(CoroutineHttp1ClientConnection.simpleGet(GFWLIST, true).block().toJavaArray());
+        }
+        content = Arrays.stream(content.split("\n")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.joining("\n"));
+        String rules;
+        try {
+            rules = new String(Base64.getDecoder().decode(content.replace("\n", "")));
+        } catch (IllegalArgumentException e) {
+            rules = content;
+        }
+
+        long begin = System.nanoTime();
+        ABP abp = new ABP("benchmark", false);
+        abp.addRule(rules);
+        abp.block("example.com"); // compile
+        long compile = System.nanoTime() - begin;
+
+        // domains in the rules, their sub domains, and domains not in the rules
+        Random rand = new Random(1);
+        List<String> hosts = new ArrayList<>();
+        for (String line : rules.split("\n")) {
+            line = line.trim().replaceAll("^(@@)?\\|*\\.?", "").replaceAll("^https?://", "");
+            if (line.matches("[a-zA-Z0-9.-]+\\.[a-zA-Z]+.*")) {
+                hosts.add(line.replaceAll("[/:].*$", ""));
+            }
+        }
+        String[] inputs = new String[INPUTS];
+        for (int i = 0; i < INPUTS; ++i) {
+            int kind = rand.nextInt(3);
+            if (kind == 2 || hosts.isEmpty()) {
+                inputs[i] = "host" + rand.nextInt(1_000_000) + ".example" + rand.nextInt(100) + ".com";
+            } else {
+                String h = hosts.get(rand.nextInt(hosts.size()));
+                inputs[i] = kind == 0 ? h : "www" + rand.nextInt(100) + "." + h;
+            }
+        }
+        String[] hotInputs = Arrays.copyOf(inputs, HOT_INPUTS);
+
+        // matched rules are logged, which is not what is measured here
+        Logger.logDispatcher.removeLogHandler(Logger.stdoutLogHandler);
+        for (String s : inputs) {
+            if (abp.block(s) != abp.blockLinear(s)) {
+                throw new IllegalStateException("result mismatch for " + s);
+            }
+        }
+
+        // warm up then measure
+        measure(abp, hotInputs, false, LOOKUPS);
+        long hot = measure(abp, hotInputs, false, LOOKUPS);
+        long cold = measure(abp, inputs, false, LOOKUPS);
+        int linearLookups = LOOKUPS / 100;
+        measure(abp, inputs, true, linearLookups);
+        long linear = measure(abp, inputs, true, linearLookups);
+        Logger.logDispatcher.addLogHandler(Logger.stdoutLogHandler);
+
+        System.out.printf("rules=%d compile=%.1fms%n", rules.split("\n").length, compile / 1_000_000.0);
+        System.out.printf("compiled (%d hot domains): %.0f lookups/s%n", HOT_INPUTS, LOOKUPS / (hot / 1e9));
+        System.out.printf("compiled (%d domains):     %.0f lookups/s%n", INPUTS, LOOKUPS / (cold / 1e9));
+        System.out.printf("linear   (%d domains):     %.0f lookups/s%n", INPUTS, linearLookups / (linear / 1e9));
+    }
+
+    private static long measure(ABP abp, String[] inputs, boolean linear, int lookups) {
+        int blocked = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < lookups; ++i) {
+            String s = inputs[i % inputs.length];
+            if (linear ? abp.blockLinear(s) : abp.block(s)) {
+                ++blocked;
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (blocked == -1) System.out.println(); // prevent dead code elimination
+        return cost;
+    }
+}
@@ -0,0 +1,99 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.Consts;
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.MacAddress;
+import io.vproxy.vpacket.UdpPacket;
+import io.vproxy.vproxyx.pktfiltergen.flow.FlowClassifier;
+import io.vproxy.vproxyx.pktfiltergen.flow.Flows;
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.util.SwitchUtils;
+
+import java.util.Random;
+
+// compare the tuple space search of FlowClassifier with checking flows one by one,
+// which is what the generated packet filter does
+public class FlowClassifierBenchmark {
+    private static final int PACKETS = 10_000;
+    private static final int LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        for (int n : new int[]{100, 1000, 10_000}) {
+            run(n);
+        }
+    }
+
+    private static void run(int n) throws Exception {
+        Random rand = new Random(n);
+        // acl-like rules: src network, dst host and dst port
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            sb.append("table=0,priority=").append(rand.nextInt(1000))
+                .append(",udp,nw_src=10.").append(rand.nextInt(256)).append(".0.0/").append(rand.nextBoolean() ? 16 : 8);
+            if (rand.nextInt(4) != 0) {
+                sb.append(",nw_dst=172.16.").append(rand.nextInt(16)).append(".").append(rand.nextInt(256));
+            }
+            sb.append(",tp_dst=").append(1 + rand.nextInt(1024))
+                .append(",actions=drop\n");
+        }
+        sb.append("table=0,priority=0,actions=normal\n");
+        Flows flows = new Flows();
+        flows.add(sb.toString());
+        long begin = System.nanoTime();
+        FlowClassifier classifier = flows.compile();
+        long compile = System.nanoTime() - begin;
+
+        PacketBuffer[] pkbs = new PacketBuffer[PACKETS];
+        for (int i = 0; i < PACKETS; ++i) {
+            var udp = new UdpPacket();
+            udp.setSrcPort(1 + rand.nextInt(65535));
+            udp.setDstPort(1 + rand.nextInt(1024));
+            udp.setLength(8);
+            udp.setData(ByteArray.allocate(0));
+            var ip = SwitchUtils.buildIpPacket(
+                IP.from("10." + rand.nextInt(256) + "." + rand.nextInt(256) + ".1"),
+                IP.from("172.16." + rand.nextInt(16) + "." + rand.nextInt(256)),
+                Consts.IP_PROTOCOL_UDP, udp);
+            var ether = SwitchUtils.buildEtherIpPacket(new MacAddress("02:00:00:00:00:02"), new MacAddress("02:00:00:00:00:01"), ip);
+            var pkb = PacketBuffer.fromEtherBytes(null, 1, ether.getRawPacket(0), 0, 0);
+            pkb.init();
+            pkb.ensurePartialPacketParsed();
+            pkbs[i] = pkb;
+        }
+        for (var pkb : pkbs) {
+            if (classifier.lookup(null, pkb, 0) != classifier.lookupLinear(null, pkb, 0)) {
+                throw new IllegalStateException("result mismatch for " + pkb);
+            }
+        }
+
+        // warm up then measure
+        measure(classifier, pkbs, false);
+        long tss = measure(classifier, pkbs, false);
+        int linearLookups = Math.max(LOOKUPS / n, PACKETS);
+        measure(classifier, pkbs, true, linearLookups);
+        long linear = measure(classifier, pkbs, true, linearLookups);
+
+        System.out.printf("flows=%-6d compile=%.1fms classifier=%.1fns linear=%.1fns%n",
+            n, compile / 1_000_000.0, tss / (double) LOOKUPS, linear / (double) linearLookups);
+    }
+
+    private static long measure(FlowClassifier classifier, PacketBuffer[] pkbs, boolean linear) {
+        return measure(classifier, pkbs, linear, LOOKUPS);
+    }
+
+    private static long measure(FlowClassifier classifier, PacketBuffer[] pkbs, boolean linear, int lookups) {
+        int hit = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < lookups; ++i) {
+            var pkb = pkbs[i % PACKETS];
+            var flow = linear ? classifier.lookupLinear(null, pkb, 0) : classifier.lookup(null, pkb, 0);
+            if (flow.priority != 0) {
+                ++hit;
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (hit == -1) System.out.println(); // prevent dead code elimination
+        return cost;
+    }
+}
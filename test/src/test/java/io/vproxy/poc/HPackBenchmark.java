@@ -0,0 +1,115 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.processor.httpbin.entity.Header;
+import io.vproxy.base.processor.httpbin.hpack.HPack;
+import io.vproxy.base.util.ByteArray;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// measure hpack decoding and encoding with header sets of grpc unary calls
+// first: the first call on a connection, most fields are literals with incremental indexing
+// repeated: following calls on the same connection, most fields are indexed in the dynamic table
+// results are the cost and bytes allocated per header block
+public class HPackBenchmark {
+    private static final int ROUNDS = 2_000_000;
+
+    private static final List<Header> REQUEST = List.of(
+        new Header(":method", "POST"),
+        new Header(":scheme", "http"),
+        new Header(":path", "/helloworld.Greeter/SayHello"),
+        new Header(":authority", "greeter.default.svc.cluster.local:50051"),
+        new Header("content-type", "application/grpc"),
+        new Header("te", "trailers"),
+        new Header("grpc-timeout", "999870u"),
+        new Header("grpc-accept-encoding", "identity,deflate,gzip"),
+        new Header("user-agent", "grpc-java-netty/1.60.0"),
+        new Header("x-request-id", "3f1a2b4c-5d6e-7f80-91a2-b3c4d5e6f708"),
+        new Header("traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01")
+    );
+    private static final List<Header> RESPONSE = List.of(
+        new Header(":status", "200"),
+        new Header("content-type", "application/grpc"),
+        new Header("grpc-encoding", "identity"),
+        new Header("grpc-accept-encoding", "gzip")
+    );
+    private static final List<Header> TRAILERS = List.of(
+        new Header("grpc-status", "0"),
+        new Header("grpc-message", "")
+    );
+
+    public static void main(String[] args) throws Exception {
+        var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 2; ++i) { // the first round is warm up
+            boolean print = i == 1;
+            for (var set : List.of(REQUEST, RESPONSE, TRAILERS)) {
+                String name = set == REQUEST ? "request" : set == RESPONSE ? "response" : "trailers";
+                decode(bean, name, set, print);
+                encode(bean, name, set, print);
+            }
+        }
+    }
+
+    private static void decode(com.sun.management.ThreadMXBean bean, String name, List<Header> headers, boolean print) throws Exception {
+        var encoder = new HPack(4096, 4096);
+        var first = encoder.encode(headers);
+        var repeated = encoder.encode(headers);
+
+        long allocBegin = bean.getCurrentThreadAllocatedBytes();
+        long begin = System.nanoTime();
+        int n = 0;
+        for (int i = 0; i < ROUNDS / 10; ++i) {
+            n += new HPack(4096, 4096).decode(first).size();
+        }
+        long firstCost = System.nanoTime() - begin;
+        long firstAlloc = bean.getCurrentThreadAllocatedBytes() - allocBegin;
+
+        var decoder = new HPack(4096, 4096);
+        decoder.decode(first);
+        var out = new ArrayList<Header>();
+        allocBegin = bean.getCurrentThreadAllocatedBytes();
+        begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i) {
+            decoder.decode(repeated, out);
+            n += out.size();
+            out.clear();
+        }
+        long repeatedCost = System.nanoTime() - begin;
+        long repeatedAlloc = bean.getCurrentThreadAllocatedBytes() - allocBegin;
+
+        if (print) {
+            System.out.printf("decode %-8s first=%7.1fns %7.1fbytes repeated=%7.1fns %7.1fbytes (%d)%n", name,
+                firstCost / (ROUNDS / 10.0), firstAlloc / (ROUNDS / 10.0),
+                repeatedCost / (double) ROUNDS, repeatedAlloc / (double) ROUNDS, n);
+        }
+    }
+
+    private static void encode(com.sun.management.ThreadMXBean bean, String name, List<Header> headers, boolean print) {
+        long allocBegin = bean.getCurrentThreadAllocatedBytes();
+        long begin = System.nanoTime();
+        long n = 0;
+        for (int i = 0; i < ROUNDS / 10; ++i) {
+            n += new HPack(4096, 4096).encode(headers).length();
+        }
+        long firstCost = System.nanoTime() - begin;
+        long firstAlloc = bean.getCurrentThreadAllocatedBytes() - allocBegin;
+
+        var encoder = new HPack(4096, 4096);
+        encoder.encode(headers);
+        allocBegin = bean.getCurrentThreadAllocatedBytes();
+        begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i) {
+            ByteArray b = encoder.encode(headers);
+            n += b.length();
+        }
+        long repeatedCost = System.nanoTime() - begin;
+        long repeatedAlloc = bean.getCurrentThreadAllocatedBytes() - allocBegin;
+
+        if (print) {
+            System.out.printf("encode %-8s first=%7.1fns %7.1fbytes repeated=%7.1fns %7.1fbytes (%d)%n", name,
+                firstCost / (ROUNDS / 10.0), firstAlloc / (ROUNDS / 10.0),
+                repeatedCost / (double) ROUNDS, repeatedAlloc / (double) ROUNDS, n);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.processor.Processor;
+import io.vproxy.base.processor.http1.HttpContext;
+import io.vproxy.base.processor.http1.HttpProcessor;
+import io.vproxy.base.processor.http1.HttpSubContext;
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.IPPort;
+
+import java.lang.management.ManagementFactory;
+
+// measure requests and responses handled per second and bytes allocated per message by the http/1.x processor
+// whole: the head is received in one piece, which is handled by the zero-copy head view
+// split: the head is split into two pieces, which is handled by the byte-by-byte parser
+// the output bytes are traversed, as they would be when written into the connection
+public class Http1HeadBenchmark {
+    private static final int ROUNDS = 2_000_000;
+
+    private static final String REQUEST = "" +
+        "GET /api/v1/users/12345?fields=name,email HTTP/1.1\r\n" +
+        "Host: www.example.com\r\n" +
+        "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36\r\n" +
+        "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+        "Accept-Language: en-US,en;q=0.5\r\n" +
+        "Accept-Encoding: gzip, deflate, br\r\n" +
+        "Cookie: session=0123456789abcdef0123456789abcdef; theme=dark\r\n" +
+        "X-Forwarded-For: 10.0.0.1\r\n" +
+        "Connection: keep-alive\r\n" +
+        "\r\n";
+    private static final String RESPONSE = "" +
+        "HTTP/1.1 200 OK\r\n" +
+        "Date: Mon, 01 Jan 2024 00:00:00 GMT\r\n" +
+        "Content-Type: application/json; charset=utf-8\r\n" +
+        "Cache-Control: no-cache\r\n" +
+        "Server: nginx\r\n" +
+        "Content-Length: 0\r\n" +
+        "\r\n";
+
+    public static void main(String[] args) throws Exception {
+        var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 2; ++i) { // the first round is warm up
+            boolean print = i == 1;
+            run(bean, "request", true, REQUEST, false, print);
+            run(bean, "request", true, REQUEST, true, print);
+            run(bean, "response", false, RESPONSE, false, print);
+            run(bean, "response", false, RESPONSE, true, print);
+        }
+    }
+
+    private static void run(com.sun.management.ThreadMXBean bean, String name, boolean frontend, String message, boolean split, boolean print) throws Exception {
+        Processor<HttpContext, HttpSubContext> p = new HttpProcessor();
+        HttpContext ctx = p.init(new Processor.ContextInitParams(new IPPort(IP.from(new byte[]{1, 2, 3, 4}), 1122)));
+        HttpSubContext sub = p.initSub(new Processor.SubContextInitParams<>(ctx, frontend ? 0 : 1, null));
+
+        byte[] bytes = message.getBytes();
+        ByteArray whole = ByteArray.from(bytes);
+        ByteArray first = whole.sub(0, bytes.length / 2);
+        ByteArray second = whole.sub(bytes.length / 2, bytes.length - bytes.length / 2);
+
+        long sum = 0;
+        long allocBegin = bean.getCurrentThreadAllocatedBytes();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i) {
+            ByteArray out;
+            if (split) {
+                sub.unittest_feed(first);
+                out = sub.unittest_feed(second);
+            } else {
+                out = sub.unittest_feed(whole);
+            }
+            for (int j = 0, len = out.length(); j < len; ++j) {
+                sum += out.get(j);
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        long alloc = bean.getCurrentThreadAllocatedBytes() - allocBegin;
+
+        if (print) {
+            System.out.printf("%-8s %-5s %,12.0f msg/s %8.1f bytes/msg (checksum %d)%n",
+                name, split ? "split" : "whole", ROUNDS / (cost / 1_000_000_000.0), alloc / (double) ROUNDS, sum);
+        }
+    }
+}
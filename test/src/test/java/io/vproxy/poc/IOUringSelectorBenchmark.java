@@ -0,0 +1,102 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.util.Utils;
+import io.vproxy.vfd.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// compare ae and io_uring selectors with the same workload:
+// 1. accept N loopback connections and register them
+// 2. ping random connections and select until all pings are received
+// requires `ulimit -n` larger than 2 * N
+public class IOUringSelectorBenchmark {
+    private static final int BATCH = 256; // must be less than the listen backlog
+    private static final int ACTIVE = 1000;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws Exception {
+        FDs fds = FDProvider.get().getProvided();
+        if (!(fds instanceof FDsWithOpts)) {
+            throw new Exception("unsupported");
+        }
+        int port = 30000;
+        for (int n : new int[]{10_000, 50_000, 100_000}) {
+            for (boolean ioUring : new boolean[]{false, true}) {
+                run((FDsWithOpts) fds, fds, n, ioUring, new IPPort("127.0.0.1", port++));
+            }
+        }
+    }
+
+    private static void run(FDsWithOpts optFDs, FDs fds, int n, boolean ioUring, IPPort addr) throws Exception {
+        FDSelector selector = optFDs.openSelector(new FDsWithOpts.Options(false, 0, ioUring));
+        ServerSocketFD server = fds.openServerSocketFD();
+        server.configureBlocking(false);
+        server.bind(addr);
+        selector.register(server, EventSet.read(), null);
+
+        List<SocketFD> clients = new ArrayList<>(n);
+        List<SocketFD> accepted = new ArrayList<>(n);
+        long acceptBegin = System.nanoTime();
+        while (clients.size() < n) {
+            int batch = Math.min(BATCH, n - clients.size());
+            for (int i = 0; i < batch; ++i) {
+                SocketFD client = fds.openSocketFD();
+                client.connect(addr);
+                clients.add(client);
+            }
+            while (accepted.size() < clients.size()) {
+                for (SelectedEntry e : selector.select()) {
+                    if (e.fd() != server) {
+                        continue;
+                    }
+                    SocketFD sock;
+                    while ((sock = server.accept()) != null) {
+                        sock.configureBlocking(false);
+                        selector.register(sock, EventSet.read(), null);
+                        accepted.add(sock);
+                    }
+                }
+            }
+        }
+        long acceptCost = System.nanoTime() - acceptBegin;
+
+        ByteBuffer ping = Utils.allocateByteBuffer(1);
+        ByteBuffer recv = Utils.allocateByteBuffer(64);
+        Random rand = new Random(1);
+        int selects = 0;
+        long pingBegin = System.nanoTime();
+        for (int r = 0; r < ROUNDS; ++r) {
+            for (int i = 0; i < ACTIVE; ++i) {
+                ping.limit(1).position(0);
+                clients.get(rand.nextInt(n)).write(ping);
+            }
+            int received = 0;
+            while (received < ACTIVE) {
+                ++selects;
+                for (SelectedEntry e : selector.select()) {
+                    recv.limit(recv.capacity()).position(0);
+                    received += ((SocketFD) e.fd()).read(recv);
+                }
+            }
+        }
+        long pingCost = System.nanoTime() - pingBegin;
+
+        System.out.printf("selector=%-8s conns=%-6d accept=%.1fus/conn ping=%.1fns/msg selects/round=%.1f%n",
+            ioUring ? "io_uring" : "ae", n, acceptCost / 1000.0 / n,
+            pingCost / (double) (ROUNDS * ACTIVE), selects / (double) ROUNDS);
+
+        for (SocketFD s : accepted) {
+            selector.remove(s);
+            s.close();
+        }
+        for (SocketFD s : clients) {
+            s.close();
+        }
+        selector.remove(server);
+        server.close();
+        selector.close();
+    }
+}
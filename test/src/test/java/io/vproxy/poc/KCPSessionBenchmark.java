@@ -0,0 +1,152 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.connection.*;
+import io.vproxy.base.selector.PeriodicEvent;
+import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.selector.wrap.kcp.KCPFDs;
+import io.vproxy.base.util.RingBuffer;
+import io.vproxy.base.util.coll.Tuple;
+import io.vproxy.base.util.nio.ByteArrayChannel;
+import io.vproxy.base.util.thread.VProxyThread;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vfd.SocketFD;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// measure cpu consumed by idle and busy kcp sessions
+// usage: KCPSessionBenchmark [sessions]
+public class KCPSessionBenchmark {
+    private static final int PORT = 18081;
+    private static final int MEASURE_MILLIS = 5_000;
+    private static final int BUSY_INTERVAL = 10;
+    private static final int BUSY_BYTES = 1024;
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        SelectorEventLoop serverSelectorLoop = SelectorEventLoop.open();
+        NetEventLoop serverLoop = new NetEventLoop(serverSelectorLoop);
+        ServerSock server = ServerSock.createUDP(new IPPort(PORT), serverSelectorLoop, KCPFDs.getFast3());
+        serverLoop.addServer(server, null, new DiscardServerHandler());
+        VProxyThread.create(serverSelectorLoop::loop, "kcp-benchmark-server").start();
+
+        SelectorEventLoop clientSelectorLoop = SelectorEventLoop.open();
+        NetEventLoop clientLoop = new NetEventLoop(clientSelectorLoop);
+        VProxyThread.create(clientSelectorLoop::loop, "kcp-benchmark-client").start();
+
+        List<ConnectableConnection> conns = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; ++i) {
+            ConnectableConnection conn = ConnectableConnection.createUDP(new IPPort(PORT), new ConnectionOpts(),
+                RingBuffer.allocateDirect(16384), RingBuffer.allocateDirect(16384), clientSelectorLoop, KCPFDs.getClientFast3());
+            clientLoop.addConnectableConnection(conn, null, new DiscardClientHandler());
+            conns.add(conn);
+        }
+        // let all sessions be accepted and all acks be sent
+        Thread.sleep(3_000);
+
+        long idle = measureCpu();
+
+        byte[] payload = new byte[BUSY_BYTES];
+        PeriodicEvent busyEvent = clientSelectorLoop.period(BUSY_INTERVAL, () -> {
+            for (var conn : conns) {
+                conn.getOutBuffer().storeBytesFrom(ByteArrayChannel.fromFull(payload));
+            }
+        });
+        Thread.sleep(1_000);
+        long busy = measureCpu();
+        busyEvent.cancel();
+
+        System.out.printf("sessions=%d, each busy session sends %d bytes every %dms%n", sessions, BUSY_BYTES, BUSY_INTERVAL);
+        System.out.printf("idle: %.1fms cpu per second, %.2fus per session per second%n",
+            idle / 1e6 / (MEASURE_MILLIS / 1000.0), idle / 1e3 / (MEASURE_MILLIS / 1000.0) / sessions);
+        System.out.printf("busy: %.1fms cpu per second, %.2fus per session per second%n",
+            busy / 1e6 / (MEASURE_MILLIS / 1000.0), busy / 1e3 / (MEASURE_MILLIS / 1000.0) / sessions);
+
+        clientSelectorLoop.close();
+        serverSelectorLoop.close();
+    }
+
+    // cpu nanos of the process (both client and server) during the measurement
+    private static long measureCpu() throws InterruptedException {
+        var os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long begin = os.getProcessCpuTime();
+        Thread.sleep(MEASURE_MILLIS);
+        return os.getProcessCpuTime() - begin;
+    }
+
+    private static void discard(RingBuffer buf) {
+        ByteBuffer tmp = ByteBuffer.allocate(BUSY_BYTES);
+        while (buf.used() > 0) {
+            tmp.clear();
+            buf.writeTo(tmp);
+        }
+    }
+
+    private static class DiscardServerHandler implements ServerHandler {
+        @Override
+        public void acceptFail(ServerHandlerContext ctx, IOException err) {
+            err.printStackTrace();
+        }
+
+        @Override
+        public void connection(ServerHandlerContext ctx, Connection connection) {
+            try {
+                ctx.eventLoop.addConnection(connection, null, new DiscardClientHandler());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public Tuple<RingBuffer, RingBuffer> getIOBuffers(SocketFD channel) {
+            return new Tuple<>(RingBuffer.allocateDirect(16384), RingBuffer.allocateDirect(16384));
+        }
+
+        @Override
+        public void removed(ServerHandlerContext ctx) {
+            ctx.server.close();
+        }
+    }
+
+    private static class DiscardClientHandler implements ConnectableConnectionHandler {
+        @Override
+        public void connected(ConnectableConnectionHandlerContext ctx) {
+            // the server accepts the session when the first packet arrives
+            ctx.connection.getOutBuffer().storeBytesFrom(ByteArrayChannel.fromFull("hello".getBytes()));
+        }
+
+        @Override
+        public void readable(ConnectionHandlerContext ctx) {
+            discard(ctx.connection.getInBuffer());
+        }
+
+        @Override
+        public void writable(ConnectionHandlerContext ctx) {
+            // ignore
+        }
+
+        @Override
+        public void exception(ConnectionHandlerContext ctx, IOException err) {
+            err.printStackTrace();
+        }
+
+        @Override
+        public void remoteClosed(ConnectionHandlerContext ctx) {
+            ctx.connection.close();
+        }
+
+        @Override
+        public void closed(ConnectionHandlerContext ctx) {
+            // ignore
+        }
+
+        @Override
+        public void removed(ConnectionHandlerContext ctx) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.component.check.HealthCheckConfig;
+import io.vproxy.base.component.elgroup.EventLoopGroup;
+import io.vproxy.base.component.svrgroup.Method;
+import io.vproxy.base.component.svrgroup.ServerGroup;
+import io.vproxy.base.component.svrgroup.SvrHandleConnector;
+import io.vproxy.base.util.AnnotationKeys;
+import io.vproxy.base.util.Annotations;
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.IPPort;
+
+import java.util.Map;
+import java.util.Random;
+
+// compare `source` and `maglev` methods:
+// 1. the ratio of flows remapped when one server is removed or added
+// 2. the latency of one lookup
+public class MaglevBenchmark {
+    private static final int CLIENTS = 200_000;
+    private static final int LOOKUPS = 5_000_000;
+
+    public static void main(String[] args) throws Exception {
+        EventLoopGroup elg = new EventLoopGroup("bench"); // no event loops, so health checks will not start
+        IPPort[] clients = new IPPort[CLIENTS];
+        Random rand = new Random(1);
+        for (int i = 0; i < CLIENTS; ++i) {
+            byte[] b = new byte[4];
+            rand.nextBytes(b);
+            clients[i] = new IPPort(IP.from(b), 0);
+        }
+
+        for (int n : new int[]{10, 100, 1000}) {
+            for (Method method : new Method[]{Method.source, Method.maglev}) {
+                ServerGroup sg = new ServerGroup("bench-" + method + "-" + n, elg, HealthCheckConfig.ofNone(), method);
+                // do not bound the load, the connections are not made in this benchmark
+                sg.setAnnotations(new Annotations(Map.of(AnnotationKeys.ServerGroup_MaglevLoadFactor.name, "0")));
+                for (int i = 0; i < n; ++i) {
+                    sg.add("s" + i, new IPPort(IP.from(new byte[]{10, 0, (byte) (i >> 8), (byte) i}), 80), 10);
+                }
+                for (ServerGroup.ServerHandle h : sg.getServerHandles()) {
+                    h.healthy = true;
+                }
+
+                IPPort[] before = lookupAll(sg, clients);
+                sg.remove("s" + (n / 2));
+                IPPort[] afterRemove = lookupAll(sg, clients);
+                sg.add("s-new", new IPPort(IP.from(new byte[]{10, 1, 0, 0}), 80), 10);
+                sg.getServerHandles().forEach(h -> h.healthy = true);
+                IPPort[] afterAdd = lookupAll(sg, clients);
+
+                double remove = remapRatio(before, afterRemove);
+                double add = remapRatio(afterRemove, afterAdd);
+
+                // warm up then measure
+                measure(sg, clients, LOOKUPS);
+                long cost = measure(sg, clients, LOOKUPS);
+
+                System.out.printf("method=%-6s servers=%-5d remap(remove one)=%.4f remap(add one)=%.4f ideal=%.4f lookup=%.1fns%n",
+                    method, n, remove, add, 1.0 / n, cost / (double) LOOKUPS);
+                sg.destroy();
+            }
+        }
+        elg.close();
+    }
+
+    private static IPPort[] lookupAll(ServerGroup sg, IPPort[] clients) {
+        IPPort[] result = new IPPort[clients.length];
+        for (int i = 0; i < clients.length; ++i) {
+            SvrHandleConnector c = sg.next(clients[i]);
+            result[i] = c == null ? null : c.remote;
+        }
+        return result;
+    }
+
+    private static double remapRatio(IPPort[] a, IPPort[] b) {
+        int changed = 0;
+        for (int i = 0; i < a.length; ++i) {
+            if (a[i] == null || !a[i].equals(b[i])) {
+                ++changed;
+            }
+        }
+        return changed / (double) a.length;
+    }
+
+    private static long measure(ServerGroup sg, IPPort[] clients, int times) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < times; ++i) {
+            SvrHandleConnector c = sg.next(clients[i % clients.length]);
+            sum += c.remote.getPort();
+        }
+        long cost = System.nanoTime() - start;
+        if (sum == 0) {
+            System.out.println("unexpected result");
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,126 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.util.Network;
+import io.vproxy.base.util.Networks;
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.IPv4;
+import io.vproxy.vfd.IPv6;
+
+import java.util.*;
+
+// compare the trie based Networks with the previous implementation
+// which masks the ip with each mask length and looks up a HashMap for each of them
+public class NetworksBenchmark {
+    private static final int IPS = 100_000;
+    private static final int LOOKUPS = 10_000_000;
+
+    private static class R implements Networks.Rule {
+    }
+
+    public static void main(String[] args) {
+        for (boolean v4 : new boolean[]{true, false}) {
+            for (int n : new int[]{10, 1000, 100_000}) {
+                run(v4, n);
+            }
+        }
+    }
+
+    private static void run(boolean v4, int n) {
+        Random rand = new Random(n);
+        var nets = new Networks<R>();
+        var baseline = new MaskGroupedMaps(v4);
+        int added = 0;
+        while (added < n) {
+            // realistic tables are mostly /16 to /24 for ipv4, and /32 to /64 for ipv6
+            int mask = v4 ? 16 + rand.nextInt(9) : 32 + rand.nextInt(33);
+            var net = Network.eraseToNetwork(randomIP(rand, v4), mask);
+            if (nets.lookup(net) != null) {
+                continue;
+            }
+            var r = new R();
+            nets.add(net, r);
+            baseline.add(net, r);
+            ++added;
+        }
+        IP[] ips = new IP[IPS];
+        for (int i = 0; i < IPS; ++i) {
+            ips[i] = randomIP(rand, v4);
+        }
+        for (IP ip : ips) {
+            if (nets.lookup(ip) != baseline.lookup(ip)) {
+                throw new IllegalStateException("result mismatch for " + ip);
+            }
+        }
+
+        // warm up then measure
+        measureTrie(nets, ips);
+        long trie = measureTrie(nets, ips);
+        measureBaseline(baseline, ips);
+        long maps = measureBaseline(baseline, ips);
+
+        System.out.printf("%s prefixes=%-6d trie=%.1fns hashmap-per-mask=%.1fns%n",
+            v4 ? "ipv4" : "ipv6", n, trie / (double) LOOKUPS, maps / (double) LOOKUPS);
+    }
+
+    private static IP randomIP(Random rand, boolean v4) {
+        byte[] b = new byte[v4 ? 4 : 16];
+        rand.nextBytes(b);
+        b[0] = (byte) (v4 ? 10 : 0x20);
+        return IP.from(b);
+    }
+
+    private static long measureTrie(Networks<R> nets, IP[] ips) {
+        int hit = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; ++i) {
+            if (nets.lookup(ips[i % IPS]) != null) {
+                ++hit;
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (hit == -1) System.out.println(); // prevent dead code elimination
+        return cost;
+    }
+
+    private static long measureBaseline(MaskGroupedMaps nets, IP[] ips) {
+        int hit = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; ++i) {
+            if (nets.lookup(ips[i % IPS]) != null) {
+                ++hit;
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (hit == -1) System.out.println(); // prevent dead code elimination
+        return cost;
+    }
+
+    private static class MaskGroupedMaps {
+        private final boolean v4;
+        private final TreeMap<Integer, Map<Object, R>> groups = new TreeMap<>(Comparator.reverseOrder());
+        private int[] masks = new int[0];
+        private List<Map<Object, R>> maps = new ArrayList<>();
+
+        MaskGroupedMaps(boolean v4) {
+            this.v4 = v4;
+        }
+
+        void add(Network net, R r) {
+            Object key = v4 ? (Object) ((IPv4) net.getIp()).getIPv4Value() : ((IPv6) net.getIp()).getIPv6Values();
+            groups.computeIfAbsent(net.getMask(), m -> new HashMap<>()).put(key, r);
+            masks = groups.keySet().stream().mapToInt(i -> i).toArray();
+            maps = new ArrayList<>(groups.values());
+        }
+
+        R lookup(IP ip) {
+            for (int i = 0; i < masks.length; ++i) {
+                Object key = v4 ? (Object) ((IPv4) ip).maskValue(masks[i]) : ((IPv6) ip).maskValues(masks[i]);
+                R r = maps.get(i).get(key);
+                if (r != null) {
+                    return r;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.commons.graph.GraphBuilder;
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.node.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// measure packets per second of the scheduler itself with a chain of trivial nodes,
+// packets are scheduled in batches as XDPIface and TapIface do
+public class NodeGraphSchedulerBenchmark {
+    private static final int CHAIN = 6;
+    private static final int ROUNDS = 200_000;
+
+    private static long handled = 0;
+
+    private static class ChainNode extends Node {
+        private final int n;
+        private final NodeEgress next = new NodeEgress("next");
+
+        ChainNode(int n) {
+            super("chain-" + n);
+            this.n = n;
+        }
+
+        @Override
+        protected void initGraph(GraphBuilder<Node> builder) {
+            if (n + 1 < CHAIN) {
+                builder.addEdge("chain-" + n, "chain-" + (n + 1), "next", 1);
+            }
+        }
+
+        @Override
+        protected void initNode() {
+            fillEdges(next);
+        }
+
+        @Override
+        protected HandleResult preHandle(PacketBuffer pkb) {
+            return HandleResult.PASS;
+        }
+
+        @Override
+        protected HandleResult handle(PacketBuffer pkb, NodeGraphScheduler scheduler) {
+            pkb.mask += n;
+            if (n + 1 == CHAIN) {
+                ++handled;
+                return HandleResult.STOLEN;
+            }
+            return _returnnext(pkb, next);
+        }
+    }
+
+    public static void main(String[] args) {
+        var graph = new NodeGraph();
+        for (int i = 0; i < CHAIN; ++i) {
+            graph.addNode(new ChainNode(i));
+        }
+        graph.initGraph();
+        graph.initNode();
+        var scheduler = new NodeGraphScheduler(graph);
+        var first = graph.getNode("chain-0");
+
+        for (int batch : new int[]{1, 16, 64, 256}) {
+            List<PacketBuffer> pkbs = new ArrayList<>(batch);
+            for (int i = 0; i < batch; ++i) {
+                pkbs.add(PacketBuffer.fromEtherBytes(null, 1, ByteArray.allocate(64), 0, 0));
+            }
+            int rounds = ROUNDS * 16 / Math.max(batch, 16);
+            run(scheduler, first, pkbs, rounds); // warm up
+            handled = 0;
+            long begin = System.nanoTime();
+            run(scheduler, first, pkbs, rounds);
+            long cost = System.nanoTime() - begin;
+            System.out.printf("batch=%-3d nodes=%d %.2f Mpps%n", batch, CHAIN, handled * 1000.0 / cost);
+        }
+    }
+
+    private static void run(NodeGraphScheduler scheduler, Node first, List<PacketBuffer> pkbs, int rounds) {
+        for (int r = 0; r < rounds; ++r) {
+            for (var pkb : pkbs) {
+                pkb.next = first;
+            }
+            scheduler.schedule(pkbs);
+        }
+    }
+}
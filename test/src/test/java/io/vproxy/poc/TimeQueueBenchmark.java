@@ -0,0 +1,83 @@
+package io.vproxy.poc;
+
+import io.vproxy.base.util.time.TimeElem;
+import io.vproxy.base.util.time.TimeQueue;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+// compare the priority queue and the timing wheel implementations of TimeQueue
+// churn: connections refresh their idle timers, i.e. cancel and add again
+// expire: timers are added with short timeouts and polled when triggered
+// each case stops after OPS operations or TIME_LIMIT, whichever comes first
+public class TimeQueueBenchmark {
+    private static final int OPS = 5_000_000;
+    private static final long TIME_LIMIT = 5_000_000_000L;
+
+    public static void main(String[] args) {
+        for (int n : new int[]{10_000, 100_000, 500_000}) {
+            for (int i = 0; i < 2; ++i) { // the first round is warm up
+                boolean print = i == 1;
+                churn("heap", TimeQueue::create, n, print);
+                churn("wheel", TimeQueue::createTimingWheel, n, print);
+                expire("heap", TimeQueue::create, n, print);
+                expire("wheel", TimeQueue::createTimingWheel, n, print);
+            }
+        }
+    }
+
+    private static void churn(String name, Supplier<TimeQueue<Integer>> constructor, int n, boolean print) {
+        var queue = constructor.get();
+        Random rand = new Random(n);
+        long current = 1_000_000;
+        @SuppressWarnings("unchecked")
+        TimeElem<Integer>[] elems = new TimeElem[n];
+        for (int i = 0; i < n; ++i) {
+            elems[i] = queue.add(current, 60_000 + rand.nextInt(60_000), i);
+        }
+        int ops = 0;
+        long begin = System.nanoTime();
+        while (ops < OPS) {
+            int x = rand.nextInt(n);
+            elems[x].removeSelf();
+            elems[x] = queue.add(current, 60_000, x);
+            if ((++ops & 1023) == 0) {
+                ++current;
+                queue.nextTime(current);
+                if (System.nanoTime() - begin > TIME_LIMIT) {
+                    break;
+                }
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (print) {
+            System.out.printf("churn  %-5s timers=%-6d %.1fns/op%n", name, n, cost / (double) ops);
+        }
+    }
+
+    private static void expire(String name, Supplier<TimeQueue<Integer>> constructor, int n, boolean print) {
+        var queue = constructor.get();
+        Random rand = new Random(n);
+        long current = 1_000_000;
+        for (int i = 0; i < n; ++i) {
+            queue.add(current, rand.nextInt(1000), i);
+        }
+        int ops = 0;
+        long begin = System.nanoTime();
+        while (ops < OPS) {
+            ++current;
+            while (queue.nextTime(current) == 0) {
+                int x = queue.poll();
+                queue.add(current, 1 + rand.nextInt(1000), x);
+                ++ops;
+            }
+            if (System.nanoTime() - begin > TIME_LIMIT) {
+                break;
+            }
+        }
+        long cost = System.nanoTime() - begin;
+        if (print) {
+            System.out.printf("expire %-5s timers=%-6d %.1fns/op%n", name, n, cost / (double) ops);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import io.vproxy.vfd.TapInfo;
 import io.vproxy.vfd.UDSPath;
 import io.vproxy.vfd.posix.AEFiredEvent;
 import io.vproxy.vfd.posix.GeneralPosix;
+import io.vproxy.vfd.posix.PosixDatagramFD;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -19,7 +20,9 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -477,6 +480,111 @@ public class TestPanamaGeneralPosix {
         assertEquals(posix.getIPv4Local(fd).toIPPort().getPort(), res.address.toIPPort().getPort());
     }
 
+    private static byte[] datagram(int i) {
+        return ("datagram-" + i + "-").repeat(i % 5 + 1).getBytes();
+    }
+
+    // more datagrams than one recvmmsg/sendmmsg call can handle
+    private void sendAndReceiveBatch(String loopback) throws Exception {
+        var receiver = new PosixDatagramFD(posix);
+        var sender = new PosixDatagramFD(posix);
+        try {
+            receiver.bind(new IPPort(loopback, 0));
+            receiver.configureBlocking(false);
+            sender.bind(new IPPort(loopback, 0));
+            sender.configureBlocking(false);
+            var dst = receiver.getLocalAddress();
+            var src = sender.getLocalAddress();
+
+            int total = 100;
+            ByteBuffer[] bufs = new ByteBuffer[total];
+            IPPort[] remotes = new IPPort[total];
+            for (int i = 0; i < total; ++i) {
+                bufs[i] = ByteBuffer.wrap(datagram(i));
+                remotes[i] = dst;
+            }
+            int sent = 0;
+            while (sent < total) {
+                int n = sender.sendBatch(Arrays.copyOfRange(bufs, sent, total), Arrays.copyOfRange(remotes, sent, total), total - sent);
+                assertTrue("sent " + n + " datagrams", n > 0 && n <= 64);
+                sent += n;
+            }
+            for (var b : bufs) {
+                assertEquals("sent datagrams are consumed", 0, b.remaining());
+            }
+
+            ByteBuffer[] recv = new ByteBuffer[total];
+            IPPort[] from = new IPPort[total];
+            int received = 0;
+            while (received < total) {
+                for (int i = 0; i < total - received; ++i) {
+                    recv[i] = ByteBuffer.allocate(2048);
+                }
+                int n = receiver.receiveBatch(recv, from, total - received);
+                assertTrue("received " + n + " datagrams", n > 0 && n <= 64);
+                for (int i = 0; i < n; ++i) {
+                    recv[i].flip();
+                    byte[] b = new byte[recv[i].remaining()];
+                    recv[i].get(b);
+                    assertArrayEquals(datagram(received + i), b);
+                    assertEquals(src, from[i]);
+                }
+                received += n;
+            }
+            // nothing left
+            recv[0] = ByteBuffer.allocate(2048);
+            assertEquals(0, receiver.receiveBatch(recv, from, 1));
+        } finally {
+            receiver.close();
+            sender.close();
+        }
+    }
+
+    @Test
+    public void sendAndReceiveBatchIPv4() throws Exception {
+        sendAndReceiveBatch("127.0.0.1");
+    }
+
+    @Test
+    public void sendAndReceiveBatchIPv6() throws Exception {
+        sendAndReceiveBatch("::1");
+    }
+
+    @Test
+    public void receiveBatchTruncated() throws Exception {
+        var receiver = new PosixDatagramFD(posix);
+        var sender = new PosixDatagramFD(posix);
+        try {
+            receiver.bind(new IPPort("127.0.0.1", 0));
+            receiver.configureBlocking(false);
+            sender.bind(new IPPort("127.0.0.1", 0));
+            sender.configureBlocking(false);
+            var dst = receiver.getLocalAddress();
+
+            ByteBuffer[] bufs = {ByteBuffer.wrap(datagram(4)), ByteBuffer.wrap(datagram(1))};
+            assertEquals(2, sender.sendBatch(bufs, new IPPort[]{dst, dst}, 2));
+
+            // the smallest buffer decides the slot length
+            ByteBuffer[] recv = {ByteBuffer.allocate(2048), ByteBuffer.allocate(10)};
+            IPPort[] from = new IPPort[2];
+            assertEquals(2, receiver.receiveBatch(recv, from, 2));
+            assertEquals(10, recv[0].position());
+            assertEquals(10, recv[1].position());
+            assertArrayEquals(Arrays.copyOf(datagram(4), 10), Arrays.copyOf(recv[0].array(), 10));
+            assertArrayEquals(Arrays.copyOf(datagram(1), 10), recv[1].array());
+
+            // the fd family must match the remote address
+            try {
+                sender.sendBatch(new ByteBuffer[]{ByteBuffer.wrap(datagram(0))}, new IPPort[]{new IPPort("::1", dst.getPort())}, 1);
+                fail();
+            } catch (IOException ignore) {
+            }
+        } finally {
+            receiver.close();
+            sender.close();
+        }
+    }
+
     @Test
     public void currentTimeMillis() {
         var now = System.currentTimeMillis();
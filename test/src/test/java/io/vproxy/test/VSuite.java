@@ -12,17 +12,23 @@ import org.junit.runners.Suite;
     TestIpParser.class,
     TestNetMask.class,
     TestTimer.class,
+    TestIOUringSelector.class,
     TestResolver.class,
+    TestDNSServer.class,
     TestSocks5.class,
     TestConnectClient.class,
     TestSSL.class,
+    TestOpenSSL.class,
+    TestKTLS.class,
     TestProtocols.class,
     TestHttp1Processor.class,
     TestHttp2Decoder.class,
+    TestHPack.class,
     TestHealthCheck.class,
     TestPacket.class,
     TestPcap.class,
     TestRouteTable.class,
+    TestConntrack.class,
     TestTCP.class,
     TestHttpServer.class,
     TestHttpClient.class,
@@ -32,8 +38,13 @@ import org.junit.runners.Suite;
     TestUtilities.class,
     TestByteArrayBuilder.class,
     TestSwitch.class,
+    TestNodeGraph.class,
     TestFlowParser.class,
     TestFlowGen.class,
+    TestFlowClassifier.class,
+    TestDomainMatcher.class,
+    TestKcp.class,
+    TestStreamedFD.class,
     TestVPWSAgentConfig.class,
     TestUtils.class,
     TestCommand.class,
@@ -0,0 +1,169 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vpacket.conntrack.Conntrack;
+import io.vproxy.vpacket.conntrack.FlowTable;
+import io.vproxy.vpacket.conntrack.udp.UdpEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestConntrack {
+    private static IPPort randomIPPort(Random rand, boolean v4) {
+        byte[] b = new byte[v4 ? 4 : 16];
+        // only a few distinct addresses, so that tuples share most of their words
+        b[b.length - 1] = (byte) rand.nextInt(4);
+        return new IPPort(IP.from(b), rand.nextInt(8));
+    }
+
+    private static <E> E get(FlowTable<E> table, IPPort remote, IPPort local) {
+        return table.get(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort());
+    }
+
+    private static <E> E put(FlowTable<E> table, IPPort remote, IPPort local, E value) {
+        return table.put(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort(), value);
+    }
+
+    private static <E> E remove(FlowTable<E> table, IPPort remote, IPPort local) {
+        return table.remove(remote.getAddress(), remote.getPort(), local.getAddress(), local.getPort());
+    }
+
+    @Test
+    public void insertAndLookup() {
+        var table = new FlowTable<String>();
+        var v4 = new IPPort("10.0.0.1", 80);
+        var v4b = new IPPort("10.0.0.1", 81);
+        var v6 = new IPPort("::a00:1", 80); // same low bits as the v4 address
+        var local = new IPPort("10.0.0.2", 8080);
+
+        assertNull(put(table, v4, local, "v4"));
+        assertNull(put(table, v4b, local, "v4b"));
+        assertNull(put(table, v6, local, "v6"));
+        assertEquals(3, table.size());
+
+        assertEquals("v4", get(table, v4, local));
+        assertEquals("v4b", get(table, v4b, local));
+        assertEquals("v6", get(table, v6, local));
+        assertNull(get(table, local, v4));
+        assertNull(get(table, new IPPort("10.0.0.3", 80), local));
+
+        assertEquals("v4", put(table, v4, local, "v4-new"));
+        assertEquals(3, table.size());
+        assertEquals("v4-new", get(table, v4, local));
+    }
+
+    @Test
+    public void deleteAndReinsert() {
+        var table = new FlowTable<String>();
+        var remote = new IPPort("10.0.0.1", 80);
+        var local = new IPPort("10.0.0.2", 8080);
+
+        assertNull(remove(table, remote, local));
+        put(table, remote, local, "a");
+        assertEquals("a", remove(table, remote, local));
+        assertEquals(0, table.size());
+        assertNull(get(table, remote, local));
+        assertNull(remove(table, remote, local));
+
+        assertNull(put(table, remote, local, "b"));
+        assertEquals(1, table.size());
+        assertEquals("b", get(table, remote, local));
+    }
+
+    @Test
+    public void resize() {
+        var table = new FlowTable<Integer>();
+        assertEquals(16, table.capacity());
+        var local = new IPPort("10.0.0.2", 8080);
+        for (int i = 0; i < 1000; ++i) {
+            put(table, new IPPort("10.0.0.1", i), local, i);
+            assertTrue(table.loadFactorPercent() <= 75);
+        }
+        assertEquals(1000, table.size());
+        assertEquals(2048, table.capacity());
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(Integer.valueOf(i), get(table, new IPPort("10.0.0.1", i), local));
+        }
+        assertEquals(1000, table.values().size());
+    }
+
+    // removals shift the following entries of the cluster back instead of leaving tombstones,
+    // compare with a HashMap when clusters are dense
+    @Test
+    public void randomOperations() {
+        var rand = new Random(9);
+        var table = new FlowTable<Integer>();
+        Map<List<IPPort>, Integer> expected = new HashMap<>();
+        List<List<IPPort>> known = new ArrayList<>();
+        for (int round = 0; round < 20000; ++round) {
+            List<IPPort> key;
+            if (!known.isEmpty() && rand.nextInt(3) != 0) {
+                key = known.get(rand.nextInt(known.size()));
+            } else {
+                boolean v4 = rand.nextBoolean();
+                key = List.of(randomIPPort(rand, v4), randomIPPort(rand, v4));
+                known.add(key);
+            }
+            var remote = key.get(0);
+            var local = key.get(1);
+            if (rand.nextInt(2) == 0) {
+                assertEquals("round " + round, expected.remove(key), remove(table, remote, local));
+            } else {
+                assertEquals("round " + round, expected.put(key, round), put(table, remote, local, round));
+            }
+            assertEquals(expected.size(), table.size());
+            if (round % 100 == 0) {
+                for (var k : known) {
+                    assertEquals("round " + round + " key " + k, expected.get(k), get(table, k.get(0), k.get(1)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removeUdpListen() {
+        var ct = new Conntrack(null);
+        var listen = new IPPort("10.0.0.2", 53);
+        var other = new IPPort("10.0.0.2", 54);
+        ct.listenUdp(listen, null);
+        ct.listenUdp(other, null);
+
+        List<UdpEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            entries.add(ct.recordUdp(new IPPort("10.0.0.1", 1000 + i), listen));
+            ct.recordUdp(new IPPort("10.0.0.1", 1000 + i), other);
+        }
+        // replaced and removed entries are dropped from the index as well
+        var replaced = entries.set(0, ct.recordUdp(entries.get(0).remote, listen));
+        assertTrue(replaced.isDestroyed());
+        ct.removeUdp(entries.get(1).remote, listen);
+        assertEquals(199, ct.countUdpEntries());
+
+        ct.removeUdpListen(listen);
+        assertNull(ct.lookupUdpListen(listen));
+        assertNotNull(ct.lookupUdpListen(other));
+        assertEquals(100, ct.countUdpEntries());
+        for (int i = 0; i < 100; ++i) {
+            assertNull(ct.lookupUdp(new IPPort("10.0.0.1", 1000 + i), listen));
+            assertNotNull(ct.lookupUdp(new IPPort("10.0.0.1", 1000 + i), other));
+            if (i != 1) {
+                assertTrue(entries.get(i).isDestroyed());
+            }
+        }
+
+        // listen again
+        ct.listenUdp(listen, null);
+        var entry = ct.recordUdp(new IPPort("10.0.0.1", 1000), listen);
+        assertSame(entry, ct.lookupUdp(new IPPort("10.0.0.1", 1000), listen));
+        ct.removeUdpListen(listen);
+        assertTrue(entry.isDestroyed());
+        assertEquals(100, ct.countUdpEntries());
+    }
+}
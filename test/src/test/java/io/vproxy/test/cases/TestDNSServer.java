@@ -0,0 +1,160 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.component.check.HealthCheckConfig;
+import io.vproxy.base.component.elgroup.EventLoopGroup;
+import io.vproxy.base.component.svrgroup.Method;
+import io.vproxy.base.component.svrgroup.ServerGroup;
+import io.vproxy.base.util.AnnotationKeys;
+import io.vproxy.base.util.Annotations;
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.component.secure.SecurityGroup;
+import io.vproxy.component.svrgroup.Upstream;
+import io.vproxy.dns.DNSServer;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vpacket.dns.*;
+import io.vproxy.vpacket.dns.rdata.A;
+import io.vproxy.vpacket.dns.rdata.SRV;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestDNSServer {
+    private static final int dnsPort = 18053;
+
+    private EventLoopGroup elg;
+    private ServerGroup sg;
+    private Upstream ups;
+    private DNSServer dnsServer;
+    private DatagramSocket client;
+
+    @Before
+    public void setUp() throws Exception {
+        elg = new EventLoopGroup("elg-dns");
+        elg.add("el0");
+        sg = new ServerGroup("sg-dns", elg, new HealthCheckConfig(400, /* disable health check */24 * 60 * 60 * 1000, 2, 3), Method.wrr);
+        sg.setAnnotations(new Annotations(Map.of(AnnotationKeys.ServerGroup_HintHost.name, "svc.cache.test")));
+        sg.add("svr0", new IPPort("10.0.0.1", 80), 10);
+        // manually set to healthy
+        for (ServerGroup.ServerHandle h : sg.getServerHandles()) {
+            h.healthy = true;
+        }
+        ups = new Upstream("ups-dns");
+        ups.add(sg, 10);
+        dnsServer = new DNSServer("dns0", new IPPort("127.0.0.1", dnsPort), elg, ups, 60, new SecurityGroup("secg-dns", true));
+        dnsServer.start();
+
+        client = new DatagramSocket();
+        client.setSoTimeout(2000);
+    }
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (dnsServer != null) {
+            dnsServer.stop();
+        }
+        elg.close();
+    }
+
+    private DNSPacket query(int id, String domain, DNSType type) throws Exception {
+        DNSPacket req = new DNSPacket();
+        req.id = id;
+        req.isResponse = false;
+        req.opcode = DNSPacket.Opcode.QUERY;
+        req.rd = true;
+        DNSQuestion q = new DNSQuestion();
+        q.qname = domain;
+        q.qtype = type;
+        q.qclass = DNSClass.IN;
+        req.questions.add(q);
+        byte[] bytes = req.toByteArray().toJavaArray();
+        client.send(new DatagramPacket(bytes, bytes.length, new InetSocketAddress("127.0.0.1", dnsPort)));
+
+        byte[] buf = new byte[1500];
+        DatagramPacket recv = new DatagramPacket(buf, buf.length);
+        client.receive(recv);
+        List<DNSPacket> packets = Formatter.parsePackets(ByteArray.from(buf).sub(0, recv.getLength()));
+        assertEquals(1, packets.size());
+        DNSPacket resp = packets.get(0);
+        assertTrue(resp.isResponse);
+        assertEquals(id, resp.id);
+        assertEquals(1, resp.questions.size());
+        assertEquals(domain, resp.questions.get(0).qname);
+        return resp;
+    }
+
+    private String queryA(int id) throws Exception {
+        DNSPacket resp = query(id, "svc.cache.test.", DNSType.A);
+        if (resp.answers.isEmpty()) {
+            return null;
+        }
+        assertEquals(1, resp.answers.size());
+        assertEquals(60, resp.answers.get(0).ttl);
+        return ((A) resp.answers.get(0).rdata).address.formatToIPString();
+    }
+
+    @Test
+    public void responseCacheKeepsIdAndLoadBalancing() throws Exception {
+        for (int i = 0; i < 5; ++i) {
+            assertEquals("10.0.0.1", queryA(1000 + i));
+        }
+
+        sg.add("svr1", new IPPort("10.0.0.2", 80), 10).healthy = true;
+        Set<String> results = new HashSet<>();
+        for (int i = 0; i < 10; ++i) {
+            results.add(queryA(2000 + i));
+        }
+        assertEquals(Set.of("10.0.0.1", "10.0.0.2"), results);
+
+        sg.remove("svr0");
+        for (int i = 0; i < 5; ++i) {
+            assertEquals("10.0.0.2", queryA(3000 + i));
+        }
+
+        sg.remove("svr1");
+        for (int i = 0; i < 3; ++i) {
+            assertNull(queryA(4000 + i));
+        }
+    }
+
+    @Test
+    public void responseCacheInvalidation() throws Exception {
+        DNSPacket resp = query(1, "svc.cache.test.", DNSType.SRV);
+        assertEquals(1, resp.answers.size());
+        resp = query(2, "svc.cache.test.", DNSType.SRV);
+        assertEquals(1, resp.answers.size());
+        assertEquals(80, ((SRV) resp.answers.get(0).rdata).port);
+
+        sg.add("svr1", new IPPort("10.0.0.2", 8080), 10).healthy = true;
+        resp = query(3, "svc.cache.test.", DNSType.SRV);
+        assertEquals(2, resp.answers.size());
+
+        dnsServer.ttl = 30;
+        resp = query(4, "svc.cache.test.", DNSType.SRV);
+        assertEquals(30, resp.answers.get(0).ttl);
+
+        // the domain no longer belongs to the upstream
+        ups.remove(sg);
+        var sg2 = new ServerGroup("sg-dns-2", elg, new HealthCheckConfig(400, 24 * 60 * 60 * 1000, 2, 3), Method.wrr);
+        sg2.setAnnotations(new Annotations(Map.of(AnnotationKeys.ServerGroup_HintHost.name, "svc.cache.test")));
+        sg2.add("svr9", new IPPort("10.0.0.9", 80), 10).healthy = true;
+        ups.add(sg2, 10);
+        assertEquals("10.0.0.9", queryA(5));
+        resp = query(6, "svc.cache.test.", DNSType.SRV);
+        assertEquals(1, resp.answers.size());
+        assertEquals(80, ((SRV) resp.answers.get(0).rdata).port);
+        sg2.clear();
+    }
+}
@@ -0,0 +1,157 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.vproxyx.websocks.ABP;
+import io.vproxy.vproxyx.websocks.DomainChecker;
+import io.vproxy.vproxyx.websocks.DomainMatcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TestDomainMatcher {
+    private static final String[] WORDS = {"google", "com", "cn", "a", "ab", "www", "pixiv", "net", "http", "tp", "-"};
+
+    private static String randomDomain(Random rand) {
+        int n = 1 + rand.nextInt(4);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            if (i != 0) {
+                sb.append(rand.nextInt(8) == 0 ? "" : ".");
+            }
+            sb.append(WORDS[rand.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void abp() {
+        ABP abp = new ABP("test", false);
+        abp.addRule("" +
+            "! comment\n" +
+            "[AutoProxy 0.2.9]\n" +
+            "@@||cn.google.com\n" +
+            "||google.com\n" +
+            "|https://exact.com/path\n" +
+            ".suffix.com\n" +
+            "@@|white\n" +
+            "@@.whitelisted.org\n" +
+            "simple\n" +
+            "/.*regex\\.com/\n" +
+            "/^https?:\\/\\/([^\\/]+\\.)*re\\.(net|org)\\/.*/\n");
+
+        assertTrue(abp.block("google.com"));
+        assertTrue(abp.block("www.google.com"));
+        assertFalse(abp.block(".google.com"));
+        assertFalse(abp.block("notgoogle.com"));
+        assertFalse(abp.block("cn.google.com"));
+        assertFalse(abp.block("www.cn.google.com"));
+        // the whitelist rule only covers the domain and its sub domains
+        assertTrue(abp.block("xcn.google.com"));
+
+        assertTrue(abp.block("exact.com"));
+        assertFalse(abp.block("www.exact.com"));
+
+        assertTrue(abp.block("a.suffix.com"));
+        assertTrue(abp.block("asuffix.com"));
+        assertFalse(abp.block("suffix.com.cn"));
+
+        assertFalse(abp.block("whitesimple.com"));
+        assertFalse(abp.block("simple.whitelisted.org"));
+        assertTrue(abp.block("a.simple.b"));
+
+        assertTrue(abp.block("a.regex.com"));
+        assertFalse(abp.block("a.regex.comx"));
+        assertTrue(abp.block("a.b.re.net/"));
+        assertTrue(abp.block("re.org/index.html"));
+        assertFalse(abp.block("re.org"));
+        assertFalse(abp.block("other.com"));
+    }
+
+    @Test
+    public void defaultBlock() {
+        ABP abp = new ABP("test", true);
+        abp.addRule("@@||direct.com");
+        assertFalse(abp.block("direct.com"));
+        assertTrue(abp.block("other.com"));
+    }
+
+    @Test
+    public void regexpWithProtocols() {
+        ABP abp = new ABP("test", false);
+        // matches the protocol prefix, so every input matches
+        abp.addRule("/.*tp.*/");
+        assertTrue(abp.block("example.com"));
+        assertTrue(abp.blockLinear("example.com"));
+
+        abp = new ABP("test", false);
+        abp.addRule("/ht.*/");
+        assertTrue(abp.block("example.com"));
+        assertTrue(abp.blockLinear("example.com"));
+
+        abp = new ABP("test", false);
+        abp.addRule("/example\\.com/");
+        assertTrue(abp.block("example.com"));
+        assertFalse(abp.block("www.example.com"));
+    }
+
+    @Test
+    public void sameAsLinear() {
+        Random rand = new Random(1);
+        String[] prefixes = {"", "", "||", "|", ".", "@@||", "@@|", "@@.", "@@", "/.*", "/", "@@/.*"};
+        for (int round = 0; round < 20; ++round) {
+            ABP abp = new ABP("test", rand.nextBoolean());
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 50; ++i) {
+                String prefix = prefixes[rand.nextInt(prefixes.length)];
+                String domain = randomDomain(rand);
+                sb.append(prefix);
+                if (prefix.startsWith("/") || prefix.startsWith("@@/")) {
+                    sb.append(domain.replace(".", "\\.")).append(rand.nextBoolean() ? ".*" : "").append("/");
+                } else {
+                    sb.append(domain);
+                }
+                sb.append("\n");
+            }
+            sb.append("/^(www|ab)\\..*(com|cn)$/\n");
+            abp.addRule(sb.toString());
+
+            for (int i = 0; i < 500; ++i) {
+                String input = randomDomain(rand);
+                assertEquals(sb + "\n" + input, abp.blockLinear(input), abp.block(input));
+            }
+        }
+    }
+
+    @Test
+    public void domainMatcher() {
+        List<DomainChecker> checkers = new ArrayList<>();
+        checkers.add(new DomainChecker.SuffixDomainChecker("google.com"));
+        checkers.add(new DomainChecker.PatternDomainChecker(Pattern.compile(".*pixiv.*")));
+        checkers.add(new DomainChecker.PatternDomainChecker(Pattern.compile("^a+\\.(net|cn)$")));
+        checkers.add(new DomainChecker.PortChecker(22));
+        ABP abp = new ABP("test", false);
+        abp.addRule("||youtube.com");
+        checkers.add(new DomainChecker.ABPDomainChecker(abp));
+        DomainMatcher matcher = new DomainMatcher(checkers);
+
+        assertTrue(matcher.matches("www.google.com", 443));
+        assertTrue(matcher.matches("i.pixiv.net", 443));
+        assertTrue(matcher.matches("aaa.net", 443));
+        assertFalse(matcher.matches("aaa.com", 443));
+        assertTrue(matcher.matches("aaa.com", 22));
+        assertTrue(matcher.matches("m.youtube.com", 80));
+        assertFalse(matcher.matches("youtube.com.cn", 80));
+        assertFalse(new DomainMatcher(List.of()).matches("google.com", 443));
+
+        Random rand = new Random(2);
+        for (int i = 0; i < 2000; ++i) {
+            String input = randomDomain(rand);
+            int port = rand.nextBoolean() ? 22 : 443;
+            assertEquals(input, matcher.matchesLinear(input, port), matcher.matches(input, port));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.Consts;
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.MacAddress;
+import io.vproxy.vpacket.AbstractIpPacket;
+import io.vproxy.vpacket.AbstractPacket;
+import io.vproxy.vpacket.TcpPacket;
+import io.vproxy.vpacket.UdpPacket;
+import io.vproxy.vproxyx.pktfiltergen.flow.FlowClassifier;
+import io.vproxy.vproxyx.pktfiltergen.flow.Flows;
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.plugin.FilterResult;
+import io.vproxy.vswitch.util.SwitchUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestFlowClassifier {
+    private static PacketBuffer packet(String dstMac, String src, String dst, int proto, int srcPort, int dstPort) {
+        AbstractPacket tp;
+        if (proto == Consts.IP_PROTOCOL_UDP) {
+            var udp = new UdpPacket();
+            udp.setSrcPort(srcPort);
+            udp.setDstPort(dstPort);
+            udp.setLength(8);
+            udp.setData(ByteArray.allocate(0));
+            tp = udp;
+        } else {
+            var tcp = new TcpPacket();
+            tcp.setSrcPort(srcPort);
+            tcp.setDstPort(dstPort);
+            tcp.setDataOffset(5);
+            tcp.setFlags(Consts.TCP_FLAGS_SYN);
+            tcp.setWindow(65535);
+            tcp.setData(ByteArray.allocate(0));
+            tp = tcp;
+        }
+        var ip = SwitchUtils.buildIpPacket(IP.from(src), IP.from(dst), proto, tp);
+        var ether = SwitchUtils.buildEtherIpPacket(new MacAddress(dstMac), new MacAddress("02:00:00:00:00:01"), ip);
+        var pkb = PacketBuffer.fromEtherBytes(null, 1, ether.getRawPacket(0), 0, 0);
+        assertNull(pkb.init());
+        assertFalse(pkb.ensurePartialPacketParsed());
+        return pkb;
+    }
+
+    private static int dstPort(PacketBuffer pkb) {
+        var tp = ((AbstractIpPacket) pkb.pkt.getPacket()).getPacket();
+        return tp instanceof UdpPacket ? ((UdpPacket) tp).getDstPort() : ((TcpPacket) tp).getDstPort();
+    }
+
+    @Test
+    public void sameAsLinear() throws Exception {
+        Random rand = new Random(1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; ++i) {
+            sb.append("table=0,priority=").append(rand.nextInt(100)).append(",");
+            int kind = rand.nextInt(6);
+            switch (kind) {
+                case 0 -> sb.append("udp,nw_src=10.").append(rand.nextInt(16)).append(".0.0/16,tp_dst=").append(50 + rand.nextInt(8));
+                case 1 -> sb.append("tcp,nw_dst=10.0.").append(rand.nextInt(16)).append(".").append(rand.nextInt(4))
+                    .append(",tp_dst=").append(80 + rand.nextInt(4));
+                case 2 -> sb.append("tcp,tp_src=").append(1000 + rand.nextInt(100)).append("-").append(1100 + rand.nextInt(100));
+                case 3 -> sb.append("ip,nw_src=10.").append(rand.nextInt(16)).append(".").append(rand.nextInt(4)).append(".0/24");
+                case 4 -> sb.append("dl_dst=02:00:00:00:01:0").append(rand.nextInt(4));
+                default -> sb.append("udp,tp_src=0x0400/0xff00");
+            }
+            sb.append(",actions=drop\n");
+        }
+        sb.append("table=0,priority=0,actions=normal\n");
+        Flows flows = new Flows();
+        flows.add(sb.toString());
+        FlowClassifier classifier = flows.compile();
+
+        for (int i = 0; i < 20000; ++i) {
+            var pkb = packet(
+                "02:00:00:00:01:0" + rand.nextInt(6),
+                "10." + rand.nextInt(18) + "." + rand.nextInt(5) + "." + rand.nextInt(3),
+                "10.0." + rand.nextInt(18) + "." + rand.nextInt(5),
+                rand.nextBoolean() ? Consts.IP_PROTOCOL_UDP : Consts.IP_PROTOCOL_TCP,
+                900 + rand.nextInt(400),
+                48 + rand.nextInt(40));
+            var expected = classifier.lookupLinear(null, pkb, 0);
+            assertNotNull(expected);
+            assertSame(expected, classifier.lookup(null, pkb, 0));
+        }
+    }
+
+    @Test
+    public void actions() throws Exception {
+        Flows flows = new Flows();
+        flows.add("" +
+            "table=0,priority=10,udp,tp_dst=53,actions=goto_table:1\n" +
+            "table=0,priority=0,actions=normal\n" +
+            "table=1,priority=10,udp,nw_dst=10.0.0.1,actions=mod_tp_dst:5353,normal\n" +
+            "table=1,priority=0,actions=drop\n");
+        FlowClassifier classifier = flows.compile();
+
+        var pkb = packet("02:00:00:00:00:02", "10.0.0.2", "10.0.0.1", Consts.IP_PROTOCOL_UDP, 1234, 53);
+        assertEquals(FilterResult.PASS, classifier.handle(null, pkb));
+        assertEquals(5353, dstPort(pkb));
+
+        pkb = packet("02:00:00:00:00:02", "10.0.0.1", "10.0.0.2", Consts.IP_PROTOCOL_UDP, 1234, 53);
+        assertEquals(FilterResult.DROP, classifier.handle(null, pkb));
+
+        pkb = packet("02:00:00:00:00:02", "10.0.0.2", "10.0.0.1", Consts.IP_PROTOCOL_TCP, 1234, 80);
+        assertEquals(FilterResult.PASS, classifier.handle(null, pkb));
+        assertEquals(80, dstPort(pkb));
+
+        assertEquals(2, classifier.getHitCount(0));
+        assertEquals(1, classifier.getHitCount(1));
+        assertEquals(1, classifier.getHitCount(2));
+        assertEquals(1, classifier.getHitCount(3));
+    }
+
+    @Test
+    public void empty() throws Exception {
+        FlowClassifier classifier = new Flows().compile();
+        var pkb = packet("02:00:00:00:00:02", "10.0.0.2", "10.0.0.1", Consts.IP_PROTOCOL_UDP, 1234, 53);
+        assertEquals(FilterResult.DROP, classifier.handle(null, pkb));
+    }
+
+    @Test
+    public void unsupported() throws Exception {
+        Flows flows = new Flows();
+        flows.add("predicate=abc,actions=normal");
+        try {
+            flows.compile();
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("predicate"));
+        }
+        flows = new Flows();
+        flows.add("actions=invoke:abc");
+        try {
+            flows.compile();
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("invoke:abc"));
+        }
+    }
+}
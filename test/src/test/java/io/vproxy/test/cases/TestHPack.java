@@ -0,0 +1,157 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.processor.httpbin.entity.Header;
+import io.vproxy.base.processor.httpbin.hpack.HPack;
+import io.vproxy.base.util.ByteArray;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestHPack {
+    // rfc7541 C.4, requests with huffman coding
+    private static final String[] RFC_BLOCKS = {
+        "828684418cf1e3c2e5f23a6ba0ab90f4ff",
+        "828684be5886a8eb10649cbf",
+        "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf",
+    };
+    private static final String[] RFC_HEADERS = {
+        ":method=GET;:scheme=http;:path=/;:authority=www.example.com;",
+        ":method=GET;:scheme=http;:path=/;:authority=www.example.com;cache-control=no-cache;",
+        ":method=GET;:scheme=https;:path=/index.html;:authority=www.example.com;custom-key=custom-value;",
+    };
+
+    private static String str(List<Header> headers) {
+        var sb = new StringBuilder();
+        for (var h : headers) {
+            sb.append(h.keyStr).append("=").append(h.valueAsString()).append(";");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void rfcDecode() throws Exception {
+        var hpack = new HPack(4096, 4096);
+        for (int i = 0; i < RFC_BLOCKS.length; ++i) {
+            var headers = hpack.decode(ByteArray.fromHexString(RFC_BLOCKS[i]));
+            assertEquals(RFC_HEADERS[i], str(headers));
+        }
+    }
+
+    @Test
+    public void rfcEncode() throws Exception {
+        var decoder = new HPack(4096, 4096);
+        var encoder = new HPack(4096, 4096);
+        for (String block : RFC_BLOCKS) {
+            var headers = decoder.decode(ByteArray.fromHexString(block));
+            assertEquals(block, encoder.encode(headers).toHexString());
+        }
+    }
+
+    @Test
+    public void fieldSplitIntoFrames() throws Exception {
+        var hpack = new HPack(4096, 4096);
+        var block = ByteArray.fromHexString(RFC_BLOCKS[0]);
+        for (int cut = 0; cut <= block.length(); ++cut) {
+            var headers = new ArrayList<Header>();
+            var h = new HPack(4096, 4096);
+            h.decode(block.sub(0, cut), headers, false);
+            h.decode(block.sub(cut, block.length() - cut), headers, true);
+            assertEquals(RFC_HEADERS[0], str(headers));
+        }
+        assertEquals(RFC_HEADERS[0], str(hpack.decode(block)));
+    }
+
+    @Test
+    public void blockEndsInTheMiddleOfAField() throws Exception {
+        var block = ByteArray.fromHexString(RFC_BLOCKS[0]);
+        var hpack = new HPack(4096, 4096);
+        try {
+            hpack.decode(block.sub(0, block.length() - 1), new ArrayList<>(), true);
+            fail();
+        } catch (IOException e) {
+            assertEquals("header block ends in the middle of a field", e.getMessage());
+        }
+        // the truncated field is not carried into the next block
+        var headers = new ArrayList<Header>();
+        hpack.decode(ByteArray.fromHexString("82"), headers, true);
+        assertEquals(":method=GET;", str(headers));
+    }
+
+    @Test
+    public void randomRoundTrip() throws Exception {
+        var rand = new Random(7541);
+        var encoder = new HPack(4096, 4096);
+        var decoder = new HPack(4096, 4096);
+        String[] names = {":method", ":path", "content-type", "x-custom", "cookie", "user-agent"};
+        for (int i = 0; i < 1000; ++i) {
+            var headers = new ArrayList<Header>();
+            int n = 1 + rand.nextInt(10);
+            for (int j = 0; j < n; ++j) {
+                var name = rand.nextInt(4) == 0 ? "x-" + rand.nextInt(100) : names[rand.nextInt(names.length)];
+                var value = new StringBuilder();
+                int vlen = rand.nextInt(4) == 0 ? rand.nextInt(1000) : rand.nextInt(20);
+                for (int k = 0; k < vlen; ++k) {
+                    value.append((char) (0x20 + rand.nextInt(0x5f)));
+                }
+                headers.add(new Header(name, value.toString()));
+            }
+            var block = encoder.encode(headers);
+
+            // split the block into a headers frame and continuation frames at random offsets
+            var decoded = new ArrayList<Header>();
+            int off = 0;
+            while (true) {
+                int len = Math.min(block.length() - off, rand.nextInt(64));
+                boolean end = off + len == block.length();
+                decoder.decode(block.sub(off, len), decoded, end);
+                off += len;
+                if (end) {
+                    break;
+                }
+            }
+            assertEquals(str(headers), str(decoded));
+        }
+    }
+
+    @Test
+    public void tableSizeUpdate() throws Exception {
+        var encoder = new HPack(4096, 4096);
+        var decoder = new HPack(4096, 4096);
+        var headers = List.of(new Header("x-custom", "a"), new Header("x-custom", "a"));
+        assertEquals(str(headers), str(decoder.decode(encoder.encode(headers))));
+
+        encoder.setEncoderMaxHeaderTableSize(0);
+        encoder.setEncoderMaxHeaderTableSize(128);
+        var encoded = encoder.encode(headers);
+        // 0 and then 128 are signaled before the fields
+        assertEquals(0x20, encoded.uint8(0));
+        assertEquals(0x3f, encoded.uint8(1));
+        assertEquals(128 - 31, encoded.uint8(2));
+        assertEquals(str(headers), str(decoder.decode(encoded)));
+
+        decoder.setDecoderMaxHeaderTableSize(64);
+        try {
+            decoder.decode(ByteArray.fromHexString("82"));
+            fail();
+        } catch (IOException e) {
+            assertEquals("max dynamic table size change required", e.getMessage());
+        }
+    }
+
+    @Test
+    public void invalidHuffmanPadding() {
+        var hpack = new HPack(4096, 4096);
+        try {
+            // literal without indexing, new name "a" with huffman coded value padded with 0s
+            hpack.decode(ByteArray.fromHexString("0001618100"));
+            fail();
+        } catch (IOException e) {
+            assertEquals("invalid huffman encoded string", e.getMessage());
+        }
+    }
+}
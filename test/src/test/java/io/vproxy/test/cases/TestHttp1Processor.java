@@ -676,6 +676,86 @@ public class TestHttp1Processor {
         assertEquals(Processor.Mode.proxy, backend.unittest_mode());
     }
 
+    @Test
+    public void feedWholeReqHeadRewrite() throws Exception {
+        Processor<HttpContext, HttpSubContext> p = new HttpProcessor();
+        HttpContext ctx = p.init(ctxInitParams);
+        HttpSubContext front = p.initSub(new Processor.SubContextInitParams<>(
+            ctx, 0, null
+        ));
+        var data = ByteArray.from(
+            "POST /index.html HTTP/1.1\r\n" +
+            "host:vproxy.io\r\n" +
+            "x-forwarded-for: 5.6.7.8\r\n" +
+            "Connection: close\r\n" +
+            "Keep-Alive: timeout=5\r\n" +
+            "Content-Length: 3\r\n" +
+            "\r\n" +
+            "abc"
+        );
+        var res = front.unittest_feed(data);
+        assertEquals(ByteArray.from(
+            "POST /index.html HTTP/1.1\r\n" +
+            "host:vproxy.io\r\n" +
+            "x-forwarded-for: " + forwardedFor + "\r\n" +
+            "Content-Length: 3\r\n" +
+            "X-Client-Port: " + clientPort + "\r\n" +
+            "\r\n" +
+            "abc"
+        ), res);
+        assertTrue(front.isIdle());
+
+        Request req = front.unittest_getReq();
+        assertEquals("POST", req.method);
+        assertEquals("/index.html", req.uri);
+        assertEquals("HTTP/1.1", req.version);
+        assertEquals("host", req.headers.get(0).key);
+        assertEquals("vproxy.io", req.headers.get(0).value);
+    }
+
+    @Test
+    public void feedWholeReqHeadValueWithOWS() throws Exception {
+        Processor<HttpContext, HttpSubContext> p = new HttpProcessor();
+        HttpContext ctx = p.init(ctxInitParams);
+        HttpSubContext front = p.initSub(new Processor.SubContextInitParams<>(
+            ctx, 0, null
+        ));
+        var data = ByteArray.from(
+            "POST / HTTP/1.1\r\n" +
+            "Host: \tvproxy.io \r\n" +
+            "Connection: close \r\n" +
+            "Content-Length:\t3\t\r\n" +
+            "\r\n" +
+            "abc"
+        );
+        var res = front.unittest_feed(data);
+        assertEquals(ByteArray.from(
+            "POST / HTTP/1.1\r\n" +
+            "Host: \tvproxy.io \r\n" +
+            "Content-Length:\t3\t\r\n" +
+            "X-Forwarded-For: " + forwardedFor + "\r\n" +
+            "X-Client-Port: " + clientPort + "\r\n" +
+            "\r\n" +
+            "abc"
+        ), res);
+        assertTrue(front.isIdle());
+    }
+
+    @Test
+    public void feedWholeInvalidVersion() throws Exception {
+        Processor<HttpContext, HttpSubContext> p = new HttpProcessor();
+        HttpContext ctx = p.init(ctxInitParams);
+        HttpSubContext front = p.initSub(new Processor.SubContextInitParams<>(
+            ctx, 0, null
+        ));
+        try {
+            front.unittest_feed(ByteArray.from("GET / HTTP/2.0\r\n\r\n"));
+            fail();
+        } catch (Exception e) {
+            assertEquals("only supports HTTP/1.1 or HTTP/1.0, but got HTTP/2.0", e.getMessage());
+        }
+    }
+
     @Test
     public void gZipResponse() {
         Response originResponse = new Response();
@@ -0,0 +1,365 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.selector.Handler;
+import io.vproxy.base.selector.HandlerContext;
+import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.util.thread.VProxyThread;
+import io.vproxy.vfd.EventSet;
+import io.vproxy.vfd.FDProvider;
+import io.vproxy.vfd.FDSelector;
+import io.vproxy.vfd.FDs;
+import io.vproxy.vfd.FDsWithOpts;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vfd.ServerSocketFD;
+import io.vproxy.vfd.SocketFD;
+import io.vproxy.vfd.posix.IOUringSelector;
+import io.vproxy.vfd.posix.PosixFDs;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Only runs with -Dvfd=posix on a kernel which supports io_uring, see the runPanamaTest task.
+ */
+public class TestIOUringSelector {
+    private FDs fds;
+    private SelectorEventLoop loop;
+    private ServerSocketFD server;
+    private int port;
+    private final BlockingQueue<SocketFD> accepted = new LinkedBlockingQueue<>();
+    private final List<SocketFD> acceptedAll = new ArrayList<>();
+    private final List<Socket> clients = new ArrayList<>();
+    private volatile Handler<SocketFD> clientHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        fds = FDProvider.get().getProvided();
+        Assume.assumeTrue("posix fds are not used", fds instanceof PosixFDs);
+        FDSelector probe = ((PosixFDs) fds).openSelector(new FDsWithOpts.Options(false, 0, true));
+        try {
+            Assume.assumeTrue("io_uring is not supported by the kernel", probe instanceof IOUringSelector);
+        } finally {
+            probe.close();
+        }
+
+        var opts = new SelectorEventLoop.InitOptions();
+        opts.ioUring = true;
+        loop = SelectorEventLoop.open(fds, opts);
+        loop.loop(r -> VProxyThread.create(r, "io-uring-test"));
+
+        server = fds.openServerSocketFD();
+        server.configureBlocking(false);
+        server.bind(new IPPort("127.0.0.1", 0));
+        port = server.getLocalAddress().getPort();
+        loop.add(server, EventSet.read(), null, new ServerHandler());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (var c : clients) {
+            c.close();
+        }
+        if (loop != null) {
+            loop.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        for (var fd : acceptedAll) {
+            fd.close();
+        }
+    }
+
+    private class ServerHandler implements Handler<ServerSocketFD> {
+        @Override
+        public void accept(HandlerContext<ServerSocketFD> ctx) {
+            // drain all fds delivered by the multishot accept
+            while (true) {
+                SocketFD fd;
+                try {
+                    fd = ctx.getChannel().accept();
+                } catch (IOException e) {
+                    fail("accept failed: " + e);
+                    return;
+                }
+                if (fd == null) {
+                    break;
+                }
+                acceptedAll.add(fd);
+                try {
+                    fd.configureBlocking(false);
+                    var h = clientHandler;
+                    if (h != null) {
+                        ctx.getEventLoop().add(fd, EventSet.read(), null, h);
+                    }
+                } catch (IOException e) {
+                    fail("adding accepted fd failed: " + e);
+                }
+                accepted.add(fd);
+            }
+        }
+
+        @Override
+        public void connected(HandlerContext<ServerSocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void readable(HandlerContext<ServerSocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void writable(HandlerContext<ServerSocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void removed(HandlerContext<ServerSocketFD> ctx) {
+            // do nothing
+        }
+    }
+
+    // reads "ping", switches to WRITABLE, writes "pong", then switches back to READABLE
+    private static class PingPongHandler implements Handler<SocketFD> {
+        private final ByteBuffer pong = ByteBuffer.allocate(4);
+
+        @Override
+        public void accept(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void connected(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void readable(HandlerContext<SocketFD> ctx) {
+            var buf = ByteBuffer.allocate(4);
+            try {
+                while (buf.hasRemaining()) {
+                    int n = ctx.getChannel().read(buf);
+                    if (n <= 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                ctx.remove();
+                return;
+            }
+            if (buf.position() == 0) {
+                return;
+            }
+            assertEquals(4, buf.position());
+            assertEquals("ping", new String(buf.array(), StandardCharsets.UTF_8));
+            pong.clear();
+            pong.put("pong".getBytes(StandardCharsets.UTF_8)).flip();
+            ctx.modify(EventSet.write());
+        }
+
+        @Override
+        public void writable(HandlerContext<SocketFD> ctx) {
+            try {
+                ctx.getChannel().write(pong);
+            } catch (IOException e) {
+                ctx.remove();
+                return;
+            }
+            if (!pong.hasRemaining()) {
+                ctx.modify(EventSet.read());
+            }
+        }
+
+        @Override
+        public void removed(HandlerContext<SocketFD> ctx) {
+            // do nothing
+        }
+    }
+
+    // records readable events without consuming the data, and stops watching after each event
+    private static class PeekHandler implements Handler<SocketFD> {
+        final AtomicInteger readable = new AtomicInteger();
+        final AtomicInteger removed = new AtomicInteger();
+
+        @Override
+        public void accept(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void connected(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void readable(HandlerContext<SocketFD> ctx) {
+            readable.incrementAndGet();
+            ctx.modify(EventSet.none());
+        }
+
+        @Override
+        public void writable(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void removed(HandlerContext<SocketFD> ctx) {
+            removed.incrementAndGet();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        var sock = new Socket("127.0.0.1", port);
+        sock.setSoTimeout(5_000);
+        clients.add(sock);
+        return sock;
+    }
+
+    private static void waitFor(AtomicInteger counter, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (counter.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, counter.get());
+    }
+
+    private static String readN(InputStream in, int n) throws IOException {
+        byte[] b = in.readNBytes(n);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void multishotAccept() throws Exception {
+        // two bursts: the accept request keeps being armed after the first batch
+        for (int round = 0; round < 2; ++round) {
+            int count = 100;
+            var threads = new ArrayList<Thread>();
+            var connected = new CountDownLatch(count);
+            for (int i = 0; i < count; ++i) {
+                var t = new Thread(() -> {
+                    try {
+                        var sock = new Socket("127.0.0.1", port);
+                        synchronized (clients) {
+                            clients.add(sock);
+                        }
+                        connected.countDown();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+                threads.add(t);
+                t.start();
+            }
+            assertTrue("all clients connected", connected.await(5, TimeUnit.SECONDS));
+            Set<Integer> remotePorts = new HashSet<>();
+            for (int i = 0; i < count; ++i) {
+                var fd = accepted.poll(5, TimeUnit.SECONDS);
+                assertNotNull("round " + round + ": accepted " + i, fd);
+                remotePorts.add(fd.getRemoteAddress().getPort());
+            }
+            assertEquals(count, remotePorts.size());
+            for (var t : threads) {
+                t.join();
+            }
+        }
+        Thread.sleep(100);
+        assertTrue("nothing more is accepted", accepted.isEmpty());
+    }
+
+    @Test
+    public void readWriteReadiness() throws Exception {
+        clientHandler = new PingPongHandler();
+        var socks = new ArrayList<Socket>();
+        for (int i = 0; i < 10; ++i) {
+            socks.add(connect());
+        }
+        for (int round = 0; round < 3; ++round) {
+            for (var sock : socks) {
+                OutputStream out = sock.getOutputStream();
+                out.write("ping".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            for (var sock : socks) {
+                assertEquals("pong", readN(sock.getInputStream(), 4));
+            }
+        }
+    }
+
+    @Test
+    public void removeAndModify() throws Exception {
+        var handler = new PeekHandler();
+        clientHandler = handler;
+        var sock = connect();
+        var fd = accepted.poll(5, TimeUnit.SECONDS);
+        assertNotNull(fd);
+
+        sock.getOutputStream().write(1);
+        waitFor(handler.readable, 1);
+        // the handler set the ops to none, the pending byte must not be reported again
+        Thread.sleep(200);
+        assertEquals(1, handler.readable.get());
+
+        // level-triggered: re-enable READABLE and the unread byte is reported again
+        loop.modify(fd, EventSet.read());
+        waitFor(handler.readable, 2);
+
+        // remove from another thread, the request is forwarded to the loop
+        loop.modify(fd, EventSet.read());
+        waitFor(handler.readable, 3);
+        loop.remove(fd);
+        waitFor(handler.removed, 1);
+        int before = handler.readable.get();
+        sock.getOutputStream().write(2);
+        Thread.sleep(200);
+        assertEquals(before, handler.readable.get());
+        assertFalse(loop.selector.isRegistered(fd));
+
+        // add it again, the data is still pending
+        loop.add(fd, EventSet.read(), null, handler);
+        waitFor(handler.readable, before + 1);
+    }
+
+    @Test
+    public void wakeup() throws Exception {
+        // the selector is blocked since nothing is ready
+        Thread.sleep(100);
+        for (int i = 0; i < 10; ++i) {
+            var latch = new CountDownLatch(1);
+            Thread[] ranOn = {null};
+            long begin = System.currentTimeMillis();
+            loop.runOnLoop(() -> {
+                ranOn[0] = Thread.currentThread();
+                latch.countDown();
+            });
+            assertTrue("woken up " + i, latch.await(1, TimeUnit.SECONDS));
+            assertSame(loop.getRunningThread(), ranOn[0]);
+            assertTrue(System.currentTimeMillis() - begin < 1_000);
+        }
+
+        var latch = new CountDownLatch(1);
+        long begin = System.currentTimeMillis();
+        loop.delay(50, latch::countDown);
+        assertTrue("timer fired", latch.await(1, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - begin >= 50);
+    }
+}
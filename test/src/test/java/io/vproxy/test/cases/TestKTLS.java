@@ -0,0 +1,224 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.connection.*;
+import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.util.OS;
+import io.vproxy.base.util.RingBuffer;
+import io.vproxy.base.util.coll.Tuple;
+import io.vproxy.base.util.ringbuffer.SSLUtils;
+import io.vproxy.base.util.thread.VProxyThread;
+import io.vproxy.openssl.OpenSSL;
+import io.vproxy.openssl.OpenSSLContext;
+import io.vproxy.openssl.OpenSSLEngine;
+import io.vproxy.vfd.FDProvider;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vfd.SocketFD;
+import io.vproxy.vfd.posix.PosixFDs;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Only runs with -Dvfd=posix on linux with the vpssl library, see the runPanamaTest task.
+ */
+public class TestKTLS {
+    private static final int PORT = 20443;
+    private static final int BULK_SIZE = 4 * 1024 * 1024;
+
+    private static final TrustManager[] TRUST_ALL = {new X509TrustManager() {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }};
+
+    private OpenSSLContext serverContext;
+    private SelectorEventLoop loop;
+    private ServerSock server;
+    private String protocol;
+    private final BlockingQueue<OpenSSLEngine> engines = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("ktls is only supported on linux", OS.isLinux());
+        Assume.assumeTrue("posix fds are not used", FDProvider.get().getProvided() instanceof PosixFDs);
+        Assume.assumeTrue("the vpssl library is not available", OpenSSL.isSupported());
+
+        serverContext = OpenSSLContext.forServer(TestSSL.TEST_CERT, TestSSL.TEST_KEY).setKTLS(true);
+        loop = SelectorEventLoop.open();
+        var netEventLoop = new NetEventLoop(loop);
+        server = ServerSock.create(new IPPort("127.0.0.1", PORT));
+        netEventLoop.addServer(server, null, new KTLSServerHandler());
+        loop.loop(r -> VProxyThread.create(r, "ktls-test"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (loop != null) {
+            loop.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        if (serverContext != null) {
+            serverContext.close();
+        }
+    }
+
+    private class KTLSServerHandler implements ServerHandler {
+        @Override
+        public void acceptFail(ServerHandlerContext ctx, IOException err) {
+            err.printStackTrace();
+        }
+
+        @Override
+        public void connection(ServerHandlerContext ctx, Connection connection) {
+            try {
+                ctx.eventLoop.addConnection(connection, null, new EchoHandler());
+            } catch (IOException e) {
+                e.printStackTrace();
+                connection.close();
+            }
+        }
+
+        @Override
+        public Tuple<RingBuffer, RingBuffer> getIOBuffers(SocketFD channel) {
+            var engine = serverContext.createSSLEngine();
+            engine.setEnabledProtocols(new String[]{protocol});
+            engines.add(engine);
+            var pair = SSLUtils.genbuf(engine, RingBuffer.allocate(24576), RingBuffer.allocate(24576), loop::runOnLoop, channel);
+            return new Tuple<>(pair.left, pair.right);
+        }
+
+        @Override
+        public void removed(ServerHandlerContext ctx) {
+            // do nothing
+        }
+    }
+
+    // the output buffer is filled from the input buffer, and the input buffer
+    // stops reading from the socket when the output buffer is full
+    private static class EchoHandler implements ConnectionHandler {
+        @Override
+        public void readable(ConnectionHandlerContext ctx) {
+            ctx.connection.getInBuffer().writeTo(ctx.connection.getOutBuffer());
+        }
+
+        @Override
+        public void writable(ConnectionHandlerContext ctx) {
+            ctx.connection.getInBuffer().writeTo(ctx.connection.getOutBuffer());
+        }
+
+        @Override
+        public void exception(ConnectionHandlerContext ctx, IOException err) {
+            ctx.connection.close();
+        }
+
+        @Override
+        public void remoteClosed(ConnectionHandlerContext ctx) {
+            ctx.connection.close();
+        }
+
+        @Override
+        public void closed(ConnectionHandlerContext ctx) {
+            // do nothing
+        }
+
+        @Override
+        public void removed(ConnectionHandlerContext ctx) {
+            ctx.connection.close();
+        }
+    }
+
+    private void bulkEcho(String protocol) throws Exception {
+        this.protocol = protocol;
+        var ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, TRUST_ALL, null);
+        try (var sock = (SSLSocket) ctx.getSocketFactory().createSocket("127.0.0.1", PORT)) {
+            sock.setEnabledProtocols(new String[]{protocol});
+            sock.setSoTimeout(10_000);
+            sock.startHandshake();
+            assertEquals(protocol, sock.getSession().getProtocol());
+
+            byte[] data = new byte[BULK_SIZE];
+            new Random(BULK_SIZE).nextBytes(data);
+            var writeError = new CompletableFuture<Throwable>();
+            var writer = VProxyThread.create(() -> {
+                try {
+                    OutputStream out = sock.getOutputStream();
+                    // small and large writes, so that records of different sizes are produced
+                    int off = 0;
+                    int n = 1;
+                    while (off < data.length) {
+                        int len = Math.min(n, data.length - off);
+                        out.write(data, off, len);
+                        off += len;
+                        n = n >= 65536 ? 1 : n * 4;
+                    }
+                    out.flush();
+                    writeError.complete(null);
+                } catch (Throwable t) {
+                    writeError.complete(t);
+                }
+            }, "ktls-test-writer");
+            writer.start();
+
+            InputStream in = sock.getInputStream();
+            byte[] received = in.readNBytes(BULK_SIZE);
+            writer.join();
+            assertNull(writeError.get(1, TimeUnit.SECONDS));
+            assertArrayEquals(data, received);
+
+            var engine = engines.poll(1, TimeUnit.SECONDS);
+            assertNotNull(engine);
+            var state = new CompletableFuture<boolean[]>();
+            loop.runOnLoop(() -> state.complete(new boolean[]{engine.isKTLSTx(), engine.isKTLSRx()}));
+            boolean[] txrx = state.get(1, TimeUnit.SECONDS);
+            if (!txrx[0] && !txrx[1]) {
+                // the module is loaded on demand when the tls ULP is set
+                Assume.assumeTrue("the tls ULP is not available in the kernel", Files.exists(Path.of("/sys/module/tls")));
+            }
+            assertTrue("ktls tx started", txrx[0]);
+            assertTrue("ktls rx started", txrx[1]);
+
+            // the echo keeps working after the switch
+            sock.getOutputStream().write("hello".getBytes());
+            sock.getOutputStream().flush();
+            assertEquals("hello", new String(in.readNBytes(5)));
+        }
+    }
+
+    @Test
+    public void bulkEchoTLS12() throws Exception {
+        bulkEcho("TLSv1.2");
+    }
+
+    @Test
+    public void bulkEchoTLS13() throws Exception {
+        bulkEcho("TLSv1.3");
+    }
+}
@@ -0,0 +1,123 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.selector.wrap.kcp.Kcp;
+import io.vproxy.base.selector.wrap.kcp.mock.ByteBuf;
+import io.vproxy.base.selector.wrap.kcp.mock.PooledByteBufAllocator;
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.nio.ByteArrayChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestKcp {
+    private final Deque<byte[]> aToB = new ArrayDeque<>();
+    private final Deque<byte[]> bToA = new ArrayDeque<>();
+    private Kcp a;
+    private Kcp b;
+    private long ts = 0;
+    private ByteArray received;
+
+    private Kcp newKcp(Deque<byte[]> out) {
+        Kcp kcp = new Kcp(0, (data, k) -> {
+            out.add(data.chnl.readableArray().toJavaArray());
+            data.release();
+        });
+        kcp.setStream(true);
+        kcp.nodelay(true, 10, 2, true);
+        kcp.wndsize(128, 128);
+        kcp.setMtu(1250);
+        kcp.setByteBufAllocator(PooledByteBufAllocator.DEFAULT);
+        return kcp;
+    }
+
+    @Before
+    public void setUp() {
+        a = newKcp(aToB);
+        b = newKcp(bToA);
+    }
+
+    private void tick(Random lossRand) {
+        ts += 10;
+        a.update(ts);
+        b.update(ts);
+        byte[] p;
+        while ((p = aToB.poll()) != null) {
+            if (lossRand != null && lossRand.nextInt(10) == 0) {
+                continue;
+            }
+            assertTrue(b.input(new ByteBuf(ByteArrayChannel.fromFull(p))) >= 0);
+        }
+        while ((p = bToA.poll()) != null) {
+            assertTrue(a.input(new ByteBuf(ByteArrayChannel.fromFull(p))) >= 0);
+        }
+        while (b.canRecv()) {
+            List<ByteBuf> ls = new ArrayList<>();
+            if (b.recv(ls) <= 0) {
+                break;
+            }
+            for (var buf : ls) {
+                var arr = buf.chnl.readAll();
+                received = received == null ? arr : received.concat(arr);
+            }
+        }
+    }
+
+    @Test
+    public void transferWithLoss() {
+        Random rand = new Random(1);
+        byte[] data = new byte[300_000];
+        rand.nextBytes(data);
+        assertTrue(a.send(new ByteBuf(ByteArrayChannel.fromFull(data))) >= 0);
+
+        for (int i = 0; i < 2000 && (received == null || received.length() < data.length); ++i) {
+            tick(rand);
+        }
+        assertNotNull(received);
+        assertArrayEquals(data, received.toJavaArray());
+    }
+
+    @Test
+    public void nothingToFlushWhenIdle() {
+        assertFalse(a.checkFlush());
+        byte[] data = "hello".getBytes();
+        assertTrue(a.send(new ByteBuf(ByteArrayChannel.fromFull(data))) >= 0);
+        assertTrue(a.checkFlush());
+
+        tick(null);
+        assertArrayEquals(data, received.toJavaArray());
+        // ack is not flushed yet
+        assertTrue(b.checkFlush());
+        tick(null);
+        assertFalse(a.checkFlush());
+        assertFalse(b.checkFlush());
+    }
+
+    @Test
+    public void pooledAllocator() {
+        var alloc = new PooledByteBufAllocator(2048, 4096);
+        var buf = alloc.ioBuffer(1250);
+        alloc.release(buf.chnl);
+        // releasing the same buffer again must not put it into the pool twice
+        alloc.release(buf.chnl);
+        assertEquals(1250, alloc.pooledBytes());
+        assertSame(buf.chnl, alloc.ioBuffer(1250).chnl);
+        assertNotSame(buf.chnl, alloc.ioBuffer(1250).chnl);
+        assertEquals(0, alloc.pooledBytes());
+
+        // total pooled bytes are capped
+        for (int i = 0; i < 4; ++i) {
+            alloc.release(ByteArrayChannel.fromEmpty(1250));
+        }
+        assertEquals(3750, alloc.pooledBytes());
+        // larger than maxBufferSize
+        alloc.release(ByteArrayChannel.fromEmpty(4096));
+        assertEquals(3750, alloc.pooledBytes());
+    }
+}
@@ -0,0 +1,348 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.app.app.cmd.handle.resource.SwitchHandle;
+import io.vproxy.base.component.elgroup.EventLoopGroup;
+import io.vproxy.base.util.Annotations;
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.Consts;
+import io.vproxy.base.util.Network;
+import io.vproxy.commons.graph.GraphBuilder;
+import io.vproxy.component.secure.SecurityGroup;
+import io.vproxy.vfd.IP;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vfd.MacAddress;
+import io.vproxy.vpacket.EthernetPacket;
+import io.vproxy.vpacket.PacketBytes;
+import io.vproxy.vpacket.TcpPacket;
+import io.vproxy.vswitch.PacketBuffer;
+import io.vproxy.vswitch.Switch;
+import io.vproxy.vswitch.VirtualNetwork;
+import io.vproxy.vswitch.iface.ProgramIface;
+import io.vproxy.vswitch.node.*;
+import io.vproxy.vswitch.util.SwitchUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestNodeGraph {
+    private EventLoopGroup eventLoopGroup;
+    private Switch sw;
+    private VirtualNetwork net;
+    private ProgramIface eth0;
+    private ProgramIface eth1;
+
+    private final List<PacketBuffer> dropped = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        eventLoopGroup = new EventLoopGroup("elg");
+        eventLoopGroup.add("el");
+        sw = new Switch("test", new IPPort("255.255.255.255:65535"), eventLoopGroup,
+            SwitchHandle.MAC_TABLE_TIMEOUT, SwitchHandle.ARP_TABLE_TIMEOUT,
+            SecurityGroup.allowAll());
+        sw.start();
+        sw.addNetwork(1, Network.from("192.168.1.0/24"), Network.from("fd00::1:0/120"), new Annotations());
+        net = sw.getNetwork(1);
+        eth0 = sw.addProgramIface("eth0", 1);
+        eth1 = sw.addProgramIface("eth1", 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (sw != null) {
+            sw.stop();
+        }
+        if (eventLoopGroup != null) {
+            try {
+                eventLoopGroup.remove("el");
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+    // records the packets in the order they are handled, and ends their journey
+    private static class RecordNode extends Node {
+        final List<PacketBuffer> handled = new ArrayList<>();
+
+        RecordNode(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void initGraph(GraphBuilder<Node> builder) {
+        }
+
+        @Override
+        protected void initNode() {
+        }
+
+        @Override
+        protected HandleResult preHandle(PacketBuffer pkb) {
+            return HandleResult.PASS;
+        }
+
+        @Override
+        protected HandleResult handle(PacketBuffer pkb, NodeGraphScheduler scheduler) {
+            handled.add(pkb);
+            return HandleResult.STOLEN;
+        }
+    }
+
+    // pkb.mask is the flow, flow % 4:
+    // 0 => a, 1 => b, 2 => dropped directly, 3 => egress without edges, so it goes to error-drop
+    private static class ClassifyNode extends Node {
+        private final NodeEgress a = new NodeEgress("a");
+        private final NodeEgress b = new NodeEgress("b");
+        private final NodeEgress missing = new NodeEgress("missing");
+        int vectors = 0;
+
+        ClassifyNode() {
+            super("classify");
+        }
+
+        @Override
+        protected void initGraph(GraphBuilder<Node> builder) {
+            builder.addEdge("classify", "a", "a", DEFAULT_EDGE_DISTANCE);
+            builder.addEdge("classify", "b", "b", DEFAULT_EDGE_DISTANCE);
+            builder.addEdge("classify", "error-drop", "error-drop", DEFAULT_EDGE_DISTANCE);
+        }
+
+        @Override
+        protected void initNode() {
+            fillEdges(a);
+            fillEdges(b);
+            fillEdges(missing);
+        }
+
+        @Override
+        protected HandleResult preHandle(PacketBuffer pkb) {
+            return HandleResult.PASS;
+        }
+
+        @Override
+        protected HandleResult handle(PacketBuffer pkb, NodeGraphScheduler scheduler) {
+            switch (pkb.mask % 4) {
+                case 0:
+                    return _returnnext(pkb, a);
+                case 1:
+                    return _returnnext(pkb, b);
+                case 2:
+                    return _returndropSkipErrorDrop();
+                default:
+                    return _returnnext(pkb, missing);
+            }
+        }
+
+        @Override
+        protected void handle(List<PacketBuffer> pkbs, HandleResult[] results, NodeGraphScheduler scheduler) {
+            ++vectors;
+            super.handle(pkbs, results, scheduler);
+        }
+    }
+
+    private NodeGraphScheduler buildScheduler(Node... nodes) {
+        var graph = new NodeGraph();
+        for (var n : nodes) {
+            graph.addNode(n);
+        }
+        graph.initGraph();
+        graph.initNode();
+        return new NodeGraphScheduler(graph) {
+            @Override
+            protected void packetDroppedOrStolen(PacketBuffer pkb) {
+                dropped.add(pkb);
+            }
+        };
+    }
+
+    private static void assertFlows(List<PacketBuffer> handled, int flowMod4) {
+        int lastSeq = -1;
+        for (var pkb : handled) {
+            assertEquals("flow " + pkb.mask + " routed to a wrong node", flowMod4, pkb.mask % 4);
+            // packets are kept in scheduling order, so flows are in order as well
+            assertTrue(pkb.internalMask > lastSeq);
+            lastSeq = pkb.internalMask;
+        }
+    }
+
+    @Test
+    public void mixedBatch() {
+        var classify = new ClassifyNode();
+        var a = new RecordNode("a");
+        var b = new RecordNode("b");
+        var errorDrop = new RecordNode("error-drop");
+        var scheduler = buildScheduler(classify, a, b, errorDrop);
+
+        // more packets than one vector can hold
+        int total = NodeGraphScheduler.VECTOR_SIZE * 2 + 100;
+        List<PacketBuffer> batch = new ArrayList<>();
+        for (int i = 0; i < total; ++i) {
+            var pkb = PacketBuffer.fromEtherBytes(null, 1, ByteArray.allocate(64), 0, 0);
+            pkb.mask = i % 7;
+            pkb.internalMask = i;
+            // packets without the next node are dropped when scheduled
+            if (i % 50 != 0) {
+                pkb.next = classify;
+            }
+            batch.add(pkb);
+        }
+        scheduler.schedule(batch);
+
+        assertEquals(3, classify.vectors);
+        assertFlows(a.handled, 0);
+        assertFlows(b.handled, 1);
+        assertFlows(errorDrop.handled, 3);
+
+        int expectA = 0;
+        int expectB = 0;
+        int expectErrorDrop = 0;
+        for (int i = 0; i < total; ++i) {
+            if (i % 50 == 0) {
+                continue;
+            }
+            switch (i % 7 % 4) {
+                case 0 -> ++expectA;
+                case 1 -> ++expectB;
+                case 3 -> ++expectErrorDrop;
+            }
+        }
+        assertEquals(expectA, a.handled.size());
+        assertEquals(expectB, b.handled.size());
+        assertEquals(expectErrorDrop, errorDrop.handled.size());
+
+        // every packet ends exactly once: stolen by the record nodes or dropped
+        assertEquals(total, dropped.size());
+        assertEquals(total, dropped.stream().distinct().count());
+        int droppedInClassify = (int) dropped.stream()
+            .filter(pkb -> !a.handled.contains(pkb) && !b.handled.contains(pkb) && !errorDrop.handled.contains(pkb))
+            .count();
+        assertEquals(total - expectA - expectB - expectErrorDrop, droppedInClassify);
+        for (var pkb : batch) {
+            assertNull(pkb.next);
+        }
+    }
+
+    @Test
+    public void scheduleOneByOne() {
+        var classify = new ClassifyNode();
+        var a = new RecordNode("a");
+        var b = new RecordNode("b");
+        var errorDrop = new RecordNode("error-drop");
+        var scheduler = buildScheduler(classify, a, b, errorDrop);
+
+        for (int round = 0; round < 3; ++round) {
+            var pkb = PacketBuffer.fromEtherBytes(null, 1, ByteArray.allocate(64), 0, 0);
+            pkb.mask = round;
+            pkb.internalMask = round;
+            pkb.next = classify;
+            scheduler.schedule(pkb);
+        }
+        assertEquals(3, classify.vectors);
+        assertEquals(1, a.handled.size());
+        assertEquals(1, b.handled.size());
+        assertEquals(0, errorDrop.handled.size());
+        assertEquals(3, dropped.size());
+    }
+
+    private static EthernetPacket ether(String dstMac, String srcMac) {
+        var e = new EthernetPacket();
+        e.setSrc(new MacAddress(srcMac));
+        e.setDst(new MacAddress(dstMac));
+        e.setType(0xffff);
+        e.setPacket(new PacketBytes(ByteArray.from("hello")));
+        return e;
+    }
+
+    private PacketBuffer input(ProgramIface devin, EthernetPacket e) {
+        var pkb = PacketBuffer.fromPacket(net, e);
+        pkb.devin = devin;
+        return pkb;
+    }
+
+    @Test
+    public void ethernetInputBatch() {
+        var ethernetInput = new EthernetInput();
+        var unicast = new RecordNode("unicast-input");
+        var multicast = new RecordNode("multicast-input");
+        var scheduler = buildScheduler(ethernetInput, unicast, multicast);
+
+        var p0 = input(eth0, ether("aa:bb:cc:dd:ee:02", "aa:bb:cc:dd:ee:00"));
+        var p1 = input(eth0, ether("aa:bb:cc:dd:ee:02", "aa:bb:cc:dd:ee:00"));
+        var p2 = input(eth0, ether("ff:ff:ff:ff:ff:ff", "aa:bb:cc:dd:ee:01"));
+        var p3 = input(eth0, ether("aa:bb:cc:dd:ee:02", "aa:bb:cc:dd:ee:00"));
+        // the same source moves to another iface within the vector
+        var p4 = input(eth1, ether("aa:bb:cc:dd:ee:02", "aa:bb:cc:dd:ee:01"));
+        var p5 = input(null, ether("aa:bb:cc:dd:ee:02", "aa:bb:cc:dd:ee:03"));
+        var batch = List.of(p0, p1, p2, p3, p4, p5);
+        for (var pkb : batch) {
+            pkb.next = ethernetInput;
+        }
+        scheduler.schedule(batch);
+
+        assertEquals(List.of(p0, p1, p3, p4, p5), unicast.handled);
+        assertEquals(List.of(p2), multicast.handled);
+        assertSame(eth0, net.macTable.lookup(new MacAddress("aa:bb:cc:dd:ee:00")));
+        assertSame(eth1, net.macTable.lookup(new MacAddress("aa:bb:cc:dd:ee:01")));
+        assertNull(net.macTable.lookup(new MacAddress("aa:bb:cc:dd:ee:03")));
+    }
+
+    private PacketBuffer tcp(String src, int srcPort, int dstPort, int flags) {
+        var tcp = new TcpPacket();
+        tcp.setSrcPort(srcPort);
+        tcp.setDstPort(dstPort);
+        tcp.setDataOffset(5);
+        tcp.setFlags(flags);
+        tcp.setWindow(65535);
+        tcp.setData(ByteArray.allocate(0));
+        var ip = SwitchUtils.buildIpPacket(IP.from(src), IP.from("192.168.1.1"), Consts.IP_PROTOCOL_TCP, tcp);
+        var e = SwitchUtils.buildEtherIpPacket(new MacAddress("aa:bb:cc:dd:ee:01"), new MacAddress("aa:bb:cc:dd:ee:00"), ip);
+        return PacketBuffer.fromPacket(net, e);
+    }
+
+    @Test
+    public void tcpInputBatch() {
+        var tcpInput = new TcpInput();
+        var stack = new RecordNode("tcp-stack");
+        var reset = new RecordNode("tcp-reset");
+        var scheduler = buildScheduler(tcpInput, stack, reset);
+
+        var local = new IPPort("192.168.1.1", 80);
+        var listen = net.conntrack.listenTcp(local, null);
+        var existing = net.conntrack.recordTcp(new IPPort("192.168.1.2", 1000), local);
+
+        var a0 = tcp("192.168.1.2", 1000, 80, Consts.TCP_FLAGS_ACK);
+        var a1 = tcp("192.168.1.2", 1000, 80, Consts.TCP_FLAGS_ACK);
+        // a new connection, and the following packet of it in the same vector
+        var b0 = tcp("192.168.1.3", 2000, 80, Consts.TCP_FLAGS_SYN);
+        var b1 = tcp("192.168.1.3", 2000, 80, Consts.TCP_FLAGS_ACK);
+        // not listening
+        var c0 = tcp("192.168.1.3", 2000, 81, Consts.TCP_FLAGS_SYN);
+        var a2 = tcp("192.168.1.2", 1000, 80, Consts.TCP_FLAGS_ACK);
+        // same ports as flow a but another address
+        var d0 = tcp("192.168.1.4", 1000, 80, Consts.TCP_FLAGS_ACK);
+        var batch = List.of(a0, a1, b0, b1, c0, a2, d0);
+        for (var pkb : batch) {
+            pkb.next = tcpInput;
+        }
+        scheduler.schedule(batch);
+
+        assertEquals(List.of(a0, a1, b0, b1, a2), stack.handled);
+        assertEquals(List.of(c0, d0), reset.handled);
+
+        assertSame(existing, a0.tcp);
+        assertSame(existing, a1.tcp);
+        assertSame(existing, a2.tcp);
+        var created = net.conntrack.lookupTcp(new IPPort("192.168.1.3", 2000), local);
+        assertNotNull(created);
+        assertSame(created, b0.tcp);
+        assertSame(created, b1.tcp);
+        assertTrue(listen.synBacklog.contains(created));
+        assertEquals(1, listen.synBacklog.size());
+        assertNull(d0.tcp);
+    }
+}
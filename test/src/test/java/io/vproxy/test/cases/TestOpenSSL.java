@@ -0,0 +1,432 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.GlobalInspection;
+import io.vproxy.base.util.ringbuffer.ssl.VSSLContext;
+import io.vproxy.component.ssl.CertKey;
+import io.vproxy.openssl.OpenSSL;
+import io.vproxy.openssl.OpenSSLContext;
+import org.junit.After;
+import org.junit.AssumptionViolatedException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.net.ssl.*;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestOpenSSL {
+    private static final String HOST = "vproxy.cassite.net";
+    private static final int PORT = 443;
+    private static final int APP_BUFFER_SIZE = 32 * 1024;
+
+    private static final TrustManager[] TRUST_ALL = {new X509TrustManager() {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }};
+
+    private static SSLContext jdkContext;
+
+    private OpenSSLContext serverContext;
+    private OpenSSLContext clientContext;
+
+    // network data in flight
+    private final ByteBuffer clientToServer = ByteBuffer.allocate(128 * 1024);
+    private final ByteBuffer serverToClient = ByteBuffer.allocate(128 * 1024);
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        if (!OpenSSL.isSupported()) {
+            throw new AssumptionViolatedException("the vpssl library is not available");
+        }
+        CertKey ck = new CertKey("test", new String[]{TestSSL.TEST_CERT}, TestSSL.TEST_KEY);
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null);
+        ck.setInto(keyStore);
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
+        kmf.init(keyStore, "changeit".toCharArray());
+        jdkContext = SSLContext.getInstance("TLS");
+        jdkContext.init(kmf.getKeyManagers(), TRUST_ALL, null);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        serverContext = OpenSSLContext.forServer(TestSSL.TEST_CERT, TestSSL.TEST_KEY);
+        clientContext = OpenSSLContext.forClient(false);
+    }
+
+    @After
+    public void tearDown() {
+        serverContext.close();
+        clientContext.close();
+    }
+
+    private static SSLEngine jdkServer(String protocol) {
+        var engine = jdkContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setEnabledProtocols(new String[]{protocol});
+        return engine;
+    }
+
+    private static SSLEngine jdkClient(String protocol) {
+        var engine = jdkContext.createSSLEngine(HOST, PORT);
+        engine.setUseClientMode(true);
+        engine.setEnabledProtocols(new String[]{protocol});
+        return engine;
+    }
+
+    private SSLEngine openSSLServer(String protocol) {
+        var engine = serverContext.createSSLEngine();
+        engine.setEnabledProtocols(new String[]{protocol});
+        return engine;
+    }
+
+    private SSLEngine openSSLClient(String protocol) {
+        var engine = clientContext.createSSLEngine(HOST, PORT);
+        engine.setEnabledProtocols(new String[]{protocol});
+        return engine;
+    }
+
+    private static void runTasks(SSLEngine engine) {
+        Runnable r;
+        while ((r = engine.getDelegatedTask()) != null) {
+            r.run();
+        }
+    }
+
+    private static boolean handshaking(SSLEngine engine) {
+        var s = engine.getHandshakeStatus();
+        return s != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING && s != SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    // wrap the app data (or handshake messages) into the network buffer as much as possible
+    private static void send(SSLEngine from, ByteBuffer app, ByteBuffer net) throws SSLException {
+        while (true) {
+            var r = from.wrap(app, net);
+            runTasks(from);
+            if (r.bytesConsumed() == 0 && r.bytesProduced() == 0) {
+                break;
+            }
+        }
+    }
+
+    // unwrap all complete records in the network buffer
+    private static void receive(SSLEngine to, ByteBuffer net, ByteBuffer app) throws SSLException {
+        net.flip();
+        try {
+            while (net.hasRemaining()) {
+                var r = to.unwrap(net, app);
+                runTasks(to);
+                assertNotEquals(SSLEngineResult.Status.BUFFER_OVERFLOW, r.getStatus());
+                if (r.getStatus() != SSLEngineResult.Status.OK) {
+                    break;
+                }
+                if (r.bytesConsumed() == 0 && r.bytesProduced() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            net.compact();
+        }
+    }
+
+    private void handshake(SSLEngine client, SSLEngine server) throws Exception {
+        var clientApp = ByteBuffer.allocate(APP_BUFFER_SIZE);
+        var serverApp = ByteBuffer.allocate(APP_BUFFER_SIZE);
+        client.beginHandshake();
+        server.beginHandshake();
+        for (int i = 0; i < 100; ++i) {
+            send(client, ByteBuffer.allocate(0), clientToServer);
+            receive(server, clientToServer, serverApp);
+            send(server, ByteBuffer.allocate(0), serverToClient);
+            receive(client, serverToClient, clientApp);
+            if (!handshaking(client) && !handshaking(server) && clientToServer.position() == 0) {
+                assertEquals(0, clientApp.position());
+                assertEquals(0, serverApp.position());
+                return;
+            }
+        }
+        fail("handshake does not finish, client: " + client.getHandshakeStatus() + ", server: " + server.getHandshakeStatus());
+    }
+
+    // transfer the data in both directions at the same time
+    private void exchange(SSLEngine client, SSLEngine server, int size) throws Exception {
+        var rand = new Random(size);
+        byte[] clientData = new byte[size];
+        byte[] serverData = new byte[size];
+        rand.nextBytes(clientData);
+        rand.nextBytes(serverData);
+        var clientOut = ByteBuffer.wrap(clientData);
+        var serverOut = ByteBuffer.wrap(serverData);
+        var clientIn = ByteBuffer.allocate(size + APP_BUFFER_SIZE);
+        var serverIn = ByteBuffer.allocate(size + APP_BUFFER_SIZE);
+        for (int i = 0; i < 10000 && (clientIn.position() < size || serverIn.position() < size); ++i) {
+            send(client, clientOut, clientToServer);
+            send(server, serverOut, serverToClient);
+            receive(server, clientToServer, serverIn);
+            receive(client, serverToClient, clientIn);
+        }
+        assertEquals(size, serverIn.position());
+        assertEquals(size, clientIn.position());
+        assertArrayEquals(clientData, Arrays.copyOf(serverIn.array(), size));
+        assertArrayEquals(serverData, Arrays.copyOf(clientIn.array(), size));
+    }
+
+    private static void closeOneWay(SSLEngine from, ByteBuffer net, SSLEngine to) throws Exception {
+        from.closeOutbound();
+        var r = from.wrap(ByteBuffer.allocate(0), net);
+        assertEquals(SSLEngineResult.Status.CLOSED, r.getStatus());
+        assertTrue(r.bytesProduced() > 0);
+        assertTrue(from.isOutboundDone());
+
+        net.flip();
+        r = to.unwrap(net, ByteBuffer.allocate(APP_BUFFER_SIZE));
+        net.compact();
+        assertEquals(SSLEngineResult.Status.CLOSED, r.getStatus());
+        assertEquals(0, r.bytesProduced());
+        assertTrue(to.isInboundDone());
+    }
+
+    private void roundTrip(SSLEngine client, SSLEngine server, String protocol) throws Exception {
+        handshake(client, server);
+        assertEquals(protocol, client.getSession().getProtocol());
+        assertEquals(protocol, server.getSession().getProtocol());
+
+        exchange(client, server, 5);
+        exchange(client, server, 300_000);
+
+        closeOneWay(client, clientToServer, server);
+        closeOneWay(server, serverToClient, client);
+    }
+
+    @Test
+    public void openSSLServerTLS12() throws Exception {
+        roundTrip(jdkClient("TLSv1.2"), openSSLServer("TLSv1.2"), "TLSv1.2");
+    }
+
+    @Test
+    public void openSSLServerTLS13() throws Exception {
+        roundTrip(jdkClient("TLSv1.3"), openSSLServer("TLSv1.3"), "TLSv1.3");
+    }
+
+    @Test
+    public void openSSLClientTLS12() throws Exception {
+        roundTrip(openSSLClient("TLSv1.2"), jdkServer("TLSv1.2"), "TLSv1.2");
+    }
+
+    @Test
+    public void openSSLClientTLS13() throws Exception {
+        roundTrip(openSSLClient("TLSv1.3"), jdkServer("TLSv1.3"), "TLSv1.3");
+    }
+
+    @Test
+    public void bufferUnderflowAndOverflow() throws Exception {
+        var client = jdkClient("TLSv1.2");
+        var server = openSSLServer("TLSv1.2");
+        handshake(client, server);
+
+        byte[] data = new byte[100];
+        new Random(1).nextBytes(data);
+        send(client, ByteBuffer.wrap(data), clientToServer);
+        clientToServer.flip();
+        int recordLen = clientToServer.remaining();
+        assertTrue(recordLen > data.length);
+
+        // header is not complete
+        var src = clientToServer.duplicate().limit(3);
+        var r = server.unwrap(src, ByteBuffer.allocate(APP_BUFFER_SIZE));
+        assertEquals(SSLEngineResult.Status.BUFFER_UNDERFLOW, r.getStatus());
+        assertEquals(0, r.bytesConsumed());
+
+        // record is not complete
+        src = clientToServer.duplicate().limit(recordLen - 1);
+        r = server.unwrap(src, ByteBuffer.allocate(APP_BUFFER_SIZE));
+        assertEquals(SSLEngineResult.Status.BUFFER_UNDERFLOW, r.getStatus());
+        assertEquals(0, r.bytesConsumed());
+
+        // dst is smaller than the plaintext
+        r = server.unwrap(clientToServer, ByteBuffer.allocate(data.length - 1));
+        assertEquals(SSLEngineResult.Status.BUFFER_OVERFLOW, r.getStatus());
+        assertEquals(0, r.bytesConsumed());
+        assertEquals(recordLen, clientToServer.remaining());
+
+        // dst only has to hold the payload of the pending record, not a full sized record
+        var dst = ByteBuffer.allocate(recordLen - 5);
+        r = server.unwrap(clientToServer, dst);
+        assertEquals(SSLEngineResult.Status.OK, r.getStatus());
+        assertEquals(recordLen, r.bytesConsumed());
+        assertEquals(data.length, r.bytesProduced());
+        assertArrayEquals(data, Arrays.copyOf(dst.array(), data.length));
+        clientToServer.compact();
+
+        // wrap requires a full sized packet buffer
+        r = server.wrap(ByteBuffer.wrap(data), ByteBuffer.allocate(data.length));
+        assertEquals(SSLEngineResult.Status.BUFFER_OVERFLOW, r.getStatus());
+        assertEquals(0, r.bytesConsumed());
+        var net = ByteBuffer.allocate(server.getSession().getPacketBufferSize());
+        r = server.wrap(ByteBuffer.wrap(data), net);
+        assertEquals(SSLEngineResult.Status.OK, r.getStatus());
+        assertEquals(data.length, r.bytesConsumed());
+    }
+
+    @Test
+    public void replaceOpenSSLContext() throws Exception {
+        var sslContext = SSLContext.getInstance("TLS");
+        var vsslContext = new VSSLContext();
+        var a = OpenSSLContext.forServer(TestSSL.TEST_CERT, TestSSL.TEST_KEY);
+        var b = OpenSSLContext.forServer(TestSSL.TEST_CERT, TestSSL.TEST_KEY);
+
+        // created before the context is replaced, and handshakes after that
+        var engine = a.createSSLEngine();
+        engine.setEnabledProtocols(new String[]{"TLSv1.3"});
+
+        vsslContext.useOpenSSL(sslContext, a);
+        vsslContext.useOpenSSL(sslContext, b);
+        assertTrue(a.isClosed());
+        assertFalse(b.isClosed());
+
+        handshake(jdkClient("TLSv1.3"), engine);
+
+        vsslContext.removeOpenSSL(sslContext);
+        assertTrue(b.isClosed());
+        var closedEngine = b.createSSLEngine();
+        try {
+            closedEngine.beginHandshake();
+            fail("the context is closed");
+        } catch (SSLException expected) {
+        }
+    }
+
+    // the jdk client caches sessions in its context, so a new context is used for each test
+    private static SSLContext jdkClientContext(boolean tickets) throws Exception {
+        // read when the context is created
+        String prop = "jdk.tls.client.enableSessionTicketExtension";
+        String old = System.getProperty(prop);
+        System.setProperty(prop, "" + tickets);
+        try {
+            var ctx = SSLContext.getInstance("TLS");
+            ctx.init(null, TRUST_ALL, null);
+            return ctx;
+        } finally {
+            if (old == null) {
+                System.clearProperty(prop);
+            } else {
+                System.setProperty(prop, old);
+            }
+        }
+    }
+
+    private SSLEngine connect(SSLContext clientContext, String protocol) throws Exception {
+        clientToServer.clear();
+        serverToClient.clear();
+        var client = clientContext.createSSLEngine(HOST, PORT);
+        client.setUseClientMode(true);
+        client.setEnabledProtocols(new String[]{protocol});
+        handshake(client, openSSLServer(protocol));
+        return client;
+    }
+
+    private SSLEngine connectAndReceiveTickets(SSLContext clientContext, String protocol) throws Exception {
+        var client = connect(clientContext, protocol);
+        // tls 1.3 tickets are sent after the handshake
+        serverToClient.flip();
+        client.unwrap(serverToClient, ByteBuffer.allocate(APP_BUFFER_SIZE));
+        serverToClient.compact();
+        return client;
+    }
+
+    private static long metric(String name, String... labels) {
+        for (var line : GlobalInspection.getInstance().getPrometheusString().split("\n")) {
+            if (!line.startsWith(name + "{")) {
+                continue;
+            }
+            boolean match = true;
+            for (var l : labels) {
+                if (!line.contains(l)) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                return Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            }
+        }
+        fail("metric " + name + " " + Arrays.toString(labels) + " not found");
+        return 0;
+    }
+
+    private static long resumptionCount(String method, String result) {
+        return metric("ssl_session_resumption_count", "method=\"" + method + "\"", "result=\"" + result + "\"");
+    }
+
+    private static long handshakeCount(String type) {
+        return metric("ssl_handshake_count", "type=\"" + type + "\"");
+    }
+
+    @Test
+    public void sessionIdResumption() throws Exception {
+        var ctx = jdkClientContext(false);
+        long full = handshakeCount("full");
+        long resumed = handshakeCount("session_id");
+        long hit = resumptionCount("session_id", "hit");
+
+        var first = connect(ctx, "TLSv1.2");
+        assertEquals(full + 1, handshakeCount("full"));
+        var second = connect(ctx, "TLSv1.2");
+        assertArrayEquals(first.getSession().getId(), second.getSession().getId());
+
+        assertEquals(full + 1, handshakeCount("full"));
+        assertEquals(resumed + 1, handshakeCount("session_id"));
+        assertEquals(hit + 1, resumptionCount("session_id", "hit"));
+    }
+
+    private void ticketResumptionAcrossRotation(String protocol) throws Exception {
+        var ctx = jdkClientContext(true);
+        connectAndReceiveTickets(ctx, protocol);
+
+        // the ticket is encrypted with a previous key
+        OpenSSL.rotateTicketKeys();
+        long resumed = handshakeCount("ticket");
+        long hit = resumptionCount("ticket", "hit");
+        long miss = resumptionCount("ticket", "miss");
+        connectAndReceiveTickets(ctx, protocol);
+        assertEquals(resumed + 1, handshakeCount("ticket"));
+        assertEquals(hit + 1, resumptionCount("ticket", "hit"));
+        assertEquals(miss, resumptionCount("ticket", "miss"));
+
+        // keys used by the tickets held by the client are all rotated out
+        for (int i = 0; i < 3; ++i) {
+            OpenSSL.rotateTicketKeys();
+        }
+        long full = handshakeCount("full");
+        connect(ctx, protocol);
+        assertEquals(resumed + 1, handshakeCount("ticket"));
+        assertEquals(miss + 1, resumptionCount("ticket", "miss"));
+        assertEquals(full + 1, handshakeCount("full"));
+    }
+
+    @Test
+    public void ticketResumptionAcrossRotationTLS12() throws Exception {
+        ticketResumptionAcrossRotation("TLSv1.2");
+    }
+
+    @Test
+    public void ticketResumptionAcrossRotationTLS13() throws Exception {
+        ticketResumptionAcrossRotation("TLSv1.3");
+    }
+}
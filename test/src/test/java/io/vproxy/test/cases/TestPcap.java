@@ -1,16 +1,21 @@
 package io.vproxy.test.cases;
 
+import io.vproxy.base.util.ByteArray;
 import io.vproxy.base.util.Consts;
 import io.vproxy.vfd.IP;
 import io.vproxy.vfd.IPPort;
+import io.vproxy.vmirror.MirrorWriter;
 import io.vproxy.vpacket.*;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class TestPcap {
     private void check(Function<PcapPacket, AbstractPacket> getIP, List<PcapPacket> packets, List<PktCheck> check) {
@@ -106,4 +111,131 @@ public class TestPcap {
             assertTrue(pkt.getPacket() instanceof IcmpPacket);
         }
     }
+
+    private static List<File> listPcapFiles(File dir) {
+        var files = dir.listFiles((d, name) -> name.endsWith(".pcap"));
+        assertNotNull(files);
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    @Test
+    public void mirrorWriter() throws Exception {
+        var dir = Files.createTempDirectory("test-mirrorWriter").toFile();
+        var input = new PcapParser(TestPcap.class.getResourceAsStream("/pcap/cap-ether.pcap")).parseAll();
+
+        var writer = new MirrorWriter(dir.getAbsolutePath() + "/mirror.pcap",
+            MirrorWriter.DEFAULT_SEGMENT_SIZE, 0, MirrorWriter.DEFAULT_SNAPLEN, MirrorWriter.DEFAULT_RING_SIZE);
+        writer.start();
+        for (var p : input) {
+            assertTrue(writer.write(1_700_000_000_123L, p.getPacket().getRawPacket(0)));
+        }
+        writer.close();
+        assertFalse(writer.write(0, input.get(0).getPacket().getRawPacket(0)));
+        assertEquals(0, writer.getDropped());
+
+        var files = listPcapFiles(dir);
+        assertEquals(1, files.size());
+        var parser = new PcapParser(files.get(0));
+        var output = parser.parseAll();
+        assertEquals(PcapGlobalHeader.LINKTYPE_ETHERNET, parser.getGlobalHeader().dataLinkType);
+        assertEquals(input.size(), output.size());
+        for (int i = 0; i < input.size(); ++i) {
+            assertEquals("idx=" + i, input.get(i).getPacket().getRawPacket(0), output.get(i).getPacket().getRawPacket(0));
+            assertEquals(1_700_000_000, output.get(i).getTssec());
+            assertEquals(123_000, output.get(i).getTsusec());
+        }
+    }
+
+    @Test
+    public void mirrorWriterSnaplenRotateAndDrop() throws Exception {
+        var dir = Files.createTempDirectory("test-mirrorWriterSnaplenRotateAndDrop").toFile();
+        var input = new PcapParser(TestPcap.class.getResourceAsStream("/pcap/cap-ether.pcap")).parseAll();
+
+        // each segment holds 3 full records, and the ring holds 3 records before the writer starts
+        int snaplen = 64;
+        var writer = new MirrorWriter(dir.getAbsolutePath() + "/mirror.pcap",
+            24 + 3 * (16 + snaplen), 0, snaplen, 2 * (16 + snaplen));
+        var accepted = new ArrayList<ByteArray>();
+        int dropped = 0;
+        for (var p : input) {
+            var raw = p.getPacket().getRawPacket(0);
+            if (writer.write(0, raw)) {
+                accepted.add(raw);
+            } else {
+                ++dropped;
+            }
+        }
+        assertTrue(dropped > 0);
+        assertEquals(dropped, writer.getDropped());
+
+        writer.start();
+        for (int i = 0; i < 3; ++i) {
+            // wait for the ring to be drained
+            var raw = input.get(i).getPacket().getRawPacket(0);
+            while (!writer.write(0, raw)) {
+                //noinspection BusyWait
+                Thread.sleep(1);
+            }
+            accepted.add(raw);
+        }
+        writer.close();
+
+        var records = new ArrayList<ByteArray>();
+        for (var f : listPcapFiles(dir)) {
+            var bytes = ByteArray.from(Files.readAllBytes(f.toPath()));
+            assertTrue(bytes.length() <= 24 + 3 * (16 + snaplen));
+            assertEquals(snaplen, bytes.int32ReverseNetworkByteOrder(16));
+            int off = 24;
+            while (off < bytes.length()) {
+                int capLen = bytes.int32ReverseNetworkByteOrder(off + 8);
+                int origLen = bytes.int32ReverseNetworkByteOrder(off + 12);
+                assertEquals(Math.min(origLen, snaplen), capLen);
+                records.add(bytes.sub(off + 16, capLen));
+                off += 16 + capLen;
+            }
+            assertEquals(bytes.length(), off);
+        }
+        assertEquals(accepted.size(), records.size());
+        for (int i = 0; i < accepted.size(); ++i) {
+            var raw = accepted.get(i);
+            assertEquals("idx=" + i, raw.sub(0, Math.min(raw.length(), snaplen)), records.get(i));
+        }
+    }
+
+    @Test
+    public void mirrorWriterUnregisterRingsOfDeadThreads() throws Exception {
+        var dir = Files.createTempDirectory("test-mirrorWriterUnregisterRingsOfDeadThreads").toFile();
+        var input = new PcapParser(TestPcap.class.getResourceAsStream("/pcap/cap-ether.pcap")).parseAll();
+
+        var writer = new MirrorWriter(dir.getAbsolutePath() + "/mirror.pcap",
+            MirrorWriter.DEFAULT_SEGMENT_SIZE, 0, MirrorWriter.DEFAULT_SNAPLEN, MirrorWriter.DEFAULT_RING_SIZE);
+        writer.start();
+        int threadCount = 4;
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; ++i) {
+            var t = new Thread(() -> {
+                for (var p : input) {
+                    assertTrue(writer.write(0, p.getPacket().getRawPacket(0)));
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (var t : threads) {
+            t.join();
+        }
+        long begin = System.currentTimeMillis();
+        while (writer.getRingCount() != 0) {
+            assertTrue("rings are not unregistered", System.currentTimeMillis() - begin < 5_000);
+            //noinspection BusyWait
+            Thread.sleep(10);
+        }
+        writer.close();
+        assertEquals(0, writer.getDropped());
+
+        var files = listPcapFiles(dir);
+        assertEquals(1, files.size());
+        assertEquals(threadCount * input.size(), new PcapParser(files.get(0)).parseAll().size());
+    }
 }
@@ -22,6 +22,7 @@ import io.vproxy.base.util.Annotations;
 import io.vproxy.base.util.nio.ByteArrayChannel;
 import io.vproxy.base.util.thread.VProxyThread;
 import io.vproxy.component.app.TcpLB;
+import io.vproxy.component.proxy.BackendConnectionPool;
 import io.vproxy.component.secure.SecurityGroup;
 import io.vproxy.component.svrgroup.Upstream;
 import io.vproxy.poc.dubbo.GreetingsService;
@@ -44,8 +45,11 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -747,6 +751,140 @@ public class TestProtocols {
         }
     }
 
+    private String h1Request(String host) throws Exception {
+        try (var sock = new Socket()) {
+            sock.connect(new InetSocketAddress("127.0.0.1", lbPort));
+            sock.getOutputStream().write(
+                ("GET / HTTP/1.1\r\n" +
+                 "Host: " + host + "\r\n" +
+                 "\r\n").getBytes());
+            byte[] buf = new byte[1024];
+            var parser = new HttpRespParser();
+            while (true) {
+                int n = sock.getInputStream().read(buf);
+                if (n == -1) {
+                    throw new Exception("unexpected EOF while reading response");
+                }
+                var chnl = ByteArrayChannel.from(buf, 0, n, 0);
+                var res = parser.feed(chnl);
+                if (res == 0) {
+                    return parser.getResult().body.toString();
+                }
+                if (parser.getErrorMessage() != null) {
+                    throw new Exception(parser.getErrorMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void h1BackendPool() throws Throwable {
+        int[] conn = {0};
+
+        Vertx vertx = Vertx.vertx();
+        try {
+            Handler<HttpServerRequest> handler = req -> req.response().end("resp-" + req.localAddress().port());
+            vertx.createHttpServer().connectionHandler(c -> ++conn[0]).requestHandler(handler).listen(port1);
+            vertx.createHttpServer().connectionHandler(c -> ++conn[0]).requestHandler(handler).listen(port2);
+
+            initLb("http/1.x");
+            lb.setBackendPool(new BackendConnectionPool());
+
+            for (int i = 0; i < 4; ++i) {
+                assertEquals("resp-" + port1, h1Request("s1.test.com"));
+                Thread.sleep(100); // wait for the backend connection to be released
+            }
+            assertEquals(1, conn[0]);
+
+            assertEquals("resp-" + port2, h1Request("s2.test.com"));
+            assertEquals(2, conn[0]);
+
+            // idle connections are closed with the pool
+            lb.setBackendPool(null);
+            assertEquals("resp-" + port1, h1Request("s1.test.com"));
+            assertEquals(3, conn[0]);
+        } finally {
+            boolean[] closeDone = {false};
+            vertx.close(v -> closeDone[0] = true);
+            while (!closeDone[0]) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    @Test
+    public void h1BackendPoolConnectionClose() throws Throwable {
+        // the backend keeps the connections open, only the response tells that they must not be reused
+        String[] respHead = {"HTTP/1.1 200 OK\r\nConnection: close\r\n"};
+        int[] conn = {0};
+        var sockets = new ArrayList<Socket>();
+        var server = new ServerSocket();
+        server.bind(new InetSocketAddress("127.0.0.1", port1));
+        var acceptThread = VProxyThread.create(() -> {
+            while (true) {
+                Socket sock;
+                try {
+                    sock = server.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                synchronized (sockets) {
+                    ++conn[0];
+                    sockets.add(sock);
+                }
+                VProxyThread.create(() -> {
+                    try {
+                        var in = sock.getInputStream();
+                        int last4 = 0;
+                        int b;
+                        while ((b = in.read()) != -1) {
+                            last4 = (last4 << 8) | b;
+                            if (last4 == 0x0d0a0d0a) { // end of the request head
+                                sock.getOutputStream().write((respHead[0] + "Content-Length: 2\r\n\r\nok").getBytes());
+                            }
+                        }
+                    } catch (IOException ignore) {
+                    }
+                }, "backend-conn").start();
+            }
+        }, "backend-accept");
+        acceptThread.start();
+        try {
+            initLb("http/1.x");
+            lb.setBackendPool(new BackendConnectionPool());
+
+            for (int i = 0; i < 2; ++i) {
+                assertEquals("ok", h1Request("s1.test.com"));
+                Thread.sleep(100); // wait for the backend connection to be released
+            }
+            assertEquals(2, conn[0]);
+
+            respHead[0] = "HTTP/1.0 200 OK\r\n";
+            for (int i = 0; i < 2; ++i) {
+                assertEquals("ok", h1Request("s1.test.com"));
+                Thread.sleep(100);
+            }
+            assertEquals(4, conn[0]);
+
+            // a keep-alive response makes the connection reusable
+            respHead[0] = "HTTP/1.0 200 OK\r\nConnection: keep-alive\r\n";
+            for (int i = 0; i < 2; ++i) {
+                assertEquals("ok", h1Request("s1.test.com"));
+                Thread.sleep(100);
+            }
+            assertEquals(5, conn[0]);
+        } finally {
+            server.close();
+            synchronized (sockets) {
+                for (var sock : sockets) {
+                    sock.close();
+                }
+            }
+            acceptThread.join();
+        }
+    }
+
     @Test
     public void h1websocket() throws Throwable {
         Vertx vertx = Vertx.vertx();
@@ -6,8 +6,10 @@ import io.vproxy.vfd.IP;
 import io.vproxy.vswitch.RouteTable;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
@@ -58,6 +60,70 @@ public class TestRouteTable {
         assertNull(nets.lookup(IP.from("2001::2:1")));
     }
 
+    private static R bruteForceLookup(List<Network> nets, List<R> rules, IP ip) {
+        R res = null;
+        int mask = -1;
+        for (int i = 0; i < nets.size(); ++i) {
+            var net = nets.get(i);
+            if (net.contains(ip) && net.getMask() > mask) {
+                res = rules.get(i);
+                mask = net.getMask();
+            }
+        }
+        return res;
+    }
+
+    private static IP randomIP(Random rand, boolean v4) {
+        byte[] b = new byte[v4 ? 4 : 16];
+        rand.nextBytes(b);
+        // keep a few leading bits fixed, so that prefixes overlap with each other
+        b[0] = (byte) (v4 ? 10 : 0x20);
+        if ((b[1] & 1) == 0) {
+            b[1] = 0;
+        }
+        return IP.from(b);
+    }
+
+    private void networksRandom(boolean v4) {
+        var rand = new Random(v4 ? 4 : 6);
+        int maxMask = v4 ? 32 : 128;
+        var nets = new Networks<R>();
+        List<Network> addedNets = new ArrayList<>();
+        List<R> addedRules = new ArrayList<>();
+        for (int round = 0; round < 3000; ++round) {
+            if (!addedNets.isEmpty() && rand.nextInt(3) == 0) {
+                int idx = rand.nextInt(addedNets.size());
+                var net = addedNets.remove(idx);
+                var r = addedRules.remove(idx);
+                assertEquals(r, nets.remove(net));
+            } else {
+                var net = Network.eraseToNetwork(randomIP(rand, v4), rand.nextInt(maxMask + 1));
+                if (nets.lookup(net) != null) {
+                    continue;
+                }
+                var r = new R(round);
+                nets.add(net, r);
+                addedNets.add(net);
+                addedRules.add(r);
+            }
+            for (int i = 0; i < 20; ++i) {
+                var ip = randomIP(rand, v4);
+                assertEquals("lookup " + ip + " in round " + round,
+                    bruteForceLookup(addedNets, addedRules, ip), nets.lookup(ip));
+            }
+        }
+    }
+
+    @Test
+    public void networksRandomV4() {
+        networksRandom(true);
+    }
+
+    @Test
+    public void networksRandomV6() {
+        networksRandom(false);
+    }
+
     private Network getNetwork(String s) {
         String[] ab = s.split("/");
         String a = ab[0];
@@ -90,4 +156,32 @@ public class TestRouteTable {
         var actual = table.getRules().stream().map(x -> x.rule.toString()).collect(Collectors.toList());
         assertEquals(expect, actual);
     }
+
+    @Test
+    public void removeHostBitsRule() throws Exception {
+        var table = new RouteTable();
+        table.addRule(new RouteTable.RouteRule("masked", getNetwork("10.0.0.0/24"), 1));
+        table.addRule(new RouteTable.RouteRule("host-bits", getNetwork("10.0.0.1/24"), 1));
+        table.addRule(new RouteTable.RouteRule("masked6", getNetwork("2001::/120"), 1));
+        table.addRule(new RouteTable.RouteRule("host-bits6", getNetwork("2001::1/120"), 1));
+
+        assertEquals("masked", table.lookup(IP.from("10.0.0.2")).alias);
+        assertEquals("masked6", table.lookup(IP.from("2001::2")).alias);
+
+        table.delRule("host-bits");
+        table.delRule("host-bits6");
+
+        assertEquals("masked", table.lookup(IP.from("10.0.0.2")).alias);
+        assertEquals("masked6", table.lookup(IP.from("2001::2")).alias);
+    }
+
+    @Test
+    public void removeHostBitsNetwork() {
+        var nets = new Networks<R>();
+        nets.add(getNetwork("10.0.0.0/24"), new R(1));
+        nets.add(getNetwork("10.0.0.1/24"), new R(2));
+
+        assertEquals(2, nets.remove(getNetwork("10.0.0.1/24")).n);
+        assertEquals(1, nets.lookup(IP.from("10.0.0.2")).n);
+    }
 }
@@ -0,0 +1,589 @@
+package io.vproxy.test.cases;
+
+import io.vproxy.base.selector.Handler;
+import io.vproxy.base.selector.HandlerContext;
+import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.selector.wrap.h2streamed.H2StreamedClientFDs;
+import io.vproxy.base.selector.wrap.h2streamed.H2StreamedFDHandler;
+import io.vproxy.base.selector.wrap.h2streamed.H2StreamedServerFDs;
+import io.vproxy.base.selector.wrap.kcp.KCPFDs;
+import io.vproxy.base.selector.wrap.streamed.StreamedArqUDPClientFDs;
+import io.vproxy.base.selector.wrap.streamed.StreamedArqUDPServerFDs;
+import io.vproxy.base.selector.wrap.streamed.StreamedFD;
+import io.vproxy.base.selector.wrap.udp.UDPBasedFDs;
+import io.vproxy.base.util.ByteArray;
+import io.vproxy.base.util.Utils;
+import io.vproxy.base.util.thread.VProxyThread;
+import io.vproxy.vfd.EventSet;
+import io.vproxy.vfd.IPPort;
+import io.vproxy.vfd.ServerSocketFD;
+import io.vproxy.vfd.SocketFD;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestStreamedFD {
+    // must be the same as StreamedFDHandler.STREAM_RECEIVE_WINDOW
+    private static final int STREAM_RECEIVE_WINDOW = 256 * 1024;
+
+    private static int nextPort = 20100;
+
+    private SelectorEventLoop loop;
+    private IPPort local;
+    private final BlockingQueue<StreamedFD> accepted = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        local = new IPPort("127.0.0.1", nextPort++);
+        loop = SelectorEventLoop.open();
+        loop.loop(r -> VProxyThread.create(r, "streamed-fd-test"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        loop.close();
+    }
+
+    private <T> T onLoop(Callable<T> c) throws Exception {
+        var f = new CompletableFuture<T>();
+        loop.runOnLoop(() -> {
+            try {
+                f.complete(c.call());
+            } catch (Throwable t) {
+                f.completeExceptionally(t);
+            }
+        });
+        return f.get(5, TimeUnit.SECONDS);
+    }
+
+    private void waitUntil(String msg, Callable<Boolean> cond) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!onLoop(cond)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("timed out waiting for: " + msg);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void startServer(StreamedArqUDPServerFDs serverFDs) throws Exception {
+        onLoop(() -> {
+            var server = serverFDs.openServerSocketFD(loop);
+            server.bind(local);
+            loop.add(server, EventSet.read(), null, new AcceptHandler());
+            return null;
+        });
+    }
+
+    private void startServer() throws Exception {
+        startServer(onLoop(() -> new H2StreamedServerFDs(KCPFDs.getFast3(), loop, local)));
+    }
+
+    private UDPBasedFDs client(boolean flowControl) throws Exception {
+        return onLoop(() -> new H2StreamedClientFDs(KCPFDs.getClientFast3(), loop, local, flowControl));
+    }
+
+    // the streamed client becomes usable after the handshake
+    private StreamedFD connect(UDPBasedFDs clientFDs, EventSet ops, Handler<SocketFD> handler) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            try {
+                return onLoop(() -> {
+                    var sfd = (StreamedFD) clientFDs.openSocketFD(loop);
+                    sfd.connect(sfd.getRemoteAddress());
+                    loop.add(sfd, ops, null, handler);
+                    return sfd;
+                });
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof IOException) || System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private StreamedFD accept(EventSet ops, Handler<SocketFD> handler) throws Exception {
+        var sfd = accepted.poll(5, TimeUnit.SECONDS);
+        assertNotNull("stream not accepted", sfd);
+        onLoop(() -> {
+            loop.add(sfd, ops, null, handler);
+            return null;
+        });
+        return sfd;
+    }
+
+    private class AcceptHandler implements Handler<ServerSocketFD> {
+        @Override
+        public void accept(HandlerContext<ServerSocketFD> ctx) {
+            while (true) {
+                SocketFD fd;
+                try {
+                    fd = ctx.getChannel().accept();
+                } catch (IOException e) {
+                    ctx.remove();
+                    return;
+                }
+                if (fd == null) {
+                    return;
+                }
+                accepted.add((StreamedFD) fd);
+            }
+        }
+
+        @Override
+        public void connected(HandlerContext<ServerSocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void readable(HandlerContext<ServerSocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void writable(HandlerContext<ServerSocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void removed(HandlerContext<ServerSocketFD> ctx) {
+            // do nothing
+        }
+    }
+
+    private static byte pattern(long off) {
+        return (byte) (off % 251);
+    }
+
+    // writes `total` bytes of the pattern, and optionally shuts down the output right after the last write
+    private static class PatternWriter implements Handler<SocketFD> {
+        private final long total;
+        private final boolean fin;
+        private final ByteBuffer chunk = ByteBuffer.allocate(16384);
+        long written = 0;
+        IOException error;
+
+        PatternWriter(long total, boolean fin) {
+            this.total = total;
+            this.fin = fin;
+        }
+
+        @Override
+        public void accept(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void connected(HandlerContext<SocketFD> ctx) {
+            writable(ctx);
+        }
+
+        @Override
+        public void readable(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void writable(HandlerContext<SocketFD> ctx) {
+            try {
+                while (written < total) {
+                    int len = (int) Math.min(chunk.capacity(), total - written);
+                    chunk.clear().limit(len);
+                    for (int i = 0; i < len; ++i) {
+                        chunk.put(pattern(written + i));
+                    }
+                    chunk.flip();
+                    int n = ctx.getChannel().write(chunk);
+                    written += n;
+                    if (n < len) {
+                        return;
+                    }
+                }
+                if (fin) {
+                    // the data may still be in the send queue of the stream
+                    ctx.getChannel().shutdownOutput();
+                }
+                ctx.modify(EventSet.none());
+            } catch (IOException e) {
+                error = e;
+                ctx.remove();
+            }
+        }
+
+        @Override
+        public void removed(HandlerContext<SocketFD> ctx) {
+            // do nothing
+        }
+    }
+
+    // reads and verifies the pattern
+    private static class PatternReader implements Handler<SocketFD> {
+        private final ByteBuffer buf = ByteBuffer.allocate(65536);
+        long received = 0;
+        boolean mismatch = false;
+        boolean eof = false;
+        IOException error;
+
+        @Override
+        public void accept(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void connected(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void readable(HandlerContext<SocketFD> ctx) {
+            while (true) {
+                buf.clear();
+                int n;
+                try {
+                    n = ctx.getChannel().read(buf);
+                } catch (IOException e) {
+                    error = e;
+                    ctx.remove();
+                    return;
+                }
+                if (n < 0) {
+                    eof = true;
+                    ctx.remove();
+                    return;
+                }
+                if (n == 0) {
+                    return;
+                }
+                for (int i = 0; i < n; ++i) {
+                    if (buf.get(i) != pattern(received + i)) {
+                        mismatch = true;
+                    }
+                }
+                received += n;
+            }
+        }
+
+        @Override
+        public void writable(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void removed(HandlerContext<SocketFD> ctx) {
+            // do nothing
+        }
+    }
+
+    private static class EchoHandler implements Handler<SocketFD> {
+        private final ByteBuffer buf = ByteBuffer.allocate(1024);
+
+        @Override
+        public void accept(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void connected(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void readable(HandlerContext<SocketFD> ctx) {
+            buf.clear();
+            try {
+                int n = ctx.getChannel().read(buf);
+                if (n < 0) {
+                    ctx.remove();
+                    return;
+                }
+                buf.flip();
+                // the messages are small, they always fit into the send buffer
+                ctx.getChannel().write(buf);
+            } catch (IOException e) {
+                ctx.remove();
+            }
+        }
+
+        @Override
+        public void writable(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void removed(HandlerContext<SocketFD> ctx) {
+            // do nothing
+        }
+    }
+
+    // sends a small message after the previous one is echoed
+    private static class PingHandler implements Handler<SocketFD> {
+        private static final int MSG_LEN = 100;
+        private final int rounds;
+        private final ByteBuffer buf = ByteBuffer.allocate(MSG_LEN);
+        int finished = 0;
+
+        PingHandler(int rounds) {
+            this.rounds = rounds;
+        }
+
+        private void ping(HandlerContext<SocketFD> ctx) throws IOException {
+            var msg = ByteBuffer.allocate(MSG_LEN);
+            assertEquals(MSG_LEN, ctx.getChannel().write(msg));
+        }
+
+        @Override
+        public void accept(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void connected(HandlerContext<SocketFD> ctx) {
+            ctx.modify(EventSet.read());
+            try {
+                ping(ctx);
+            } catch (IOException e) {
+                ctx.remove();
+            }
+        }
+
+        @Override
+        public void readable(HandlerContext<SocketFD> ctx) {
+            try {
+                if (ctx.getChannel().read(buf) < 0) {
+                    ctx.remove();
+                    return;
+                }
+                if (buf.hasRemaining()) {
+                    return;
+                }
+                buf.clear();
+                ++finished;
+                if (finished < rounds) {
+                    ping(ctx);
+                }
+            } catch (IOException e) {
+                ctx.remove();
+            }
+        }
+
+        @Override
+        public void writable(HandlerContext<SocketFD> ctx) {
+            // will not fire
+        }
+
+        @Override
+        public void removed(HandlerContext<SocketFD> ctx) {
+            // do nothing
+        }
+    }
+
+    @Test
+    public void bulkAndInteractiveStreams() throws Exception {
+        startServer();
+        var clientFDs = client(false);
+
+        var bulkWriter = new PatternWriter(Long.MAX_VALUE, false);
+        connect(clientFDs, EventSet.write(), bulkWriter);
+        var bulkReader = new PatternReader();
+        accept(EventSet.read(), bulkReader);
+        waitUntil("bulk stream starts", () -> bulkReader.received > STREAM_RECEIVE_WINDOW);
+
+        // the interactive stream is not starved by the bulk stream
+        var ping = new PingHandler(20);
+        connect(clientFDs, EventSet.write(), ping);
+        accept(EventSet.read(), new EchoHandler());
+        waitUntil("interactive stream finishes", () -> ping.finished == 20);
+
+        long bulkReceived = onLoop(() -> bulkReader.received);
+        waitUntil("bulk stream keeps going", () -> bulkReader.received > bulkReceived);
+        assertFalse(onLoop(() -> bulkReader.mismatch));
+        assertNull(onLoop(() -> bulkWriter.error));
+    }
+
+    @Test
+    public void finAfterQueuedData() throws Exception {
+        startServer();
+        var clientFDs = client(false);
+
+        int total = 300_000;
+        var writer = new PatternWriter(total, true);
+        var sfd = connect(clientFDs, EventSet.write(), writer);
+        var reader = new PatternReader();
+        accept(EventSet.read(), reader);
+
+        waitUntil("fin received", () -> reader.eof);
+        assertEquals(total, (long) onLoop(() -> reader.received));
+        assertFalse(onLoop(() -> reader.mismatch));
+        assertEquals(StreamedFD.State.fin_sent, onLoop(sfd::getState));
+    }
+
+    @Test
+    public void rstDropsQueuedData() throws Exception {
+        startServer();
+        var clientFDs = client(false);
+
+        var writer = new PatternWriter(5, false);
+        var sfd = connect(clientFDs, EventSet.write(), writer);
+        var reader = new PatternReader();
+        accept(EventSet.read(), reader);
+        waitUntil("first bytes received", () -> reader.received == 5);
+
+        // queue data and reset in the same round, nothing of it can be sent
+        int queued = onLoop(() -> {
+            int n = sfd.write(ByteBuffer.allocate(16384));
+            assertTrue(n > 0);
+            loop.remove(sfd);
+            sfd.setOption(StandardSocketOptions.SO_LINGER, 0);
+            sfd.close();
+            return n;
+        });
+        assertTrue(queued > 0);
+
+        waitUntil("rst received", () -> reader.error != null);
+        var err = onLoop(() -> reader.error);
+        assertTrue(err.getMessage(), Utils.RESET_MSG.contains(err.getMessage()));
+        assertEquals(5, (long) onLoop(() -> reader.received));
+        assertFalse(onLoop(() -> reader.eof));
+    }
+
+    @Test
+    public void windowExhaustionAndUpdate() throws Exception {
+        startServer();
+        var clientFDs = client(true);
+
+        int total = 4 * STREAM_RECEIVE_WINDOW;
+        var writer = new PatternWriter(total, true);
+        connect(clientFDs, EventSet.write(), writer);
+        var reader = new PatternReader();
+        // do not read from the stream
+        var serverStream = accept(EventSet.none(), reader);
+
+        // the writer can only send the initial window advertised by the server
+        waitUntil("window exhausted", () -> writer.written == STREAM_RECEIVE_WINDOW);
+        Thread.sleep(300);
+        assertEquals(STREAM_RECEIVE_WINDOW, (long) onLoop(() -> writer.written));
+
+        // reading grants window back with WINDOW_UPDATE frames
+        onLoop(() -> {
+            loop.modify(serverStream, EventSet.read());
+            return null;
+        });
+        waitUntil("all data received", () -> reader.eof);
+        assertEquals(total, (long) onLoop(() -> writer.written));
+        assertEquals(total, (long) onLoop(() -> reader.received));
+        assertFalse(onLoop(() -> reader.mismatch));
+    }
+
+    @Test
+    public void oldClientWithoutFlowControl() throws Exception {
+        startServer();
+        // sends an empty SETTINGS frame when handshaking
+        var clientFDs = client(false);
+
+        int total = 2 * STREAM_RECEIVE_WINDOW;
+        var writer = new PatternWriter(total, true);
+        connect(clientFDs, EventSet.write(), writer);
+        var reader = new PatternReader();
+        var serverStream = accept(EventSet.none(), reader);
+
+        // no window is applied to the stream
+        waitUntil("all data written", () -> writer.written == total);
+
+        onLoop(() -> {
+            loop.modify(serverStream, EventSet.read());
+            return null;
+        });
+        waitUntil("all data received", () -> reader.eof);
+        assertEquals(total, (long) onLoop(() -> reader.received));
+        assertFalse(onLoop(() -> reader.mismatch));
+    }
+
+    // behaves like servers of older versions, only an empty SETTINGS frame is accepted
+    private static class OldServerHandler extends H2StreamedFDHandler {
+        private static final ByteArray EMPTY_SETTINGS = ByteArray.from(0, 0, 0, 0x4, 0, 0, 0, 0, 0);
+
+        OldServerHandler() {
+            super(false);
+        }
+
+        @Override
+        protected int serverReceiveHandshakeMessage(ByteArray array) throws IOException {
+            if (array.length() < EMPTY_SETTINGS.length()) {
+                return 0;
+            }
+            if (!array.sub(0, EMPTY_SETTINGS.length()).equals(EMPTY_SETTINGS)) {
+                throw new IOException("handshake message is invalid");
+            }
+            return super.serverReceiveHandshakeMessage(array);
+        }
+    }
+
+    private static class OldServerFDs extends StreamedArqUDPServerFDs {
+        OldServerFDs(SelectorEventLoop loop, IPPort local) throws IOException {
+            super(KCPFDs.getFast3(), loop, local, OldServerHandler::new);
+        }
+    }
+
+    // records GOAWAY frames received when handshaking
+    private static class FlowControlClientHandler extends H2StreamedFDHandler {
+        private final AtomicInteger goAway;
+
+        FlowControlClientHandler(AtomicInteger goAway) {
+            super(true, true);
+            this.goAway = goAway;
+        }
+
+        @Override
+        protected int clientReceiveHandshakeMessage(ByteArray array) throws IOException {
+            if (array.length() > 3 && array.get(3) == 0x7) {
+                goAway.incrementAndGet();
+            }
+            return super.clientReceiveHandshakeMessage(array);
+        }
+    }
+
+    @Test
+    public void flowControlClientRejectedByOldServer() throws Exception {
+        startServer(onLoop(() -> new OldServerFDs(loop, local)));
+
+        // old clients still work
+        var oldClientFDs = client(false);
+        var writer = new PatternWriter(1000, true);
+        connect(oldClientFDs, EventSet.write(), writer);
+        var reader = new PatternReader();
+        accept(EventSet.read(), reader);
+        waitUntil("old client data received", () -> reader.eof);
+        assertEquals(1000, (long) onLoop(() -> reader.received));
+
+        // the server answers GOAWAY instead of waiting for the handshake to time out
+        var goAway = new AtomicInteger();
+        UDPBasedFDs clientFDs = onLoop(() -> new StreamedArqUDPClientFDs(KCPFDs.getClientFast3(), loop, local,
+            () -> new FlowControlClientHandler(goAway)));
+        long begin = System.currentTimeMillis();
+        while (goAway.get() == 0) {
+            assertTrue("GOAWAY not received", System.currentTimeMillis() - begin < 4_000);
+            Thread.sleep(10);
+        }
+        try {
+            onLoop(() -> clientFDs.openSocketFD(loop));
+            fail("the handshake should not succeed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(accepted.isEmpty());
+    }
+}
@@ -3,6 +3,7 @@ package io.vproxy.test.cases;
 import io.vproxy.base.Config;
 import io.vproxy.base.component.check.HealthCheckConfig;
 import io.vproxy.base.component.elgroup.EventLoopGroup;
+import io.vproxy.base.component.elgroup.SelectMethod;
 import io.vproxy.base.component.svrgroup.Method;
 import io.vproxy.base.component.svrgroup.ServerGroup;
 import io.vproxy.base.connection.Connection;
@@ -10,8 +11,11 @@ import io.vproxy.base.connection.NetEventLoop;
 import io.vproxy.base.connection.Protocol;
 import io.vproxy.base.connection.ServerSock;
 import io.vproxy.base.selector.SelectorEventLoop;
+import io.vproxy.base.util.AnnotationKeys;
+import io.vproxy.base.util.Annotations;
 import io.vproxy.base.util.ByteArray;
 import io.vproxy.base.util.Network;
+import io.vproxy.base.util.ringbuffer.SpliceRingBuffer;
 import io.vproxy.base.util.thread.VProxyThread;
 import io.vproxy.component.app.TcpLB;
 import io.vproxy.component.proxy.Session;
@@ -22,13 +26,26 @@ import io.vproxy.test.tool.CaseUtils;
 import io.vproxy.test.tool.Client;
 import io.vproxy.test.tool.EchoServer;
 import io.vproxy.test.tool.IdServer;
+import io.vproxy.vfd.FDProvider;
 import io.vproxy.vfd.IP;
 import io.vproxy.vfd.IPPort;
+import io.vproxy.vfd.SocketFD;
 import org.junit.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 
@@ -405,6 +422,99 @@ public class TestTcpLB {
         }
     }
 
+    @Test
+    public void proxyMaglev() throws Exception {
+        upstream0.add(sg0, 10);
+        // disable the load bound, all requests should be sent to the same backend
+        sg0.setAnnotations(new Annotations(Map.of(AnnotationKeys.ServerGroup_MaglevLoadFactor.name, "0")));
+        sg0.setMethod(Method.maglev);
+
+        String resp = null;
+        for (int i = 0; i < 20; ++i) {
+            Client client = new Client(lbPort);
+            client.connect();
+            clients.add(client);
+            String recv = client.sendAndRecv("anything", 1);
+            if (resp == null) {
+                resp = recv;
+            } else {
+                assertEquals("connections should be sent to the same backend because we are using maglev", resp, recv);
+            }
+        }
+
+        // make the backend DOWN, requests should be sent to the other one
+        String other = resp.equals("0") ? "1" : "0";
+        String downAlias = "svr" + resp;
+        sg0.getServerHandles().stream().filter(s -> s.alias.equals(downAlias)).findFirst().get().healthy = false;
+        for (int i = 0; i < 10; ++i) {
+            Client client = new Client(lbPort);
+            client.connect();
+            clients.add(client);
+            String recv = client.sendAndRecv("anything", 1);
+            assertEquals("the selected backend is DOWN", other, recv);
+        }
+    }
+
+    @Test
+    public void proxyMaglevBoundedLoad() throws Exception {
+        upstream0.add(sg0, 10);
+        sg0.setAnnotations(new Annotations(Map.of(AnnotationKeys.ServerGroup_MaglevLoadFactor.name, "1.25")));
+        sg0.setMethod(Method.maglev);
+
+        int[] count = new int[2];
+        for (int i = 0; i < 20; ++i) {
+            Client client = new Client(lbPort);
+            client.connect();
+            clients.add(client);
+            // keep the connections
+            String recv = client.sendAndRecv("anything", 1);
+            count[Integer.parseInt(recv)]++;
+        }
+        // each backend can take at most ceil(1.25 * 20 / 2) connections
+        assertTrue("backend 0 should not be overloaded: " + count[0], count[0] <= 13);
+        assertTrue("backend 1 should not be overloaded: " + count[1], count[1] <= 13);
+    }
+
+    @Test
+    public void proxyP2C() throws Exception {
+        upstream0.add(sg0, 10);
+        for (Method method : new Method[]{Method.p2c, Method.peakewma}) {
+            sg0.setMethod(method);
+            ServerGroup.ServerHandle h = sg0.getServerHandles().stream().filter(s -> s.alias.equals("svr0")).findFirst().get();
+            h.healthy = false;
+
+            for (int i = 0; i < 10; ++i) {
+                Client client = new Client(lbPort);
+                client.connect();
+                clients.add(client);
+                String recv = client.sendAndRecv("anything", 1);
+                assertEquals("response should be 1 because 0 is DOWN", "1", recv);
+            }
+
+            h.healthy = true;
+            if (method == Method.p2c) {
+                // svr1 has 10 connections, and the connections are kept,
+                // so new connections should be sent to svr0
+                for (int i = 0; i < 5; ++i) {
+                    Client client = new Client(lbPort);
+                    client.connect();
+                    clients.add(client);
+                    String recv = client.sendAndRecv("anything", 1);
+                    assertEquals("response should be 0 because svr1 has more connections", "0", recv);
+                }
+                for (Client c : clients) {
+                    c.close();
+                }
+                clients.clear();
+                Thread.sleep(500);
+            } else {
+                // the connect cost is recorded
+                ServerGroup.ServerHandle h1 = sg0.getServerHandles().stream().filter(s -> s.alias.equals("svr1")).findFirst().get();
+                assertTrue("connect cost of svr1 should be recorded", h1.getConnectCostEwma() > 0);
+            }
+        }
+    }
+
     @Test
     public void changeHealthCheckOnRunning() throws Exception {
         ServerGroup.ServerHandle h = sg0.getServerHandles().stream().findFirst().get();
@@ -675,6 +785,246 @@ public class TestTcpLB {
         client1.sendAndRecv("ok", 1);
     }
 
+    private static int serverCount(EventLoopGroup elg) throws Exception {
+        int n = 0;
+        for (var w : elg.list()) {
+            n += w.serverCount();
+        }
+        return n;
+    }
+
+    @Test
+    public void reusePortShard() throws Exception {
+        Assume.assumeTrue("reuseport load balancing is not supported",
+            ServerSock.supportReusePort() && Config.supportReusePortLB());
+        upstream0.add(sgEcho, 10);
+
+        EventLoopGroup elg1 = new EventLoopGroup("elg1");
+        elg1.add("el1a");
+        elg1.add("el1b");
+        elg1.add("el1c");
+        TcpLB lb1 = new TcpLB("lb1", elg0, elg1,
+            new IPPort("127.0.0.1", lbPort + 1), upstream0,
+            Config.tcpTimeout, 16384, 16384, secg0);
+        lb1.setReusePortShard(true);
+        lb1.start();
+
+        try {
+            // one listening socket on each worker loop, none on the acceptor loop
+            assertEquals(3, lb1.servers.size());
+            for (var w : elg1.list()) {
+                assertEquals("one listening socket on " + w.alias, 1, w.serverCount());
+            }
+            assertEquals("only lb0 listens on the acceptor loop", 1, elg0.get("el0").serverCount());
+
+            for (int i = 0; i < 30; ++i) {
+                Client client = new Client(lbPort + 1);
+                clients.add(client);
+                client.connect();
+                assertEquals("hello", client.sendAndRecv("hello", 5));
+            }
+            // the frontend and backend connections of a session are both on the accepting loop
+            int total = 0;
+            int loopsWithConnections = 0;
+            for (var w : elg1.list()) {
+                int n = w.connectionCount();
+                assertEquals("frontend and backend connections should be on the same loop", 0, n % 2);
+                total += n;
+                if (n > 0) {
+                    ++loopsWithConnections;
+                }
+            }
+            assertEquals(60, total);
+            assertTrue("connections should be spread over the loops: " + loopsWithConnections, loopsWithConnections >= 2);
+            for (Client c : clients) {
+                c.close();
+            }
+            clients.clear();
+
+            // a new worker loop gets its own listening socket
+            elg1.add("el1d");
+            assertEquals(4, lb1.servers.size());
+            assertEquals(1, elg1.get("el1d").serverCount());
+
+            // stop releases all listening sockets of the loops
+            lb1.stop();
+            assertTrue(lb1.servers.isEmpty());
+            for (int i = 0; i < 100 && serverCount(elg1) != 0; ++i) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, serverCount(elg1));
+            // the port can be bound without reuseport, so no listening socket is left
+            try (ServerSocket sock = new ServerSocket()) {
+                sock.bind(new InetSocketAddress("127.0.0.1", lbPort + 1));
+            }
+
+            lb1.start();
+            assertEquals(4, lb1.servers.size());
+            assertEquals(4, serverCount(elg1));
+            Client client = new Client(lbPort + 1);
+            clients.add(client);
+            client.connect();
+            assertEquals("hello", client.sendAndRecv("hello", 5));
+            client.close();
+            clients.clear();
+
+            // turn off sharding on a running lb, the listening socket goes back to the acceptor loop
+            lb1.setReusePortShard(false);
+            assertFalse(lb1.isReusePortShard());
+            assertEquals(1, lb1.servers.size());
+            for (int i = 0; i < 100 && serverCount(elg1) != 0; ++i) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, serverCount(elg1));
+            assertEquals(2, elg0.get("el0").serverCount());
+            client = new Client(lbPort + 1);
+            clients.add(client);
+            client.connect();
+            assertEquals("hello", client.sendAndRecv("hello", 5));
+        } finally {
+            lb1.destroy();
+            elg1.close();
+        }
+    }
+
+    // echo everything until FIN, then send FIN back
+    private static ServerSocket halfCloseEchoServer(int port, AtomicLong received, CountDownLatch finReceived) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.bind(new InetSocketAddress("127.0.0.1", port));
+        VProxyThread.create(() -> {
+            try (Socket sock = server.accept()) {
+                InputStream in = sock.getInputStream();
+                OutputStream out = sock.getOutputStream();
+                byte[] buf = new byte[65536];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    received.addAndGet(n);
+                    out.write(buf, 0, n);
+                }
+                finReceived.countDown();
+                sock.shutdownOutput();
+                // wait for the lb to close the connection
+                //noinspection StatementWithEmptyBody
+                while (in.read(buf) != -1) {
+                }
+            } catch (IOException ignore) {
+            }
+        }, "half-close-echo-server").start();
+        return server;
+    }
+
+    @Test
+    public void spliceBulkEchoAndHalfClose() throws Exception {
+        SocketFD probe = FDProvider.get().openSocketFD();
+        boolean spliceSupported = SpliceRingBuffer.isSupported(probe);
+        probe.close();
+        Assume.assumeTrue("splice requires posix fds on linux", spliceSupported);
+
+        AtomicLong backendReceived = new AtomicLong();
+        CountDownLatch backendFin = new CountDownLatch(1);
+        ServerSocket backend = halfCloseEchoServer(20081, backendReceived, backendFin);
+        try {
+            ServerGroup sgHalfClose = new ServerGroup("sgHalfClose", elg0, new HealthCheckConfig(400, /* disable health check */24 * 60 * 60 * 1000, 2, 3), Method.wrr);
+            sgHalfClose.add("half-close-echo", new IPPort("127.0.0.1", 20081), 10);
+            sgHalfClose.getServerHandles().get(0).healthy = true;
+            upstream0.add(sgHalfClose, 10);
+            lb0.setSplice(true);
+
+            Client client = new Client(lbPort);
+            client.connect();
+            clients.add(client);
+            client.socket.setSoTimeout(10_000);
+            assertEquals("hello", client.sendAndRecv("hello", 5));
+
+            List<Session> sessions = new LinkedList<>();
+            lb0.copySessions(sessions);
+            assertEquals(1, sessions.size());
+            assertTrue("the frontend connection should use splice buffers",
+                sessions.get(0).active.getInBuffer() instanceof SpliceRingBuffer);
+            assertTrue("the backend connection should use splice buffers",
+                sessions.get(0).passive.getInBuffer() instanceof SpliceRingBuffer);
+
+            // much more than the pipe capacity, written in another thread to avoid blocking on a full pipe
+            byte[] bulk = new byte[8 * 1024 * 1024];
+            new Random(1).nextBytes(bulk);
+            Socket sock = client.socket;
+            IOException[] writeErr = {null};
+            VProxyThread writer = VProxyThread.create(() -> {
+                try {
+                    sock.getOutputStream().write(bulk);
+                    sock.shutdownOutput();
+                } catch (IOException e) {
+                    writeErr[0] = e;
+                }
+            }, "splice-bulk-writer");
+            writer.start();
+
+            ByteArrayOutputStream echoed = new ByteArrayOutputStream(bulk.length);
+            InputStream in = sock.getInputStream();
+            byte[] buf = new byte[65536];
+            int n;
+            // the backend only sends FIN after receiving the client FIN and echoing all data,
+            // so EOF here means FIN is propagated in both directions
+            while ((n = in.read(buf)) != -1) {
+                echoed.write(buf, 0, n);
+            }
+            writer.join();
+            assertNull("writing bulk data failed: " + writeErr[0], writeErr[0]);
+
+            assertTrue("the backend should receive FIN", backendFin.await(5, TimeUnit.SECONDS));
+            assertEquals(5 + bulk.length, backendReceived.get());
+            assertArrayEquals("echoed data should be the same as sent", bulk, echoed.toByteArray());
+
+            // both directions are closed, so the session is closed
+            for (int i = 0; i < 100 && lb0.sessionCount() != 0; ++i) {
+                Thread.sleep(20);
+            }
+            assertEquals("session should be closed", 0, lb0.sessionCount());
+        } finally {
+            backend.close();
+        }
+    }
+
+    @Test
+    public void workerLeastConnections() throws Exception {
+        upstream0.add(sgEcho, 10);
+
+        EventLoopGroup elg1 = new EventLoopGroup("elg1", new Annotations(Map.of(
+            AnnotationKeys.EventLoopGroup_SelectMethod.name, "lc"
+        )));
+        assertEquals(SelectMethod.lc, elg1.getSelectMethod());
+        elg1.add("el1a");
+        TcpLB lb1 = new TcpLB("lb1", elg0, elg1,
+            new IPPort("127.0.0.1", lbPort + 1), upstream0,
+            Config.tcpTimeout, 16384, 16384, secg0);
+        lb1.start();
+
+        try {
+            // all sessions go to the only loop
+            for (int i = 0; i < 4; ++i) {
+                Client client = new Client(lbPort + 1);
+                clients.add(client);
+                client.connect();
+                assertEquals("hello", client.sendAndRecv("hello", 5));
+            }
+            // the new loop has no connection, so it's chosen until both loops are equally loaded
+            elg1.add("el1b");
+            for (int i = 0; i < 4; ++i) {
+                Client client = new Client(lbPort + 1);
+                clients.add(client);
+                client.connect();
+                assertEquals("hello", client.sendAndRecv("hello", 5));
+            }
+            int a = elg1.get("el1a").connectionCount();
+            int b = elg1.get("el1b").connectionCount();
+            assertTrue("connections should be on both loops: " + a + ", " + b, a > 0);
+            assertEquals(a, b);
+        } finally {
+            lb1.destroy();
+            elg1.close();
+        }
+    }
+
     @Test
     public void replaceIp() throws Exception {
         upstream0.add(sg1, 10); // use sg1 because it contain only one backend
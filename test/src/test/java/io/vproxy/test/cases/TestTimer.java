@@ -4,10 +4,16 @@ import io.vproxy.base.selector.PeriodicEvent;
 import io.vproxy.base.selector.SelectorEventLoop;
 import io.vproxy.base.selector.TimerEvent;
 import io.vproxy.base.util.thread.VProxyThread;
+import io.vproxy.base.util.time.TimeElem;
+import io.vproxy.base.util.time.TimeQueue;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class TestTimer {
@@ -76,4 +82,71 @@ public class TestTimer {
         Thread.sleep(500);
         assertEquals("still 3 alerts", 3, i[0]);
     }
+
+    @Test
+    public void timingWheelLoop() throws Exception {
+        var opts = new SelectorEventLoop.InitOptions();
+        opts.timingWheel = true;
+        var wheelLoop = SelectorEventLoop.open(opts);
+        wheelLoop.loop(r -> VProxyThread.create(r, "EventLoop"));
+        try {
+            boolean[] done = {false, false, false};
+            TimerEvent te0 = wheelLoop.delay(1000, () -> done[0] = true);
+            wheelLoop.delay(500, () -> done[1] = true);
+            wheelLoop.delay(1500, () -> done[2] = true);
+            Thread.sleep(550);
+            assertArrayEquals("500 ms", new boolean[]{false, true, false}, done);
+            te0.cancel();
+            Thread.sleep(500);
+            assertArrayEquals("1000 ms", new boolean[]{false, true, false}, done);
+            Thread.sleep(500);
+            assertArrayEquals("1500 ms", new boolean[]{false, true, true}, done);
+        } finally {
+            wheelLoop.close();
+        }
+    }
+
+    @Test
+    public void timingWheelSameAsHeap() {
+        Random rand = new Random(1);
+        TimeQueue<Integer> heap = TimeQueue.create();
+        TimeQueue<Integer> wheel = TimeQueue.createTimingWheel();
+        List<TimeElem<Integer>> heapElems = new ArrayList<>();
+        List<TimeElem<Integer>> wheelElems = new ArrayList<>();
+        long current = 1_000_000;
+        for (int i = 0; i < 20_000; ++i) {
+            int op = rand.nextInt(10);
+            if (op < 5) {
+                int timeout = rand.nextInt(new int[]{10, 1000, 100_000, 100_000_000}[rand.nextInt(4)]);
+                int id = heapElems.size();
+                heapElems.add(heap.add(current, timeout, id));
+                wheelElems.add(wheel.add(current, timeout, id));
+            } else if (op < 7 && !heapElems.isEmpty()) {
+                int id = rand.nextInt(heapElems.size());
+                // removing an element more than once is allowed for the heap but not for the wheel
+                if (wheelElems.get(id) != null) {
+                    heapElems.get(id).removeSelf();
+                    wheelElems.get(id).removeSelf();
+                    wheelElems.set(id, null);
+                }
+            } else {
+                current += rand.nextInt(2000);
+            }
+            List<Integer> heapFired = new ArrayList<>();
+            while (heap.nextTime(current) == 0) {
+                heapFired.add(heap.poll());
+            }
+            List<Integer> wheelFired = new ArrayList<>();
+            while (wheel.nextTime(current) == 0) {
+                wheelFired.add(wheel.poll());
+            }
+            heapFired.sort(Integer::compareTo);
+            wheelFired.sort(Integer::compareTo);
+            assertEquals("fired at " + current, heapFired, wheelFired);
+            for (int id : wheelFired) {
+                wheelElems.set(id, null);
+            }
+            assertEquals(heap.isEmpty(), wheel.isEmpty());
+        }
+    }
 }
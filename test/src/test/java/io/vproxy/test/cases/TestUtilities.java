@@ -1,6 +1,10 @@
 package io.vproxy.test.cases;
 
 import io.vproxy.base.Config;
+import io.vproxy.base.processor.Hint;
+import io.vproxy.base.processor.HintIndex;
+import io.vproxy.base.util.AnnotationKeys;
+import io.vproxy.base.util.Annotations;
 import io.vproxy.base.util.ByteArray;
 import io.vproxy.base.util.Network;
 import io.vproxy.base.util.Utils;
@@ -20,8 +24,7 @@ import io.vproxy.vfd.MacAddress;
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -545,4 +548,47 @@ public class TestUtilities {
         assertEquals("[fd00::abcd:1234]:1-65535", new IPPortPool("fd00::abcd:1234:1-65535").serialize());
         assertEquals("[fd00::abcd:1234]:1-65535", new IPPortPool("[fd00::abcd:1234]:1-65535").serialize());
     }
+
+    @Test
+    public void hintIndexSameAsMatchLevel() {
+        String[] hosts = {null, "", "*", "a.com", "b.a.com", "com", "a.*", "*.com", ".com", "b.com"};
+        String[] uris = {null, "", "*", "/", "/a", "/a/b", "/ab", "/b"};
+        int[] ports = {0, 80, 443};
+        Random rand = new Random(1);
+        for (int round = 0; round < 2000; ++round) {
+            List<Annotations[]> ls = new ArrayList<>();
+            int n = rand.nextInt(10);
+            for (int i = 0; i < n; ++i) {
+                Annotations[] annos = new Annotations[2];
+                for (int j = 0; j < annos.length; ++j) {
+                    Map<String, String> m = new HashMap<>();
+                    String host = hosts[rand.nextInt(hosts.length)];
+                    if (host != null) m.put(AnnotationKeys.ServerGroup_HintHost.name, host);
+                    int port = ports[rand.nextInt(ports.length)];
+                    if (port != 0) m.put(AnnotationKeys.ServerGroup_HintPort.name, "" + port);
+                    String uri = uris[rand.nextInt(uris.length)];
+                    if (uri != null) m.put(AnnotationKeys.ServerGroup_HintUri.name, uri);
+                    annos[j] = new Annotations(m);
+                }
+                ls.add(annos);
+            }
+            HintIndex<Annotations[]> index = HintIndex.build(ls, a -> a);
+            for (int q = 0; q < 20; ++q) {
+                String host = hosts[rand.nextInt(hosts.length)];
+                String uri = uris[rand.nextInt(uris.length)];
+                Hint hint = Hint.ofHostPortUri(host, ports[rand.nextInt(ports.length)], uri == null ? null : uri + "/x");
+
+                int level = 0;
+                Annotations[] expected = null;
+                for (Annotations[] a : ls) {
+                    int l = hint.matchLevel(a);
+                    if (l > level) {
+                        level = l;
+                        expected = a;
+                    }
+                }
+                assertSame(hint.toString(), expected, index.search(hint));
+            }
+        }
+    }
 }
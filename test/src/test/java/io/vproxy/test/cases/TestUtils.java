@@ -10,6 +10,8 @@ import io.vproxy.base.util.ringbuffer.SimpleRingBuffer;
 import io.vproxy.base.util.ringbuffer.SimpleRingBufferReaderCommitter;
 import io.vproxy.base.util.thread.VProxyThread;
 import io.vproxy.commons.util.IOUtils;
+import io.vproxy.vfd.ReadableByteStream;
+import io.vproxy.vfd.WritableByteStream;
 import org.junit.After;
 import org.junit.Test;
 
@@ -104,6 +106,59 @@ public class TestUtils {
         }
     }
 
+    @Test
+    public void ringBufferScatterGather() throws Exception {
+        var rb = SimpleRingBuffer.allocateDirect(10);
+        try {
+            int[] calls = {0, 0};
+            var src = ByteArrayChannel.fromFull(ByteArray.from("ijklmn"));
+            var input = new ReadableByteStream() {
+                @Override
+                public int read(ByteBuffer dst) throws IOException {
+                    return src.read(dst);
+                }
+
+                @Override
+                public long read(ByteBuffer[] dsts, int off, int count) throws IOException {
+                    ++calls[0];
+                    return ReadableByteStream.super.read(dsts, off, count);
+                }
+            };
+            var dst = ByteArrayChannel.fromEmpty(20);
+            var output = new WritableByteStream() {
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    return dst.write(src);
+                }
+
+                @Override
+                public long write(ByteBuffer[] srcs, int off, int count) throws IOException {
+                    ++calls[1];
+                    return WritableByteStream.super.write(srcs, off, count);
+                }
+            };
+
+            rb.storeBytesFrom(ByteArrayChannel.fromFull(ByteArray.from("abcdefgh")));
+            assertEquals(6, rb.writeTo(ByteArrayChannel.fromEmpty(6)));
+
+            // free space is [8, 10) and [0, 6)
+            assertEquals(6, rb.storeBytesFrom(input));
+            assertEquals(1, calls[0]);
+            assertEquals(8, rb.used());
+            assertEquals(4, rb.getEPos());
+            assertFalse(rb.getEPosIsAfterSPos());
+
+            // data is [6, 10) and [0, 4)
+            assertEquals(8, rb.writeTo(output));
+            assertEquals(1, calls[1]);
+            assertEquals(0, rb.used());
+            assertEquals(0, rb.getSPos());
+            assertEquals("ghijklmn", new String(dst.readableArray().toJavaArray(), StandardCharsets.UTF_8));
+        } finally {
+            rb.clean();
+        }
+    }
+
     @Test
     public void ringBufferReaderCommitterUnorderedCommit() {
         var rb = SimpleRingBuffer.allocateDirect(10);